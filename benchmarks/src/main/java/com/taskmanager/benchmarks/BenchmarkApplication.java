@@ -0,0 +1,68 @@
+package com.taskmanager.benchmarks;
+
+import com.taskmanager.TaskManagerApplication;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskBatchService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots the task manager for benchmarks. Postgres is pointed at a closed port, so the health monitor routes
+ * every connection to the embedded H2 database and the numbers don't depend on an external server.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType, Map<String, Object> properties) {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("spring.datasource.primary.url", "jdbc:postgresql://127.0.0.1:1/tasks");
+        overrides.put("spring.datasource.health.probe-interval", "1h");
+        overrides.put("spring.jpa.show-sql", "false");
+        overrides.put("logging.file.name", "");
+        overrides.put("logging.level.root", "WARN");
+        overrides.put("logging.level.org.springframework", "WARN");
+        overrides.put("spring.main.banner-mode", "off");
+        overrides.putAll(properties);
+
+        // passed as command line arguments to take precedence over application.properties
+        String[] args = overrides.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        SpringApplication application = new SpringApplication(TaskManagerApplication.class);
+        application.setWebApplicationType(webApplicationType);
+        return application.run(args);
+    }
+
+    /**
+     * Inserts {@code count} tasks through the batch service and returns their ids.
+     */
+    static List<String> seed(ConfigurableApplicationContext context, String titlePrefix, int count) {
+        TaskBatchService batchService = context.getBean(TaskBatchService.class);
+        List<String> uuids = new ArrayList<>(count);
+        for (int from = 0; from < count; from += 1000) {
+            List<Task> tasks = new ArrayList<>();
+            for (int i = from; i < Math.min(from + 1000, count); i++) {
+                tasks.add(task(titlePrefix + i, Status.values()[i % Status.values().length]));
+            }
+            batchService.createTasks(tasks).forEach(result -> uuids.add(result.getUuid()));
+        }
+        return uuids;
+    }
+
+    static Task task(String title, Status status) {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setDescription("Task description of " + title);
+        task.setStatus(status);
+        return task;
+    }
+}
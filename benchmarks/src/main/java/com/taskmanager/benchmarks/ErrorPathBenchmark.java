@@ -0,0 +1,140 @@
+package com.taskmanager.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.MetricsConfig;
+import com.taskmanager.exception.DuplicationException;
+import com.taskmanager.exception.ResourceNotFoundException;
+import com.taskmanager.exception.advice.ErrorResponseTemplate;
+import com.taskmanager.model.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of answering a missing task (404) and a duplicate title (400) once the exception is thrown: the former
+ * path, an exception filling in its stack trace, an {@link ErrorResponse} written by the {@code ObjectMapper} and a
+ * counter looked up by its tags, against the shared stackless exceptions, their pre-serialized bodies, which only
+ * encode the path of the request, and cached counters. The exception is thrown {@code depth} frames deep, about the depth of
+ * a controller below the filters and the dispatcher servlet. Run with {@code -prof gc} for the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final String PATH = "/api/tasks";
+    private static final ErrorResponseTemplate NOT_FOUND = new ErrorResponseTemplate(ResourceNotFoundException.TASK.getMessage());
+    private static final ErrorResponseTemplate DUPLICATE_TITLE = new ErrorResponseTemplate(DuplicationException.TITLE.getMessage());
+
+    @Param("120")
+    private int depth;
+
+    private ObjectMapper objectMapper;
+    private MeterRegistry meterRegistry;
+    private Counter notFoundCounter;
+    private Counter duplicateCounter;
+    private String uuid;
+    private String taskPath;
+
+    @Setup
+    public void setup() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(JacksonAutoConfiguration.class)) {
+            objectMapper = context.getBean(ObjectMapper.class);
+        }
+        meterRegistry = new SimpleMeterRegistry();
+        notFoundCounter = counter(ResourceNotFoundException.class, 404);
+        duplicateCounter = counter(DuplicationException.class, 400);
+        uuid = UUID.randomUUID().toString();
+        taskPath = PATH + "/" + uuid;
+    }
+
+    @Benchmark
+    public byte[] formerNotFound() throws Exception {
+        try {
+            throwAt(depth, () -> new TracedException("Task Record Not Found By UUID: " + uuid));
+            return null;
+        } catch (TracedException e) {
+            counter(ResourceNotFoundException.class, 404).increment();
+            return objectMapper.writeValueAsBytes(new ErrorResponse(e.getMessage(), null, taskPath));
+        }
+    }
+
+    @Benchmark
+    public byte[] notFound() {
+        try {
+            throwAt(depth, () -> ResourceNotFoundException.TASK);
+            return null;
+        } catch (ResourceNotFoundException e) {
+            notFoundCounter.increment();
+            return NOT_FOUND.render(taskPath);
+        }
+    }
+
+    @Benchmark
+    public byte[] formerDuplicateTitle() throws Exception {
+        try {
+            throwAt(depth, () -> new TracedException(DuplicationException.TITLE.getMessage()));
+            return null;
+        } catch (TracedException e) {
+            counter(DuplicationException.class, 400).increment();
+            return objectMapper.writeValueAsBytes(new ErrorResponse(e.getMessage(), null, PATH));
+        }
+    }
+
+    @Benchmark
+    public byte[] duplicateTitle() {
+        try {
+            throwAt(depth, () -> DuplicationException.TITLE);
+            return null;
+        } catch (DuplicationException e) {
+            duplicateCounter.increment();
+            return DUPLICATE_TITLE.render(PATH);
+        }
+    }
+
+    private Counter counter(Class<?> exception, int status) {
+        return meterRegistry.counter(MetricsConfig.ERRORS_COUNTER,
+                "exception", exception.getSimpleName(),
+                "status", String.valueOf(status));
+    }
+
+    private static void throwAt(int depth, ExceptionFactory factory) {
+        if (depth <= 1) {
+            throw factory.create();
+        }
+        throwAt(depth - 1, factory);
+    }
+
+    @FunctionalInterface
+    private interface ExceptionFactory {
+        RuntimeException create();
+    }
+
+    /**
+     * The domain exceptions as they were, filling in their stack trace.
+     */
+    private static final class TracedException extends RuntimeException {
+        TracedException(String message) {
+            super(message);
+        }
+    }
+}
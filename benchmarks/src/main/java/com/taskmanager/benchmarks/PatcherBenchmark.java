@@ -0,0 +1,78 @@
+package com.taskmanager.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.Patch;
+import com.taskmanager.service.PatcherUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of patching a task: the former reflective path against the compiled patch plans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatcherBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Task existingTask;
+    private Task updatedTask;
+    private Patch<Task> preparedPatch;
+    private JsonNode mergePatch;
+
+    @Setup
+    public void setup() throws Exception {
+        existingTask = new Task();
+        existingTask.setUuid("0191e4a2-5c3f-7a51-9d6e-3b2f1c0a9e87");
+        existingTask.setTitle("Every day task");
+        existingTask.setDescription("Task description");
+        existingTask.setStatus(Status.NEW);
+
+        updatedTask = new Task();
+        updatedTask.setTitle("Updated title");
+        updatedTask.setDescription(" ");
+        updatedTask.setStatus(Status.IN_PROGRESS);
+
+        preparedPatch = PatcherUtils.prepare(updatedTask);
+        mergePatch = objectMapper.readTree("{\"title\": \"Updated title\", \"description\": null, \"status\": \"IN_PROGRESS\"}");
+    }
+
+    @Benchmark
+    public Task reflectivePatch() {
+        ReflectivePatcher.patch(existingTask, updatedTask);
+        return existingTask;
+    }
+
+    @Benchmark
+    public Task compiledPatch() {
+        PatcherUtils.patch(existingTask, updatedTask);
+        return existingTask;
+    }
+
+    @Benchmark
+    public Task preparedPatchApply() {
+        return preparedPatch.applyTo(existingTask);
+    }
+
+    @Benchmark
+    public Task mergePatch() {
+        return PatcherUtils.prepareMergePatch(Task.class, mergePatch, objectMapper).applyTo(existingTask);
+    }
+}
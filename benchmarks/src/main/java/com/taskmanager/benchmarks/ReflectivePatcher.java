@@ -0,0 +1,30 @@
+package com.taskmanager.benchmarks;
+
+import com.taskmanager.exception.PatcherServiceException;
+import org.apache.logging.log4j.util.Strings;
+
+import java.lang.reflect.Field;
+
+/**
+ * The reflective implementation PatcherUtils.patch used before the compiled patch plans, kept as a baseline.
+ */
+public class ReflectivePatcher {
+
+    public static <T> void patch(T existingObj, T incompleteObj) {
+        try {
+            Class<?> clazz = existingObj.getClass();
+            Field[] fields = clazz.getDeclaredFields();
+            for (Field field : fields) {
+                field.setAccessible(true);
+                Object value = field.get(incompleteObj);
+                if (value == null || (value instanceof String str && Strings.isBlank(str))) {
+                    continue;
+                }
+                field.set(existingObj, value);
+                field.setAccessible(false);
+            }
+        } catch (IllegalAccessException e) {
+            throw new PatcherServiceException(e.getMessage());
+        }
+    }
+}
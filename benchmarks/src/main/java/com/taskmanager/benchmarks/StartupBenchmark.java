@@ -0,0 +1,100 @@
+package com.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: boots the application with its embedded server and serves the first page of tasks.
+ * Every fork is a cold JVM measured once. With {@code primary=down} connections to Postgres are refused, with
+ * {@code primary=hanging} Postgres accepts connections and never answers, like a server which is overloaded or
+ * cut off behind a firewall.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"down", "hanging"})
+    private String primary;
+
+    private ServerSocket hangingPostgres;
+    private final List<Socket> connections = new ArrayList<>();
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (primary.equals("hanging")) {
+            hangingPostgres = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptForever, "hanging-postgres");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        if (hangingPostgres != null) {
+            hangingPostgres.close();
+        }
+    }
+
+    @Benchmark
+    public int startAndServeFirstRequest() throws Exception {
+        String primaryUrl = hangingPostgres == null
+                ? "jdbc:postgresql://127.0.0.1:1/tasks"
+                : "jdbc:postgresql://127.0.0.1:" + hangingPostgres.getLocalPort() + "/tasks";
+        context = BenchmarkApplication.start(WebApplicationType.SERVLET,
+                Map.of("server.port", "0", "spring.datasource.primary.url", primaryUrl));
+        int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/tasks")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("First request failed with " + response.statusCode());
+        }
+        return response.body().length();
+    }
+
+    private void acceptForever() {
+        try {
+            while (true) {
+                // kept open and never answered
+                connections.add(hangingPostgres.accept());
+            }
+        } catch (IOException e) {
+            // closed at tear down
+        }
+    }
+}
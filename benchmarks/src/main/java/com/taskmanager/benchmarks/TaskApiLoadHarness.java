@@ -0,0 +1,282 @@
+package com.taskmanager.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the task API over HTTP on an embedded server and reports throughput and latency percentiles per
+ * operation. Every client runs a closed loop over a fixed mix of requests: 60% get by id, 20% list a page,
+ * 15% patch and 5% create. With {@code harness.errors} set, that share of the requests instead asks for a
+ * missing task or creates a task with a taken title, half each, as scanners and retrying clients do; those count
+ * as errors unless answered with 404 and 400. Clients are asynchronous request chains rather than threads, so
+ * thousands of concurrent clients don't need thousands of client threads.
+ * <p>
+ * Configured with system properties: {@code harness.clients} (16), {@code harness.warmup} (10s),
+ * {@code harness.duration} (30s), {@code harness.seed} (10000 tasks), {@code harness.errors} (0%) and
+ * {@code harness.result} (target/load-harness.json).
+ */
+public class TaskApiLoadHarness {
+
+    enum Operation {
+        GET_TASK(60),
+        LIST_TASKS(20),
+        PATCH_TASK(15),
+        CREATE_TASK(5),
+        GET_MISSING_TASK(0, 404),
+        CREATE_DUPLICATE_TASK(0, 400);
+
+        private final int weight;
+        private final int expectedStatus;
+
+        Operation(int weight) {
+            this(weight, 0);
+        }
+
+        Operation(int weight, int expectedStatus) {
+            this.weight = weight;
+            this.expectedStatus = expectedStatus;
+        }
+
+        boolean succeeded(int status) {
+            return expectedStatus == 0 ? status < 400 : status == expectedStatus;
+        }
+
+        static Operation pick(int percent) {
+            int bound = 0;
+            for (Operation operation : values()) {
+                bound += operation.weight;
+                if (percent < bound) {
+                    return operation;
+                }
+            }
+            return CREATE_TASK;
+        }
+    }
+
+    private final int clients = Integer.getInteger("harness.clients", 16);
+    private final Duration warmup = Duration.parse("PT" + System.getProperty("harness.warmup", "10s"));
+    private final Duration duration = Duration.parse("PT" + System.getProperty("harness.duration", "30s"));
+    private final int seedSize = Integer.getInteger("harness.seed", 10000);
+    private final int errorPercent = Integer.getInteger("harness.errors", 0);
+    private final File resultFile = new File(System.getProperty("harness.result", "target/load-harness.json"));
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final AtomicLong titles = new AtomicLong();
+
+    private String baseUrl;
+    private List<String> uuids;
+
+    public static void main(String[] args) throws Exception {
+        new TaskApiLoadHarness().run();
+    }
+
+    private void run() throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(WebApplicationType.SERVLET,
+                Map.of("server.port", "0"))) {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/tasks";
+            uuids = BenchmarkApplication.seed(context, "Seeded task ", seedSize);
+
+            System.out.printf("Warming up for %s with %d clients%n", warmup, clients);
+            drive(warmup);
+            System.out.printf("Measuring for %s with %d clients%n", duration, clients);
+            Recorder[] recorders = drive(duration);
+
+            Map<String, Object> report = report(recorders);
+            resultFile.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, report);
+            System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+            System.out.println("Results written to " + resultFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Runs the clients for the given time and merges their recordings per operation.
+     */
+    private Recorder[] drive(Duration time) {
+        long deadline = System.nanoTime() + time.toNanos();
+        List<CompletableFuture<Recorder[]>> runs = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Recorder[] recorders = Recorder.forAllOperations();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            next("client-" + i, deadline, recorders, done);
+            runs.add(done.thenApply(ignored -> recorders));
+        }
+        Recorder[] merged = Recorder.forAllOperations();
+        for (CompletableFuture<Recorder[]> run : runs) {
+            Recorder[] recorders = run.join();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i].merge(recorders[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Sends the next request of a client and sends the following one once it completed, until the deadline.
+     * The requests of one client never overlap, so its recorders are not accessed concurrently. Each client sends
+     * its own id, so the admission control limits the rate per client rather than of the whole harness.
+     */
+    private void next(String client, long deadline, Recorder[] recorders, CompletableFuture<Void> done) {
+        if (System.nanoTime() >= deadline) {
+            done.complete(null);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = random.nextInt(100) < errorPercent
+                ? random.nextBoolean() ? Operation.GET_MISSING_TASK : Operation.CREATE_DUPLICATE_TASK
+                : Operation.pick(random.nextInt(100));
+        HttpRequest request = request(operation, random, client);
+        long start = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenCompleteAsync((response, failure) -> {
+                    recorders[operation.ordinal()].record(System.nanoTime() - start,
+                            failure == null && operation.succeeded(response.statusCode()));
+                    next(client, deadline, recorders, done);
+                });
+    }
+
+    private HttpRequest request(Operation operation, ThreadLocalRandom random, String client) {
+        String uuid = uuids.get(random.nextInt(uuids.size()));
+        return switch (operation) {
+            case GET_TASK -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + uuid))
+                    .header("X-Client-Id", client)
+                    .GET()
+                    .build();
+            case LIST_TASKS -> HttpRequest.newBuilder(URI.create(baseUrl + "?limit=100&after=" + uuid))
+                    .header("X-Client-Id", client)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            case PATCH_TASK -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + uuid))
+                    .header("X-Client-Id", client)
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                            "{\"description\":\"Patched description " + titles.incrementAndGet() + "\"}"))
+                    .build();
+            case CREATE_TASK -> HttpRequest.newBuilder(URI.create(baseUrl))
+                    .header("X-Client-Id", client)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"title\":\"Created task " + titles.incrementAndGet() + "\",\"status\":\"NEW\"}"))
+                    .build();
+            case GET_MISSING_TASK -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + UUID.randomUUID()))
+                    .header("X-Client-Id", client)
+                    .GET()
+                    .build();
+            case CREATE_DUPLICATE_TASK -> HttpRequest.newBuilder(URI.create(baseUrl))
+                    .header("X-Client-Id", client)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"title\":\"Seeded task " + random.nextInt(seedSize) + "\",\"status\":\"NEW\"}"))
+                    .build();
+        };
+    }
+
+    private Map<String, Object> report(Recorder[] recorders) {
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put("clients", clients);
+        configuration.put("warmupSeconds", warmup.toSeconds());
+        configuration.put("durationSeconds", duration.toSeconds());
+        configuration.put("seedSize", seedSize);
+        configuration.put("errorPercent", errorPercent);
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        Recorder total = new Recorder();
+        for (Operation operation : Operation.values()) {
+            Recorder recorder = recorders[operation.ordinal()];
+            operations.put(operation.name(), recorder.summary(duration));
+            total.merge(recorder);
+        }
+        operations.put("ALL", total.summary(duration));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("configuration", configuration);
+        report.put("operations", operations);
+        return report;
+    }
+
+    /**
+     * Latencies of one operation, kept raw and sorted once for the percentiles.
+     */
+    static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        static Recorder[] forAllOperations() {
+            Recorder[] recorders = new Recorder[Operation.values().length];
+            for (int i = 0; i < recorders.length; i++) {
+                recorders[i] = new Recorder();
+            }
+            return recorders;
+        }
+
+        void record(long latencyNanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        void merge(Recorder other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+
+        Map<String, Object> summary(Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("errors", errors);
+            summary.put("throughputPerSecond", Math.round(count / (double) duration.toMillis() * 1000 * 10) / 10.0);
+            summary.put("p50Millis", percentile(sorted, 0.50));
+            summary.put("p90Millis", percentile(sorted, 0.90));
+            summary.put("p99Millis", percentile(sorted, 0.99));
+            summary.put("p999Millis", percentile(sorted, 0.999));
+            summary.put("maxMillis", sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]));
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return toMillis(sorted[Math.max(0, index)]);
+        }
+
+        private static double toMillis(long nanos) {
+            return Math.round(nanos / 1000.0) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.taskmanager.benchmarks;
+
+import com.taskmanager.service.TaskIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts into a table keyed like the tasks table: the former random ids in a {@code VARCHAR} column, random ids
+ * in a {@code uuid} column, and the time-ordered ids of {@link TaskIds} in a {@code uuid} column. The table is
+ * seeded with {@code seedSize} rows, so the primary key index is deeper than the cache of recently used pages.
+ * The size of the primary key index after seeding is printed, for H2 the size of the table with its indexes.
+ * <p>
+ * Runs against an H2 file database by default, pass {@code -p url=jdbc:postgresql://...} (with {@code -p user}
+ * and {@code -p password}) to measure Postgres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TaskIdBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final String TABLE = "task_id_benchmark";
+
+    @Param({"varchar-v4", "uuid-v4", "uuid-v7"})
+    private String keys;
+
+    @Param("jdbc:h2:file:./target/task-id-benchmark")
+    private String url;
+
+    @Param("user")
+    private String user;
+
+    @Param("password")
+    private String password;
+
+    @Param("200000")
+    private int seedSize;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private long rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " (uuid " + (keys.startsWith("uuid") ? "UUID" : "VARCHAR")
+                    + " PRIMARY KEY, title VARCHAR, description VARCHAR, status VARCHAR)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("INSERT INTO " + TABLE + " (uuid, title, description, status)"
+                + " VALUES (?, ?, 'Task description', 'NEW')");
+        while (rows < seedSize) {
+            insertBatch();
+        }
+        printIndexSize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertTasks() throws SQLException {
+        insertBatch();
+    }
+
+    private void insertBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            switch (keys) {
+                case "varchar-v4" -> insert.setString(1, UUID.randomUUID().toString());
+                case "uuid-v4" -> insert.setObject(1, UUID.randomUUID());
+                default -> insert.setObject(1, UUID.fromString(TaskIds.next()));
+            }
+            insert.setString(2, "Task " + rows++);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+
+    private void printIndexSize() throws SQLException {
+        String sizeQuery = url.startsWith("jdbc:postgresql")
+                ? "SELECT pg_relation_size('" + TABLE + "_pkey')"
+                : "SELECT DISK_SPACE_USED('" + TABLE.toUpperCase() + "')";
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sizeQuery)) {
+            resultSet.next();
+            long size = resultSet.getLong(1);
+            System.out.printf("%n%s: %d rows, index size %d bytes, %.1f bytes per row%n",
+                    keys, rows, size, (double) size / rows);
+        }
+    }
+}
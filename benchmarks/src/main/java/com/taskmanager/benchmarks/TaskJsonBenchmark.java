@@ -0,0 +1,85 @@
+package com.taskmanager.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task (de)serialization with the {@link ObjectMapper} Spring Boot configures for the controllers, for a
+ * single task and for a default page of 100 tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskJsonBenchmark {
+
+    private static final TypeReference<List<Task>> TASK_LIST = new TypeReference<>() {
+    };
+
+    private ObjectMapper objectMapper;
+    private Task task;
+    private byte[] taskJson;
+    private List<Task> page;
+    private byte[] pageJson;
+
+    @Setup
+    public void setup() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(JacksonAutoConfiguration.class)) {
+            objectMapper = context.getBean(ObjectMapper.class);
+        }
+        task = task(0);
+        taskJson = objectMapper.writeValueAsBytes(task);
+        page = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            page.add(task(i));
+        }
+        pageJson = objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeTask() throws Exception {
+        return objectMapper.writeValueAsBytes(task);
+    }
+
+    @Benchmark
+    public Task deserializeTask() throws Exception {
+        return objectMapper.readValue(taskJson, Task.class);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Task> deserializePage() throws Exception {
+        return objectMapper.readValue(pageJson, TASK_LIST);
+    }
+
+    private static Task task(int i) {
+        Task task = BenchmarkApplication.task("Every day task " + i, Status.values()[i % Status.values().length]);
+        task.setUuid(UUID.randomUUID().toString());
+        return task;
+    }
+}
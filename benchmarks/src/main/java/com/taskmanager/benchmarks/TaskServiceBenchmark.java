@@ -0,0 +1,104 @@
+package com.taskmanager.benchmarks;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TaskService} through its Spring proxies (transactions, cache) against the secondary store, the embedded
+ * H2 database or the in-memory task store, seeded with {@code seedSize} tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+    @Param("10000")
+    private int seedSize;
+
+    @Param({"h2", "memory"})
+    private String store;
+
+    private final AtomicLong titles = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private TaskService taskService;
+    private List<String> uuids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start(WebApplicationType.NONE, Map.of("tasks.store.secondary", store));
+        taskService = context.getBean(TaskService.class);
+        uuids = BenchmarkApplication.seed(context, "Seeded task ", seedSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Task createTask() {
+        return taskService.createTask(BenchmarkApplication.task("Created task " + titles.incrementAndGet(), Status.NEW));
+    }
+
+    @Benchmark
+    public Task updateTaskFields() {
+        Task update = new Task();
+        update.setDescription("Updated description " + titles.incrementAndGet());
+        return taskService.updateTaskFields(randomUuid(), update, null);
+    }
+
+    @Benchmark
+    public Task updateTaskStatus() {
+        return taskService.updateTaskStatus(randomUuid(), Status.values()[ThreadLocalRandom.current().nextInt(Status.values().length)], null);
+    }
+
+    @Benchmark
+    public Task getTask() {
+        return taskService.getTask(randomUuid());
+    }
+
+    @Benchmark
+    public List<Task> getTasksFirstPage() {
+        return taskService.getTasks(null, 100, null, null, false);
+    }
+
+    @Benchmark
+    public List<Task> getTasksPageAfterCursor() {
+        return taskService.getTasks(randomUuid(), 100, null, null, false);
+    }
+
+    @Benchmark
+    public List<Task> getTasksByStatusAndPrefix() {
+        return taskService.getTasks(null, 100, Status.IN_PROGRESS, "Seeded task 1", false);
+    }
+
+    private String randomUuid() {
+        return uuids.get(ThreadLocalRandom.current().nextInt(uuids.size()));
+    }
+}
@@ -0,0 +1,101 @@
+package com.taskmanager.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.WireFormatConfig;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A default page of 100 tasks in every wire format the API serves, with the mappers the controllers use.
+ * Bytes on the wire, plain and gzipped, are printed once per format when the benchmark starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskWireFormatBenchmark {
+
+    private static final TypeReference<List<Task>> TASK_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private List<Task> page;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                JacksonAutoConfiguration.class, WireFormatConfig.class)) {
+            objectMapper = switch (format) {
+                case "cbor" -> context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+                case "smile" -> context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+                default -> context.getBean(ObjectMapper.class);
+            };
+        }
+        page = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            page.add(task(i));
+        }
+        pageBytes = objectMapper.writeValueAsBytes(page);
+        System.out.printf("%n%s page of 100 tasks: %d bytes, %d bytes gzipped%n", format, pageBytes.length,
+                gzip(pageBytes).length);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Task> deserializePage() throws Exception {
+        return objectMapper.readValue(pageBytes, TASK_LIST);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzipPage() throws Exception {
+        return gzip(objectMapper.writeValueAsBytes(page));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        }
+        return output.toByteArray();
+    }
+
+    private static Task task(int i) {
+        Task task = BenchmarkApplication.task("Every day task " + i, Status.values()[i % Status.values().length]);
+        task.setUuid(UUID.randomUUID().toString());
+        task.setVersion((long) i);
+        return task;
+    }
+}
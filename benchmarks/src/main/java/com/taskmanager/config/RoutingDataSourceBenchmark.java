@@ -0,0 +1,75 @@
+package com.taskmanager.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the routing decision taken on every connection request. Lives in the config package to reach the
+ * protected lookup key of {@link RoutingDataSource}; the target resolution is measured through
+ * {@code isWrapperFor}, which resolves the target datasource without opening a connection. The monitor is
+ * never started, so no probe runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingDataSourceBenchmark {
+
+    private DataSourceHealthMonitor healthMonitor;
+    private RoutingDataSource routingDataSource;
+
+    @Setup
+    public void setup() {
+        DataSource primary = new SimpleDriverDataSource();
+        DataSource secondary = new SimpleDriverDataSource();
+        DataSourceHealthProperties properties = new DataSourceHealthProperties();
+        properties.setProbeInterval(Duration.ofHours(1));
+        healthMonitor = new DataSourceHealthMonitor(primary, properties, event -> {
+        });
+        routingDataSource = new RoutingDataSource(healthMonitor);
+        routingDataSource.setTargetDataSources(Map.of(
+                DataSourceRoute.PRIMARY.getLookupKey(), primary,
+                DataSourceRoute.SECONDARY.getLookupKey(), secondary));
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        healthMonitor.close();
+    }
+
+    @Benchmark
+    public Object lookupKey() {
+        return routingDataSource.determineCurrentLookupKey();
+    }
+
+    @Benchmark
+    public boolean targetDataSource() throws SQLException {
+        return routingDataSource.isWrapperFor(SimpleDriverDataSource.class);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean targetDataSourceContended() throws SQLException {
+        return routingDataSource.isWrapperFor(SimpleDriverDataSource.class);
+    }
+}
@@ -2,11 +2,13 @@ package com.taskmanager;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class TaskManagerApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(TaskManagerApplication.class);
+        SpringApplication.run(TaskManagerApplication.class, args);
     }
 }
@@ -0,0 +1,117 @@
+package com.taskmanager.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit which follows the latency, in the manner of a gradient limit: requests are averaged over short
+ * windows and compared with the long-term average latency. While the latency stays within {@code tolerance} of
+ * the long-term average, the limit grows by about its square root per window, so it finds the concurrency the
+ * service handles without queueing. Once requests queue and the latency rises, the limit shrinks in proportion,
+ * at most by half per window.
+ * <p>
+ * The limit only changes while it is used: when fewer than half of the permits are taken, the latency says
+ * nothing about the limit. The long-term average decays quickly when the latency drops well below it, so a
+ * period of overload doesn't keep the limit high afterwards.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int LONG_TERM_WINDOWS = 100;
+
+    private final AdmissionControlProperties.ConcurrencyLimit settings;
+    private final long windowNanos;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicInteger windowMaxInflight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private double longTermLatency;
+    private long windowStart;
+    private long windowLatencySum;
+    private int windowSamples;
+
+    public AdaptiveConcurrencyLimit(AdmissionControlProperties.ConcurrencyLimit settings) {
+        this.settings = settings;
+        this.windowNanos = settings.getWindow().toNanos();
+        this.estimatedLimit = settings.getInitialLimit();
+        this.limit = settings.getInitialLimit();
+    }
+
+    /**
+     * @return whether the request may proceed, it must then call one of the release methods once done
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        windowMaxInflight.accumulateAndGet(current + 1, Math::max);
+        return true;
+    }
+
+    /**
+     * Releases the permit of a request which took from {@code startNanos} to {@code endNanos}.
+     */
+    public void release(long startNanos, long endNanos) {
+        inflight.decrementAndGet();
+        sample(endNanos - startNanos, endNanos);
+    }
+
+    /**
+     * Releases the permit of a request whose latency doesn't reflect the load, such as a stream or a failure.
+     */
+    public void releaseWithoutSample() {
+        inflight.decrementAndGet();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    private synchronized void sample(long latency, long now) {
+        if (windowSamples == 0) {
+            windowStart = now;
+        }
+        windowLatencySum += latency;
+        windowSamples++;
+        if (now - windowStart < windowNanos || windowSamples < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        update((double) windowLatencySum / windowSamples, windowMaxInflight.getAndSet(inflight.get()));
+        windowLatencySum = 0;
+        windowSamples = 0;
+    }
+
+    private void update(double latency, int maxInflight) {
+        if (longTermLatency == 0) {
+            longTermLatency = latency;
+        } else if (longTermLatency > 2 * latency) {
+            longTermLatency = (longTermLatency + latency) / 2;
+        } else {
+            longTermLatency += (latency - longTermLatency) / LONG_TERM_WINDOWS;
+        }
+        if (maxInflight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, settings.getTolerance() * longTermLatency / latency));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - settings.getSmoothing()) + newLimit * settings.getSmoothing();
+        estimatedLimit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,141 @@
+package com.taskmanager.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.model.ErrorResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control in front of the task API, so a traffic spike is turned away at the door instead of queueing
+ * for threads and connections until every client times out.
+ * <p>
+ * Every client first takes a token of its {@link ClientRateLimiter} bucket, a client beyond its rate gets 429.
+ * Reads and writes then need a permit of their {@link AdaptiveConcurrencyLimit}, beyond the limit they get 503.
+ * Both carry a Retry-After header. Streams release their permit once they turned asynchronous, their duration
+ * is not a latency. Disabled with {@code tasks.admission.enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tasks.admission", name = "enabled", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final String API_PATH = "/api/tasks";
+
+    @Autowired
+    private AdmissionControlProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AdaptiveConcurrencyLimit reads;
+    private AdaptiveConcurrencyLimit writes;
+    private ClientRateLimiter rateLimiter;
+    private final AtomicLong readsOverRate = new AtomicLong();
+    private final AtomicLong writesOverRate = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        reads = new AdaptiveConcurrencyLimit(properties.getReads());
+        writes = new AdaptiveConcurrencyLimit(properties.getWrites());
+        rateLimiter = new ClientRateLimiter(properties);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getServletPath().startsWith(API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        long start = System.nanoTime();
+        long wait = rateLimiter.tryAcquire(client(request), start);
+        if (wait > 0) {
+            (read ? readsOverRate : writesOverRate).incrementAndGet();
+            reject(request, response, HttpStatus.TOO_MANY_REQUESTS, wait,
+                    "Too many requests from this client, retry later");
+            return;
+        }
+        AdaptiveConcurrencyLimit limit = read ? reads : writes;
+        if (!limit.tryAcquire()) {
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1),
+                    "Too many concurrent requests, retry later");
+            return;
+        }
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (completed && !request.isAsyncStarted()) {
+                limit.release(start, System.nanoTime());
+            } else {
+                limit.releaseWithoutSample();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, "read", reads, readsOverRate);
+        bindTo(registry, "write", writes, writesOverRate);
+        Gauge.builder("tasks.admission.clients", rateLimiter, ClientRateLimiter::clients)
+                .description("Clients whose request rate is tracked")
+                .register(registry);
+    }
+
+    private static void bindTo(MeterRegistry registry, String kind, AdaptiveConcurrencyLimit limit,
+                               AtomicLong overRate) {
+        Gauge.builder("tasks.admission.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .description("Current concurrency limit")
+                .tag("kind", kind)
+                .register(registry);
+        Gauge.builder("tasks.admission.inflight", limit, AdaptiveConcurrencyLimit::inflight)
+                .description("Requests holding a permit")
+                .tag("kind", kind)
+                .register(registry);
+        FunctionCounter.builder("tasks.admission.rejected", limit, AdaptiveConcurrencyLimit::rejected)
+                .description("Requests rejected by the admission control")
+                .tag("kind", kind)
+                .tag("reason", "concurrency")
+                .register(registry);
+        FunctionCounter.builder("tasks.admission.rejected", overRate, AtomicLong::get)
+                .description("Requests rejected by the admission control")
+                .tag("kind", kind)
+                .tag("reason", "rate")
+                .register(registry);
+    }
+
+    private String client(HttpServletRequest request) {
+        String header = properties.getClientHeader();
+        String client = header == null || header.isEmpty() ? null : request.getHeader(header);
+        return client == null || client.isEmpty() ? request.getRemoteAddr() : client;
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                        long retryAfterNanos, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(message, null, request.getServletPath()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits of the admission control in front of the task API, see {@link AdmissionControlFilter}.
+ */
+@Data
+@ConfigurationProperties("tasks.admission")
+public class AdmissionControlProperties {
+    /**
+     * Whether requests to the task API pass the admission control.
+     */
+    private boolean enabled = true;
+    /**
+     * Concurrency limit of reads, GET and HEAD requests.
+     */
+    private ConcurrencyLimit reads = new ConcurrencyLimit();
+    /**
+     * Concurrency limit of writes, all other requests.
+     */
+    private ConcurrencyLimit writes = new ConcurrencyLimit();
+    /**
+     * Header naming the client, only for a gateway in front which authenticates the clients and sets it: a header
+     * sent by the clients themselves would give them a new bucket with every new name. Requests without it, or all
+     * of them when not set, are counted per remote address, the one forwarded by trusted proxies once
+     * {@code server.forward-headers-strategy=framework}.
+     */
+    private String clientHeader;
+    /**
+     * Requests per second a client may send on average.
+     */
+    private double clientRate = 200;
+    /**
+     * Requests a client may send at once after being idle.
+     */
+    private int clientBurst = 400;
+    /**
+     * Number of clients whose rate is tracked, the least recently seen ones are forgotten beyond.
+     */
+    private int maxClients = 10_000;
+
+    @Data
+    public static class ConcurrencyLimit {
+        /**
+         * Limit before the first latencies are measured.
+         */
+        private int initialLimit = 20;
+        /**
+         * Limit kept however high the latency gets.
+         */
+        private int minLimit = 4;
+        /**
+         * Limit not exceeded however low the latency stays.
+         */
+        private int maxLimit = 500;
+        /**
+         * Factor by which the latency may exceed its long-term average before the limit shrinks.
+         */
+        private double tolerance = 1.5;
+        /**
+         * Weight of a new estimate in the limit, between 0 and 1.
+         */
+        private double smoothing = 0.2;
+        /**
+         * Minimum duration of the windows over which latencies are averaged.
+         */
+        private Duration window = Duration.ofMillis(100);
+    }
+}
@@ -0,0 +1,14 @@
+package com.taskmanager.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or method whose calls hold a {@link DataSourceBulkhead} permit, because they use a connection.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+}
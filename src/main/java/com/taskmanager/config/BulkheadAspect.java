@@ -0,0 +1,35 @@
+package com.taskmanager.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+
+/**
+ * Holds a {@link DataSourceBulkhead} permit for the duration of every call to a {@link Bulkhead} class or method.
+ * Ordered inside the cache interceptor, so cache hits don't take a permit, and outside the transaction
+ * interceptor, so the permit is held before a connection is requested.
+ */
+@Aspect
+public class BulkheadAspect implements Ordered {
+
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private final DataSourceBulkhead bulkhead;
+
+    public BulkheadAspect(DataSourceBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    @Around("@within(com.taskmanager.config.Bulkhead) || @annotation(com.taskmanager.config.Bulkhead)")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        try (DataSourceBulkhead.Permit permit = bulkhead.acquire()) {
+            return joinPoint.proceed();
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,47 @@
+package com.taskmanager.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Bulkhead sized to the connection pools, see {@link DataSourceBulkhead}. Calls on the primary route may read
+ * from a replica, so its compartment also counts the connections of the replicas. Disabled with
+ * {@code tasks.bulkhead.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tasks.bulkhead", name = "enabled", matchIfMissing = true)
+public class BulkheadConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Bean
+    public DataSourceBulkhead dataSourceBulkhead(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                 @Qualifier("secondaryDataSource") DataSource secondaryDataSource,
+                                                 DataSourceHealthMonitor healthMonitor,
+                                                 ReplicaProperties replicaProperties,
+                                                 BulkheadProperties properties) {
+        int replicaPoolSizes = replicaProperties.getReplicas().stream()
+                .mapToInt(ReplicaProperties.Replica::getMaximumPoolSize)
+                .sum();
+        return new DataSourceBulkhead(healthMonitor, properties, Map.of(
+                DataSourceRoute.PRIMARY, poolSize(primaryDataSource) + replicaPoolSizes,
+                DataSourceRoute.SECONDARY, poolSize(secondaryDataSource)));
+    }
+
+    @Bean
+    public BulkheadAspect bulkheadAspect(DataSourceBulkhead dataSourceBulkhead) {
+        return new BulkheadAspect(dataSourceBulkhead);
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        return dataSource instanceof HikariDataSource hikariDataSource
+                ? hikariDataSource.getMaximumPoolSize()
+                : DEFAULT_POOL_SIZE;
+    }
+}
@@ -0,0 +1,27 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits of the bulkhead in front of the datasources. Each route gets as many permits as its connection pool
+ * has connections.
+ */
+@Data
+@ConfigurationProperties("tasks.bulkhead")
+public class BulkheadProperties {
+    /**
+     * Whether service calls wait for a permit before they may use a connection.
+     */
+    private boolean enabled = true;
+    /**
+     * Time a call waits for a permit before it is rejected.
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    /**
+     * Maximum number of calls waiting for a permit of one route, further calls are rejected right away.
+     */
+    private int maxWaiting = 10_000;
+}
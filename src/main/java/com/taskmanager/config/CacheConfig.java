@@ -0,0 +1,33 @@
+package com.taskmanager.config;
+
+import com.taskmanager.service.TaskService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Task cache configuration. The cache itself (Caffeine, size and TTL bound) is set up through the
+ * {@code spring.cache.*} properties. The cache interceptor runs before the {@link BulkheadAspect}, so cache hits
+ * don't wait for a connection permit.
+ */
+@Configuration
+@EnableCaching(order = BulkheadAspect.ORDER - 1)
+public class CacheConfig {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Postgres and H2 hold different data, so nothing cached from one of them may be served after a switch.
+     */
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        Cache cache = cacheManager.getCache(TaskService.TASKS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.taskmanager.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Token bucket per client: a client may send {@code clientBurst} requests at once, refilled at {@code clientRate}
+ * per second. Buckets of clients idle long enough to be full again are dropped, as are the least recently used
+ * ones beyond {@code maxClients}.
+ */
+public class ClientRateLimiter {
+
+    private final double tokensPerNano;
+    private final int burst;
+    private final Cache<String, TokenBucket> buckets;
+
+    public ClientRateLimiter(AdmissionControlProperties properties) {
+        this.tokensPerNano = properties.getClientRate() / 1e9;
+        this.burst = properties.getClientBurst();
+        long refillNanos = (long) Math.ceil(burst / tokensPerNano);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(Duration.ofNanos(Math.max(refillNanos, Duration.ofSeconds(1).toNanos())))
+                .build();
+    }
+
+    /**
+     * Takes a token of the client.
+     *
+     * @return {@code 0} when the request may proceed, otherwise the nanoseconds until the client has a token again
+     */
+    public long tryAcquire(String client, long nowNanos) {
+        return buckets.get(client, key -> new TokenBucket(burst, nowNanos)).tryAcquire(nowNanos);
+    }
+
+    public long clients() {
+        return buckets.estimatedSize();
+    }
+
+    private final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+
+        private synchronized long tryAcquire(long nowNanos) {
+            if (nowNanos > refilledAt) {
+                tokens = Math.min(burst, tokens + (nowNanos - refilledAt) * tokensPerNano);
+                refilledAt = nowNanos;
+            }
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+    }
+}
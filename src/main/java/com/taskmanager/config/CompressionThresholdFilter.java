@@ -0,0 +1,230 @@
+package com.taskmanager.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Holds back the start of every response, so Tomcat only compresses responses above
+ * {@code server.compression.min-response-size}. Tomcat compares the threshold with the Content-Length, which
+ * the message converters don't set. A response ending within the threshold is sent with its length, a longer
+ * one passes through as soon as it exceeds it. Streamed responses pass through once the request turns
+ * asynchronous, from then on every flush reaches the client, and a response written non-blocking passes through
+ * once its write listener is set. HEAD requests are left alone, their body is never sent.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CompressionThresholdFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private ServerProperties serverProperties;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !serverProperties.getCompression().getEnabled() || HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int threshold = (int) serverProperties.getCompression().getMinResponseSize().toBytes();
+        ThresholdResponse thresholdResponse = new ThresholdResponse(response, threshold);
+        try {
+            filterChain.doFilter(request, thresholdResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                thresholdResponse.passThrough();
+            } else {
+                thresholdResponse.finish();
+            }
+        }
+    }
+
+    private static final class ThresholdResponse extends HttpServletResponseWrapper {
+
+        private final int threshold;
+        private final ThresholdOutputStream outputStream = new ThresholdOutputStream();
+        private PrintWriter writer;
+        // null while buffering, then the stream of the wrapped response
+        private ServletOutputStream target;
+        private boolean bypassed;
+
+        private ThresholdResponse(HttpServletResponse response, int threshold) {
+            super(response);
+            this.threshold = threshold;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            outputStream.flush();
+        }
+
+        @Override
+        public void resetBuffer() {
+            outputStream.discard();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            outputStream.discard();
+            super.reset();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            outputStream.bypass();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            outputStream.bypass();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            outputStream.bypass();
+            super.sendRedirect(location);
+        }
+
+        private void passThrough() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            outputStream.passThrough();
+        }
+
+        private void finish() throws IOException {
+            if (writer != null) {
+                outputStream.holdFlushes();
+                writer.flush();
+            }
+            outputStream.finish();
+        }
+
+        private final class ThresholdOutputStream extends ServletOutputStream {
+
+            private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            private boolean streaming;
+
+            @Override
+            public synchronized void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+                if (target == null && buffer.size() + length > threshold && !bypassed) {
+                    open();
+                }
+                if (target != null) {
+                    target.write(bytes, offset, length);
+                } else if (!bypassed) {
+                    buffer.write(bytes, offset, length);
+                }
+            }
+
+            /**
+             * Ignored while buffering, since the converters flush after writing whole responses too.
+             */
+            @Override
+            public synchronized void flush() throws IOException {
+                if (streaming && !bypassed) {
+                    if (target == null) {
+                        open();
+                    }
+                    target.flush();
+                }
+            }
+
+            @Override
+            public synchronized boolean isReady() {
+                return target == null || target.isReady();
+            }
+
+            /**
+             * Hands the listener to the stream of the wrapped response, after writing what was held back, and
+             * passes everything written from then on through.
+             */
+            @Override
+            public synchronized void setWriteListener(WriteListener writeListener) {
+                if (target == null) {
+                    try {
+                        open();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                streaming = true;
+                target.setWriteListener(writeListener);
+            }
+
+            private synchronized void holdFlushes() {
+                streaming = false;
+            }
+
+            private synchronized void discard() {
+                buffer.reset();
+            }
+
+            private synchronized void bypass() {
+                buffer.reset();
+                bypassed = true;
+            }
+
+            private synchronized void passThrough() throws IOException {
+                streaming = true;
+                // headers of a stream are written with its first event, not when it starts
+                if (buffer.size() > 0) {
+                    flush();
+                }
+            }
+
+            private synchronized void finish() throws IOException {
+                if (target == null && !bypassed && buffer.size() > 0) {
+                    if (!isCommitted() && !containsHeader("Content-Length")) {
+                        setContentLength(buffer.size());
+                    }
+                    open();
+                }
+            }
+
+            private void open() throws IOException {
+                target = ThresholdResponse.super.getOutputStream();
+                buffer.writeTo(target);
+                buffer.reset();
+            }
+        }
+    }
+}
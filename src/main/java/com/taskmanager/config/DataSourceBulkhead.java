@@ -0,0 +1,120 @@
+package com.taskmanager.config;
+
+import com.taskmanager.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of concurrent calls using a connection of the current route to the size of its pool.
+ * Calls beyond that wait in a fair semaphore, which is cheap even for thousands of virtual threads, instead of
+ * queueing in the connection pool. A call is rejected with {@link ServiceOverloadedException} when too many calls
+ * are waiting already or when no permit is released within the acquire timeout.
+ */
+public class DataSourceBulkhead implements MeterBinder {
+
+    private final DataSourceHealthMonitor healthMonitor;
+    private final BulkheadProperties properties;
+    private final Map<DataSourceRoute, Compartment> compartments = new EnumMap<>(DataSourceRoute.class);
+
+    public DataSourceBulkhead(DataSourceHealthMonitor healthMonitor, BulkheadProperties properties,
+                              Map<DataSourceRoute, Integer> permits) {
+        this.healthMonitor = healthMonitor;
+        this.properties = properties;
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            compartments.put(route, new Compartment(route, permits.get(route)));
+        }
+    }
+
+    /**
+     * Waits for a permit of the current route.
+     *
+     * @return the permit to release once the call is done
+     * @throws ServiceOverloadedException when no permit can be acquired
+     */
+    public Permit acquire() {
+        Compartment compartment = compartments.get(healthMonitor.currentRoute());
+        compartment.acquire(properties);
+        return compartment;
+    }
+
+    public int availablePermits(DataSourceRoute route) {
+        return compartments.get(route).semaphore.availablePermits();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Compartment compartment : compartments.values()) {
+            String route = compartment.route.getLookupKey();
+            Gauge.builder("tasks.bulkhead.available", compartment.semaphore, Semaphore::availablePermits)
+                    .description("Permits not held by a call")
+                    .tag("route", route)
+                    .register(registry);
+            Gauge.builder("tasks.bulkhead.waiting", compartment.waiting, AtomicInteger::get)
+                    .description("Calls waiting for a permit")
+                    .tag("route", route)
+                    .register(registry);
+            FunctionCounter.builder("tasks.bulkhead.rejected", compartment.rejected, AtomicLong::get)
+                    .description("Calls rejected because no permit was available in time")
+                    .tag("route", route)
+                    .register(registry);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class Compartment implements Permit {
+
+        private final DataSourceRoute route;
+        private final Semaphore semaphore;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Compartment(DataSourceRoute route, int permits) {
+            this.route = route;
+            this.semaphore = new Semaphore(permits, true);
+        }
+
+        private void acquire(BulkheadProperties properties) {
+            if (semaphore.tryAcquire()) {
+                return;
+            }
+            if (waiting.incrementAndGet() > properties.getMaxWaiting()) {
+                waiting.decrementAndGet();
+                throw reject("Too many requests are waiting for a " + route.getLookupKey() + " database connection");
+            }
+            try {
+                if (!semaphore.tryAcquire(properties.getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw reject("Timed out waiting for a " + route.getLookupKey() + " database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("Interrupted while waiting for a " + route.getLookupKey() + " database connection");
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        private ServiceOverloadedException reject(String message) {
+            rejected.incrementAndGet();
+            return new ServiceOverloadedException(message);
+        }
+
+        @Override
+        public void close() {
+            semaphore.release();
+        }
+    }
+}
@@ -1,45 +1,66 @@
 package com.taskmanager.config;
 
-import org.flywaydb.core.Flyway;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.taskmanager.repository.MemoryTaskRepository;
+import com.taskmanager.repository.RoutingTaskRepository;
+import com.taskmanager.repository.ShardedTaskRepository;
+import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.shard.ShardCluster;
+import com.taskmanager.store.MemoryTaskStore;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.data.repository.config.BootstrapMode;
 
 import javax.sql.DataSource;
 
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 @Configuration
 @EnableJpaRepositories(basePackages = "com.taskmanager",
         transactionManagerRef = "transcationManager",
-        entityManagerFactoryRef = "entityManager")
+        entityManagerFactoryRef = "entityManager",
+        bootstrapMode = BootstrapMode.DEFERRED)
 @EnableTransactionManagement
 public class DataSourceConfig {
 
-    private static final Logger customLogger = LoggerFactory.getLogger(DataSourceConfig.class);
-
+    /**
+     * Hibernate bootstraps in the background while the other beans are created, the repositories are initialized
+     * once the context is refreshed.
+     */
     @Bean(name = "entityManager")
-    public LocalContainerEntityManagerFactoryBean entityManagerFactoryBean(EntityManagerFactoryBuilder builder) {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactoryBean(EntityManagerFactoryBuilder builder,
+                                                                           @Qualifier("dataSource") DataSource dataSource) {
 
-        return builder
-                .dataSource(dataSource(primaryDataSource(), secondaryDataSource()))
+        LocalContainerEntityManagerFactoryBean entityManagerFactoryBean = builder
+                .dataSource(dataSource)
                 .packages("com.taskmanager.model")
                 .build();
+        entityManagerFactoryBean.setBootstrapExecutor(new SimpleAsyncTaskExecutor("jpa-bootstrap-"));
+        return entityManagerFactoryBean;
     }
 
     @Bean(name = "transcationManager")
@@ -63,60 +84,144 @@ public class DataSourceConfig {
 
     @Primary
     @Bean
+    @ConfigurationProperties("spring.datasource.primary.hikari")
     public DataSource primaryDataSource() {
-        return primaryDataSourceProperties()
+        HikariDataSource dataSource = primaryDataSourceProperties()
                 .initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
                 .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
     }
     @Bean
+    @ConfigurationProperties("spring.datasource.secondary.hikari")
     public DataSource secondaryDataSource() {
-        return secondaryDataSourceProperties()
+        HikariDataSource dataSource = secondaryDataSourceProperties()
                 .initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
                 .build();
+        dataSource.setPoolName("secondary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.health")
+    public DataSourceHealthProperties dataSourceHealthProperties() {
+        return new DataSourceHealthProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    public DataSourceHealthMonitor dataSourceHealthMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                           ApplicationEventPublisher eventPublisher,
+                                                           TaskStoreProperties storeProperties) {
+        DataSourceHealthMonitor healthMonitor = new DataSourceHealthMonitor(primaryDataSource,
+                dataSourceHealthProperties(), eventPublisher);
+        healthMonitor.setStandalone(storeProperties.isStandalone());
+        return healthMonitor;
     }
 
     @Bean
-    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
-                                 @Qualifier("secondaryDataSource") DataSource secondaryDataSource) {
-        AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
-            @Override
-            protected Object determineCurrentLookupKey() {
-                try {
-                    primaryDataSource.getConnection().isValid(5);
-                    customLogger.info("Connected to primary datasource Postgres");
-                    return "primary";
-                } catch (Exception e) {
-                    customLogger.error("Exception occurred when connecting to Postgres: {}", e.getMessage());
-                    customLogger.info("Connected to secondary datasource H2");
-                    return "secondary";
-                }
-            }
-        };
-
-        try {
-            primaryDataSource.getConnection().isValid(5);
-            executeFlywayMigration(primaryDataSource, "db/migration/postgres");
-            executeFlywayMigration(secondaryDataSource, "db/migration/h2");
-        } catch (Exception e) {
-            executeFlywayMigration(secondaryDataSource, "db/migration/h2");
+    @ConfigurationProperties("spring.datasource")
+    public ReplicaProperties replicaProperties() {
+        return new ReplicaProperties();
+    }
+
+    /**
+     * Routes read-only transactions to the replicas, when there are any. The connection is requested lazily, once
+     * the transaction has declared whether it is read-only.
+     */
+    @Bean
+    public DataSource dataSource(RoutingDataSource routingDataSource, ReplicaDataSource replicaDataSource) {
+        if (replicaProperties().getReplicas().isEmpty()) {
+            return routingDataSource;
+        }
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReplicaDataSource replicaDataSource(RoutingDataSource routingDataSource,
+                                               DataSourceHealthMonitor healthMonitor) {
+        List<ReplicaDataSource.Replica> replicas = new ArrayList<>();
+        List<ReplicaProperties.Replica> replicaProperties = replicaProperties().getReplicas();
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            replicas.add(replica(replicaProperties.get(i), i));
         }
+        return new ReplicaDataSource(replicas, routingDataSource, healthMonitor, replicaProperties().getReplicaRouting());
+    }
+
+    /**
+     * Probes and migrates the databases in the background, starts the health monitor.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public DataSourceStartup dataSourceStartup(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                               @Qualifier("secondaryDataSource") DataSource secondaryDataSource,
+                                               DataSourceHealthMonitor healthMonitor) {
+        return new DataSourceStartup(primaryDataSource, secondaryDataSource, healthMonitor,
+                dataSourceHealthProperties());
+    }
+
+    @Bean
+    public RoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                               @Qualifier("secondaryDataSource") DataSource secondaryDataSource,
+                                               DataSourceHealthMonitor healthMonitor,
+                                               DataSourceStartup dataSourceStartup) {
+        RoutingDataSource routingDataSource = new RoutingDataSource(healthMonitor);
+        routingDataSource.setStartup(dataSourceStartup);
 
         Map<Object, Object> dataSources = new HashMap<>();
-        dataSources.put("primary", primaryDataSource);
-        dataSources.put("secondary", secondaryDataSource);
+        dataSources.put(DataSourceRoute.PRIMARY.getLookupKey(), primaryDataSource);
+        dataSources.put(DataSourceRoute.SECONDARY.getLookupKey(), secondaryDataSource);
         routingDataSource.setTargetDataSources(dataSources);
         routingDataSource.setDefaultTargetDataSource(primaryDataSource);
 
         return routingDataSource;
     }
 
-    private void executeFlywayMigration(DataSource dataSource, String location) {
-        Flyway.configure()
-                .dataSource(dataSource)
-                .validateMigrationNaming(true)
-                .baselineOnMigrate(true)
-                .locations(location)
-                .load()
-                .migrate();
+    /**
+     * Serves the tasks instead of H2 while Postgres is unavailable, with {@code tasks.store.secondary=memory}.
+     */
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "tasks.store", name = "secondary", havingValue = "memory")
+    public MemoryTaskStore memoryTaskStore(TaskStoreProperties storeProperties) {
+        String directory = storeProperties.getDirectory();
+        return new MemoryTaskStore(directory == null || directory.isBlank() ? null : Path.of(directory), storeProperties);
+    }
+
+    /**
+     * The repository of the task services when the tasks are sharded or the in-memory store is the secondary store:
+     * calls go to the shards, or the JPA repository, while connections go to Postgres, and to the in-memory store,
+     * or the JPA repository on H2, otherwise.
+     */
+    @Primary
+    @Bean
+    @ConditionalOnExpression("'${tasks.store.secondary:h2}'.equalsIgnoreCase('memory') or ${tasks.sharding.enabled:false}")
+    public TaskRepository routingTaskRepository(@Qualifier("taskRepository") TaskRepository taskRepository,
+                                                ObjectProvider<ShardCluster> shardCluster,
+                                                ObjectProvider<MemoryTaskStore> memoryTaskStore,
+                                                DataSourceHealthMonitor healthMonitor) {
+        ShardCluster cluster = shardCluster.getIfAvailable();
+        MemoryTaskStore store = memoryTaskStore.getIfAvailable();
+        return RoutingTaskRepository.create(cluster != null ? new ShardedTaskRepository(cluster) : taskRepository,
+                store != null ? new MemoryTaskRepository(store) : taskRepository, healthMonitor);
+    }
+
+    private static ReplicaDataSource.Replica replica(ReplicaProperties.Replica properties, int index) {
+        String name = properties.getName() != null ? properties.getName() : String.valueOf(index);
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.getDriverClassName())
+                .url(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+        dataSource.setPoolName("replica-" + name);
+        dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+        dataSource.setReadOnly(true);
+        return new ReplicaDataSource.Replica(name, dataSource, () -> {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+        });
     }
 }
@@ -0,0 +1,214 @@
+package com.taskmanager.config;
+
+import com.taskmanager.logging.RateLimitedLogger;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Probes the primary datasource on a schedule and publishes the route the {@link RoutingDataSource} should use.
+ * <p>
+ * Works as a circuit breaker: after {@code failureThreshold} failed probes the circuit opens and traffic goes
+ * to the secondary datasource. Once {@code halfOpenAfter} has elapsed a single trial probe decides whether the
+ * circuit closes again or stays open for another period. Every change of route is published as a
+ * {@link DataSourceRouteChangedEvent}.
+ */
+public class DataSourceHealthMonitor implements MeterBinder, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(DataSourceHealthMonitor.class);
+    private static final RateLimitedLogger probeLogger = new RateLimitedLogger(customLogger, Duration.ofMinutes(1));
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final DataSource primaryDataSource;
+    private final DataSourceHealthProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong flipsToPrimary = new AtomicLong();
+    private final AtomicLong flipsToSecondary = new AtomicLong();
+    private volatile DataSourceRoute route = DataSourceRoute.PRIMARY;
+    private volatile CircuitState circuitState = CircuitState.CLOSED;
+    private boolean standalone;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+
+    public DataSourceHealthMonitor(DataSource primaryDataSource, DataSourceHealthProperties properties,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.primaryDataSource = primaryDataSource;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datasource-health-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Keeps every connection on the secondary datasource, Postgres is then never probed nor connected to.
+     * Must be called before {@link #start()}.
+     */
+    public void setStandalone(boolean standalone) {
+        this.standalone = standalone;
+    }
+
+    /**
+     * Runs the initial probe and waits for it at most {@code startupProbeTimeout}, so the first route is known when
+     * this returns, and schedules the following probes. A probe still running then counts as failed. Called in the
+     * background while the context starts, so the first route is not published as a
+     * {@link DataSourceRouteChangedEvent}.
+     */
+    public void start() {
+        if (standalone) {
+            circuitState = CircuitState.OPEN;
+            route = DataSourceRoute.SECONDARY;
+            customLogger.info("Running standalone on the secondary store, Postgres is not used");
+            return;
+        }
+        Future<Boolean> firstProbe = scheduler.submit(this::isPrimaryHealthy);
+        boolean healthy;
+        try {
+            healthy = firstProbe.get(properties.getStartupProbeTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            customLogger.warn("Postgres did not answer within {} at startup", properties.getStartupProbeTimeout());
+            healthy = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            healthy = false;
+        } catch (ExecutionException e) {
+            healthy = false;
+        }
+        synchronized (this) {
+            if (!healthy) {
+                // no event, the first route is not a change and event listeners are only registered later
+                circuitState = CircuitState.OPEN;
+                openedAtNanos = System.nanoTime();
+                route = DataSourceRoute.SECONDARY;
+                flipsToSecondary.incrementAndGet();
+                customLogger.error("Postgres is unavailable, starting on secondary datasource H2");
+            }
+        }
+        long interval = properties.getProbeInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::probeSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    public DataSourceRoute currentRoute() {
+        return route;
+    }
+
+    public CircuitState circuitState() {
+        return circuitState;
+    }
+
+    public long flipsToPrimary() {
+        return flipsToPrimary.get();
+    }
+
+    public long flipsToSecondary() {
+        return flipsToSecondary.get();
+    }
+
+    /**
+     * Performs one step of the circuit breaker. Called by the scheduler, exposed for tests.
+     */
+    public synchronized void probe() {
+        if (circuitState == CircuitState.OPEN) {
+            if (System.nanoTime() - openedAtNanos < properties.getHalfOpenAfter().toNanos()) {
+                return;
+            }
+            circuitState = CircuitState.HALF_OPEN;
+        }
+
+        if (isPrimaryHealthy()) {
+            consecutiveFailures = 0;
+            if (circuitState == CircuitState.HALF_OPEN) {
+                closeCircuit();
+            }
+        } else if (circuitState == CircuitState.HALF_OPEN) {
+            openCircuit();
+        } else if (++consecutiveFailures >= properties.getFailureThreshold()) {
+            openCircuit();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("tasks.datasource.route", this, monitor -> monitor.route == DataSourceRoute.PRIMARY ? 1 : 0)
+                .description("1 when connections go to the primary datasource, 0 when they go to the secondary one")
+                .register(registry);
+        Gauge.builder("tasks.datasource.circuit.state", this, monitor -> monitor.circuitState.ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .register(registry);
+        FunctionCounter.builder("tasks.datasource.route.flips", flipsToPrimary, AtomicLong::get)
+                .tag("to", DataSourceRoute.PRIMARY.getLookupKey())
+                .register(registry);
+        FunctionCounter.builder("tasks.datasource.route.flips", flipsToSecondary, AtomicLong::get)
+                .tag("to", DataSourceRoute.SECONDARY.getLookupKey())
+                .register(registry);
+    }
+
+    private void probeSafely() {
+        try {
+            probe();
+        } catch (RuntimeException e) {
+            customLogger.error("Datasource health probe failed unexpectedly", e);
+        }
+    }
+
+    private boolean isPrimaryHealthy() {
+        int timeoutSeconds = (int) Math.max(1, properties.getProbeTimeout().toSeconds());
+        try (Connection connection = primaryDataSource.getConnection()) {
+            return connection.isValid(timeoutSeconds);
+        } catch (Exception e) {
+            probeLogger.warn("probe", "Probe of Postgres failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void openCircuit() {
+        circuitState = CircuitState.OPEN;
+        openedAtNanos = System.nanoTime();
+        consecutiveFailures = 0;
+        if (route != DataSourceRoute.SECONDARY) {
+            route = DataSourceRoute.SECONDARY;
+            flipsToSecondary.incrementAndGet();
+            customLogger.error("Postgres is unavailable, switched to secondary datasource H2");
+            eventPublisher.publishEvent(new DataSourceRouteChangedEvent(route));
+        }
+    }
+
+    private void closeCircuit() {
+        circuitState = CircuitState.CLOSED;
+        if (route != DataSourceRoute.PRIMARY) {
+            route = DataSourceRoute.PRIMARY;
+            flipsToPrimary.incrementAndGet();
+            customLogger.info("Postgres is available again, switched to primary datasource");
+            eventPublisher.publishEvent(new DataSourceRouteChangedEvent(route));
+        }
+    }
+}
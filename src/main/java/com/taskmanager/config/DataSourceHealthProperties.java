@@ -0,0 +1,37 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of the background health monitor which decides whether connections go to Postgres or H2.
+ */
+@Data
+public class DataSourceHealthProperties {
+    /**
+     * Delay between two consecutive probes of the primary datasource.
+     */
+    private Duration probeInterval = Duration.ofSeconds(2);
+    /**
+     * Time the primary datasource has to answer a single probe.
+     */
+    private Duration probeTimeout = Duration.ofSeconds(1);
+    /**
+     * Consecutive failed probes after which traffic is switched to the secondary datasource.
+     */
+    private int failureThreshold = 3;
+    /**
+     * Time spent on the secondary datasource before the primary datasource is probed again.
+     */
+    private Duration halfOpenAfter = Duration.ofSeconds(10);
+    /**
+     * Time the first probe of the primary datasource has at startup. When it takes longer the application starts
+     * on the secondary datasource, and the scheduled probes decide when to switch back.
+     */
+    private Duration startupProbeTimeout = Duration.ofSeconds(5);
+    /**
+     * Time connections wait at startup until the database they are routed to is migrated.
+     */
+    private Duration startupMigrationTimeout = Duration.ofMinutes(1);
+}
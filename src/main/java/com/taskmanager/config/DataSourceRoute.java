@@ -0,0 +1,19 @@
+package com.taskmanager.config;
+
+/**
+ * Target datasource the routing datasource currently sends connections to.
+ */
+public enum DataSourceRoute {
+    PRIMARY("primary"),
+    SECONDARY("secondary");
+
+    private final String lookupKey;
+
+    DataSourceRoute(String lookupKey) {
+        this.lookupKey = lookupKey;
+    }
+
+    public String getLookupKey() {
+        return lookupKey;
+    }
+}
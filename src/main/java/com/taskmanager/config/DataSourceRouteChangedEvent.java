@@ -0,0 +1,7 @@
+package com.taskmanager.config;
+
+/**
+ * Published by {@link DataSourceHealthMonitor} every time connections start going to another datasource.
+ */
+public record DataSourceRouteChangedEvent(DataSourceRoute route) {
+}
@@ -0,0 +1,168 @@
+package com.taskmanager.config;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.event.EventListener;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares both databases in the background while the rest of the application starts.
+ * <p>
+ * H2 is migrated right away. At the same time the {@link DataSourceHealthMonitor} probes Postgres, which is then
+ * migrated if it answered. Connections of the {@link RoutingDataSource} wait until the database of their route is
+ * migrated, for at most {@code startupMigrationTimeout}, so the JPA bootstrap and the first queries don't run
+ * against an empty schema. Postgres is migrated as well when it becomes available after the start.
+ * <p>
+ * As a health indicator, which is part of the readiness group, it is up while the database of the current route
+ * is migrated. When the wait times out the connections are let through anyway, but the application stays out of
+ * service until that migration is done.
+ */
+public class DataSourceStartup implements HealthIndicator, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(DataSourceStartup.class);
+
+    private final DataSource primaryDataSource;
+    private final DataSource secondaryDataSource;
+    private final DataSourceHealthMonitor healthMonitor;
+    private final DataSourceHealthProperties properties;
+    private final ExecutorService executor;
+
+    private CompletableFuture<Void> probe;
+    private CompletableFuture<Void> secondaryMigration;
+    private volatile CompletableFuture<Void> primaryMigration;
+    private volatile boolean released;
+    private volatile boolean timedOut;
+
+    public DataSourceStartup(DataSource primaryDataSource, DataSource secondaryDataSource,
+                             DataSourceHealthMonitor healthMonitor, DataSourceHealthProperties properties) {
+        this.primaryDataSource = primaryDataSource;
+        this.secondaryDataSource = secondaryDataSource;
+        this.healthMonitor = healthMonitor;
+        this.properties = properties;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "datasource-startup-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        secondaryMigration = CompletableFuture.runAsync(
+                () -> executeFlywayMigration(secondaryDataSource, "db/migration/h2"), executor);
+        probe = CompletableFuture.runAsync(() -> {
+            healthMonitor.start();
+            if (healthMonitor.currentRoute() == DataSourceRoute.PRIMARY) {
+                migratePrimary();
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        if (event.route() == DataSourceRoute.PRIMARY) {
+            migratePrimary();
+        }
+    }
+
+    /**
+     * Blocks until the first route is known and its database is migrated, or {@code startupMigrationTimeout}
+     * elapsed since the call. Returns immediately once this happened, whether the database is ready or not.
+     */
+    public void awaitReady() {
+        if (released) {
+            return;
+        }
+        long deadline = System.nanoTime() + properties.getStartupMigrationTimeout().toNanos();
+        boolean done = await(probe, deadline);
+        if (done) {
+            DataSourceRoute route = healthMonitor.currentRoute();
+            done = await(route == DataSourceRoute.PRIMARY ? primaryMigration : secondaryMigration, deadline);
+        }
+        if (!done) {
+            timedOut = true;
+        }
+        released = true;
+    }
+
+    /**
+     * Blocks until H2 is migrated, or {@code startupMigrationTimeout} elapsed since the call.
+     */
+    public void awaitSecondaryMigration() {
+        await(secondaryMigration, System.nanoTime() + properties.getStartupMigrationTimeout().toNanos());
+    }
+
+    @Override
+    public Health health() {
+        DataSourceRoute route = healthMonitor.currentRoute();
+        CompletableFuture<Void> migration = route == DataSourceRoute.PRIMARY ? primaryMigration : secondaryMigration;
+        Health.Builder health = isMigrated(migration) ? Health.up() : Health.outOfService();
+        return health.withDetail("route", route.getLookupKey())
+                .withDetail("primaryMigrated", isMigrated(primaryMigration))
+                .withDetail("secondaryMigrated", isMigrated(secondaryMigration))
+                .withDetail("startupTimedOut", timedOut)
+                .build();
+    }
+
+    private synchronized void migratePrimary() {
+        if (primaryMigration != null && !primaryMigration.isCompletedExceptionally()) {
+            return;
+        }
+        primaryMigration = CompletableFuture.runAsync(() -> {
+            try {
+                executeFlywayMigration(primaryDataSource, "db/migration/postgres");
+            } catch (RuntimeException e) {
+                customLogger.error("Exception occurred when migrating Postgres: {}", e.getMessage());
+                throw e;
+            }
+        }, executor);
+    }
+
+    private boolean await(CompletableFuture<Void> future, long deadline) {
+        if (future == null) {
+            return false;
+        }
+        try {
+            future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            customLogger.warn("Databases are still being prepared after {}, connections are no longer held back",
+                    properties.getStartupMigrationTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // logged where it happened
+        }
+        return future.isDone();
+    }
+
+    private static boolean isMigrated(CompletableFuture<Void> migration) {
+        return migration != null && migration.isDone() && !migration.isCompletedExceptionally();
+    }
+
+    private static void executeFlywayMigration(DataSource dataSource, String location) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .validateMigrationNaming(true)
+                .baselineOnMigrate(true)
+                .locations(location)
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,24 @@
+package com.taskmanager.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics exposed at {@code /actuator/prometheus}. HTTP endpoints are timed by Spring MVC
+ * ({@code http.server.requests}), repository queries by Spring Data ({@code spring.data.repository.invocations},
+ * tagged by repository method) and connection pools by the actuator ({@code jdbc.connections.*}).
+ * Services annotated with {@link io.micrometer.core.annotation.Timed} are timed by the aspect below.
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "tasks.service";
+    public static final String ERRORS_COUNTER = "tasks.errors";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
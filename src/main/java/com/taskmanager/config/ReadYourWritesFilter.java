@@ -0,0 +1,107 @@
+package com.taskmanager.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Carries the read-your-writes marker of every client: the WAL position of its last write to Postgres, handed out
+ * in the {@value #COOKIE} cookie and sent back with its next requests. While a request runs, the
+ * {@link ReplicaDataSource} reads its marker to skip the replicas which haven't replayed that position yet, and
+ * raises it when the request writes. The cookie expires after {@code maxLag}, beyond which no replica in use lags.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "tasks-wal-position";
+
+    private static final ThreadLocal<ClientWrites> current = new ThreadLocal<>();
+
+    @Autowired
+    private ReplicaProperties replicaProperties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        current.set(new ClientWrites(position(request), response, replicaProperties.getReplicaRouting().getMaxLag()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            current.remove();
+        }
+    }
+
+    /**
+     * WAL position of the last write of the client of the current request, -1 when it is not known to have written
+     * or outside a request.
+     */
+    static long writtenPosition() {
+        ClientWrites writes = current.get();
+        return writes == null ? -1 : writes.position;
+    }
+
+    /**
+     * Whether the current thread serves a request, whose client can be handed a marker.
+     */
+    static boolean inRequest() {
+        return current.get() != null;
+    }
+
+    /**
+     * Hands the WAL position of a write of the current request to its client. Ignored once the response is sent.
+     */
+    static void written(long position) {
+        ClientWrites writes = current.get();
+        if (writes == null || position <= writes.position) {
+            return;
+        }
+        writes.position = position;
+        Cookie cookie = new Cookie(COOKIE, Long.toString(position));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        if (writes.maxLag != null) {
+            cookie.setMaxAge((int) Math.max(1, writes.maxLag.toSeconds() + 1));
+        }
+        writes.response.addCookie(cookie);
+    }
+
+    private static long position(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return -1;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static final class ClientWrites {
+
+        private final HttpServletResponse response;
+        private final Duration maxLag;
+        private long position;
+
+        private ClientWrites(long position, HttpServletResponse response, Duration maxLag) {
+            this.position = position;
+            this.response = response;
+            this.maxLag = maxLag;
+        }
+    }
+}
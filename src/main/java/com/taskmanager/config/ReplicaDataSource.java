@@ -0,0 +1,279 @@
+package com.taskmanager.config;
+
+import com.taskmanager.logging.RateLimitedLogger;
+import com.taskmanager.service.TaskChangeEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Hands out connections of read-only transactions, spread over the read replicas of Postgres.
+ * <p>
+ * Every replica is probed on a schedule, which measures how far its replay lags behind the primary. A replica is
+ * skipped when it lags more than {@code maxLag} or when {@code failureThreshold} probes or connection attempts in
+ * a row failed, until a probe succeeds again. The probes also read the WAL position every replica replayed. The
+ * read-your-writes guard hands every client the WAL position of its writes through the {@link ReadYourWritesFilter},
+ * and skips the replicas which hadn't replayed the position of the client at their last probe. Reads go to the
+ * write datasource as well when no replica is usable and while traffic is routed to H2, which the replicas know
+ * nothing about.
+ */
+public class ReplicaDataSource extends AbstractDataSource implements MeterBinder, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(ReplicaDataSource.class);
+    private static final RateLimitedLogger probeLogger = new RateLimitedLogger(customLogger, Duration.ofMinutes(1));
+
+    private static final String LAG_QUERY = "SELECT CASE"
+            + " WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END,"
+            + " CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn() ELSE pg_current_wal_lsn() END"
+            + " - '0/0'::pg_lsn";
+
+    private static final String WAL_POSITION_QUERY = "SELECT pg_current_wal_lsn() - '0/0'::pg_lsn";
+
+    private final List<Replica> replicas;
+    private final DataSource writeDataSource;
+    private final DataSourceHealthMonitor healthMonitor;
+    private final ReplicaProperties.Routing properties;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong readsOnWriteDataSource = new AtomicLong();
+
+    public ReplicaDataSource(List<Replica> replicas, DataSource writeDataSource, DataSourceHealthMonitor healthMonitor,
+                             ReplicaProperties.Routing properties) {
+        this.replicas = List.copyOf(replicas);
+        this.writeDataSource = writeDataSource;
+        this.healthMonitor = healthMonitor;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        if (!replicas.isEmpty()) {
+            long interval = properties.getProbeInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::probe, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    customLogger.warn("Can't close the pool of replica {}: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the client of the current request the WAL position of its write to Postgres, for the read-your-writes
+     * guard. Runs after the commit, so the position is at least the one of the write.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChange(TaskChangeEvent event) {
+        if (event.route() != DataSourceRoute.PRIMARY || !properties.isReadYourWrites() || replicas.isEmpty()
+                || !ReadYourWritesFilter.inRequest()) {
+            return;
+        }
+        long position;
+        try (Connection connection = writeDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(WAL_POSITION_QUERY)) {
+            resultSet.next();
+            position = resultSet.getLong(1);
+        } catch (SQLException e) {
+            // no replica is known to have replayed it, the client reads from the primary until the marker expires
+            position = Long.MAX_VALUE;
+            probeLogger.warn("wal-position", "Can't read the WAL position of a write, the client reads from the "
+                    + "primary for now: {}", e.getMessage());
+        }
+        ReadYourWritesFilter.written(position);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = choose();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.connectionSucceeded();
+                return connection;
+            } catch (SQLException e) {
+                replica.failed(properties.getFailureThreshold());
+                probeLogger.warn(replica.name, "Can't connect to replica {}, reading from the primary: {}",
+                        replica.name, e.getMessage());
+            }
+        }
+        readsOnWriteDataSource.incrementAndGet();
+        return writeDataSource.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Replicas use the credentials of their configuration");
+    }
+
+    /**
+     * Measures the lag of every replica. Called by the scheduler, exposed for tests.
+     */
+    public void probe() {
+        int timeoutSeconds = (int) Math.max(1, properties.getProbeTimeout().toSeconds());
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                    resultSet.next();
+                    double lagSeconds = resultSet.getDouble(1);
+                    long lagNanos = resultSet.wasNull() ? Long.MAX_VALUE : (long) (lagSeconds * 1e9);
+                    replica.probeSucceeded(lagNanos, resultSet.getLong(2));
+                }
+            } catch (Exception e) {
+                replica.failed(properties.getFailureThreshold());
+                probeLogger.warn(replica.name, "Probe of replica {} failed: {}", replica.name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the replica to read from, {@code null} when the read must go to the write datasource
+     */
+    Replica choose() {
+        if (replicas.isEmpty() || healthMonitor.currentRoute() != DataSourceRoute.PRIMARY) {
+            return null;
+        }
+        long maxLagNanos = properties.getMaxLag() == null ? Long.MAX_VALUE : properties.getMaxLag().toNanos();
+        long written = properties.isReadYourWrites() ? ReadYourWritesFilter.writtenPosition() : -1;
+
+        Replica chosen = null;
+        int chosenOutstanding = Integer.MAX_VALUE;
+        // rotating the first candidate also spreads ties of the least-outstanding selection
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy || replica.lagNanos > maxLagNanos || replica.replayedPosition < written) {
+                continue;
+            }
+            if (properties.getSelection() == ReplicaProperties.Selection.ROUND_ROBIN) {
+                chosen = replica;
+                break;
+            }
+            int outstanding = replica.outstanding.getAsInt();
+            if (outstanding < chosenOutstanding) {
+                chosen = replica;
+                chosenOutstanding = outstanding;
+            }
+        }
+        if (chosen != null) {
+            chosen.routed.incrementAndGet();
+        }
+        return chosen;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("tasks.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("1 when the replica is used for reads, 0 when it is skipped after failures")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("tasks.datasource.replica.lag", replica, r -> r.lagNanos == Long.MAX_VALUE ? Double.NaN : r.lagNanos / 1e9)
+                    .description("Replay lag of the replica measured by the last probe")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            FunctionCounter.builder("tasks.datasource.replica.reads", replica.routed, AtomicLong::get)
+                    .description("Read-only connections handed out")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+        FunctionCounter.builder("tasks.datasource.replica.reads", readsOnWriteDataSource, AtomicLong::get)
+                .description("Read-only connections handed out")
+                .tag("replica", "none")
+                .register(registry);
+    }
+
+    /**
+     * A read replica and its state as seen by the probes.
+     */
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final IntSupplier outstanding;
+        private final AtomicLong routed = new AtomicLong();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        private volatile boolean healthy = true;
+        private volatile long lagNanos = Long.MAX_VALUE;
+        // WAL position replayed at the last probe, in bytes
+        private volatile long replayedPosition = -1;
+
+        /**
+         * @param outstanding number of connections of the replica in use or awaited
+         */
+        public Replica(String name, DataSource dataSource, IntSupplier outstanding) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.outstanding = outstanding;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean healthy() {
+            return healthy;
+        }
+
+        private synchronized void probeSucceeded(long lagNanos, long replayedPosition) {
+            this.lagNanos = lagNanos;
+            this.replayedPosition = replayedPosition;
+            consecutiveFailures.set(0);
+            if (!healthy) {
+                healthy = true;
+                customLogger.info("Replica {} is available again", name);
+            }
+        }
+
+        private void connectionSucceeded() {
+            if (consecutiveFailures.get() > 0) {
+                consecutiveFailures.set(0);
+            }
+        }
+
+        private synchronized void failed(int failureThreshold) {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold && healthy) {
+                healthy = false;
+                customLogger.error("Replica {} is unavailable, reading from the other replicas", name);
+            }
+        }
+    }
+}
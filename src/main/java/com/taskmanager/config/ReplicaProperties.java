@@ -0,0 +1,79 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas of the primary datasource and how read-only transactions are routed to them.
+ */
+@Data
+public class ReplicaProperties {
+    /**
+     * Read replicas of Postgres. Read-only transactions go to the primary datasource when the list is empty.
+     */
+    private List<Replica> replicas = new ArrayList<>();
+    /**
+     * Routing of read-only transactions to the replicas.
+     */
+    private Routing replicaRouting = new Routing();
+
+    public enum Selection {
+        /**
+         * Replica with the fewest connections in use or awaited.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * Replicas in turn.
+         */
+        ROUND_ROBIN
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * Name of the replica in logs and metrics, its position in the list when not set.
+         */
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        /**
+         * Maximum number of connections to the replica.
+         */
+        private int maximumPoolSize = 10;
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * How a replica is picked among the healthy ones.
+         */
+        private Selection selection = Selection.LEAST_OUTSTANDING;
+        /**
+         * Replicas whose replay lags further behind the primary are not used. Not bounded when not set.
+         */
+        private Duration maxLag = Duration.ofSeconds(1);
+        /**
+         * Sends the reads of a client only to the replicas which replayed its last write, or to the primary
+         * datasource, see {@link ReadYourWritesFilter}.
+         */
+        private boolean readYourWrites = true;
+        /**
+         * Delay between two probes of every replica, which measure its lag.
+         */
+        private Duration probeInterval = Duration.ofSeconds(2);
+        /**
+         * Time a replica has to answer a single probe.
+         */
+        private Duration probeTimeout = Duration.ofSeconds(1);
+        /**
+         * Consecutive failed probes or connection attempts after which a replica is not used until a probe
+         * succeeds again.
+         */
+        private int failureThreshold = 3;
+    }
+}
@@ -0,0 +1,71 @@
+package com.taskmanager.config;
+
+import com.taskmanager.service.TaskVersions;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.List;
+
+/**
+ * Gives every format of a response its own strong entity tag. The controller tags a task by its version, which is
+ * the same whether the task is sent as JSON, CBOR or Smile, so the format the converters selected is added to the
+ * tag, and {@code If-None-Match} is checked against that tag. Weak tags stand for every format as they are. Tomcat
+ * never compresses a response with a strong tag, so the encoding needs no part in it.
+ */
+@RestControllerAdvice
+public class RepresentationETagAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return HttpEntity.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        String tag = response.getHeaders().getETag();
+        if (tag == null || tag.startsWith("W/") || !(response instanceof ServletServerHttpResponse servletResponse)) {
+            return body;
+        }
+        String representationTag = TaskVersions.representationTag(tag, selectedContentType);
+        // the not-modified check of the controller already set the tag on the servlet response, the headers of the
+        // message would only be added next to it
+        response.getHeaders().remove(HttpHeaders.ETAG);
+        servletResponse.getServletResponse().setHeader(HttpHeaders.ETAG, representationTag);
+        HttpMethod method = request.getMethod();
+        if ((method == HttpMethod.GET || method == HttpMethod.HEAD)
+                && matches(request.getHeaders().getIfNoneMatch(), representationTag)) {
+            // no body is written, so the converter doesn't set the content type either
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Weak comparison, as for {@code If-None-Match}.
+     */
+    private static boolean matches(List<String> ifNoneMatch, String tag) {
+        String opaqueTag = ETag.parse(tag).get(0).tag();
+        for (String value : ifNoneMatch) {
+            for (ETag candidate : ETag.parse(value)) {
+                if (candidate.isWildcard() || candidate.tag().equals(opaqueTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package com.taskmanager.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the datasource published by {@link DataSourceHealthMonitor}.
+ * The lookup is a single volatile read, the monitor probes Postgres in the background.
+ * The route of the last connection requested by a thread is kept, so a write can be attributed to the database
+ * it went to even when the route changes right after.
+ * Until the {@link DataSourceStartup} set with {@link #setStartup} is ready, connections wait for it.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<DataSourceRoute> lastRoute = new ThreadLocal<>();
+
+    private final DataSourceHealthMonitor healthMonitor;
+    private DataSourceStartup startup;
+
+    public RoutingDataSource(DataSourceHealthMonitor healthMonitor) {
+        this.healthMonitor = healthMonitor;
+    }
+
+    public void setStartup(DataSourceStartup startup) {
+        this.startup = startup;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (startup != null) {
+            startup.awaitReady();
+        }
+        DataSourceRoute route = healthMonitor.currentRoute();
+        lastRoute.set(route);
+        return route.getLookupKey();
+    }
+
+    /**
+     * @return route of the last connection requested by the current thread, {@code null} if there was none
+     */
+    public static DataSourceRoute lastRoute() {
+        return lastRoute.get();
+    }
+
+    /**
+     * Records the route of a store reached without a connection, like the in-memory task store.
+     */
+    public static void markRoute(DataSourceRoute route) {
+        lastRoute.set(route);
+    }
+}
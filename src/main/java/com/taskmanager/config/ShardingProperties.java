@@ -0,0 +1,74 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharding of the tasks across several databases by a hash of their uuid, see
+ * {@link com.taskmanager.shard.ShardCluster}.
+ */
+@Data
+@ConfigurationProperties("tasks.sharding")
+public class ShardingProperties {
+    /**
+     * Whether the tasks are spread across the shards rather than stored in the primary datasource.
+     */
+    private boolean enabled = false;
+    /**
+     * Databases holding the tasks. All of them are on the ring when it is first created, later changes of the
+     * ring are made by resharding.
+     */
+    private List<Database> shards = new ArrayList<>();
+    /**
+     * Database of the global title directory and of the ring, the primary datasource when not set.
+     */
+    private Database directory;
+    /**
+     * Points of every shard on the ring of a new resharding. More points spread the tasks more evenly.
+     */
+    private int virtualNodes = 128;
+    /**
+     * Tasks read or copied at once when tasks are streamed across the shards or moved between them.
+     */
+    private int batchSize = 500;
+    /**
+     * Age after which a title held in the directory by a task which doesn't exist on its shard is given up,
+     * which happens when the process stopped between the two writes.
+     */
+    private Duration titleClaimTimeout = Duration.ofMinutes(1);
+    /**
+     * Interval at which every instance reads the state of the ring from the directory and acknowledges it.
+     */
+    private Duration ringRefreshInterval = Duration.ofSeconds(1);
+    /**
+     * Age of its last acknowledgement after which an instance is taken as stopped and no longer awaited by a
+     * resharding. An instance which can't read the ring for half of it refuses writes.
+     */
+    private Duration instanceTimeout = Duration.ofSeconds(10);
+    /**
+     * Time a resharding waits for every instance to acknowledge a step before giving up, and longest time writes
+     * are held back while the ring is switched.
+     */
+    private Duration switchTimeout = Duration.ofSeconds(30);
+
+    @Data
+    public static class Database {
+        /**
+         * Name of the shard on the ring, in logs and metrics, its position in the list when not set. Renaming a
+         * shard moves its tasks.
+         */
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        /**
+         * Maximum number of connections to the database.
+         */
+        private int maximumPoolSize = 10;
+    }
+}
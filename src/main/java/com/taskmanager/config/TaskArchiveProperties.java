@@ -0,0 +1,34 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the archiver, which moves completed tasks out of the {@code tasks} table.
+ */
+@Data
+@ConfigurationProperties("tasks.archive")
+public class TaskArchiveProperties {
+    /**
+     * Whether the archiver runs.
+     */
+    private boolean enabled = false;
+    /**
+     * How long a task stays in the tasks table once completed.
+     */
+    private Duration retention = Duration.ofDays(30);
+    /**
+     * Delay between two runs of the archiver.
+     */
+    private Duration interval = Duration.ofHours(1);
+    /**
+     * Number of tasks archived in one transaction.
+     */
+    private int batchSize = 500;
+    /**
+     * Pause between two batches of a run, which leaves the database to the requests.
+     */
+    private Duration batchPause = Duration.ofMillis(200);
+}
@@ -0,0 +1,20 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Limits of the batch endpoints.
+ */
+@Data
+@ConfigurationProperties("tasks.batch")
+public class TaskBatchProperties {
+    /**
+     * Number of items written in one transaction.
+     */
+    private int chunkSize = 500;
+    /**
+     * Maximum number of items accepted in one request.
+     */
+    private int maxItems = 10_000;
+}
@@ -0,0 +1,27 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits of the task change feed.
+ */
+@Data
+@ConfigurationProperties("tasks.changes")
+public class TaskChangeFeedProperties {
+    /**
+     * Number of recent changes kept, so a client can resume from the last change it received.
+     */
+    private int bufferSize = 10_000;
+    /**
+     * Maximum number of tasks with undelivered changes per client. A client falling further behind is
+     * disconnected and resumes from the buffer.
+     */
+    private int maxPending = 10_000;
+    /**
+     * Delay between two heartbeats sent to idle clients.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+}
@@ -0,0 +1,34 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the claim endpoint and of the leases it hands out.
+ */
+@Data
+@ConfigurationProperties("tasks.claim")
+public class TaskClaimProperties {
+    /**
+     * Maximum number of tasks claimed by one request.
+     */
+    private int maxTasks = 100;
+    /**
+     * Lease given when the request doesn't ask for one.
+     */
+    private Duration defaultLease = Duration.ofMinutes(5);
+    /**
+     * Longest lease a request may ask for.
+     */
+    private Duration maxLease = Duration.ofHours(1);
+    /**
+     * Delay between two runs of the reaper, which returns tasks with an expired lease to NEW.
+     */
+    private Duration reaperInterval = Duration.ofSeconds(10);
+    /**
+     * Number of expired tasks released in one transaction of the reaper.
+     */
+    private int reaperBatchSize = 500;
+}
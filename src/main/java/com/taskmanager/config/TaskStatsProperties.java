@@ -0,0 +1,23 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the task counts kept in memory.
+ */
+@Data
+@ConfigurationProperties("tasks.stats")
+public class TaskStatsProperties {
+    /**
+     * Delay between two recounts of the tasks in the database, which correct counts missed in memory.
+     */
+    private Duration reconcileInterval = Duration.ofMinutes(5);
+    /**
+     * Recounts in a row discarded because a change committed while they ran, after which the next one is applied
+     * anyway, so the counts are corrected under steady writes too.
+     */
+    private int maxDiscardedRecounts = 3;
+}
@@ -0,0 +1,52 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the store serving tasks while Postgres is unavailable.
+ */
+@Data
+@ConfigurationProperties("tasks.store")
+public class TaskStoreProperties {
+
+    public enum SecondaryStore {
+        /**
+         * The embedded H2 database, through JPA.
+         */
+        H2,
+        /**
+         * The in-memory task store, see {@link com.taskmanager.store.MemoryTaskStore}.
+         */
+        MEMORY
+    }
+
+    /**
+     * Store serving tasks while Postgres is unavailable.
+     */
+    private SecondaryStore secondary = SecondaryStore.H2;
+    /**
+     * Whether the application runs on the secondary store alone, Postgres is then never connected to.
+     */
+    private boolean standalone = false;
+    /**
+     * Directory of the snapshots and logs of the in-memory store, which isn't persisted when unset.
+     */
+    private String directory;
+    /**
+     * Delay between two snapshots of the in-memory store, each one lets the logs written before it go.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+    /**
+     * Delay between two syncs of the current log to disk. Appended changes survive a crash of the process right
+     * away, and one of the machine once synced.
+     */
+    private Duration syncInterval = Duration.ofSeconds(1);
+    /**
+     * Size of a log file, a new one is started when it is full.
+     */
+    private DataSize logSize = DataSize.ofMegabytes(64);
+}
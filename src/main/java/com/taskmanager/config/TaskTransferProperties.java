@@ -0,0 +1,16 @@
+package com.taskmanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Limits of the import and export endpoints.
+ */
+@Data
+@ConfigurationProperties("tasks.transfer")
+public class TaskTransferProperties {
+    /**
+     * Number of imported tasks written in one transaction, and held in memory at once.
+     */
+    private int chunkSize = 5000;
+}
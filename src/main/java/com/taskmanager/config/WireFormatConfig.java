@@ -0,0 +1,36 @@
+package com.taskmanager.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary representations of the API payloads next to JSON. Clients ask for CBOR ({@code application/cbor}) or
+ * Smile ({@code application/x-jackson-smile}) in the Accept header and may send request bodies in them as well.
+ * Both mappers are built like the JSON one, so payloads have the same shape in every format.
+ * <p>
+ * Large responses are gzip compressed by Tomcat, see the {@code server.compression.*} properties. The
+ * {@link CompressionThresholdFilter} tells Tomcat the length of small responses, so they are sent as they are.
+ * Tomcat skips responses with a strong ETag, which is why the task list has a weak one, and the strong tags of
+ * single tasks differ per format, see {@link RepresentationETagAdvice}. Streams are not compressed, since gzip
+ * would hold back the events of the change feed.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
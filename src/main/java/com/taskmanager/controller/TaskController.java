@@ -1,8 +1,20 @@
 package com.taskmanager.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.WireFormatConfig;
+import com.taskmanager.model.BatchItemResult;
 import com.taskmanager.model.Status;
 import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChange;
+import com.taskmanager.model.TaskStats;
+import com.taskmanager.service.TaskBatchService;
+import com.taskmanager.service.TaskChangeFeed;
+import com.taskmanager.service.TaskClaimService;
 import com.taskmanager.service.TaskService;
+import com.taskmanager.service.TaskStatusCounters;
+import com.taskmanager.service.TaskTransferService;
+import com.taskmanager.service.TaskVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,6 +25,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -22,20 +35,56 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.UUID;
 
 @Tag(name = "Task Controller", description = "The Task API")
 @RestController
 @RequestMapping("/api/tasks")
 public class TaskController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String APPLICATION_MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TaskBatchService taskBatchService;
+
+    @Autowired
+    private TaskClaimService taskClaimService;
+
+    @Autowired
+    private TaskTransferService taskTransferService;
+
+    @Autowired
+    private TaskChangeFeed taskChangeFeed;
+
+    @Autowired
+    private TaskStatusCounters taskStatusCounters;
+
+    @Autowired
+    private TaskVersions taskVersions;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Operation(summary = "Create a task", description = "Create task and return id of created entity")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully created")
@@ -46,6 +95,28 @@ public class TaskController {
         return ResponseEntity.ok(createdTask.getUuid());
     }
 
+    @Operation(summary = "Get task by id", description = "Get task by provided id. The ETag header holds the "
+            + "version of the task, send it in If-None-Match to skip an unchanged task. "
+            + "Archived tasks are only found with archived=true")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Task.class)),
+                    description = "Task successfully retrieved"),
+            @ApiResponse(responseCode = "304",
+                    content = @Content(),
+                    description = "Not modified - The task still has the version given in If-None-Match"),
+            @ApiResponse(responseCode = "404",
+                    content = @Content(),
+                    description = "Not found - The task was not found")
+    })
+    @GetMapping("/{uuid}")
+    public ResponseEntity<Task> getTask(@PathVariable String uuid,
+                                        @RequestParam(defaultValue = "false") boolean archived) {
+        Task task = archived ? taskService.getTaskOrArchived(uuid) : taskService.getTask(uuid);
+        // answered with 304 and no body when the tag matches If-None-Match
+        return ResponseEntity.ok().eTag(taskVersions.taskTag(task)).body(task);
+    }
+
     @Operation(summary = "Delete task by id", description = "Delete task by provided id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully deleted"),
@@ -64,11 +135,15 @@ public class TaskController {
                     description = "Status successfully updated"),
             @ApiResponse(responseCode = "404",
                     content = @Content(),
-                    description = "Not found - The task was not found")
+                    description = "Not found - The task was not found"),
+            @ApiResponse(responseCode = "412",
+                    content = @Content(),
+                    description = "Precondition failed - The task no longer has the version given in If-Match")
     })
     @PutMapping("/{uuid}/status")
-    public ResponseEntity<Task> updateTaskStatus(@PathVariable String uuid, @NotNull @RequestParam Status status) {
-        return ResponseEntity.ok(taskService.updateTaskStatus(uuid, status));
+    public ResponseEntity<Task> updateTaskStatus(@PathVariable String uuid, @NotNull @RequestParam Status status,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return tagged(taskService.updateTaskStatus(uuid, status, taskVersions.expectedVersion(ifMatch)));
     }
 
     @Operation(summary = "Update task fields", description = "Update fields of corresponding task")
@@ -78,22 +153,313 @@ public class TaskController {
                     description = "Task fields successfully updated"),
             @ApiResponse(responseCode = "404",
                     content = @Content(),
-                    description = "Not found - The task was not found")
+                    description = "Not found - The task was not found"),
+            @ApiResponse(responseCode = "412",
+                    content = @Content(),
+                    description = "Precondition failed - The task no longer has the version given in If-Match")
     })
     @PatchMapping("/{uuid}")
-    public ResponseEntity<Task> updateTaskFields(@PathVariable String uuid, @RequestBody Task updatedTask) {
-        return ResponseEntity.ok(taskService.updateTaskFields(uuid, updatedTask));
+    public ResponseEntity<Task> updateTaskFields(@PathVariable String uuid, @RequestBody Task updatedTask,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return tagged(taskService.updateTaskFields(uuid, updatedTask, taskVersions.expectedVersion(ifMatch)));
     }
 
-    @Operation(summary = "Get all tasks", description = "Get all available tasks from db")
+    @Operation(summary = "Merge patch task", description = "Update fields of corresponding task with a JSON Merge Patch "
+            + "(RFC 7386) document, where null clears a field")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Task.class)),
+                    description = "Task fields successfully updated"),
+            @ApiResponse(responseCode = "400",
+                    content = @Content(),
+                    description = "Bad request - The document is invalid or leaves the task invalid"),
+            @ApiResponse(responseCode = "404",
+                    content = @Content(),
+                    description = "Not found - The task was not found"),
+            @ApiResponse(responseCode = "412",
+                    content = @Content(),
+                    description = "Precondition failed - The task no longer has the version given in If-Match")
+    })
+    @PatchMapping(value = "/{uuid}", consumes = APPLICATION_MERGE_PATCH_JSON_VALUE)
+    public ResponseEntity<Task> mergePatchTask(@PathVariable String uuid, @RequestBody JsonNode mergePatch,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return tagged(taskService.mergePatchTask(uuid, mergePatch, taskVersions.expectedVersion(ifMatch)));
+    }
+
+    @Operation(summary = "Create tasks", description = "Create many tasks at once and return the result of every item")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the outcome of every item"),
+            @ApiResponse(responseCode = "413", content = @Content(), description = "Too many items in one batch")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> createTasks(@RequestBody List<Task> tasks) {
+        return ResponseEntity.ok(taskBatchService.createTasks(tasks));
+    }
+
+    @Operation(summary = "Update tasks fields", description = "Update fields of many tasks at once, every item must contain the task id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the outcome of every item"),
+            @ApiResponse(responseCode = "413", content = @Content(), description = "Too many items in one batch")
+    })
+    @PatchMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> updateTasks(@RequestBody List<Task> updatedTasks) {
+        return ResponseEntity.ok(taskBatchService.updateTasks(updatedTasks));
+    }
+
+    @Operation(summary = "Delete tasks", description = "Delete many tasks by provided ids")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the outcome of every item"),
+            @ApiResponse(responseCode = "413", content = @Content(), description = "Too many items in one batch")
+    })
+    @DeleteMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> deleteTasks(@RequestBody List<String> uuids) {
+        return ResponseEntity.ok(taskBatchService.deleteTasks(uuids));
+    }
+
+    @Operation(summary = "Claim tasks", description = "Move up to limit NEW tasks, oldest first, to IN_PROGRESS "
+            + "and lease them to the caller for leaseSeconds. Concurrent claims never return the same task. Complete "
+            + "a task by changing its status before the lease expires, otherwise it returns to NEW")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Task.class))),
-                    description = "All tasks successfully retrieved")
+                    description = "Claimed tasks, none when no task is NEW")
+    })
+    @PostMapping("/claim")
+    public ResponseEntity<List<Task>> claimTasks(@RequestParam(defaultValue = "1") int limit,
+                                                 @RequestParam(required = false) Long leaseSeconds) {
+        Duration lease = leaseSeconds == null ? null : Duration.ofSeconds(leaseSeconds);
+        return ResponseEntity.ok(taskClaimService.claimTasks(limit, lease));
+    }
+
+    @Operation(summary = "Get tasks", description = "Get a page of tasks ordered by id. "
+            + "The id of the last task is returned in the X-Next-Cursor header when more tasks are available. "
+            + "The ETag header changes whenever a task changes, send it in If-None-Match to skip an unchanged page. "
+            + "Archived completed tasks are only included with archived=true")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Task.class))),
+                    description = "Tasks successfully retrieved"),
+            @ApiResponse(responseCode = "304",
+                    content = @Content(),
+                    description = "Not modified - No task changed since the tag given in If-None-Match"),
+            @ApiResponse(responseCode = "400", content = @Content(), description = "Cursor or status is invalid")
     })
-    @GetMapping
-    public ResponseEntity<List<Task>> getAllTasks() {
-        List<Task> tasks = taskService.getAllTasks();
-        return ResponseEntity.ok(tasks);
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            WireFormatConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<Task>> getTasks(@RequestParam(required = false) UUID after,
+                                               @RequestParam(defaultValue = "100") int limit,
+                                               @RequestParam(required = false) Status status,
+                                               @RequestParam(required = false) String titlePrefix,
+                                               @RequestParam(defaultValue = "false") boolean archived,
+                                               WebRequest webRequest) {
+        // taken before the tasks are read, so a change made meanwhile gives a newer tag rather than a stale page
+        String tag = taskVersions.listTag();
+        if (tag != null && webRequest.checkNotModified(tag)) {
+            return null;
+        }
+        List<Task> tasks = taskService.getTasks(after == null ? null : after.toString(), limit, status,
+                titlePrefix, archived);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (tag != null) {
+            response.eTag(tag);
+        }
+        if (!tasks.isEmpty() && tasks.size() >= Math.min(limit, TaskService.MAX_PAGE_SIZE)) {
+            response.header(NEXT_CURSOR_HEADER, tasks.get(tasks.size() - 1).getUuid());
+        }
+        return response.body(tasks);
+    }
+
+    @Operation(summary = "Search tasks", description = "Full-text search over title and description. Every word of "
+            + "the query must match, tasks matching in the title are ranked first. Use offset to get the next page")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Task.class))),
+                    description = "Matching tasks, best ranked first")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<Task>> searchTasks(@RequestParam String q,
+                                                  @RequestParam(defaultValue = "0") int offset,
+                                                  @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(taskService.searchTasks(q, offset, limit));
+    }
+
+    @Operation(summary = "Get task counts", description = "Get the number of tasks per status, counted in memory "
+            + "and recounted in the database periodically")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = TaskStats.class)),
+                    description = "Counts successfully retrieved")
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<TaskStats> getStats() {
+        return ResponseEntity.ok(taskStatusCounters.stats());
+    }
+
+    @Operation(summary = "Stream tasks", description = "Stream all matching tasks as newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Task.class)),
+                    description = "Tasks successfully streamed")
+    })
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTasks(@RequestParam(required = false) Status status,
+                                                             @RequestParam(required = false) String titlePrefix) {
+        StreamingResponseBody body = outputStream -> taskService.streamTasks(status, titlePrefix, task -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(task));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    @Operation(summary = "Import tasks", description = "Create tasks from CSV with a header row naming the columns "
+            + "(uuid, title, description, status), the uuid may be left out. Tasks keep their id when they have one. "
+            + "The input is written in chunks as it arrives, the result of every task is streamed back as newline "
+            + "delimited JSON once its chunk is written")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BatchItemResult.class)),
+                    description = "Tasks are imported, see the outcome of every task")
+    })
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importTasksFromCsv(InputStream input) {
+        return importTasks(input, TaskTransferService.Format.CSV);
+    }
+
+    @Operation(summary = "Import tasks", description = "Create tasks from newline delimited JSON, one task per line. "
+            + "Tasks keep their id when they have one. The input is written in chunks as it arrives, the result of "
+            + "every task is streamed back as newline delimited JSON once its chunk is written")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BatchItemResult.class)),
+                    description = "Tasks are imported, see the outcome of every task")
+    })
+    @PostMapping(value = "/import", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importTasksFromJson(InputStream input) {
+        return importTasks(input, TaskTransferService.Format.NDJSON);
+    }
+
+    @Operation(summary = "Export tasks", description = "Stream all tasks ordered by id as CSV with a header row")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = TEXT_CSV_VALUE),
+                    description = "Tasks successfully streamed")
+    })
+    @GetMapping(value = "/export", produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTasksAsCsv() {
+        return exportTasks(TEXT_CSV_VALUE, TaskTransferService.Format.CSV);
+    }
+
+    @Operation(summary = "Export tasks", description = "Stream all tasks ordered by id as newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Task.class)),
+                    description = "Tasks successfully streamed")
+    })
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTasksAsJson() {
+        return exportTasks(APPLICATION_NDJSON_VALUE, TaskTransferService.Format.NDJSON);
+    }
+
+    @Operation(summary = "Subscribe to task changes", description = "Stream changes of tasks as server-sent events. "
+            + "Reconnect with the Last-Event-ID header or the after parameter to resume; changes of the same task made "
+            + "while the client is behind are delivered as one. A RESET event means the tasks must be reloaded")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = TaskChange.class)),
+                    description = "Changes are streamed")
+    })
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long after,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter();
+        subscribe(emitter, after != null ? after : lastEventId, new TaskChangeFeed.Sink() {
+            @Override
+            public void send(TaskChange change) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(change.sequence()))
+                        .name(change.type().name())
+                        .data(change, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    @Operation(summary = "Subscribe to task changes", description = "Stream changes of tasks as newline delimited JSON. "
+            + "Pass the sequence of the last change received as the after parameter to resume")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = TaskChange.class)),
+                    description = "Changes are streamed")
+    })
+    @GetMapping(value = "/changes", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamChangesAsJson(@RequestParam(required = false) Long after) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        subscribe(emitter, after, new TaskChangeFeed.Sink() {
+            @Override
+            public void send(TaskChange change) throws IOException {
+                emitter.send(objectMapper.writeValueAsString(change) + "\n", MediaType.TEXT_PLAIN);
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(emitter);
+    }
+
+    private ResponseEntity<StreamingResponseBody> importTasks(InputStream input, TaskTransferService.Format format) {
+        StreamingResponseBody body = outputStream -> taskTransferService.importTasks(input, format, result -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(result));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportTasks(String mediaType, TaskTransferService.Format format) {
+        StreamingResponseBody body = outputStream -> taskTransferService.exportTasks(outputStream, format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mediaType))
+                .body(body);
+    }
+
+    private ResponseEntity<Task> tagged(Task task) {
+        return ResponseEntity.ok().eTag(taskVersions.taskTag(task)).body(task);
+    }
+
+    private void subscribe(ResponseBodyEmitter emitter, Long after, TaskChangeFeed.Sink sink) {
+        TaskChangeFeed.Subscription subscription = taskChangeFeed.subscribe(after, sink);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
     }
 }
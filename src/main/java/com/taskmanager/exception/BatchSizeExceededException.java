@@ -0,0 +1,7 @@
+package com.taskmanager.exception;
+
+public class BatchSizeExceededException extends StacklessException {
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,10 @@
 package com.taskmanager.exception;
 
-public class DuplicationException extends RuntimeException {
+public class DuplicationException extends StacklessException {
+
+    public static final DuplicationException TITLE =
+            new DuplicationException("Task with the same title already exists");
+
     public DuplicationException(String message) {
         super(message);
     }
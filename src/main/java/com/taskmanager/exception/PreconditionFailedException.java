@@ -0,0 +1,11 @@
+package com.taskmanager.exception;
+
+public class PreconditionFailedException extends StacklessException {
+
+    public static final PreconditionFailedException MODIFIED_SINCE_READ =
+            new PreconditionFailedException("Task has been modified since it was read");
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,12 @@
 package com.taskmanager.exception;
 
-public class ResourceNotFoundException extends RuntimeException {
+public class ResourceNotFoundException extends StacklessException {
+
+    /**
+     * Thrown for every missing task, the path of the request tells its uuid.
+     */
+    public static final ResourceNotFoundException TASK = new ResourceNotFoundException("Task Record Not Found");
+
     public ResourceNotFoundException(String message) {
         super(message);
     }
@@ -0,0 +1,7 @@
+package com.taskmanager.exception;
+
+public class ServiceOverloadedException extends StacklessException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
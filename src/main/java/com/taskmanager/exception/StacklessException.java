@@ -0,0 +1,12 @@
+package com.taskmanager.exception;
+
+/**
+ * Base of the exceptions which end a request with an expected error status. Scanners, retrying clients and
+ * overload throw them at a high rate and they are never logged with a stack trace, so they don't fill one in.
+ * Instances with a fixed message can be created once and thrown again.
+ */
+public abstract class StacklessException extends RuntimeException {
+    protected StacklessException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -1,6 +1,6 @@
 package com.taskmanager.exception;
 
-public class UnmodifiedException extends RuntimeException {
+public class UnmodifiedException extends StacklessException {
     public UnmodifiedException(String message) {
         super(message);
     }
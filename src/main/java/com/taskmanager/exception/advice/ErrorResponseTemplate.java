@@ -0,0 +1,74 @@
+package com.taskmanager.exception.advice;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.taskmanager.model.ErrorResponse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON body of an {@link ErrorResponse} with a message and a path, the shape of most errors, assembled from
+ * pre-encoded parts rather than written by the {@code ObjectMapper}. The bytes are the same the
+ * {@code ObjectMapper} writes. A template made once for a fixed message only encodes the path of every error.
+ */
+public final class ErrorResponseTemplate {
+
+    private static final byte[] MESSAGE = "{\"message\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PATH = "\",\"path\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ONLY_PATH = "{\"path\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END = "\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPTY = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] prefix;
+    private final byte[] withoutPath;
+
+    /**
+     * @param message message of the errors, {@code null} to leave it out
+     */
+    public ErrorResponseTemplate(String message) {
+        if (message == null) {
+            prefix = ONLY_PATH;
+            withoutPath = EMPTY;
+        } else {
+            byte[] encodedMessage = encode(message);
+            prefix = concat(MESSAGE, encodedMessage, PATH);
+            withoutPath = concat(MESSAGE, encodedMessage, END);
+        }
+    }
+
+    /**
+     * Writes the body of an error whose message is only known when it occurs.
+     */
+    public static byte[] render(String message, String path) {
+        if (message == null) {
+            return path == null ? EMPTY.clone() : concat(ONLY_PATH, encode(path), END);
+        }
+        return path == null
+                ? concat(MESSAGE, encode(message), END)
+                : concat(MESSAGE, encode(message), PATH, encode(path), END);
+    }
+
+    /**
+     * @param path path of the request, {@code null} to leave it out
+     */
+    public byte[] render(String path) {
+        return path == null ? withoutPath.clone() : concat(prefix, encode(path), END);
+    }
+
+    private static byte[] encode(String value) {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(value);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
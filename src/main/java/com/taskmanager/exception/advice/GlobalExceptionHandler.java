@@ -1,76 +1,259 @@
 package com.taskmanager.exception.advice;
 
+import com.taskmanager.config.MetricsConfig;
+import com.taskmanager.exception.BatchSizeExceededException;
 import com.taskmanager.model.ErrorResponse;
 import com.taskmanager.exception.DuplicationException;
 import com.taskmanager.exception.PatcherServiceException;
+import com.taskmanager.exception.PreconditionFailedException;
 import com.taskmanager.exception.ResourceNotFoundException;
+import com.taskmanager.exception.ServiceOverloadedException;
+import com.taskmanager.exception.StacklessException;
 import com.taskmanager.exception.UnmodifiedException;
+import com.taskmanager.logging.RateLimitedLogger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UrlPathHelper;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, Duration.ofSeconds(10));
+
+    private static final String CONCURRENT_MODIFICATION_MESSAGE =
+            "Task was modified concurrently, read it again and retry";
+    private static final ErrorResponseTemplate CONCURRENT_MODIFICATION =
+            new ErrorResponseTemplate(CONCURRENT_MODIFICATION_MESSAGE);
+
+    /**
+     * Bodies of the shared exception instances, by instance, their message is encoded once.
+     */
+    private static final Map<StacklessException, ErrorResponseTemplate> TEMPLATES = Map.of(
+            ResourceNotFoundException.TASK, template(ResourceNotFoundException.TASK),
+            DuplicationException.TITLE, template(DuplicationException.TITLE),
+            PreconditionFailedException.MODIFIED_SINCE_READ, template(PreconditionFailedException.MODIFIED_SINCE_READ));
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<Class<?>, ErrorCounter> errorCounters = new ConcurrentHashMap<>();
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ErrorResponse handleValidationExceptions(MethodArgumentNotValidException ex, HttpServletRequest request) {
+        countError(ex, HttpStatus.BAD_REQUEST);
         Map<String, Object> errors = new HashMap<>();
         ex.getBindingResult().getAllErrors().forEach((error) -> {
             String fieldName = ((FieldError) error).getField();
             String errorMessage = error.getDefaultMessage();
             errors.put(fieldName, errorMessage);
         });
-        return new ErrorResponse(null, errors, request.getServletPath());
+        return new ErrorResponse(null, errors, path(request));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ErrorResponse handleValidationExceptions(ConstraintViolationException ex, HttpServletRequest request) {
+        countError(ex, HttpStatus.BAD_REQUEST);
+        Map<String, Object> errors = new HashMap<>();
+        ex.getConstraintViolations().forEach((violation) ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return new ErrorResponse(null, errors, path(request));
     }
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ErrorResponse handleValidationException(HttpMessageNotReadableException exception, HttpServletRequest request) {
-        return new ErrorResponse(exception.getMessage(), null, request.getServletPath());
+        countError(exception, HttpStatus.BAD_REQUEST);
+        return new ErrorResponse(exception.getMessage(), null, path(request));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ErrorResponse handleValidationException(MethodArgumentTypeMismatchException exception,
+                                                   HttpServletRequest request) {
+        countError(exception, HttpStatus.BAD_REQUEST);
+        return new ErrorResponse("Invalid value of " + exception.getName(), null, path(request));
     }
 
-    @ResponseStatus(HttpStatus.NOT_FOUND)
     @ExceptionHandler(value = {ResourceNotFoundException.class})
-    protected ErrorResponse handleException(ResourceNotFoundException e, HttpServletRequest request) {
-        return new ErrorResponse(e.getMessage(), null, request.getServletPath());
+    protected ResponseEntity<Object> handleException(ResourceNotFoundException e, HttpServletRequest request) {
+        return error(e, HttpStatus.NOT_FOUND, e.getMessage(), request);
     }
 
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(value = {UnmodifiedException.class})
-    protected ErrorResponse handleException(UnmodifiedException e, HttpServletRequest request) {
-        return new ErrorResponse(e.getMessage(), null, request.getServletPath());
+    protected ResponseEntity<Object> handleException(UnmodifiedException e, HttpServletRequest request) {
+        return error(e, HttpStatus.BAD_REQUEST, e.getMessage(), request);
     }
 
     @ExceptionHandler(value = {DuplicationException.class})
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    protected ErrorResponse handleException(DuplicationException e, HttpServletRequest request) {
-        return new ErrorResponse(e.getMessage(), null, request.getServletPath());
+    protected ResponseEntity<Object> handleException(DuplicationException e, HttpServletRequest request) {
+        return error(e, HttpStatus.BAD_REQUEST, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(value = {PreconditionFailedException.class})
+    protected ResponseEntity<Object> handleException(PreconditionFailedException e, HttpServletRequest request) {
+        return error(e, HttpStatus.PRECONDITION_FAILED, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(value = {OptimisticLockingFailureException.class})
+    protected ResponseEntity<Object> handleException(OptimisticLockingFailureException e, HttpServletRequest request) {
+        countError(e, HttpStatus.CONFLICT);
+        if (acceptsJson(request)) {
+            return json(HttpStatus.CONFLICT, CONCURRENT_MODIFICATION.render(path(request)));
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(CONCURRENT_MODIFICATION_MESSAGE, null, path(request)));
+    }
+
+    @ExceptionHandler(value = {BatchSizeExceededException.class})
+    protected ResponseEntity<Object> handleException(BatchSizeExceededException e, HttpServletRequest request) {
+        return error(e, HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(value = {ServiceOverloadedException.class})
+    protected ResponseEntity<Object> handleException(ServiceOverloadedException e, HttpServletRequest request,
+                                                     HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return error(e, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), request);
     }
 
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(value = {PatcherServiceException.class})
-    protected ErrorResponse handleException(PatcherServiceException e, HttpServletRequest request) {
-        return new ErrorResponse(e.getMessage(), null, request.getServletPath());
+    protected ResponseEntity<Object> handleException(PatcherServiceException e, HttpServletRequest request) {
+        return error(e, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), request);
     }
 
+    /**
+     * Exceptions of Spring MVC, such as those of the unknown paths probed by scanners, are answered with their own
+     * status and headers. Anything else is an unexpected failure, logged at most once per exception type and
+     * interval.
+     */
     @ExceptionHandler(value = {Exception.class})
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    protected ErrorResponse handleException(Exception e, WebRequest request) {
-        logger.error("Exception occurred: {}, Request Details: {}", e.getMessage(), request.getDescription(false));
-        return new ErrorResponse(e.getMessage(), null, request.getDescription(false));
+    protected ResponseEntity<Object> handleException(Exception e, HttpServletRequest request, WebRequest webRequest) {
+        if (e instanceof org.springframework.web.ErrorResponse mvcError) {
+            return error(e, mvcError.getStatusCode(), mvcError.getHeaders(), mvcError.getBody().getDetail(),
+                    path(request), request);
+        }
+        String description = webRequest.getDescription(false);
+        rateLimitedLogger.error(e.getClass().getName(), "Exception occurred: {}, Request Details: {}",
+                e.getMessage(), description);
+        return error(e, HttpStatus.INTERNAL_SERVER_ERROR, HttpHeaders.EMPTY, e.getMessage(), description, request);
+    }
+
+    private ResponseEntity<Object> error(Exception e, HttpStatusCode status, String message,
+                                         HttpServletRequest request) {
+        return error(e, status, HttpHeaders.EMPTY, message, path(request), request);
+    }
+
+    /**
+     * Answers with the pre-serialized body when the client takes JSON, through the message converters otherwise.
+     */
+    private ResponseEntity<Object> error(Exception e, HttpStatusCode status, HttpHeaders headers, String message,
+                                         String path, HttpServletRequest request) {
+        countError(e, status);
+        if (acceptsJson(request)) {
+            ErrorResponseTemplate template = TEMPLATES.get(e);
+            return ResponseEntity.status(status).headers(headers)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(template == null ? ErrorResponseTemplate.render(message, path) : template.render(path));
+        }
+        return ResponseEntity.status(status).headers(headers).body(new ErrorResponse(message, null, path));
+    }
+
+    private static ResponseEntity<Object> json(HttpStatusCode status, byte[] body) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Whether JSON is acceptable and no other type is preferred. The quality of JSON is that of the most specific
+     * range including it, {@code application/json;q=0} excludes it whatever the wildcards allow.
+     */
+    private static boolean acceptsJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.equals(MediaType.ALL_VALUE) || accept.equals(MediaType.APPLICATION_JSON_VALUE)) {
+            return true;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(acceptable);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            return false;
+        }
+        double json = 0;
+        boolean jsonMatched = false;
+        double other = 0;
+        for (MediaType type : acceptable) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                if (!jsonMatched) {
+                    json = type.getQualityValue();
+                    jsonMatched = true;
+                }
+            } else if (!type.isWildcardSubtype()) {
+                other = Math.max(other, type.getQualityValue());
+            }
+        }
+        return json > 0 && json >= other;
+    }
+
+    /**
+     * Path of the request within the application, whatever the servlet mapping, which tells the task a shared
+     * exception is about.
+     */
+    private static String path(HttpServletRequest request) {
+        return UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    }
+
+    private static ErrorResponseTemplate template(StacklessException e) {
+        return new ErrorResponseTemplate(e.getMessage());
+    }
+
+    /**
+     * The counter of an exception type is looked up once, an exception type is answered with the same status
+     * unless it carries its own.
+     */
+    private void countError(Exception e, HttpStatusCode status) {
+        ErrorCounter counter = errorCounters.get(e.getClass());
+        if (counter == null || counter.status() != status.value()) {
+            counter = new ErrorCounter(status.value(), meterRegistry.counter(MetricsConfig.ERRORS_COUNTER,
+                    "exception", e.getClass().getSimpleName(),
+                    "status", String.valueOf(status.value())));
+            errorCounters.put(e.getClass(), counter);
+        }
+        counter.counter().increment();
+    }
+
+    private record ErrorCounter(int status, Counter counter) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,275 @@
+package com.taskmanager.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.logging.RateLimitedLogger;
+import com.taskmanager.service.TaskChangeEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of the task changes written to H2 while Postgres is unavailable, one JSON record per line.
+ * <p>
+ * Appends are queued and written by a single writer thread, which syncs every batch of queued records with one
+ * fsync, so concurrent writes share the cost of a sync. A write waits until its record is on disk. The offset up
+ * to which records have been replayed to Postgres is kept in a checkpoint file next to the journal; once
+ * everything is replayed the journal is truncated.
+ */
+public class ChangeJournal implements MeterBinder, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(ChangeJournal.class);
+    private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(customLogger, Duration.ofSeconds(10));
+
+    private static final String JOURNAL_FILE = "secondary-writes.log";
+    private static final String CHECKPOINT_FILE = "secondary-writes.checkpoint";
+    private static final PendingAppend CLOSE = new PendingAppend(null, null);
+
+    private final Path journalFile;
+    private final Path checkpointFile;
+    private final ObjectMapper objectMapper;
+    private final JournalProperties properties;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    private FileChannel channel;
+    private Thread writer;
+    private volatile long checkpoint;
+    private volatile long size;
+
+    public ChangeJournal(Path directory, ObjectMapper objectMapper, JournalProperties properties) {
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+        this.checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Opens the journal, dropping a record torn by a crash in the middle of a write, and starts the writer.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(journalFile.getParent());
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = endOfLastRecord();
+        channel.truncate(size);
+        channel.position(size);
+        checkpoint = Files.exists(checkpointFile)
+                ? Math.min(size, Long.parseLong(Files.readString(checkpointFile).trim()))
+                : 0;
+        if (pendingBytes() > 0) {
+            customLogger.warn("Journal {} holds {} bytes of writes not replayed to Postgres yet", journalFile, pendingBytes());
+        }
+        writer = new Thread(this::writeLoop, "change-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        queue.add(CLOSE);
+        writer.join(properties.getSyncTimeout().toMillis());
+        channel.close();
+    }
+
+    /**
+     * Journals a change written to the secondary datasource, once committed. Changes written to Postgres need no
+     * replay.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChange(TaskChangeEvent event) {
+        if (event.route() != DataSourceRoute.SECONDARY) {
+            return;
+        }
+        try {
+            append(JournalRecord.of(event)).get(properties.getSyncTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            rateLimitedLogger.error("append", "Change of task {} written to H2 is not journaled: {}",
+                    event.task().getUuid(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return a future completed once the record is synced to disk
+     */
+    public CompletableFuture<Void> append(JournalRecord record) {
+        byte[] line;
+        try {
+            line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        queue.add(new PendingAppend(line, synced));
+        return synced;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} complete records starting at the given offset.
+     */
+    public JournalBatch read(long offset, int maxRecords) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        long position = offset;
+        try (FileChannel readChannel = FileChannel.open(journalFile, StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(readChannel.position(offset)))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while (records.size() < maxRecords && (b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                position += line.size() + 1;
+                records.add(objectMapper.readValue(line.toByteArray(), JournalRecord.class));
+                line.reset();
+            }
+        }
+        return new JournalBatch(records, position);
+    }
+
+    public long checkpoint() {
+        return checkpoint;
+    }
+
+    public long pendingBytes() {
+        return size - checkpoint;
+    }
+
+    /**
+     * Records that everything before the offset has been replayed. The journal is truncated when nothing is left.
+     */
+    public void commit(long offset) throws IOException {
+        fileLock.lock();
+        try {
+            if (offset >= size) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                size = 0;
+                offset = 0;
+            }
+            Path temporaryFile = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel checkpointChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                checkpointChannel.write(ByteBuffer.wrap(Long.toString(offset).getBytes(StandardCharsets.UTF_8)));
+                checkpointChannel.force(true);
+            }
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpoint = offset;
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tasks.journal.appended", appended, AtomicLong::get)
+                .description("Records written to the journal")
+                .register(registry);
+        FunctionCounter.builder("tasks.journal.syncs", syncs, AtomicLong::get)
+                .description("Syncs of the journal to disk, each covering a batch of records")
+                .register(registry);
+        Gauge.builder("tasks.journal.pending", this, ChangeJournal::pendingBytes)
+                .description("Bytes of the journal not replayed to Postgres yet")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, properties.getMaxSyncBatch() - 1);
+            closing = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingAppend> batch) {
+        fileLock.lock();
+        try {
+            for (PendingAppend pending : batch) {
+                ByteBuffer buffer = ByteBuffer.wrap(pending.line());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+            size = channel.position();
+            appended.addAndGet(batch.size());
+            syncs.incrementAndGet();
+            batch.forEach(pending -> pending.synced().complete(null));
+        } catch (IOException e) {
+            batch.forEach(pending -> pending.synced().completeExceptionally(new UncheckedIOException(e)));
+            discardUnsynced();
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Cuts off what a failed write may have left behind, so the next records don't follow a torn one.
+     */
+    private void discardUnsynced() {
+        try {
+            channel.truncate(size);
+            channel.position(size);
+        } catch (IOException e) {
+            customLogger.error("Can't discard a failed write of journal {}: {}", journalFile, e.getMessage());
+        }
+    }
+
+    private long endOfLastRecord() throws IOException {
+        long end = 0;
+        long position = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(journalFile))) {
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    end = position;
+                }
+            }
+        }
+        return end;
+    }
+
+    private record PendingAppend(byte[] line, CompletableFuture<Void> synced) {
+    }
+}
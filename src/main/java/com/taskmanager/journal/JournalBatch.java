@@ -0,0 +1,9 @@
+package com.taskmanager.journal;
+
+import java.util.List;
+
+/**
+ * Records read from the journal, and the offset following the last of them.
+ */
+public record JournalBatch(List<JournalRecord> records, long nextOffset) {
+}
@@ -0,0 +1,51 @@
+package com.taskmanager.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.repository.ShardedTaskRepository;
+import com.taskmanager.service.TaskSearchIndex;
+import com.taskmanager.service.TaskVersions;
+import com.taskmanager.shard.ShardCluster;
+import com.taskmanager.store.MemoryTaskStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+/**
+ * Journal of the writes made to H2 while Postgres is unavailable, and its replay once Postgres is back.
+ * Disabled with {@code tasks.journal.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tasks.journal", name = "enabled", matchIfMissing = true)
+public class JournalConfig {
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    public ChangeJournal changeJournal(JournalProperties properties) {
+        // own mapper, so the journal format doesn't follow changes of the web configuration
+        return new ChangeJournal(Path.of(properties.getDirectory()), new ObjectMapper(), properties);
+    }
+
+    @Bean(destroyMethod = "close")
+    public JournalReplayer journalReplayer(ChangeJournal changeJournal,
+                                           @Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                           DataSourceHealthMonitor healthMonitor,
+                                           CacheManager cacheManager,
+                                           TaskVersions taskVersions,
+                                           JournalProperties properties,
+                                           ObjectProvider<ShardCluster> shardCluster,
+                                           @Qualifier("secondaryDataSource") DataSource secondaryDataSource,
+                                           ObjectProvider<MemoryTaskStore> memoryTaskStore,
+                                           TaskSearchIndex searchIndex) {
+        JournalReplayer replayer = new JournalReplayer(changeJournal, primaryDataSource, healthMonitor, cacheManager,
+                taskVersions, properties);
+        shardCluster.ifAvailable(cluster -> replayer.setShardedTasks(new ShardedTaskRepository(cluster)));
+        replayer.setSecondaryStore(secondaryDataSource, memoryTaskStore.getIfAvailable(), searchIndex);
+        return replayer;
+    }
+}
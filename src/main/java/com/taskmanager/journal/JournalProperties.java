@@ -0,0 +1,38 @@
+package com.taskmanager.journal;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the journal of writes made to H2 while Postgres is unavailable.
+ */
+@Data
+@ConfigurationProperties("tasks.journal")
+public class JournalProperties {
+    /**
+     * Whether writes to the secondary datasource are journaled and replayed to Postgres.
+     */
+    private boolean enabled = true;
+    /**
+     * Directory of the journal file and of its checkpoint.
+     */
+    private String directory = "journal";
+    /**
+     * Maximum number of records written with one fsync.
+     */
+    private int maxSyncBatch = 1000;
+    /**
+     * Time a write waits for its record to be synced to disk.
+     */
+    private Duration syncTimeout = Duration.ofSeconds(5);
+    /**
+     * Number of records replayed to Postgres in one transaction.
+     */
+    private int replayBatchSize = 500;
+    /**
+     * Delay between two checks for records to replay, in addition to the replay started when Postgres is back.
+     */
+    private Duration replayInterval = Duration.ofSeconds(30);
+}
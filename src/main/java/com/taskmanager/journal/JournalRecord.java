@@ -0,0 +1,53 @@
+package com.taskmanager.journal;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.service.TaskChangeEvent;
+
+import java.time.Instant;
+
+/**
+ * One line of the journal: the state of a task after a change, or its id for a deletion.
+ *
+ * @param leaseExpiresAt end of the lease of a claimed task in epoch milliseconds, {@code null} without a lease
+ * @param completedAt    completion time of a completed task in epoch milliseconds, {@code null} when it isn't
+ *                       completed or the record was journaled before the completion time was kept
+ * @param baseVersion    version the task had before the change, {@code null} for a created task or a record
+ *                       journaled before the version was kept
+ */
+public record JournalRecord(TaskChangeType type, String uuid, String title, String description, Status status,
+                            Long leaseExpiresAt, Long completedAt, Long baseVersion, long timestamp) {
+
+    static JournalRecord of(TaskChangeEvent event) {
+        Instant leaseExpiresAt = event.task().getLeaseExpiresAt();
+        Instant completedAt = event.task().getCompletedAt();
+        return new JournalRecord(event.type(), event.task().getUuid(), event.task().getTitle(),
+                event.task().getDescription(), event.task().getStatus(),
+                leaseExpiresAt == null ? null : leaseExpiresAt.toEpochMilli(),
+                completedAt == null ? null : completedAt.toEpochMilli(), baseVersion(event),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Every change raises the version of a task by one, a deletion or an archiving reports the task as it was.
+     */
+    private static Long baseVersion(TaskChangeEvent event) {
+        Long version = event.task().getVersion();
+        if (event.type() == TaskChangeType.CREATED || version == null) {
+            return null;
+        }
+        boolean unchanged = event.type() == TaskChangeType.DELETED || event.type() == TaskChangeType.ARCHIVED;
+        return unchanged ? version : version - 1;
+    }
+
+    /**
+     * Completion time of a completed task, the time of the record for a completed task journaled without it, so
+     * the task is still archived once replayed.
+     */
+    Instant completion() {
+        if (status != Status.COMPLETED) {
+            return null;
+        }
+        return Instant.ofEpochMilli(completedAt == null ? timestamp : completedAt);
+    }
+}
@@ -0,0 +1,400 @@
+package com.taskmanager.journal;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.DataSourceRouteChangedEvent;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.repository.ShardedTaskRepository;
+import com.taskmanager.service.TaskSearchIndex;
+import com.taskmanager.service.TaskService;
+import com.taskmanager.service.TaskVersions;
+import com.taskmanager.store.MemoryTaskStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the {@link ChangeJournal} to Postgres once the health monitor routes to it again, and on a schedule
+ * while records are pending.
+ * <p>
+ * Records are applied in batches, one transaction per batch, and the checkpoint moves after every committed batch.
+ * A change is applied only while the task in Postgres still has the version the change started from, so a change
+ * made to Postgres meanwhile, through another instance, is never reverted, and a task is only inserted when
+ * Postgres holds no task with its uuid, not even in the archive, so deleted and archived tasks stay gone. Such
+ * records are skipped and counted as conflicts. A batch replayed twice after a crash is skipped the second time the
+ * same way. A task whose title was taken in Postgres in the meantime is kept with its uuid appended to the title.
+ * Archivings aren't replayed, Postgres archives the completed task itself.
+ * <p>
+ * Once the whole journal is replayed, the tasks of the secondary store and their search index are cleared, so the
+ * next failover starts from an empty store rather than serving and journaling the copies of the previous one.
+ * <p>
+ * When the tasks are sharded, every record is written to the shard of its task on its own, through the versioned
+ * writes of the {@link ShardedTaskRepository}.
+ */
+public class JournalReplayer implements MeterBinder, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(JournalReplayer.class);
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // a task is only created again when Postgres has never seen it, neither in the table nor in the archive
+    private static final String INSERT = "INSERT INTO tasks"
+            + " (title, description, status, lease_expires_at, completed_at, uuid)"
+            + " SELECT CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR),"
+            + " CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS UUID)"
+            + " WHERE NOT EXISTS (SELECT 1 FROM tasks WHERE uuid = ?)"
+            + " AND NOT EXISTS (SELECT 1 FROM tasks_archive WHERE uuid = ?)";
+
+    private static final String UPDATE_ANY_VERSION = "UPDATE tasks"
+            + " SET title = ?, description = ?, status = ?, lease_expires_at = ?, completed_at = ?,"
+            + " version = version + 1"
+            + " WHERE uuid = ?";
+
+    private static final String UPDATE = UPDATE_ANY_VERSION + " AND version = ?";
+
+    private static final String DELETE_ANY_VERSION = "DELETE FROM tasks WHERE uuid = ?";
+
+    private static final String DELETE = DELETE_ANY_VERSION + " AND version = ?";
+
+    private final ChangeJournal journal;
+    private final DataSource primaryDataSource;
+    private final DataSourceHealthMonitor healthMonitor;
+    private final CacheManager cacheManager;
+    private final TaskVersions taskVersions;
+    private final JournalProperties properties;
+    private final ScheduledExecutorService scheduler;
+
+    private ShardedTaskRepository shardedTasks;
+    private DataSource secondaryDataSource;
+    private MemoryTaskStore memoryTaskStore;
+    private TaskSearchIndex searchIndex;
+    private volatile boolean secondaryStale = true;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong renamed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public JournalReplayer(ChangeJournal journal, DataSource primaryDataSource, DataSourceHealthMonitor healthMonitor,
+                           CacheManager cacheManager, TaskVersions taskVersions, JournalProperties properties) {
+        this.journal = journal;
+        this.primaryDataSource = primaryDataSource;
+        this.healthMonitor = healthMonitor;
+        this.cacheManager = cacheManager;
+        this.taskVersions = taskVersions;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-journal-replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Replays to the shards rather than the primary datasource.
+     */
+    public void setShardedTasks(ShardedTaskRepository shardedTasks) {
+        this.shardedTasks = shardedTasks;
+    }
+
+    /**
+     * The secondary store, cleared once the journal is replayed: H2, or the in-memory store when it is given, and the
+     * search index of its tasks.
+     */
+    public void setSecondaryStore(DataSource secondaryDataSource, MemoryTaskStore memoryTaskStore,
+                                  TaskSearchIndex searchIndex) {
+        this.secondaryDataSource = secondaryDataSource;
+        this.memoryTaskStore = memoryTaskStore;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Starts replaying once the application is ready, when the first route is known and its database migrated.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = properties.getReplayInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::replaySafely, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        if (event.route() == DataSourceRoute.PRIMARY) {
+            scheduler.execute(this::replaySafely);
+        } else {
+            secondaryStale = true;
+        }
+    }
+
+    /**
+     * Replays pending records as long as connections go to Postgres. Called by the scheduler, exposed for tests.
+     */
+    public void replay() throws Exception {
+        while (journal.pendingBytes() > 0 && healthMonitor.currentRoute() == DataSourceRoute.PRIMARY) {
+            JournalBatch batch = journal.read(journal.checkpoint(), properties.getReplayBatchSize());
+            if (!batch.records().isEmpty()) {
+                apply(batch.records());
+                evict(batch.records());
+                taskVersions.changed();
+                replayed.addAndGet(batch.records().size());
+            }
+            journal.commit(batch.nextOffset());
+            if (batch.records().isEmpty()) {
+                break;
+            }
+        }
+        if (secondaryStale && journal.pendingBytes() == 0 && healthMonitor.currentRoute() == DataSourceRoute.PRIMARY) {
+            clearSecondaryStore();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tasks.journal.replayed", replayed, AtomicLong::get)
+                .description("Journal records replayed to Postgres")
+                .register(registry);
+        FunctionCounter.builder("tasks.journal.replay.conflicts", conflicts, AtomicLong::get)
+                .description("Journal records skipped because their task was changed in Postgres meanwhile")
+                .register(registry);
+        FunctionCounter.builder("tasks.journal.replay.renamed", renamed, AtomicLong::get)
+                .description("Replayed tasks renamed because their title was taken in Postgres")
+                .register(registry);
+        FunctionCounter.builder("tasks.journal.replay.failures", failures, AtomicLong::get)
+                .description("Replay attempts which failed and will be retried")
+                .register(registry);
+    }
+
+    private void replaySafely() {
+        try {
+            long before = replayed.get();
+            replay();
+            if (replayed.get() > before) {
+                customLogger.info("Replayed {} writes made to H2 to Postgres", replayed.get() - before);
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            customLogger.error("Replay of the journal to Postgres failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the tasks of the secondary store, which are all in Postgres now. A write committed to the secondary
+     * store right before the route changed, but not journaled yet, is deleted as well and only comes back with its
+     * replay.
+     */
+    private void clearSecondaryStore() throws SQLException {
+        secondaryStale = false;
+        int cleared;
+        if (memoryTaskStore != null) {
+            cleared = memoryTaskStore.clear();
+        } else if (secondaryDataSource != null) {
+            try (Connection connection = secondaryDataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                cleared = statement.executeUpdate("DELETE FROM tasks");
+                statement.executeUpdate("DELETE FROM tasks_archive");
+            }
+        } else {
+            return;
+        }
+        if (searchIndex != null) {
+            searchIndex.clear();
+        }
+        if (cleared > 0) {
+            customLogger.info("Cleared {} tasks from the secondary store, the journal is replayed to Postgres",
+                    cleared);
+        }
+    }
+
+    private void apply(List<JournalRecord> records) throws SQLException {
+        if (shardedTasks != null) {
+            records.forEach(this::applyToShards);
+            return;
+        }
+        try (Connection connection = primaryDataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT);
+                 PreparedStatement update = connection.prepareStatement(UPDATE);
+                 PreparedStatement updateAnyVersion = connection.prepareStatement(UPDATE_ANY_VERSION);
+                 PreparedStatement delete = connection.prepareStatement(DELETE);
+                 PreparedStatement deleteAnyVersion = connection.prepareStatement(DELETE_ANY_VERSION)) {
+                for (JournalRecord record : records) {
+                    boolean applied = switch (record.type()) {
+                        case ARCHIVED -> true;
+                        case DELETED -> delete(record.baseVersion() == null ? deleteAnyVersion : delete, record);
+                        case CREATED -> write(connection, insert, record);
+                        default -> write(connection, record.baseVersion() == null ? updateAnyVersion : update, record);
+                    };
+                    if (!applied) {
+                        conflict(record);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static boolean delete(PreparedStatement delete, JournalRecord record) throws SQLException {
+        delete.setObject(1, UUID.fromString(record.uuid()));
+        if (record.baseVersion() != null) {
+            delete.setLong(2, record.baseVersion());
+        }
+        return delete.executeUpdate() > 0;
+    }
+
+    /**
+     * Inserts or updates the task, with its uuid appended to the title when the title is taken in Postgres.
+     *
+     * @return {@code false} when the task has been changed, deleted, archived or created in Postgres meanwhile
+     */
+    private boolean write(Connection connection, PreparedStatement statement, JournalRecord record)
+            throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            boolean written = write(statement, record, record.title());
+            connection.releaseSavepoint(savepoint);
+            return written;
+        } catch (SQLException e) {
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw e;
+            }
+            connection.rollback(savepoint);
+            String title = record.title() + " (" + record.uuid() + ")";
+            boolean written = write(statement, record, title);
+            if (written) {
+                renamed.incrementAndGet();
+                customLogger.warn("Title of replayed task {} is taken in Postgres, renamed it to '{}'", record.uuid(),
+                        title);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Binds the statements in the same order: the task, then its uuid, then the uuid again for an insert, which
+     * checks the archive as well, or the version it started from for an update.
+     */
+    private static boolean write(PreparedStatement statement, JournalRecord record, String title) throws SQLException {
+        statement.setString(1, title);
+        statement.setString(2, record.description());
+        statement.setString(3, record.status() == null ? null : record.status().name());
+        statement.setTimestamp(4, record.leaseExpiresAt() == null ? null : new Timestamp(record.leaseExpiresAt()));
+        Instant completion = record.completion();
+        statement.setTimestamp(5, completion == null ? null : Timestamp.from(completion));
+        statement.setObject(6, UUID.fromString(record.uuid()));
+        if (record.type() == TaskChangeType.CREATED) {
+            statement.setObject(7, UUID.fromString(record.uuid()));
+            statement.setObject(8, UUID.fromString(record.uuid()));
+        } else if (record.baseVersion() != null) {
+            statement.setLong(7, record.baseVersion());
+        }
+        return statement.executeUpdate() > 0;
+    }
+
+    private void applyToShards(JournalRecord record) {
+        if (record.type() == TaskChangeType.ARCHIVED) {
+            return;
+        }
+        Long version = record.baseVersion();
+        if (version == null && record.type() != TaskChangeType.CREATED) {
+            // journaled before the version was kept, whichever version the task has now
+            version = shardedTasks.findById(record.uuid()).map(Task::getVersion).orElse(null);
+            if (version == null) {
+                conflict(record);
+                return;
+            }
+        }
+        if (record.type() == TaskChangeType.DELETED) {
+            if (!shardedTasks.deleteIfVersion(record.uuid(), version)) {
+                conflict(record);
+            }
+            return;
+        }
+        Task task = new Task();
+        task.setUuid(record.uuid());
+        task.setTitle(record.title());
+        task.setDescription(record.description());
+        task.setStatus(record.status());
+        task.setLeaseExpiresAt(record.leaseExpiresAt() == null ? null : Instant.ofEpochMilli(record.leaseExpiresAt()));
+        task.setCompletedAt(record.completion());
+        task.setVersion(version);
+        if (record.type() == TaskChangeType.CREATED && shardedTasks.existsById(record.uuid())) {
+            conflict(record);
+            return;
+        }
+        try {
+            if (writeToShards(task)) {
+                return;
+            }
+            task.setTitle(record.title() + " (" + record.uuid() + ")");
+            if (writeToShards(task)) {
+                renamed.incrementAndGet();
+                customLogger.warn("Title of replayed task {} is taken on the shards, renamed it to '{}'",
+                        record.uuid(), task.getTitle());
+                return;
+            }
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // changed or deleted meanwhile
+        }
+        conflict(record);
+    }
+
+    /**
+     * @return {@code false} when the title is taken
+     */
+    private boolean writeToShards(Task task) {
+        if (task.getVersion() == null) {
+            return shardedTasks.insertIfTitleAbsent(task);
+        }
+        try {
+            shardedTasks.save(task);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void conflict(JournalRecord record) {
+        conflicts.incrementAndGet();
+        customLogger.warn("Replayed {} of task {} is skipped, the task has been changed in Postgres meanwhile",
+                record.type(), record.uuid());
+    }
+
+    private void evict(List<JournalRecord> records) {
+        Cache cache = cacheManager.getCache(TaskService.TASKS_CACHE);
+        if (cache != null) {
+            records.forEach(record -> cache.evict(record.uuid()));
+        }
+    }
+}
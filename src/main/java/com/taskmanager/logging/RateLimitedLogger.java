@@ -0,0 +1,76 @@
+package com.taskmanager.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Logs at most one event per key and interval, for events which may repeat on every request or probe.
+ * Events dropped in between are counted and reported with the next logged event of the same key.
+ */
+public class RateLimitedLogger {
+
+    private final Logger logger;
+    private final long intervalNanos;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public RateLimitedLogger(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void warn(String key, String format, Object... arguments) {
+        log(Level.WARN, key, format, arguments);
+    }
+
+    public void error(String key, String format, Object... arguments) {
+        log(Level.ERROR, key, format, arguments);
+    }
+
+    private void log(Level level, String key, String format, Object... arguments) {
+        if (!logger.isEnabledForLevel(level)) {
+            return;
+        }
+        long suppressed = windows.computeIfAbsent(key, k -> new Window()).tryAcquire(System.nanoTime(), intervalNanos);
+        if (suppressed < 0) {
+            return;
+        }
+        if (suppressed == 0) {
+            logger.atLevel(level).log(format, arguments);
+        } else {
+            logger.atLevel(level).log(format + " ({} similar events suppressed)", append(arguments, suppressed));
+        }
+    }
+
+    private static Object[] append(Object[] arguments, Object argument) {
+        Object[] result = new Object[arguments.length + 1];
+        System.arraycopy(arguments, 0, result, 0, arguments.length);
+        result[arguments.length] = argument;
+        return result;
+    }
+
+    private static final class Window {
+
+        private long suppressed;
+        private long openedAtNanos;
+        private boolean opened;
+
+        /**
+         * @return the number of events suppressed since the last logged one, or -1 when this event is suppressed
+         */
+        synchronized long tryAcquire(long nowNanos, long intervalNanos) {
+            if (opened && nowNanos - openedAtNanos < intervalNanos) {
+                suppressed++;
+                return -1;
+            }
+            opened = true;
+            openedAtNanos = nowNanos;
+            long count = suppressed;
+            suppressed = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.taskmanager.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Schema(description = "Result of a single item of a batch request")
+public class BatchItemResult {
+    @Schema(example = "0", description = "Position of the item in the request")
+    private int index;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String uuid;
+    @Schema(example = "CREATED", description = "What happened to the item")
+    private BatchOutcome outcome;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+}
@@ -0,0 +1,10 @@
+package com.taskmanager.model;
+
+public enum BatchOutcome {
+    CREATED,
+    UPDATED,
+    DELETED,
+    DUPLICATE,
+    NOT_FOUND,
+    INVALID;
+}
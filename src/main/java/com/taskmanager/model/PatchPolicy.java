@@ -0,0 +1,41 @@
+package com.taskmanager.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tells the patcher how a field may be changed by a partial update.
+ * Fields without this annotation behave like {@link Mode#SKIP_BLANK}.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PatchPolicy {
+
+    Mode value();
+
+    /**
+     * Message of the error raised for {@link Mode#REJECT} fields.
+     */
+    String message() default "";
+
+    enum Mode {
+        /**
+         * Copy the new value, but ignore blank strings.
+         */
+        SKIP_BLANK,
+        /**
+         * Copy the new value, blank strings included.
+         */
+        ALLOW_BLANK,
+        /**
+         * Never copy the field, whatever the request contains.
+         */
+        IGNORE,
+        /**
+         * Fail the whole patch when the request contains a value for the field.
+         */
+        REJECT
+    }
+}
@@ -2,24 +2,31 @@ package com.taskmanager.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 @Data
 @Entity
 @Table(name = "tasks")
 @Schema(description = "Entity that represents task")
 public class Task {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @Convert(converter = TaskIdConverter.class)
+    @Schema(description = "Task id, assigned by the service when the task is created")
+    @PatchPolicy(value = PatchPolicy.Mode.REJECT, message = "It is not allowed to modify UUID")
     private String uuid;
 
     @Schema(example = "Every day task", description = "Task title specified by client")
@@ -33,4 +40,46 @@ public class Task {
     @Enumerated(EnumType.STRING)
     @NotNull(message = "Status can't be null")
     private Status status;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY,
+            description = "End of the lease of a claimed task, which returns to NEW unless completed before")
+    @PatchPolicy(PatchPolicy.Mode.IGNORE)
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY,
+            description = "When the task was completed, completed tasks are archived once older than the retention")
+    @PatchPolicy(PatchPolicy.Mode.IGNORE)
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Version
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY,
+            description = "Incremented by every change of the task, also sent as its ETag")
+    @PatchPolicy(PatchPolicy.Mode.IGNORE)
+    private Long version;
+
+    /**
+     * A lease only holds while the task is in progress, a completion time while it is completed.
+     */
+    @PrePersist
+    @PreUpdate
+    void followStatus() {
+        if (status != Status.IN_PROGRESS) {
+            leaseExpiresAt = null;
+        }
+        stampCompletion();
+    }
+
+    /**
+     * Sets the completion time when the task has just been completed, or clears it when it isn't completed.
+     */
+    public void stampCompletion() {
+        if (status != Status.COMPLETED) {
+            completedAt = null;
+        } else if (completedAt == null) {
+            // the precision both databases store
+            completedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        }
+    }
 }
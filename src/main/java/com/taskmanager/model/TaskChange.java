@@ -0,0 +1,18 @@
+package com.taskmanager.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Entry of the task change feed.
+ *
+ * @param sequence  position in the feed, increasing by one with every change
+ * @param type      kind of change, {@link TaskChangeType#RESET} when the client has to reload the tasks
+ * @param uuid      id of the changed task
+ * @param task      the task after the change, or before the deletion
+ * @param timestamp time of the change in milliseconds since the epoch
+ */
+@Schema(description = "Change of a task")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskChange(long sequence, TaskChangeType type, String uuid, Task task, long timestamp) {
+}
@@ -0,0 +1,10 @@
+package com.taskmanager.model;
+
+public enum TaskChangeType {
+    CREATED,
+    STATUS_CHANGED,
+    PATCHED,
+    DELETED,
+    ARCHIVED,
+    RESET
+}
@@ -0,0 +1,24 @@
+package com.taskmanager.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.UUID;
+
+/**
+ * Stores the task id, a string in the API, in a native {@code uuid} column: 16 bytes instead of a 36 character
+ * string, compared as a number.
+ */
+@Converter
+public class TaskIdConverter implements AttributeConverter<String, UUID> {
+
+    @Override
+    public UUID convertToDatabaseColumn(String uuid) {
+        return uuid == null ? null : UUID.fromString(uuid);
+    }
+
+    @Override
+    public String convertToEntityAttribute(UUID uuid) {
+        return uuid == null ? null : uuid.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.taskmanager.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+/**
+ * Number of tasks, in total and per status.
+ *
+ * @param total    number of tasks
+ * @param byStatus number of tasks of every status, including statuses without tasks
+ */
+@Schema(description = "Number of tasks per status")
+public record TaskStats(long total, Map<Status, Long> byStatus) {
+}
@@ -0,0 +1,301 @@
+package com.taskmanager.repository;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.store.MemoryTaskStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * {@link TaskRepository} on the {@link MemoryTaskStore}. Every call takes effect right away, so other transactions
+ * see its changes before its own commits. The changes of a call failing halfway are reverted, and so are those of a
+ * transaction rolling back, except on tasks changed again meanwhile, see {@link MemoryTaskStore.Undo}. Returned tasks
+ * are copies, a change is written by saving the task, and
+ * {@link #flush()} has nothing to do. Full-text search isn't supported, the application doesn't use it on the
+ * secondary store. Completed tasks aren't archived.
+ */
+public class MemoryTaskRepository implements TaskRepository {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(MemoryTaskRepository.class);
+
+    private final MemoryTaskStore store;
+
+    public MemoryTaskRepository(MemoryTaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean existsByTitle(String title) {
+        return store.titleExists(title);
+    }
+
+    @Override
+    public List<Task> findPage(String after, Status status, String titlePattern, Limit limit) {
+        return store.page(after, status, toPrefix(titlePattern), limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Task> streamAll(Status status, String titlePattern) {
+        return store.stream(status, toPrefix(titlePattern));
+    }
+
+    @Override
+    public List<Object[]> countByStatus() {
+        List<Object[]> counts = new ArrayList<>();
+        for (Map.Entry<Status, Long> count : store.countByStatus().entrySet()) {
+            counts.add(new Object[]{count.getKey(), count.getValue()});
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean insertIfTitleAbsent(Task task) {
+        return write(undo -> store.insert(task, undo));
+    }
+
+    @Override
+    public int[] insertAllIfTitleAbsent(List<Task> tasks) {
+        return write(undo -> tasks.stream().mapToInt(task -> store.insert(task, undo) ? 1 : 0).toArray());
+    }
+
+    @Override
+    public List<Task> search(String query, int offset, int limit) {
+        throw unsupported();
+    }
+
+    @Override
+    public List<Task> claimNew(int limit, Instant leaseExpiresAt) {
+        return write(undo -> store.claim(limit, leaseExpiresAt, undo));
+    }
+
+    @Override
+    public List<Task> releaseExpiredLeases(Instant now, int limit) {
+        return write(undo -> store.releaseExpired(now, limit, undo));
+    }
+
+    @Override
+    public int[] importAll(List<Task> tasks) {
+        return insertAllIfTitleAbsent(tasks);
+    }
+
+    @Override
+    public List<Task> archiveCompleted(Instant completedBefore, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public List<Task> findArchivedPage(String after, Status status, String titlePattern, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public Optional<Task> findArchivedById(String uuid) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean copyAllAsCsv(OutputStream outputStream) {
+        return false;
+    }
+
+    /**
+     * The store belongs to this instance, which counts its changes itself.
+     */
+    @Override
+    public OptionalLong listVersion() {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Updates the task when it has a version, otherwise inserts it.
+     */
+    @Override
+    public <S extends Task> S save(S entity) {
+        return write(undo -> save(entity, undo));
+    }
+
+    @Override
+    public <S extends Task> List<S> saveAll(Iterable<S> entities) {
+        return write(undo -> {
+            List<S> saved = new ArrayList<>();
+            entities.forEach(entity -> saved.add(save(entity, undo)));
+            return saved;
+        });
+    }
+
+    @Override
+    public Optional<Task> findById(String uuid) {
+        return store.find(uuid);
+    }
+
+    @Override
+    public boolean existsById(String uuid) {
+        return store.exists(uuid);
+    }
+
+    @Override
+    public List<Task> findAll() {
+        try (Stream<Task> tasks = store.stream(null, null)) {
+            return tasks.toList();
+        }
+    }
+
+    @Override
+    public List<Task> findAllById(Iterable<String> uuids) {
+        List<Task> tasks = new ArrayList<>();
+        uuids.forEach(uuid -> store.find(uuid).ifPresent(tasks::add));
+        return tasks;
+    }
+
+    @Override
+    public long count() {
+        return store.size();
+    }
+
+    @Override
+    public void deleteById(String uuid) {
+        write(undo -> store.delete(uuid, undo));
+    }
+
+    @Override
+    public void delete(Task entity) {
+        deleteById(entity.getUuid());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> uuids) {
+        write(undo -> {
+            uuids.forEach(uuid -> store.delete(uuid, undo));
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Task> entities) {
+        write(undo -> {
+            entities.forEach(entity -> store.delete(entity.getUuid(), undo));
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAll(findAll());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<String> uuids) {
+        deleteAllById(uuids);
+    }
+
+    private <S extends Task> S save(S entity, MemoryTaskStore.Undo undo) {
+        if (entity.getVersion() == null) {
+            if (!store.insert(entity, undo)) {
+                throw new DuplicateKeyException("Task with the same title or id already exists");
+            }
+            entity.setVersion(0L);
+            return entity;
+        }
+        Task saved = store.update(entity, undo);
+        entity.setVersion(saved.getVersion());
+        entity.setLeaseExpiresAt(saved.getLeaseExpiresAt());
+        return entity;
+    }
+
+    /**
+     * Runs the changes of one call, recorded in the undo of the surrounding transaction. They are reverted right
+     * away when the call fails, so a call changing many tasks changes all of them or none.
+     */
+    private <T> T write(Function<MemoryTaskStore.Undo, T> changes) {
+        MemoryTaskStore.Undo undo = transactionUndo();
+        int size = undo.size();
+        try {
+            return changes.apply(undo);
+        } catch (RuntimeException e) {
+            undo.revert(size);
+            throw e;
+        }
+    }
+
+    /**
+     * The undo of the current transaction, registered to revert its changes if it rolls back. Outside a transaction
+     * every call gets an undo of its own.
+     */
+    private MemoryTaskStore.Undo transactionUndo() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return store.undo();
+        }
+        // the synchronizations of an outer transaction are set aside while an inner one runs
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Rollback rollback && rollback.repository() == this) {
+                return rollback.undo;
+            }
+        }
+        Rollback rollback = new Rollback();
+        TransactionSynchronizationManager.registerSynchronization(rollback);
+        return rollback.undo;
+    }
+
+    /**
+     * Turns the escaped {@code LIKE} pattern of a title prefix back into the prefix.
+     */
+    static String toPrefix(String titlePattern) {
+        if (titlePattern == null) {
+            return null;
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < titlePattern.length() - 1; i++) {
+            char c = titlePattern.charAt(i);
+            if (c == '\\') {
+                c = titlePattern.charAt(++i);
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Not supported by the in-memory task store");
+    }
+
+    /**
+     * Reverts the changes of a transaction once it rolled back.
+     */
+    private final class Rollback implements TransactionSynchronization {
+
+        private final MemoryTaskStore.Undo undo = store.undo();
+
+        MemoryTaskRepository repository() {
+            return MemoryTaskRepository.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_ROLLED_BACK) {
+                return;
+            }
+            int kept = undo.revert(0);
+            if (kept > 0) {
+                customLogger.warn("Kept {} changes of a rolled back transaction, their tasks were changed again", kept);
+            }
+        }
+    }
+}
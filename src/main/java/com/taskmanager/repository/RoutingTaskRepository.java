@@ -0,0 +1,65 @@
+package com.taskmanager.repository;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.RoutingDataSource;
+import org.springframework.aop.framework.AopInfrastructureBean;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Sends every call of a {@link TaskRepository} to the primary repository while connections go to Postgres, and to
+ * the secondary repository otherwise. The route of every call is recorded for {@link RoutingDataSource#lastRoute()},
+ * so the changes made through the secondary repository are journaled like those written to H2.
+ */
+public final class RoutingTaskRepository implements InvocationHandler {
+
+    private final TaskRepository primary;
+    private final TaskRepository secondary;
+    private final DataSourceHealthMonitor healthMonitor;
+
+    private RoutingTaskRepository(TaskRepository primary, TaskRepository secondary,
+                                  DataSourceHealthMonitor healthMonitor) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.healthMonitor = healthMonitor;
+    }
+
+    /**
+     * The proxy is marked as AOP infrastructure, so it isn't wrapped into the transactions declared by
+     * {@link TaskRepository}: the JPA repository starts its own, the sharded and in-memory ones need none.
+     */
+    public static TaskRepository create(TaskRepository primary, TaskRepository secondary,
+                                        DataSourceHealthMonitor healthMonitor) {
+        return (TaskRepository) Proxy.newProxyInstance(TaskRepository.class.getClassLoader(),
+                new Class<?>[]{TaskRepository.class, AopInfrastructureBean.class},
+                new RoutingTaskRepository(primary, secondary, healthMonitor));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> toString();
+            };
+        }
+        DataSourceRoute route = healthMonitor.currentRoute();
+        RoutingDataSource.markRoute(route);
+        TaskRepository target = route == DataSourceRoute.SECONDARY ? secondary : primary;
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingTaskRepository";
+    }
+}
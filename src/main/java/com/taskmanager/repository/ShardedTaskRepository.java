@@ -0,0 +1,824 @@
+package com.taskmanager.repository;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.shard.HashRing;
+import com.taskmanager.shard.ShardCluster;
+import com.taskmanager.shard.TaskRows;
+import com.taskmanager.shard.TitleDirectory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link TaskRepository} on the shards of a {@link ShardCluster}. A task is read and written on the shard the ring
+ * assigns to its uuid. Queries over all tasks ask every shard at once for a sorted batch and merge the batches while
+ * they are consumed, fetching the next batch of a shard once its last one is used up. Titles are kept unique across
+ * the shards by the {@link TitleDirectory}.
+ * <p>
+ * Every call takes effect right away and isn't rolled back with the surrounding transaction, and a write to the
+ * directory and a shard isn't atomic: a title is given up again when its task can't be written, and a title left
+ * claimed by a write stopped halfway is given up once it is older than {@code titleClaimTimeout}. Many tasks are
+ * inserted with one batch for the directory and one per shard. Rows of a shard which the ring assigns to another
+ * one, copies made or left behind by a resharding, are skipped by every query, although counts include them while a
+ * resharding runs. Claims take the oldest {@code NEW} tasks of one shard after the other, starting with another
+ * shard every time. Full-text search needs Postgres shards. Completed tasks aren't archived.
+ */
+public class ShardedTaskRepository implements TaskRepository {
+
+    private static final String SELECT_NEW = TaskRows.SELECT
+            + " WHERE status = 'NEW'"
+            + " ORDER BY uuid"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    private static final String SELECT_EXPIRED = TaskRows.SELECT
+            + " WHERE status = 'IN_PROGRESS' AND lease_expires_at < ?"
+            + " ORDER BY lease_expires_at"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    private static final String SELECT_LIST_VERSION = "SELECT sum(version) FROM tasks_list_version";
+
+    private static final String UPDATE_LEASE = "UPDATE tasks"
+            + " SET status = ?, lease_expires_at = ?, version = version + 1"
+            + " WHERE uuid = ?";
+
+    private static final String UPDATE = "UPDATE tasks"
+            + " SET title = ?, description = ?, status = ?, lease_expires_at = ?, completed_at = ?,"
+            + " version = version + 1"
+            + " WHERE uuid = ? AND version = ?";
+
+    private static final String SEARCH = "SELECT uuid, title, description, status, version, lease_expires_at,"
+            + " completed_at, ts_rank_cd(search_vector, query)"
+            + " FROM tasks, plainto_tsquery('simple', ?) query"
+            + " WHERE search_vector @@ query"
+            + " ORDER BY 8 DESC, uuid"
+            + " LIMIT ?";
+
+    private final ShardCluster cluster;
+    private final AtomicInteger nextClaimShard = new AtomicInteger();
+
+    public ShardedTaskRepository(ShardCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * A title held by a task which doesn't have it on its shard only counts until it is given up, see
+     * {@link #releaseOrphaned(String, String)}.
+     */
+    @Override
+    public boolean existsByTitle(String title) {
+        String owner = cluster.titles().owner(title);
+        return owner != null && !releaseOrphaned(title, owner);
+    }
+
+    @Override
+    public List<Task> findPage(String after, Status status, String titlePattern, Limit limit) {
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        Iterator<Task> tasks = merge(after, status, titlePattern, Math.min(max, cluster.properties().getBatchSize()));
+        List<Task> page = new ArrayList<>();
+        while (page.size() < max && tasks.hasNext()) {
+            page.add(tasks.next());
+        }
+        return page;
+    }
+
+    /**
+     * Holds no connection between batches, so the stream doesn't need to be consumed inside a transaction.
+     */
+    @Override
+    public Stream<Task> streamAll(Status status, String titlePattern) {
+        Iterator<Task> tasks = merge(null, status, titlePattern, cluster.properties().getBatchSize());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tasks,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    @Override
+    public List<Object[]> countByStatus() {
+        Map<Status, Long> counts = new LinkedHashMap<>();
+        for (Map<Status, Long> shardCounts : cluster.scatter(cluster.ring(), shard -> cluster.onShard(shard, connection -> {
+            Map<Status, Long> shardCount = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT status, COUNT(*) FROM tasks GROUP BY status")) {
+                while (resultSet.next()) {
+                    String status = resultSet.getString(1);
+                    shardCount.put(status == null ? null : Status.valueOf(status), resultSet.getLong(2));
+                }
+            }
+            return shardCount;
+        }))) {
+            shardCounts.forEach((status, count) -> counts.merge(status, count, Long::sum));
+        }
+        List<Object[]> rows = new ArrayList<>();
+        counts.forEach((status, count) -> rows.add(new Object[]{status, count}));
+        return rows;
+    }
+
+    @Override
+    public boolean insertIfTitleAbsent(Task task) {
+        return cluster.write(() -> insert(task));
+    }
+
+    /**
+     * Claims the titles in one batch, then writes the tasks of every shard in one batch, see
+     * {@link #insertAllClaimed(String, List)}. When a shard fails, the titles of the tasks not written to it or
+     * to the shards after it are given up.
+     */
+    @Override
+    public int[] insertAllIfTitleAbsent(List<Task> tasks) {
+        return cluster.write(() -> {
+            boolean[] claimed = cluster.titles().claimAll(tasks);
+            Map<String, List<Task>> byShard = new LinkedHashMap<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                if (claimed[i] || claimTitle(task.getTitle(), task.getUuid())) {
+                    byShard.computeIfAbsent(cluster.shardFor(task.getUuid()), shard -> new ArrayList<>()).add(task);
+                }
+            }
+            // the same task may be given twice, only one of them is written then
+            Set<Task> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<String> shards = new ArrayList<>(byShard.keySet());
+            for (int i = 0; i < shards.size(); i++) {
+                try {
+                    inserted.addAll(insertAllClaimed(shards.get(i), byShard.get(shards.get(i))));
+                } catch (RuntimeException e) {
+                    shards.subList(i + 1, shards.size()).forEach(shard -> releaseTitles(byShard.get(shard)));
+                    throw e;
+                }
+            }
+            return tasks.stream().mapToInt(task -> inserted.contains(task) ? 1 : 0).toArray();
+        });
+    }
+
+    /**
+     * Every shard returns its best ranked tasks up to the end of the requested page, which are merged by rank.
+     */
+    @Override
+    public List<Task> search(String query, int offset, int limit) {
+        HashRing ring = cluster.ring();
+        List<List<RankedTask>> ranked = cluster.scatter(ring, shard -> cluster.onShard(shard, connection -> {
+            List<RankedTask> tasks = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SEARCH)) {
+                statement.setString(1, query);
+                statement.setInt(2, offset + limit);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Task task = TaskRows.toTask(resultSet);
+                        if (shard.equals(ring.shardFor(task.getUuid()))) {
+                            tasks.add(new RankedTask(task, resultSet.getFloat(8)));
+                        }
+                    }
+                }
+            }
+            return tasks;
+        }));
+        return ranked.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(RankedTask::rank).reversed()
+                        .thenComparing(rankedTask -> rankedTask.task().getUuid()))
+                .skip(offset)
+                .limit(limit)
+                .map(RankedTask::task)
+                .toList();
+    }
+
+    @Override
+    public List<Task> claimNew(int limit, Instant leaseExpiresAt) {
+        return moveOnShards(limit, (connection, remaining) -> {
+            PreparedStatement select = connection.prepareStatement(SELECT_NEW);
+            select.setInt(1, remaining);
+            return select;
+        }, Status.IN_PROGRESS, leaseExpiresAt);
+    }
+
+    @Override
+    public List<Task> releaseExpiredLeases(Instant now, int limit) {
+        return moveOnShards(limit, (connection, remaining) -> {
+            PreparedStatement select = connection.prepareStatement(SELECT_EXPIRED);
+            select.setTimestamp(1, Timestamp.from(now));
+            select.setInt(2, remaining);
+            return select;
+        }, Status.NEW, null);
+    }
+
+    @Override
+    public int[] importAll(List<Task> tasks) {
+        return insertAllIfTitleAbsent(tasks);
+    }
+
+    @Override
+    public List<Task> archiveCompleted(Instant completedBefore, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public List<Task> findArchivedPage(String after, Status status, String titlePattern, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public Optional<Task> findArchivedById(String uuid) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean copyAllAsCsv(OutputStream outputStream) {
+        return false;
+    }
+
+    /**
+     * The sum of the versions of every configured shard, on the ring or not, so tasks moved by the resharder
+     * count on both shards and the sum never returns to an earlier value.
+     */
+    @Override
+    public OptionalLong listVersion() {
+        long sum = 0;
+        for (OptionalLong version : cluster.scatter(cluster.shardNames(), shard -> cluster.onShard(shard,
+                connection -> {
+                    if (!ShardCluster.isPostgres(connection)) {
+                        return OptionalLong.empty();
+                    }
+                    try (Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery(SELECT_LIST_VERSION)) {
+                        resultSet.next();
+                        return OptionalLong.of(resultSet.getLong(1));
+                    }
+                }))) {
+            if (version.isEmpty()) {
+                return OptionalLong.empty();
+            }
+            sum += version.getAsLong();
+        }
+        return OptionalLong.of(sum);
+    }
+
+    /**
+     * Deletes the task only while it still has the given version, for the replay of the journal.
+     *
+     * @return {@code false} when the task doesn't exist or has another version, nothing has been deleted then
+     */
+    public boolean deleteIfVersion(String uuid, long version) {
+        return cluster.write(() -> delete(uuid, version) != null);
+    }
+
+    /**
+     * Updates the task when it has a version, otherwise inserts it.
+     */
+    @Override
+    public <S extends Task> S save(S entity) {
+        if (entity.getVersion() == null) {
+            if (!insertIfTitleAbsent(entity)) {
+                throw new DuplicateKeyException("Task with the same title or id already exists");
+            }
+            entity.setVersion(0L);
+            return entity;
+        }
+        return cluster.write(() -> update(entity));
+    }
+
+    @Override
+    public <S extends Task> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public Optional<Task> findById(String uuid) {
+        return Optional.ofNullable(cluster.onShard(cluster.shardFor(uuid), connection -> TaskRows.find(connection, uuid)));
+    }
+
+    @Override
+    public boolean existsById(String uuid) {
+        return findById(uuid).isPresent();
+    }
+
+    @Override
+    public List<Task> findAll() {
+        try (Stream<Task> tasks = streamAll(null, null)) {
+            return tasks.toList();
+        }
+    }
+
+    /**
+     * One query per shard holding some of the tasks.
+     */
+    @Override
+    public List<Task> findAllById(Iterable<String> uuids) {
+        HashRing ring = cluster.ring();
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        uuids.forEach(uuid -> byShard.computeIfAbsent(ring.shardFor(uuid), shard -> new ArrayList<>()).add(uuid));
+        List<Task> tasks = new ArrayList<>();
+        byShard.forEach((shard, shardUuids) -> tasks.addAll(cluster.onShard(shard, connection -> {
+            String placeholders = String.join(", ", shardUuids.stream().map(uuid -> "?").toList());
+            try (PreparedStatement statement = connection.prepareStatement(
+                    TaskRows.SELECT + " WHERE uuid IN (" + placeholders + ")")) {
+                for (int i = 0; i < shardUuids.size(); i++) {
+                    statement.setObject(i + 1, UUID.fromString(shardUuids.get(i)));
+                }
+                List<Task> found = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        found.add(TaskRows.toTask(resultSet));
+                    }
+                }
+                return found;
+            }
+        })));
+        return tasks;
+    }
+
+    @Override
+    public long count() {
+        return cluster.scatter(cluster.ring(), shard -> cluster.onShard(shard, connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM tasks")) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        })).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public void deleteById(String uuid) {
+        cluster.write(() -> delete(uuid));
+    }
+
+    @Override
+    public void delete(Task entity) {
+        deleteById(entity.getUuid());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> uuids) {
+        uuids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Task> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        findAll().forEach(this::delete);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<String> uuids) {
+        deleteAllById(uuids);
+    }
+
+    /**
+     * Claims the title in the directory, then writes the task to its shard.
+     */
+    private boolean insert(Task task) {
+        return (task.getTitle() == null || claimTitle(task.getTitle(), task.getUuid())) && insertClaimed(task);
+    }
+
+    /**
+     * Writes a task whose title is claimed to its shard, giving up the title when the task isn't written.
+     */
+    private boolean insertClaimed(Task task) {
+        String uuid = task.getUuid();
+        String title = task.getTitle();
+        String shard = cluster.shardFor(uuid);
+        try {
+            cluster.onShard(shard, connection -> withStaleTitlePurged(connection, shard, title, c -> {
+                TaskRows.insert(c, task);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            if (title != null) {
+                cluster.titles().release(title, uuid);
+            }
+            // the id is taken
+            if (e instanceof DataIntegrityViolationException) {
+                return false;
+            }
+            throw e;
+        }
+        cluster.written(uuid);
+        return true;
+    }
+
+    /**
+     * Claims a new title before the row is updated, and gives up the previous one after.
+     */
+    private <S extends Task> S update(S task) {
+        String uuid = task.getUuid();
+        String shard = cluster.shardFor(uuid);
+        Task current = cluster.onShard(shard, connection -> TaskRows.find(connection, uuid));
+        if (current == null) {
+            throw new ObjectOptimisticLockingFailureException(Task.class, uuid);
+        }
+        String title = task.getTitle();
+        boolean renamed = !Objects.equals(current.getTitle(), title);
+        if (renamed && title != null && !claimTitle(title, uuid)) {
+            throw new DuplicateKeyException("Task with the same title already exists");
+        }
+        Instant leaseExpiresAt = task.getStatus() == Status.IN_PROGRESS ? task.getLeaseExpiresAt() : null;
+        int updated;
+        try {
+            updated = cluster.onShard(shard, connection -> withStaleTitlePurged(connection, shard, title, c -> {
+                try (PreparedStatement statement = c.prepareStatement(UPDATE)) {
+                    statement.setString(1, title);
+                    statement.setString(2, task.getDescription());
+                    statement.setString(3, task.getStatus() == null ? null : task.getStatus().name());
+                    statement.setTimestamp(4, leaseExpiresAt == null ? null : Timestamp.from(leaseExpiresAt));
+                    TaskRows.bindCompletion(statement, 5, task);
+                    statement.setObject(6, UUID.fromString(uuid));
+                    statement.setLong(7, task.getVersion());
+                    return statement.executeUpdate();
+                }
+            }));
+        } catch (RuntimeException e) {
+            if (renamed && title != null) {
+                cluster.titles().release(title, uuid);
+            }
+            throw e;
+        }
+        if (updated == 0) {
+            if (renamed && title != null) {
+                cluster.titles().release(title, uuid);
+            }
+            throw new ObjectOptimisticLockingFailureException(Task.class, uuid);
+        }
+        if (renamed && current.getTitle() != null) {
+            cluster.titles().release(current.getTitle(), uuid);
+        }
+        cluster.written(uuid);
+        task.setVersion(task.getVersion() + 1);
+        task.setLeaseExpiresAt(leaseExpiresAt);
+        return task;
+    }
+
+    /**
+     * Inserts the tasks of one shard, whose titles are claimed, in one batch. When one of them conflicts, its id
+     * being taken or a copy left behind holding its title, the batch is rolled back and they are inserted one by
+     * one instead. The titles of the tasks which aren't written are given up.
+     *
+     * @return the tasks written
+     */
+    private List<Task> insertAllClaimed(String shard, List<Task> tasks) {
+        boolean batched;
+        try {
+            batched = cluster.inTransaction(shard, connection -> {
+                try {
+                    TaskRows.insertAll(connection, tasks);
+                    return true;
+                } catch (SQLException e) {
+                    if (!TaskRows.isUniqueViolation(e)) {
+                        throw e;
+                    }
+                    connection.rollback();
+                    return false;
+                }
+            });
+        } catch (RuntimeException e) {
+            releaseTitles(tasks);
+            throw e;
+        }
+        if (batched) {
+            tasks.forEach(task -> cluster.written(task.getUuid()));
+            return tasks;
+        }
+        List<Task> inserted = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                if (insertClaimed(tasks.get(i))) {
+                    inserted.add(tasks.get(i));
+                }
+            } catch (RuntimeException e) {
+                // the title of the failed task is given up already
+                releaseTitles(tasks.subList(i + 1, tasks.size()));
+                throw e;
+            }
+        }
+        return inserted;
+    }
+
+    private void releaseTitles(List<Task> tasks) {
+        for (Task task : tasks) {
+            if (task.getTitle() != null) {
+                cluster.titles().release(task.getTitle(), task.getUuid());
+            }
+        }
+    }
+
+    private Void delete(String uuid) {
+        delete(uuid, null);
+        return null;
+    }
+
+    /**
+     * @return the deleted task, {@code null} when there was none with the version, if one is given
+     */
+    private Task delete(String uuid, Long version) {
+        String shard = cluster.shardFor(uuid);
+        Task deleted = cluster.inTransaction(shard, connection -> {
+            Task task = TaskRows.find(connection, uuid);
+            if (task == null) {
+                return null;
+            }
+            if (version == null) {
+                TaskRows.delete(connection, uuid);
+                return task;
+            }
+            return TaskRows.delete(connection, uuid, version) > 0 ? task : null;
+        });
+        if (deleted != null) {
+            if (deleted.getTitle() != null) {
+                cluster.titles().release(deleted.getTitle(), uuid);
+            }
+            cluster.written(uuid);
+        }
+        return deleted;
+    }
+
+    /**
+     * Claims the title in the directory, taking it over from a task which doesn't have it, see
+     * {@link #releaseOrphaned(String, String)}.
+     */
+    private boolean claimTitle(String title, String uuid) {
+        if (cluster.titles().claim(title, uuid)) {
+            return true;
+        }
+        String owner = cluster.titles().owner(title);
+        if (owner == null) {
+            return cluster.titles().claim(title, uuid);
+        }
+        return releaseOrphaned(title, owner) && cluster.titles().claim(title, uuid);
+    }
+
+    /**
+     * Gives up a title held by a task which doesn't have it on its shard for longer than {@code titleClaimTimeout},
+     * left behind by a write stopped halfway, so it doesn't keep the title taken. A younger claim may belong to a
+     * write still running.
+     *
+     * @return whether the title was given up
+     */
+    private boolean releaseOrphaned(String title, String owner) {
+        Task task = findById(owner).orElse(null);
+        if (task != null && title.equals(task.getTitle())) {
+            return false;
+        }
+        Instant claimedBefore = Instant.now().minus(cluster.properties().getTitleClaimTimeout());
+        return cluster.titles().releaseStale(title, owner, claimedBefore);
+    }
+
+    /**
+     * Runs a write to the shard, and runs it again once if it conflicted with a row the shard doesn't own, a copy
+     * whose title is no longer taken, after deleting that row.
+     */
+    private <T> T withStaleTitlePurged(Connection connection, String shard, String title,
+                                       ShardCluster.SqlWork<T> write) throws SQLException {
+        try {
+            return write.run(connection);
+        } catch (SQLException e) {
+            if (!TaskRows.UNIQUE_VIOLATION.equals(e.getSQLState()) || title == null) {
+                throw e;
+            }
+            String uuid = TaskRows.findByTitle(connection, title);
+            if (uuid == null || shard.equals(cluster.shardFor(uuid))) {
+                throw e;
+            }
+            TaskRows.delete(connection, uuid);
+            cluster.written(uuid);
+            return write.run(connection);
+        }
+    }
+
+    /**
+     * Locks up to {@code limit} tasks selected on one shard after the other and moves them to the status, one
+     * transaction per shard.
+     */
+    private List<Task> moveOnShards(int limit, LockingSelect select, Status status, Instant leaseExpiresAt) {
+        List<String> shards = cluster.ring().shards();
+        int first = Math.floorMod(nextClaimShard.getAndIncrement(), shards.size());
+        List<Task> moved = new ArrayList<>();
+        for (int i = 0; i < shards.size() && moved.size() < limit; i++) {
+            String shard = shards.get((first + i) % shards.size());
+            int remaining = limit - moved.size();
+            moved.addAll(cluster.write(() -> {
+                List<Task> tasks = cluster.inTransaction(shard, connection -> {
+                    try (PreparedStatement statement = select.prepare(connection, remaining)) {
+                        return moveLocked(connection, shard, statement, status, leaseExpiresAt);
+                    }
+                });
+                // noted once committed, so a copy made from now on sees the change
+                tasks.forEach(task -> cluster.written(task.getUuid()));
+                return tasks;
+            }));
+        }
+        return moved;
+    }
+
+    private List<Task> moveLocked(Connection connection, String shard, PreparedStatement select, Status status,
+                                  Instant leaseExpiresAt) throws SQLException {
+        List<Task> tasks = new ArrayList<>();
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                Task task = TaskRows.toTask(resultSet);
+                if (shard.equals(cluster.shardFor(task.getUuid()))) {
+                    tasks.add(task);
+                }
+            }
+        }
+        if (tasks.isEmpty()) {
+            return tasks;
+        }
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_LEASE)) {
+            for (Task task : tasks) {
+                update.setString(1, status.name());
+                update.setTimestamp(2, leaseExpiresAt == null ? null : Timestamp.from(leaseExpiresAt));
+                update.setObject(3, UUID.fromString(task.getUuid()));
+                update.addBatch();
+                task.setStatus(status);
+                task.setLeaseExpiresAt(leaseExpiresAt);
+                task.setVersion(task.getVersion() + 1);
+            }
+            update.executeBatch();
+        }
+        return tasks;
+    }
+
+    /**
+     * Merges the tasks of all shards of the current ring ordered by uuid, the first batch of every shard is read
+     * at once.
+     */
+    private Iterator<Task> merge(String after, Status status, String titlePattern, int batchSize) {
+        HashRing ring = cluster.ring();
+        List<ShardCursor> cursors = cluster.scatter(ring, shard -> {
+            ShardCursor cursor = new ShardCursor(shard, ring, after, status, titlePattern, batchSize);
+            cursor.peek();
+            return cursor;
+        });
+        return new MergeIterator(cursors);
+    }
+
+    @FunctionalInterface
+    private interface LockingSelect {
+        PreparedStatement prepare(Connection connection, int limit) throws SQLException;
+    }
+
+    private record RankedTask(Task task, float rank) {
+    }
+
+    /**
+     * Tasks of one shard ordered by uuid, read in batches with a keyset query. Rows the shard doesn't own on the
+     * ring are skipped.
+     */
+    private final class ShardCursor {
+
+        private final String shard;
+        private final HashRing ring;
+        private final Status status;
+        private final String titlePattern;
+        private final int batchSize;
+        private final Deque<Task> batch = new ArrayDeque<>();
+        private String after;
+        private boolean exhausted;
+
+        ShardCursor(String shard, HashRing ring, String after, Status status, String titlePattern, int batchSize) {
+            this.shard = shard;
+            this.ring = ring;
+            this.after = after;
+            this.status = status;
+            this.titlePattern = titlePattern;
+            this.batchSize = batchSize;
+        }
+
+        Task peek() {
+            while (batch.isEmpty() && !exhausted) {
+                fetch();
+            }
+            return batch.peek();
+        }
+
+        Task next() {
+            if (peek() == null) {
+                throw new NoSuchElementException();
+            }
+            return batch.poll();
+        }
+
+        private void fetch() {
+            List<Task> tasks = cluster.onShard(shard, connection -> {
+                List<String> conditions = new ArrayList<>();
+                if (after != null) {
+                    conditions.add("uuid > ?");
+                }
+                if (status != null) {
+                    conditions.add("status = ?");
+                }
+                if (titlePattern != null) {
+                    conditions.add("title LIKE ? ESCAPE '\\'");
+                }
+                String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        TaskRows.SELECT + where + " ORDER BY uuid LIMIT ?")) {
+                    int index = 1;
+                    if (after != null) {
+                        statement.setObject(index++, UUID.fromString(after));
+                    }
+                    if (status != null) {
+                        statement.setString(index++, status.name());
+                    }
+                    if (titlePattern != null) {
+                        statement.setString(index++, titlePattern);
+                    }
+                    statement.setInt(index, batchSize);
+                    List<Task> fetched = new ArrayList<>();
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            fetched.add(TaskRows.toTask(resultSet));
+                        }
+                    }
+                    return fetched;
+                }
+            });
+            exhausted = tasks.size() < batchSize;
+            for (Task task : tasks) {
+                after = task.getUuid();
+                if (shard.equals(ring.shardFor(task.getUuid()))) {
+                    batch.add(task);
+                }
+            }
+        }
+    }
+
+    /**
+     * K-way merge of the shard cursors, the cursor with the smallest next uuid first. Canonical uuid strings sort
+     * like the uuid columns.
+     */
+    private static final class MergeIterator implements Iterator<Task> {
+
+        private final PriorityQueue<ShardCursor> cursors =
+                new PriorityQueue<>(Comparator.comparing((ShardCursor cursor) -> cursor.peek().getUuid()));
+
+        MergeIterator(List<ShardCursor> cursors) {
+            for (ShardCursor cursor : cursors) {
+                if (cursor.peek() != null) {
+                    this.cursors.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Task next() {
+            ShardCursor cursor = cursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            Task task = cursor.next();
+            if (cursor.peek() != null) {
+                cursors.add(cursor);
+            }
+            return task;
+        }
+    }
+}
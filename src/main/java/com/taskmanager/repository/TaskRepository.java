@@ -1,11 +1,80 @@
 package com.taskmanager.repository;
 
 
+import com.taskmanager.model.Status;
 import com.taskmanager.model.Task;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Query methods run in read-only transactions unless called inside a read-write one, so they are served by a read
+ * replica when one is configured.
+ * <p>
+ * Only the CRUD methods are exposed, plus {@link #flush()} and {@link #deleteAllByIdInBatch(Iterable)} of the JPA
+ * repository, so the sharded and in-memory repositories implement every method rather than leaving queries by
+ * example, sorted and paged queries unsupported.
+ */
 @Repository
-public interface TaskRepository extends JpaRepository<Task, String> {
+@Transactional(readOnly = true)
+public interface TaskRepository extends ListCrudRepository<Task, String>, TaskRepositoryCustom {
     boolean existsByTitle(String title);
+
+    /**
+     * Writes the pending changes of the persistence context to the database.
+     */
+    @Transactional
+    void flush();
+
+    /**
+     * Deletes the tasks in a single statement, without loading them first.
+     */
+    @Transactional
+    void deleteAllByIdInBatch(Iterable<String> uuids);
+
+    /**
+     * Returns the next page of tasks ordered by uuid, starting right after the {@code after} cursor.
+     * Every filter is optional and ignored when {@code null}.
+     */
+    @Query("select t from Task t"
+            + " where (:after is null or t.uuid > :after)"
+            + " and (:status is null or t.status = :status)"
+            + " and (:titlePattern is null or t.title like :titlePattern escape '\\')"
+            + " order by t.uuid")
+    List<Task> findPage(@Param("after") String after,
+                        @Param("status") Status status,
+                        @Param("titlePattern") String titlePattern,
+                        Limit limit);
+
+    /**
+     * Walks all matching tasks with a forward-only cursor. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Task t"
+            + " where (:status is null or t.status = :status)"
+            + " and (:titlePattern is null or t.title like :titlePattern escape '\\')"
+            + " order by t.uuid")
+    Stream<Task> streamAll(@Param("status") Status status,
+                           @Param("titlePattern") String titlePattern);
+
+    /**
+     * Runs in a read-write transaction, so the count is taken on the primary rather than a lagging replica.
+     *
+     * @return pairs of status and number of tasks with that status
+     */
+    @Transactional
+    @Query("select t.status, count(t) from Task t group by t.status")
+    List<Object[]> countByStatus();
 }
@@ -0,0 +1,96 @@
+package com.taskmanager.repository;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+public interface TaskRepositoryCustom {
+
+    /**
+     * Inserts the task in a single statement unless a task with the same title already exists.
+     * Relies on the unique index on {@code tasks.title}, so concurrent inserts can't create duplicates.
+     *
+     * @return {@code false} when the title is already taken
+     */
+    boolean insertIfTitleAbsent(Task task);
+
+    /**
+     * Same as {@link #insertIfTitleAbsent(Task)} for many tasks, sent to the database as one JDBC batch.
+     *
+     * @return the update count of every task, {@code 0} when its title is already taken
+     */
+    int[] insertAllIfTitleAbsent(List<Task> tasks);
+
+    /**
+     * Full-text search over title and description in Postgres, using the {@code search_vector} column. Every word
+     * of the query must match; words in the title rank higher than words in the description.
+     *
+     * @return matching tasks, best ranked first
+     */
+    List<Task> search(String query, int offset, int limit);
+
+    /**
+     * Moves up to {@code limit} {@code NEW} tasks, oldest first, to {@code IN_PROGRESS} with a lease until
+     * {@code leaseExpiresAt}. Tasks locked by a concurrent claim are skipped rather than waited for, so concurrent
+     * claims never return the same task. Must be called inside a transaction.
+     *
+     * @return the claimed tasks as updated
+     */
+    List<Task> claimNew(int limit, Instant leaseExpiresAt);
+
+    /**
+     * Moves up to {@code limit} {@code IN_PROGRESS} tasks whose lease expired before {@code now} back to
+     * {@code NEW}. Must be called inside a transaction.
+     *
+     * @return the released tasks as updated
+     */
+    List<Task> releaseExpiredLeases(Instant now, int limit);
+
+    /**
+     * Moves up to {@code limit} tasks completed before {@code completedBefore}, the oldest first, from {@code tasks}
+     * to {@code tasks_archive}. Tasks locked by a concurrent writer are skipped and archived by a later call. Must be
+     * called inside a transaction.
+     *
+     * @return the archived tasks, none when the store keeps no archive
+     */
+    List<Task> archiveCompleted(Instant completedBefore, int limit);
+
+    /**
+     * Same as {@link TaskRepository#findPage} on the archived tasks, whose {@code titlePattern} is matched with
+     * {@code LIKE} as well.
+     */
+    List<Task> findArchivedPage(String after, Status status, String titlePattern, int limit);
+
+    Optional<Task> findArchivedById(String uuid);
+
+    /**
+     * Inserts many tasks, skipping those whose title or id is already taken. Postgres receives them with the COPY
+     * protocol into the {@code tasks_import} staging table and merges them from there in one statement; other
+     * databases get a batched {@code MERGE}. The caller assigns the ids.
+     *
+     * @return the update count of every task, {@code 0} when its title or id is already taken
+     */
+    int[] importAll(List<Task> tasks);
+
+    /**
+     * Writes all tasks ordered by id as CSV with a header, using {@code COPY ... TO STDOUT} when the database is
+     * Postgres. Must be called inside a transaction.
+     *
+     * @return {@code false} when the database isn't Postgres, nothing has been written then
+     */
+    boolean copyAllAsCsv(OutputStream outputStream);
+
+    /**
+     * Version of the whole {@code tasks} table, kept by Postgres in {@code tasks_list_version}: every committed
+     * statement writing tasks raises it, whichever instance or tool ran it. Read from the primary, never from a
+     * replica.
+     *
+     * @return empty when the database keeps no such version
+     */
+    OptionalLong listVersion();
+}
@@ -0,0 +1,445 @@
+package com.taskmanager.repository;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private static final String POSTGRES_INSERT = "INSERT INTO tasks (uuid, title, description, status, completed_at)"
+            + " VALUES (?, ?, ?, ?, ?)"
+            + " ON CONFLICT (title) DO NOTHING";
+
+    private static final String H2_INSERT = "MERGE INTO tasks t"
+            + " USING (VALUES (CAST(? AS UUID), CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR),"
+            + " CAST(? AS TIMESTAMP WITH TIME ZONE)))"
+            + " s (uuid, title, description, status, completed_at)"
+            + " ON t.title = s.title"
+            + " WHEN NOT MATCHED THEN INSERT (uuid, title, description, status, completed_at)"
+            + " VALUES (s.uuid, s.title, s.description, s.status, s.completed_at)";
+
+    private static final String POSTGRES_COPY_IMPORT = "COPY tasks_import (line, uuid, title, description, status,"
+            + " completed_at) FROM STDIN WITH (FORMAT csv)";
+
+    // conflicts on the title or the id, also between rows of the same import, skip the row
+    private static final String POSTGRES_MERGE_IMPORT = "INSERT INTO tasks (uuid, title, description, status,"
+            + " completed_at)"
+            + " SELECT uuid, title, description, status, completed_at"
+            + " FROM tasks_import ORDER BY line"
+            + " ON CONFLICT DO NOTHING"
+            + " RETURNING uuid";
+
+    // the staging rows are only visible to the importing transaction, so this leaves those of others alone
+    private static final String POSTGRES_CLEAR_IMPORT = "DELETE FROM tasks_import";
+
+    // one lookup per unique index, a MERGE matching on either column would scan the table
+    private static final String H2_IMPORT = "INSERT INTO tasks (uuid, title, description, status, completed_at)"
+            + " SELECT s.uuid, s.title, s.description, s.status, s.completed_at"
+            + " FROM (VALUES (CAST(? AS UUID), CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR),"
+            + " CAST(? AS TIMESTAMP WITH TIME ZONE)))"
+            + " s (uuid, title, description, status, completed_at)"
+            + " WHERE NOT EXISTS (SELECT 1 FROM tasks t WHERE t.title = s.title)"
+            + " AND NOT EXISTS (SELECT 1 FROM tasks t WHERE t.uuid = s.uuid)";
+
+    // completion times in the ISO-8601 form of the JSON export
+    private static final String POSTGRES_COPY_EXPORT = "COPY (SELECT uuid, title, description, status, version,"
+            + " to_char(completed_at AT TIME ZONE 'UTC', 'YYYY-MM-DD\"T\"HH24:MI:SS.MS\"Z\"') AS \"completedAt\""
+            + " FROM tasks ORDER BY uuid) TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    private static final String POSTGRES_SEARCH = "SELECT uuid, title, description, status, version"
+            + " FROM tasks, plainto_tsquery('simple', ?) query"
+            + " WHERE search_vector @@ query"
+            + " ORDER BY ts_rank_cd(search_vector, query) DESC, uuid"
+            + " OFFSET ? LIMIT ?";
+
+    // both databases read the partial (Postgres) or status (H2) index in uuid order, so the oldest tasks come first
+    private static final String SELECT_NEW = "SELECT uuid, title, description, status, version FROM tasks"
+            + " WHERE status = 'NEW'"
+            + " ORDER BY uuid"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    private static final String SELECT_EXPIRED = "SELECT uuid, title, description, status, version FROM tasks"
+            + " WHERE status = 'IN_PROGRESS' AND lease_expires_at < ?"
+            + " ORDER BY lease_expires_at"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    // the completed tasks are read in completion order from the partial (Postgres) or status (H2) index
+    private static final String SELECT_COMPLETED = "SELECT uuid, title, description, status, version, completed_at"
+            + " FROM tasks"
+            + " WHERE status = 'COMPLETED' AND completed_at < ?"
+            + " ORDER BY completed_at"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    // a task imported again with the id of an archived one replaces it once archived in turn
+    private static final String POSTGRES_ARCHIVE = "INSERT INTO tasks_archive"
+            + " (uuid, title, description, status, version, completed_at, archived_at)"
+            + " SELECT uuid, title, description, status, version, completed_at, CAST(? AS TIMESTAMP WITH TIME ZONE)"
+            + " FROM tasks WHERE uuid = ?"
+            + " ON CONFLICT (uuid) DO UPDATE SET title = EXCLUDED.title, description = EXCLUDED.description,"
+            + " status = EXCLUDED.status, version = EXCLUDED.version, completed_at = EXCLUDED.completed_at,"
+            + " archived_at = EXCLUDED.archived_at";
+
+    private static final String H2_ARCHIVE = "MERGE INTO tasks_archive"
+            + " (uuid, title, description, status, version, completed_at, archived_at) KEY (uuid)"
+            + " SELECT uuid, title, description, status, version, completed_at, CAST(? AS TIMESTAMP WITH TIME ZONE)"
+            + " FROM tasks WHERE uuid = ?";
+
+    private static final String DELETE_ARCHIVED = "DELETE FROM tasks WHERE uuid = ?";
+
+    private static final String SELECT_ARCHIVED = "SELECT uuid, title, description, status, version, completed_at"
+            + " FROM tasks_archive";
+
+    private static final String SELECT_LIST_VERSION = "SELECT sum(version) FROM tasks_list_version";
+
+    private static final String UPDATE_LEASE = "UPDATE tasks"
+            + " SET status = ?, lease_expires_at = ?, version = version + 1"
+            + " WHERE uuid = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public boolean insertIfTitleAbsent(Task task) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(insertStatement(connection))) {
+                bind(statement, task);
+                return statement.executeUpdate() == 1;
+            } catch (SQLException e) {
+                // H2 MERGE may still lose a race against a concurrent insert of the same title
+                if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    return false;
+                }
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public int[] insertAllIfTitleAbsent(List<Task> tasks) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(insertStatement(connection))) {
+                for (Task task : tasks) {
+                    bind(statement, task);
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public int[] importAll(List<Task> tasks) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            if (isPostgres(connection)) {
+                return copyIntoPostgres(connection, tasks);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(H2_IMPORT)) {
+                for (Task task : tasks) {
+                    bind(statement, task);
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean copyAllAsCsv(OutputStream outputStream) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            if (!isPostgres(connection)) {
+                return false;
+            }
+            try {
+                connection.unwrap(PGConnection.class).getCopyAPI().copyOut(POSTGRES_COPY_EXPORT, outputStream);
+            } catch (IOException e) {
+                throw new SQLException("Can't write the exported tasks", e);
+            }
+            return true;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Task> search(String query, int offset, int limit) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(POSTGRES_SEARCH)) {
+                statement.setString(1, query);
+                statement.setInt(2, offset);
+                statement.setInt(3, limit);
+                List<Task> tasks = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        tasks.add(toTask(resultSet));
+                    }
+                }
+                return tasks;
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Task> claimNew(int limit, Instant leaseExpiresAt) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_NEW)) {
+                select.setInt(1, limit);
+                return moveLocked(connection, select, Status.IN_PROGRESS, leaseExpiresAt);
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Task> releaseExpiredLeases(Instant now, int limit) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_EXPIRED)) {
+                select.setTimestamp(1, Timestamp.from(now));
+                select.setInt(2, limit);
+                return moveLocked(connection, select, Status.NEW, null);
+            }
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Task> archiveCompleted(Instant completedBefore, int limit) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            List<Task> tasks = new ArrayList<>();
+            try (PreparedStatement select = connection.prepareStatement(SELECT_COMPLETED)) {
+                select.setTimestamp(1, Timestamp.from(completedBefore));
+                select.setInt(2, limit);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        tasks.add(toArchivedTask(resultSet));
+                    }
+                }
+            }
+            if (tasks.isEmpty()) {
+                return tasks;
+            }
+            Timestamp archivedAt = Timestamp.from(Instant.now());
+            try (PreparedStatement archive = connection.prepareStatement(
+                    isPostgres(connection) ? POSTGRES_ARCHIVE : H2_ARCHIVE);
+                 PreparedStatement delete = connection.prepareStatement(DELETE_ARCHIVED)) {
+                for (Task task : tasks) {
+                    UUID uuid = UUID.fromString(task.getUuid());
+                    archive.setTimestamp(1, archivedAt);
+                    archive.setObject(2, uuid);
+                    archive.addBatch();
+                    delete.setObject(1, uuid);
+                    delete.addBatch();
+                }
+                archive.executeBatch();
+                delete.executeBatch();
+            }
+            return tasks;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Task> findArchivedPage(String after, Status status, String titlePattern, int limit) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            List<Object> parameters = new ArrayList<>();
+            StringBuilder sql = new StringBuilder(SELECT_ARCHIVED).append(" WHERE 1 = 1");
+            if (after != null) {
+                sql.append(" AND uuid > ?");
+                parameters.add(UUID.fromString(after));
+            }
+            if (status != null) {
+                sql.append(" AND status = ?");
+                parameters.add(status.name());
+            }
+            if (titlePattern != null) {
+                sql.append(" AND title LIKE ? ESCAPE '\\'");
+                parameters.add(titlePattern);
+            }
+            sql.append(" ORDER BY uuid LIMIT ?");
+            parameters.add(limit);
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+                List<Task> tasks = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        tasks.add(toArchivedTask(resultSet));
+                    }
+                }
+                return tasks;
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Task> findArchivedById(String uuid) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_ARCHIVED + " WHERE uuid = ?")) {
+                statement.setObject(1, UUID.fromString(uuid));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? Optional.of(toArchivedTask(resultSet)) : Optional.<Task>empty();
+                }
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public OptionalLong listVersion() {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            if (!isPostgres(connection)) {
+                return OptionalLong.empty();
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(SELECT_LIST_VERSION)) {
+                resultSet.next();
+                return OptionalLong.of(resultSet.getLong(1));
+            }
+        });
+    }
+
+    /**
+     * Locks the tasks returned by the select and moves them to the status, in one JDBC batch.
+     */
+    private static List<Task> moveLocked(Connection connection, PreparedStatement select, Status status,
+                                         Instant leaseExpiresAt) throws SQLException {
+        List<Task> tasks = new ArrayList<>();
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                tasks.add(toTask(resultSet));
+            }
+        }
+        if (tasks.isEmpty()) {
+            return tasks;
+        }
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_LEASE)) {
+            for (Task task : tasks) {
+                update.setString(1, status.name());
+                update.setTimestamp(2, leaseExpiresAt == null ? null : Timestamp.from(leaseExpiresAt));
+                update.setObject(3, UUID.fromString(task.getUuid()));
+                update.addBatch();
+                task.setStatus(status);
+                task.setLeaseExpiresAt(leaseExpiresAt);
+                task.setVersion(task.getVersion() + 1);
+            }
+            update.executeBatch();
+        }
+        return tasks;
+    }
+
+    /**
+     * Copies the tasks into the staging table, moves those without conflict to {@code tasks} and empties the
+     * staging table again, all in the current transaction.
+     */
+    private static int[] copyIntoPostgres(Connection connection, List<Task> tasks) throws SQLException {
+        StringBuilder rows = new StringBuilder();
+        Map<String, Integer> lines = new HashMap<>();
+        for (int line = 0; line < tasks.size(); line++) {
+            Task task = tasks.get(line);
+            task.stampCompletion();
+            lines.putIfAbsent(task.getUuid(), line);
+            rows.append(line).append(',')
+                    .append(task.getUuid()).append(',')
+                    .append(csv(task.getTitle())).append(',')
+                    .append(csv(task.getDescription())).append(',')
+                    .append(csv(task.getStatus() == null ? null : task.getStatus().name())).append(',')
+                    .append(task.getCompletedAt() == null ? "" : task.getCompletedAt().toString()).append('\n');
+        }
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(POSTGRES_COPY_IMPORT, new StringReader(rows.toString()));
+        } catch (IOException e) {
+            throw new SQLException("Can't copy the imported tasks", e);
+        }
+        int[] updateCounts = new int[tasks.size()];
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet inserted = statement.executeQuery(POSTGRES_MERGE_IMPORT)) {
+                while (inserted.next()) {
+                    updateCounts[lines.get(inserted.getString(1))] = 1;
+                }
+            }
+            statement.executeUpdate(POSTGRES_CLEAR_IMPORT);
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Quotes a value for CSV. An unquoted empty value is NULL to Postgres, a quoted one an empty string.
+     */
+    private static String csv(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static Task toTask(ResultSet resultSet) throws SQLException {
+        Task task = new Task();
+        task.setUuid(resultSet.getString(1));
+        task.setTitle(resultSet.getString(2));
+        task.setDescription(resultSet.getString(3));
+        String status = resultSet.getString(4);
+        task.setStatus(status == null ? null : Status.valueOf(status));
+        task.setVersion(resultSet.getLong(5));
+        return task;
+    }
+
+    /**
+     * Reads the columns of {@link #SELECT_COMPLETED} and {@link #SELECT_ARCHIVED}.
+     */
+    private static Task toArchivedTask(ResultSet resultSet) throws SQLException {
+        Task task = toTask(resultSet);
+        Timestamp completedAt = resultSet.getTimestamp(6);
+        task.setCompletedAt(completedAt == null ? null : completedAt.toInstant());
+        return task;
+    }
+
+    /**
+     * Binds the columns of an inserted task, stamping its completion time when it is created completed.
+     */
+    private static void bind(PreparedStatement statement, Task task) throws SQLException {
+        task.stampCompletion();
+        statement.setObject(1, UUID.fromString(task.getUuid()));
+        statement.setString(2, task.getTitle());
+        statement.setString(3, task.getDescription());
+        statement.setString(4, task.getStatus() == null ? null : task.getStatus().name());
+        statement.setTimestamp(5, task.getCompletedAt() == null ? null : Timestamp.from(task.getCompletedAt()));
+    }
+
+    private static String insertStatement(Connection connection) throws SQLException {
+        return isPostgres(connection) ? POSTGRES_INSERT : H2_INSERT;
+    }
+
+    private static boolean isPostgres(Connection connection) throws SQLException {
+        return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+    }
+}
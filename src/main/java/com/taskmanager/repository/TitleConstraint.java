@@ -0,0 +1,41 @@
+package com.taskmanager.repository;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * The unique index on the title of the tasks, which every repository enforces.
+ */
+public final class TitleConstraint {
+
+    public static final String NAME = "tasks_title_uindex";
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private TitleConstraint() {
+    }
+
+    /**
+     * Whether the exception reports a title taken by another task: a unique violation of {@value #NAME} reported
+     * by the database, or a {@link DuplicateKeyException} of the repositories which keep the titles unique
+     * themselves. Any other violation, like a missing column value, is not a duplicate.
+     */
+    public static boolean isViolatedBy(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    // H2 reports the index name in upper case
+                    if (UNIQUE_VIOLATION.equals(next.getSQLState()) && next.getMessage() != null
+                            && next.getMessage().toLowerCase(Locale.ROOT).contains(NAME)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return e instanceof DuplicateKeyException;
+    }
+}
@@ -0,0 +1,29 @@
+package com.taskmanager.service;
+
+/**
+ * Checked set of changes, ready to be applied to any number of objects of the patched class.
+ * Created by {@link PatcherUtils}.
+ */
+public final class Patch<T> {
+
+    private final PatchPlan.Property[] properties;
+    private final Object[] values;
+    private final int size;
+
+    Patch(PatchPlan.Property[] properties, Object[] values, int size) {
+        this.properties = properties;
+        this.values = values;
+        this.size = size;
+    }
+
+    public T applyTo(T target) {
+        for (int i = 0; i < size; i++) {
+            properties[i].set(target, values[i]);
+        }
+        return target;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.taskmanager.service;
+
+import com.taskmanager.exception.PatcherServiceException;
+import com.taskmanager.model.PatchPolicy;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Patchable properties of one class. Fields are resolved once per class and compiled to generated accessor
+ * lambdas, so applying a patch doesn't use reflection nor change field accessibility.
+ */
+final class PatchPlan {
+
+    private static final ClassValue<PatchPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected PatchPlan computeValue(Class<?> type) {
+            return new PatchPlan(type);
+        }
+    };
+
+    private final Property[] properties;
+    private final Map<String, Property> propertiesByName;
+
+    private PatchPlan(Class<?> type) {
+        List<Property> resolved = new ArrayList<>();
+        Map<String, Property> byName = new HashMap<>();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                PatchPolicy policy = field.getAnnotation(PatchPolicy.class);
+                Property property = new Property(
+                        field.getName(),
+                        field.getType(),
+                        policy == null ? PatchPolicy.Mode.SKIP_BLANK : policy.value(),
+                        policy == null ? "" : policy.message(),
+                        getter(lookup, field),
+                        setter(lookup, field));
+                resolved.add(property);
+                byName.put(property.name(), property);
+            }
+        } catch (Throwable e) {
+            throw new PatcherServiceException("Can't resolve patchable fields of " + type.getName() + ": " + e.getMessage());
+        }
+        this.properties = resolved.toArray(new Property[0]);
+        this.propertiesByName = Map.copyOf(byName);
+    }
+
+    static PatchPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    Property[] properties() {
+        return properties;
+    }
+
+    Property property(String name) {
+        return propertiesByName.get(name);
+    }
+
+    /**
+     * Generates a lambda calling the field getter, or reading the field through a method handle when the
+     * class has no getter.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(MethodHandles.Lookup lookup, Field field) throws Throwable {
+        Method method = accessor(field.getDeclaringClass(), getterName(field));
+        if (method == null) {
+            MethodHandle handle = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            return target -> invoke(() -> handle.invokeExact(target));
+        }
+        MethodHandle handle = lookup.unreflect(method);
+        return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        handle.type().wrap())
+                .getTarget()
+                .invokeExact();
+    }
+
+    /**
+     * Generates a lambda calling the field setter, or writing the field through a method handle when the
+     * class has no setter.
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Field field) throws Throwable {
+        Method method = accessor(field.getDeclaringClass(), "set" + capitalize(field.getName()), field.getType());
+        if (method == null) {
+            MethodHandle handle = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (target, value) -> invoke(() -> {
+                handle.invokeExact(target, value);
+                return null;
+            });
+        }
+        MethodHandle handle = lookup.unreflect(method);
+        return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        handle.type().wrap().changeReturnType(void.class))
+                .getTarget()
+                .invokeExact();
+    }
+
+    private static String getterName(Field field) {
+        return (field.getType() == boolean.class ? "is" : "get") + capitalize(field.getName());
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Method accessor(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            return Modifier.isStatic(method.getModifiers()) ? null : method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(HandleCall call) {
+        try {
+            return call.invoke();
+        } catch (Throwable e) {
+            throw new PatcherServiceException(e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface HandleCall {
+        Object invoke() throws Throwable;
+    }
+
+    record Property(String name, Class<?> type, PatchPolicy.Mode mode, String message,
+                    Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+
+        Object get(Object target) {
+            return getter.apply(target);
+        }
+
+        void set(Object target, Object value) {
+            setter.accept(target, value);
+        }
+    }
+}
@@ -1,31 +1,95 @@
 package com.taskmanager.service;
 
-import com.taskmanager.exception.PatcherServiceException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.exception.UnmodifiedException;
+import com.taskmanager.model.PatchPolicy;
 import org.apache.logging.log4j.util.Strings;
 
-import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * This service helps us manage patch update of resource.
  * Here we can specify logic for each entity which should be partially updated.
+ * <p>
+ * Per-field rules are declared with {@link PatchPolicy} on the entity. Patchable fields of each class are
+ * resolved once and cached, see {@link PatchPlan}.
  */
 public class PatcherUtils {
-    
+
     public static <T> void patch(T existingObj, T incompleteObj) {
-        try {
-            Class<?> clazz = existingObj.getClass();
-            Field[] fields = clazz.getDeclaredFields();
-            for (Field field : fields) {
-                field.setAccessible(true);
-                Object value = field.get(incompleteObj);
-                if (value == null || (value instanceof String str && Strings.isBlank(str))) {
-                    continue;
-                }
-                field.set(existingObj, value);
-                field.setAccessible(false);
+        prepare(incompleteObj).applyTo(existingObj);
+    }
+
+    /**
+     * Collects the non-null fields of the incomplete object. Blank strings are skipped unless the field
+     * allows them.
+     *
+     * @throws UnmodifiedException when a value is given for a field which must not be modified
+     */
+    public static <T> Patch<T> prepare(T incompleteObj) {
+        PatchPlan.Property[] planProperties = PatchPlan.of(incompleteObj.getClass()).properties();
+        PatchPlan.Property[] properties = new PatchPlan.Property[planProperties.length];
+        Object[] values = new Object[planProperties.length];
+        int size = 0;
+        for (PatchPlan.Property property : planProperties) {
+            Object value = property.get(incompleteObj);
+            if (value == null || property.mode() == PatchPolicy.Mode.IGNORE) {
+                continue;
+            }
+            if (property.mode() == PatchPolicy.Mode.REJECT) {
+                throw new UnmodifiedException(property.message());
             }
-        } catch (IllegalAccessException e) {
-            throw new PatcherServiceException(e.getMessage());
+            if (property.mode() == PatchPolicy.Mode.SKIP_BLANK && value instanceof String str && Strings.isBlank(str)) {
+                continue;
+            }
+            properties[size] = property;
+            values[size++] = value;
+        }
+        return new Patch<>(properties, values, size);
+    }
+
+    /**
+     * Reads a JSON Merge Patch (RFC 7386) document. Members set to {@code null} clear the field, absent
+     * members are left untouched. Member values replace the field value as a whole, which matches the flat
+     * shape of our entities.
+     *
+     * @throws UnmodifiedException when the document is not an object, names an unknown field, a field
+     *                             which must not be modified or holds a value of the wrong type
+     */
+    public static <T> Patch<T> prepareMergePatch(Class<T> type, JsonNode mergePatch, ObjectMapper objectMapper) {
+        if (mergePatch == null || !mergePatch.isObject()) {
+            throw new UnmodifiedException("Merge patch document must be a JSON object");
+        }
+        PatchPlan plan = PatchPlan.of(type);
+        PatchPlan.Property[] properties = new PatchPlan.Property[mergePatch.size()];
+        Object[] values = new Object[mergePatch.size()];
+        int size = 0;
+        Iterator<Map.Entry<String, JsonNode>> members = mergePatch.fields();
+        while (members.hasNext()) {
+            Map.Entry<String, JsonNode> member = members.next();
+            PatchPlan.Property property = plan.property(member.getKey());
+            if (property == null) {
+                throw new UnmodifiedException("Unknown field: " + member.getKey());
+            }
+            if (property.mode() == PatchPolicy.Mode.IGNORE) {
+                continue;
+            }
+            if (property.mode() == PatchPolicy.Mode.REJECT) {
+                throw new UnmodifiedException(property.message());
+            }
+            properties[size] = property;
+            values[size++] = member.getValue().isNull() ? null : convert(member.getValue(), property, objectMapper);
+        }
+        return new Patch<>(properties, values, size);
+    }
+
+    private static Object convert(JsonNode value, PatchPlan.Property property, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.treeToValue(value, property.type());
+        } catch (Exception e) {
+            throw new UnmodifiedException("Invalid value for field " + property.name() + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.TaskArchiveProperties;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.repository.TaskRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the tasks completed longer than the retention ago from the {@code tasks} table to {@code tasks_archive}, so
+ * the table and its indexes only hold the tasks still worked on and the recently completed ones.
+ * <p>
+ * A run archives the due tasks in batches, oldest first, each in a transaction of its own and followed by a pause
+ * which leaves the database to the requests. A run stopped halfway, by a shutdown or a failure, leaves whole batches
+ * archived, and the next run carries on with the tasks still due. The scheduled runs only archive while the tasks
+ * are served by Postgres, the secondary stores keep their completed tasks.
+ */
+@Service
+public class TaskArchiveService {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(TaskArchiveService.class);
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TaskArchiveProperties properties;
+
+    @Autowired
+    private DataSourceHealthMonitor healthMonitor;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatusCounters statusCounters;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::archiveSafely, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Archives the tasks completed before the retention on the current route. Called by the scheduler, exposed for
+     * tests.
+     *
+     * @return number of archived tasks
+     */
+    public int archiveCompleted() {
+        Instant completedBefore = Instant.now().minus(properties.getRetention());
+        int batchSize = properties.getBatchSize();
+        int archived = 0;
+        List<Task> batch;
+        do {
+            batch = transactionTemplate.execute(status -> taskRepository.archiveCompleted(completedBefore, batchSize));
+            archived(batch);
+            archived += batch.size();
+        } while (batch.size() == batchSize && pause());
+        if (archived > 0) {
+            customLogger.info("Archived {} tasks completed before {}", archived, completedBefore);
+        }
+        return archived;
+    }
+
+    private void archived(List<Task> tasks) {
+        Cache cache = cacheManager.getCache(TaskService.TASKS_CACHE);
+        for (Task task : tasks) {
+            if (cache != null) {
+                cache.evict(task.getUuid());
+            }
+            statusCounters.deleted(task.getStatus());
+            eventPublisher.publishEvent(TaskChangeEvent.of(TaskChangeType.ARCHIVED, task));
+        }
+    }
+
+    /**
+     * @return {@code false} when the run must stop
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getBatchPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void archiveSafely() {
+        if (healthMonitor.currentRoute() != DataSourceRoute.PRIMARY) {
+            return;
+        }
+        try {
+            archiveCompleted();
+        } catch (Exception e) {
+            customLogger.warn("Archiving of completed tasks failed, will retry: {}", e.getMessage());
+        }
+    }
+}
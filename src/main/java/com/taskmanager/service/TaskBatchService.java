@@ -0,0 +1,260 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.Bulkhead;
+import com.taskmanager.config.MetricsConfig;
+import com.taskmanager.config.TaskBatchProperties;
+import com.taskmanager.exception.BatchSizeExceededException;
+import com.taskmanager.exception.UnmodifiedException;
+import com.taskmanager.model.BatchItemResult;
+import com.taskmanager.model.BatchOutcome;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.repository.TitleConstraint;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies create, patch and delete requests for many tasks at once.
+ * Items are validated in one pass and written in chunks, one transaction per chunk. When a chunk hits a title
+ * conflict it is replayed item by item, so only the conflicting items are reported as duplicates.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Bulkhead
+public class TaskBatchService {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TaskBatchProperties batchProperties;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatusCounters statusCounters;
+
+    public List<BatchItemResult> createTasks(List<Task> tasks) {
+        checkSize(tasks);
+        BatchItemResult[] results = new BatchItemResult[tasks.size()];
+        List<Integer> validItems = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            Set<ConstraintViolation<Task>> violations = validator.validate(task);
+            if (violations.isEmpty()) {
+                task.setUuid(TaskIds.next());
+                validItems.add(i);
+            } else {
+                results[i] = new BatchItemResult(i, null, BatchOutcome.INVALID, toMessage(violations));
+            }
+        }
+
+        for (List<Integer> chunk : chunks(validItems)) {
+            List<Task> chunkTasks = chunk.stream().map(tasks::get).toList();
+            int[] updateCounts;
+            try {
+                updateCounts = transactionTemplate.execute(status -> taskRepository.insertAllIfTitleAbsent(chunkTasks));
+            } catch (DataIntegrityViolationException e) {
+                if (!TitleConstraint.isViolatedBy(e)) {
+                    throw e;
+                }
+                updateCounts = chunkTasks.stream()
+                        .mapToInt(task -> taskRepository.insertIfTitleAbsent(task) ? 1 : 0)
+                        .toArray();
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                int index = chunk.get(i);
+                if (updateCounts[i] == 0) {
+                    results[index] = new BatchItemResult(index, null, BatchOutcome.DUPLICATE, "Task with the same title already exists");
+                } else {
+                    chunkTasks.get(i).setVersion(0L);
+                    results[index] = new BatchItemResult(index, chunkTasks.get(i).getUuid(), BatchOutcome.CREATED, null);
+                    statusCounters.created(chunkTasks.get(i).getStatus());
+                    publish(TaskChangeType.CREATED, chunkTasks.get(i));
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public List<BatchItemResult> updateTasks(List<Task> updatedTasks) {
+        checkSize(updatedTasks);
+        BatchItemResult[] results = new BatchItemResult[updatedTasks.size()];
+        String[] uuids = new String[updatedTasks.size()];
+        Status[] previousStatuses = new Status[updatedTasks.size()];
+        List<Patch<Task>> patches = new ArrayList<>(Collections.nCopies(updatedTasks.size(), null));
+        List<Integer> validItems = new ArrayList<>();
+        for (int i = 0; i < updatedTasks.size(); i++) {
+            Task updatedTask = updatedTasks.get(i);
+            uuids[i] = updatedTask.getUuid();
+            if (uuids[i] == null) {
+                results[i] = new BatchItemResult(i, null, BatchOutcome.INVALID, "UUID is mandatory");
+                continue;
+            }
+            // the uuid addresses the task to patch, it is not a change
+            updatedTask.setUuid(null);
+            try {
+                patches.set(i, PatcherUtils.prepare(updatedTask));
+                validItems.add(i);
+            } catch (UnmodifiedException e) {
+                results[i] = new BatchItemResult(i, uuids[i], BatchOutcome.INVALID, e.getMessage());
+            }
+        }
+
+        for (List<Integer> chunk : chunks(validItems)) {
+            List<Task> patched = new ArrayList<>();
+            try {
+                patched.addAll(transactionTemplate.execute(status -> patchAll(uuids, patches, chunk, results, previousStatuses)));
+            } catch (DataIntegrityViolationException e) {
+                if (!TitleConstraint.isViolatedBy(e)) {
+                    throw e;
+                }
+                for (int index : chunk) {
+                    try {
+                        patched.addAll(transactionTemplate.execute(status -> patchAll(uuids, patches, List.of(index), results, previousStatuses)));
+                    } catch (DataIntegrityViolationException duplicate) {
+                        if (!TitleConstraint.isViolatedBy(duplicate)) {
+                            throw duplicate;
+                        }
+                        results[index] = new BatchItemResult(index, uuids[index],
+                                BatchOutcome.DUPLICATE, "Task with the same title already exists");
+                    }
+                }
+            }
+            evict(chunk.stream().map(index -> uuids[index]).toList());
+            for (int index : chunk) {
+                Status status = updatedTasks.get(index).getStatus();
+                if (results[index].getOutcome() == BatchOutcome.UPDATED && status != null) {
+                    statusCounters.changed(previousStatuses[index], status);
+                }
+            }
+            patched.forEach(task -> publish(TaskChangeType.PATCHED, task));
+        }
+        return Arrays.asList(results);
+    }
+
+    public List<BatchItemResult> deleteTasks(List<String> uuids) {
+        checkSize(uuids);
+        BatchItemResult[] results = new BatchItemResult[uuids.size()];
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < uuids.size(); i++) {
+            items.add(i);
+        }
+
+        for (List<Integer> chunk : chunks(items)) {
+            List<Task> deleted = transactionTemplate.execute(status -> {
+                List<String> chunkUuids = chunk.stream().map(uuids::get).filter(TaskIds::isValid).toList();
+                List<Task> existingTasks = taskRepository.findAllById(chunkUuids);
+                Set<String> existing = existingTasks.stream()
+                        .map(Task::getUuid)
+                        .collect(Collectors.toSet());
+                if (!existing.isEmpty()) {
+                    taskRepository.deleteAllByIdInBatch(existing);
+                }
+                for (int index : chunk) {
+                    String uuid = uuids.get(index);
+                    results[index] = existing.contains(uuid)
+                            ? new BatchItemResult(index, uuid, BatchOutcome.DELETED, null)
+                            : new BatchItemResult(index, uuid, BatchOutcome.NOT_FOUND, "Task Record Not Found By UUID: " + uuid);
+                }
+                return existingTasks;
+            });
+            evict(chunk.stream().map(uuids::get).toList());
+            deleted.forEach(task -> statusCounters.deleted(task.getStatus()));
+            deleted.forEach(task -> publish(TaskChangeType.DELETED, task));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Loads all tasks of the chunk with one query and patches them. Hibernate sends the resulting
+     * updates as JDBC batches when the persistence context is flushed. The tasks are saved as well, for the
+     * in-memory store, which doesn't track changes of the tasks it returned.
+     *
+     * @return the patched tasks
+     */
+    private List<Task> patchAll(String[] uuids, List<Patch<Task>> patches, List<Integer> chunk, BatchItemResult[] results,
+                                Status[] previousStatuses) {
+        List<String> chunkUuids = chunk.stream().map(index -> uuids[index]).filter(TaskIds::isValid).toList();
+        Map<String, Task> existing = taskRepository.findAllById(chunkUuids).stream()
+                .collect(Collectors.toMap(Task::getUuid, Function.identity()));
+        List<Task> patched = new ArrayList<>();
+        for (int index : chunk) {
+            Task task = existing.get(uuids[index]);
+            if (task == null) {
+                results[index] = new BatchItemResult(index, uuids[index], BatchOutcome.NOT_FOUND,
+                        "Task Record Not Found By UUID: " + uuids[index]);
+                continue;
+            }
+            previousStatuses[index] = task.getStatus();
+            patches.get(index).applyTo(task);
+            patched.add(task);
+            results[index] = new BatchItemResult(index, task.getUuid(), BatchOutcome.UPDATED, null);
+        }
+        patched = taskRepository.saveAll(patched);
+        taskRepository.flush();
+        return patched;
+    }
+
+    private void evict(List<String> uuids) {
+        Cache cache = cacheManager.getCache(TaskService.TASKS_CACHE);
+        if (cache != null) {
+            uuids.forEach(cache::evict);
+        }
+    }
+
+    private void publish(TaskChangeType type, Task task) {
+        eventPublisher.publishEvent(TaskChangeEvent.of(type, task));
+    }
+
+    private void checkSize(List<?> items) {
+        if (items.size() > batchProperties.getMaxItems()) {
+            throw new BatchSizeExceededException("Batch contains " + items.size()
+                    + " items, the maximum is " + batchProperties.getMaxItems());
+        }
+    }
+
+    private List<List<Integer>> chunks(List<Integer> items) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchProperties.getChunkSize()) {
+            chunks.add(items.subList(from, Math.min(from + batchProperties.getChunkSize(), items.size())));
+        }
+        return chunks;
+    }
+
+    static String toMessage(Set<ConstraintViolation<Task>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+}
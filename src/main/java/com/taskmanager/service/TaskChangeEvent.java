@@ -0,0 +1,27 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.RoutingDataSource;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+
+/**
+ * Published by the task services once a change of a task is committed.
+ *
+ * @param task  copy of the task after the change, or before the deletion
+ * @param route datasource the change was written to, {@code null} when unknown
+ */
+public record TaskChangeEvent(TaskChangeType type, Task task, DataSourceRoute route) {
+
+    static TaskChangeEvent of(TaskChangeType type, Task task) {
+        Task snapshot = new Task();
+        snapshot.setUuid(task.getUuid());
+        snapshot.setTitle(task.getTitle());
+        snapshot.setDescription(task.getDescription());
+        snapshot.setStatus(task.getStatus());
+        snapshot.setVersion(task.getVersion());
+        snapshot.setLeaseExpiresAt(task.getLeaseExpiresAt());
+        snapshot.setCompletedAt(task.getCompletedAt());
+        return new TaskChangeEvent(type, snapshot, RoutingDataSource.lastRoute());
+    }
+}
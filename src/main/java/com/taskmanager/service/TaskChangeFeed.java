@@ -0,0 +1,240 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceRouteChangedEvent;
+import com.taskmanager.config.TaskChangeFeedProperties;
+import com.taskmanager.model.TaskChange;
+import com.taskmanager.model.TaskChangeType;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feed of task changes for clients which would otherwise poll the task list.
+ * <p>
+ * Every {@link TaskChangeEvent} gets the next sequence number and is kept in a ring buffer of recent changes, so a
+ * client can resume from the last sequence it received. Changes are delivered to each subscriber by a dispatcher
+ * thread, never by the thread which made the change. While a subscriber is behind, its undelivered changes are
+ * coalesced per task, so it receives only the latest state of each task; one that falls behind by more than
+ * {@code maxPending} tasks is disconnected. A {@link TaskChangeType#RESET} tells the client to reload the tasks,
+ * because it resumed from a sequence no longer buffered or because the datasource route changed.
+ */
+@Service
+public class TaskChangeFeed implements MeterBinder {
+
+    /**
+     * Receives the changes of one subscriber. Calls never overlap.
+     */
+    public interface Sink {
+        void send(TaskChange change) throws Exception;
+
+        void heartbeat() throws Exception;
+
+        void close();
+    }
+
+    @Autowired
+    private TaskChangeFeedProperties properties;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+    private final AtomicInteger dispatcherThreads = new AtomicInteger();
+    private final ExecutorService dispatcher = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "task-change-feed-" + dispatcherThreads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-change-feed-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TaskChange[] buffer;
+    private long nextSequence = 1;
+
+    @PostConstruct
+    public void start() {
+        buffer = new TaskChange[properties.getBufferSize()];
+        long interval = properties.getHeartbeatInterval().toMillis();
+        heartbeats.scheduleWithFixedDelay(() -> subscriptions.forEach(Subscription::heartbeat),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeats.shutdownNow();
+        subscriptions.forEach(Subscription::cancel);
+        dispatcher.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChange(TaskChangeEvent event) {
+        append(event.type(), event.task().getUuid(), event);
+    }
+
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        append(TaskChangeType.RESET, null, null);
+    }
+
+    /**
+     * Subscribes to changes following the given sequence, or to new changes only when it is {@code null}.
+     */
+    public Subscription subscribe(Long after, Sink sink) {
+        Subscription subscription = new Subscription(sink);
+        synchronized (this) {
+            long latest = nextSequence - 1;
+            long oldest = Math.max(1, nextSequence - buffer.length);
+            if (after == null) {
+                // nothing to replay
+            } else if (after < oldest - 1 || after > latest) {
+                subscription.offer(new TaskChange(latest, TaskChangeType.RESET, null, null, System.currentTimeMillis()));
+            } else {
+                for (long sequence = after + 1; sequence <= latest; sequence++) {
+                    subscription.offer(buffer[(int) (sequence % buffer.length)]);
+                }
+            }
+            synchronized (subscription) {
+                if (!subscription.cancelled) {
+                    subscriptions.add(subscription);
+                }
+            }
+        }
+        return subscription;
+    }
+
+    public synchronized long latestSequence() {
+        return nextSequence - 1;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("tasks.changes.subscribers", subscriptions, Set::size)
+                .description("Clients subscribed to the task change feed")
+                .register(registry);
+        FunctionCounter.builder("tasks.changes.coalesced", coalesced, AtomicLong::get)
+                .description("Changes replaced by a later change of the same task before delivery")
+                .register(registry);
+        FunctionCounter.builder("tasks.changes.disconnected", disconnected, AtomicLong::get)
+                .description("Clients disconnected because they fell too far behind")
+                .register(registry);
+    }
+
+    private void append(TaskChangeType type, String uuid, TaskChangeEvent event) {
+        synchronized (this) {
+            TaskChange change = new TaskChange(nextSequence, type, uuid, event == null ? null : event.task(),
+                    System.currentTimeMillis());
+            buffer[(int) (nextSequence % buffer.length)] = change;
+            nextSequence++;
+            subscriptions.forEach(subscription -> subscription.offer(change));
+        }
+    }
+
+    /**
+     * Undelivered changes of one subscriber, keyed by task and ordered by sequence.
+     */
+    public final class Subscription {
+
+        private final Sink sink;
+        private final Map<String, TaskChange> pending = new LinkedHashMap<>();
+        private boolean dispatching;
+        private boolean cancelled;
+
+        private Subscription(Sink sink) {
+            this.sink = sink;
+        }
+
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                pending.clear();
+            }
+            subscriptions.remove(this);
+            sink.close();
+        }
+
+        private void offer(TaskChange change) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                String key = change.uuid() == null ? "#" + change.sequence() : change.uuid();
+                // re-inserted at the end, so changes stay ordered by sequence
+                if (pending.remove(key) != null) {
+                    coalesced.incrementAndGet();
+                }
+                pending.put(key, change);
+                if (pending.size() <= properties.getMaxPending()) {
+                    dispatch(false);
+                    return;
+                }
+            }
+            disconnected.incrementAndGet();
+            cancel();
+        }
+
+        private void heartbeat() {
+            synchronized (this) {
+                if (!cancelled && !dispatching) {
+                    dispatch(true);
+                }
+            }
+        }
+
+        private void dispatch(boolean heartbeat) {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+            dispatcher.execute(() -> deliver(heartbeat));
+        }
+
+        private void deliver(boolean heartbeat) {
+            try {
+                if (heartbeat) {
+                    sink.heartbeat();
+                }
+                while (true) {
+                    List<TaskChange> changes;
+                    synchronized (this) {
+                        if (pending.isEmpty() || cancelled) {
+                            dispatching = false;
+                            return;
+                        }
+                        changes = new ArrayList<>(pending.values());
+                        pending.clear();
+                    }
+                    for (TaskChange change : changes) {
+                        sink.send(change);
+                    }
+                }
+            } catch (Exception e) {
+                cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.Bulkhead;
+import com.taskmanager.config.MetricsConfig;
+import com.taskmanager.config.TaskClaimProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.repository.TaskRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out {@code NEW} tasks to workers, which use the service as a work queue.
+ * <p>
+ * A claim moves the oldest {@code NEW} tasks to {@code IN_PROGRESS} in one transaction, skipping the tasks locked
+ * by concurrent claims, and leases them to the worker. A worker completes a task by changing its status before the
+ * lease expires. Otherwise the reaper returns the task to {@code NEW} on its next run, so another worker can claim
+ * it.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Bulkhead
+public class TaskClaimService {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(TaskClaimService.class);
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TaskClaimProperties properties;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatusCounters statusCounters;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-lease-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getReaperInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::reapSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param limit number of tasks to claim, at most {@code maxTasks}
+     * @param lease how long the tasks are leased, {@code null} for the {@code defaultLease}, at most {@code maxLease}
+     * @return the claimed tasks, fewer than {@code limit} or none when not enough tasks are {@code NEW}
+     */
+    public List<Task> claimTasks(int limit, Duration lease) {
+        int count = Math.min(Math.max(limit, 1), properties.getMaxTasks());
+        Duration leaseDuration = lease == null || lease.isNegative() || lease.isZero()
+                ? properties.getDefaultLease()
+                : min(lease, properties.getMaxLease());
+        // the precision both databases store
+        Instant leaseExpiresAt = Instant.now().plus(leaseDuration).truncatedTo(ChronoUnit.MILLIS);
+        List<Task> claimed = transactionTemplate.execute(status -> taskRepository.claimNew(count, leaseExpiresAt));
+        changed(claimed, Status.NEW);
+        return claimed;
+    }
+
+    /**
+     * Returns the tasks with an expired lease to {@code NEW}. Called by the scheduler, exposed for tests.
+     *
+     * @return number of released tasks
+     */
+    public int releaseExpiredLeases() {
+        Instant now = Instant.now();
+        int released = 0;
+        List<Task> batch;
+        do {
+            batch = transactionTemplate.execute(status ->
+                    taskRepository.releaseExpiredLeases(now, properties.getReaperBatchSize()));
+            changed(batch, Status.IN_PROGRESS);
+            released += batch.size();
+        } while (batch.size() == properties.getReaperBatchSize());
+        if (released > 0) {
+            customLogger.info("Returned {} tasks with an expired lease to NEW", released);
+        }
+        return released;
+    }
+
+    private void changed(List<Task> tasks, Status previousStatus) {
+        Cache cache = cacheManager.getCache(TaskService.TASKS_CACHE);
+        for (Task task : tasks) {
+            if (cache != null) {
+                cache.evict(task.getUuid());
+            }
+            statusCounters.changed(previousStatus, task.getStatus());
+            eventPublisher.publishEvent(TaskChangeEvent.of(TaskChangeType.STATUS_CHANGED, task));
+        }
+    }
+
+    private void reapSafely() {
+        try {
+            releaseExpiredLeases();
+        } catch (Exception e) {
+            customLogger.warn("Release of expired leases failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,43 @@
+package com.taskmanager.service;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Ids of new tasks, time-ordered UUIDs of version 7 (RFC 9562).
+ * <p>
+ * The first 48 bits are the Unix time in milliseconds, so new tasks are appended at the end of the primary key
+ * index instead of being scattered over it. The 12 bits after the version count the ids of the same millisecond,
+ * which keeps the ids of one instance strictly increasing, also when the clock steps back. A counter running over
+ * moves on to the next millisecond. The last 62 bits are random.
+ */
+public final class TaskIds {
+
+    private static final Pattern CANONICAL =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private static final SecureRandom random = new SecureRandom();
+
+    // milliseconds shifted left by 12, plus the counter
+    private static final AtomicLong last = new AtomicLong();
+
+    private TaskIds() {
+    }
+
+    public static String next() {
+        long millis = System.currentTimeMillis();
+        long timeAndCounter = last.updateAndGet(previous -> Math.max(previous + 1, millis << 12));
+        long mostSigBits = (timeAndCounter >>> 12) << 16 | 0x7000 | (timeAndCounter & 0xFFF);
+        long leastSigBits = random.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * Whether the id has the form of the ids handed out, lowercase with hyphens. Other strings name no task.
+     */
+    public static boolean isValid(String uuid) {
+        return uuid != null && uuid.length() == 36 && CANONICAL.matcher(uuid).matches();
+    }
+}
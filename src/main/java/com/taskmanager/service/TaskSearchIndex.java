@@ -0,0 +1,255 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.DataSourceStartup;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.store.MemoryTaskStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index of the tasks stored in H2, which has no full-text search of its own, or in the
+ * {@link MemoryTaskStore} when that is the secondary store.
+ * <p>
+ * The index is built from the secondary store at startup and then follows every change written to it, as reported
+ * by the task services. Words are the lowercase runs of letters and digits, like the {@code simple} configuration used by
+ * the Postgres search. All words of a query must match, and tasks are ranked like {@code ts_rank_cd} does with
+ * the default weights: a word found in the title counts 1.0, one found in the description 0.4.
+ */
+@Service
+public class TaskSearchIndex implements MeterBinder {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(TaskSearchIndex.class);
+
+    private static final float TITLE_WEIGHT = 1.0f;
+    private static final float DESCRIPTION_WEIGHT = 0.4f;
+
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble(Hit::rank).reversed()
+            .thenComparing(hit -> hit.task().getUuid());
+
+    @Autowired
+    @Qualifier("secondaryDataSource")
+    private DataSource secondaryDataSource;
+
+    @Autowired
+    private DataSourceStartup dataSourceStartup;
+
+    @Autowired
+    private ObjectProvider<MemoryTaskStore> memoryTaskStore;
+
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void build() {
+        MemoryTaskStore store = memoryTaskStore.getIfAvailable();
+        if (store != null) {
+            try (Stream<Task> tasks = store.stream(null, null)) {
+                tasks.forEach(this::put);
+            }
+            return;
+        }
+        dataSourceStartup.awaitSecondaryMigration();
+        try (Connection connection = secondaryDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT uuid, title, description, status, version FROM tasks")) {
+            while (resultSet.next()) {
+                Task task = new Task();
+                task.setUuid(resultSet.getString(1));
+                task.setTitle(resultSet.getString(2));
+                task.setDescription(resultSet.getString(3));
+                String status = resultSet.getString(4);
+                task.setStatus(status == null ? null : Status.valueOf(status));
+                task.setVersion(resultSet.getLong(5));
+                put(task);
+            }
+        } catch (SQLException e) {
+            customLogger.error("Can't build the search index of the tasks in H2: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChange(TaskChangeEvent event) {
+        if (event.route() != DataSourceRoute.SECONDARY) {
+            return;
+        }
+        if (event.type() == TaskChangeType.DELETED) {
+            remove(event.task().getUuid());
+        } else {
+            put(event.task());
+        }
+    }
+
+    public synchronized void put(Task task) {
+        Document document = new Document(task, weights(task));
+        Document previous = documents.put(task.getUuid(), document);
+        if (previous != null) {
+            for (String term : previous.weights().keySet()) {
+                if (!document.weights().containsKey(term)) {
+                    removePosting(term, task.getUuid());
+                }
+            }
+        }
+        for (String term : document.weights().keySet()) {
+            postings.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(task.getUuid());
+        }
+    }
+
+    public synchronized void remove(String uuid) {
+        Document previous = documents.remove(uuid);
+        if (previous != null) {
+            previous.weights().keySet().forEach(term -> removePosting(term, uuid));
+        }
+    }
+
+    /**
+     * Forgets every task, when the secondary store is cleared.
+     */
+    public synchronized void clear() {
+        documents.clear();
+        postings.clear();
+    }
+
+    /**
+     * Finds the tasks containing every word of the query. Only the posting list of the rarest word is walked,
+     * and only the requested page is kept sorted.
+     *
+     * @return matching tasks, best ranked first
+     */
+    public List<Task> search(String query, int offset, int limit) {
+        Set<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        List<Set<String>> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Set<String> list = postings.get(term);
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        int wanted = offset + limit;
+        PriorityQueue<Hit> best = new PriorityQueue<>(BEST_FIRST.reversed());
+        for (String uuid : lists.get(0)) {
+            if (!containedInAll(lists, uuid)) {
+                continue;
+            }
+            Document document = documents.get(uuid);
+            if (document == null) {
+                continue;
+            }
+            float rank = 0;
+            for (String term : terms) {
+                rank += document.weights().getOrDefault(term, 0f);
+            }
+            best.add(new Hit(document.task(), rank));
+            if (best.size() > wanted) {
+                best.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(BEST_FIRST);
+        return hits.stream().skip(offset).map(Hit::task).toList();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("tasks.search.index.documents", documents, Map::size)
+                .description("Tasks in the search index of H2")
+                .register(registry);
+    }
+
+    private void removePosting(String term, String uuid) {
+        Set<String> list = postings.get(term);
+        if (list != null) {
+            list.remove(uuid);
+            if (list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static boolean containedInAll(List<Set<String>> lists, String uuid) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(uuid)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Float> weights(Task task) {
+        Map<String, Float> weights = new HashMap<>();
+        addWeights(weights, task.getTitle(), TITLE_WEIGHT);
+        addWeights(weights, task.getDescription(), DESCRIPTION_WEIGHT);
+        return weights;
+    }
+
+    private static void addWeights(Map<String, Float> weights, String text, float weight) {
+        forEachTerm(text, term -> weights.merge(term, weight, Float::sum));
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        forEachTerm(text, terms::add);
+        return terms;
+    }
+
+    private static void forEachTerm(String text, Consumer<String> consumer) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    private record Document(Task task, Map<String, Float> weights) {
+    }
+
+    private record Hit(Task task, float rank) {
+    }
+}
@@ -1,54 +1,279 @@
 package com.taskmanager.service;
 
+import com.taskmanager.config.Bulkhead;
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.MetricsConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.taskmanager.exception.DuplicationException;
+import com.taskmanager.exception.PreconditionFailedException;
 import com.taskmanager.exception.ResourceNotFoundException;
-import com.taskmanager.exception.UnmodifiedException;
 import com.taskmanager.model.Status;
 import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
 import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.repository.TitleConstraint;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Bulkhead
 public class TaskService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String TASKS_CACHE = "tasks";
+
     @Autowired
     private TaskRepository taskRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatusCounters statusCounters;
+
+    @Autowired
+    private TaskSearchIndex searchIndex;
+
+    @Autowired
+    private DataSourceHealthMonitor healthMonitor;
+
+    @CachePut(cacheNames = TASKS_CACHE, key = "#result.uuid")
+    @Transactional
     public Task createTask(Task task) {
-        if (taskRepository.existsByTitle(task.getTitle())) {
-            throw new DuplicationException("Task with the same title already exists");
+        task.setUuid(TaskIds.next());
+        if (!taskRepository.insertIfTitleAbsent(task)) {
+            throw DuplicationException.TITLE;
         }
-        return taskRepository.save(task);
+        task.setVersion(0L);
+        statusCounters.created(task.getStatus());
+        publish(TaskChangeType.CREATED, task);
+        return task;
+    }
+
+    @Cacheable(cacheNames = TASKS_CACHE, key = "#uuid", sync = true)
+    public Task getTask(String uuid) {
+        return findTask(uuid);
     }
 
+    @CacheEvict(cacheNames = TASKS_CACHE, key = "#uuid")
+    @Transactional
     public void deleteTask(String uuid) {
-        Task task = taskRepository.findById(uuid)
-                .orElseThrow(() -> new ResourceNotFoundException("Task Record Not Found By UUID: " + uuid));
+        Task task = findTask(uuid);
         taskRepository.delete(task);
+        statusCounters.deleted(task.getStatus());
+        publish(TaskChangeType.DELETED, task);
     }
 
-    public Task updateTaskStatus(String uuid, Status status) {
-        Task task = taskRepository.findById(uuid)
-                .orElseThrow(() -> new ResourceNotFoundException("Task Record Not Found By UUID: " + uuid));
+    /**
+     * @param expectedVersion version the task must have, {@code null} to update any version
+     */
+    @CachePut(cacheNames = TASKS_CACHE, key = "#uuid")
+    @Transactional
+    public Task updateTaskStatus(String uuid, Status status, Long expectedVersion) {
+        Task task = findTask(uuid);
+        checkVersion(task, expectedVersion);
+        Status previousStatus = task.getStatus();
         task.setStatus(status);
-        return taskRepository.save(task);
+        Task savedTask = taskRepository.save(task);
+        // increments the version before the change is published
+        taskRepository.flush();
+        statusCounters.changed(previousStatus, savedTask.getStatus());
+        publish(TaskChangeType.STATUS_CHANGED, savedTask);
+        return savedTask;
+    }
+
+    /**
+     * @param expectedVersion version the task must have, {@code null} to update any version
+     */
+    @CachePut(cacheNames = TASKS_CACHE, key = "#uuid")
+    @Transactional
+    public Task updateTaskFields(String uuid, Task updatedTask, Long expectedVersion) {
+        Patch<Task> patch = PatcherUtils.prepare(updatedTask);
+
+        Task task = findTask(uuid);
+        checkVersion(task, expectedVersion);
+        Status previousStatus = task.getStatus();
+        patch.applyTo(task);
+        Task savedTask = saveTitleUnique(task);
+        statusCounters.changed(previousStatus, savedTask.getStatus());
+        publish(TaskChangeType.PATCHED, savedTask);
+        return savedTask;
     }
 
-    public Task updateTaskFields(String uuid, Task updatedTask) {
-        if (updatedTask.getUuid() != null) {
-            throw new UnmodifiedException("It is not allowed to modify UUID");
+    /**
+     * Applies a JSON Merge Patch document, where {@code null} members clear the corresponding field.
+     *
+     * @param expectedVersion version the task must have, {@code null} to update any version
+     */
+    @CachePut(cacheNames = TASKS_CACHE, key = "#uuid")
+    @Transactional
+    public Task mergePatchTask(String uuid, JsonNode mergePatch, Long expectedVersion) {
+        Patch<Task> patch = PatcherUtils.prepareMergePatch(Task.class, mergePatch, objectMapper);
+
+        Task task = findTask(uuid);
+        checkVersion(task, expectedVersion);
+        Status previousStatus = task.getStatus();
+        patch.applyTo(task);
+        Set<ConstraintViolation<Task>> violations = validator.validate(task);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
         }
+        Task savedTask = saveTitleUnique(task);
+        statusCounters.changed(previousStatus, savedTask.getStatus());
+        publish(TaskChangeType.PATCHED, savedTask);
+        return savedTask;
+    }
 
-        Task task = taskRepository.findById(uuid)
-                .orElseThrow(() -> new ResourceNotFoundException("Task Record Not Found By UUID: " + uuid));
-        PatcherUtils.patch(task, updatedTask);
-        return taskRepository.save(task);
+    /**
+     * Reads the task, also from the archive when it isn't found among the current tasks. Archived tasks aren't
+     * cached and can't be changed.
+     */
+    public Task getTaskOrArchived(String uuid) {
+        if (!TaskIds.isValid(uuid)) {
+            throw ResourceNotFoundException.TASK;
+        }
+        return taskRepository.findById(uuid)
+                .or(() -> taskRepository.findArchivedById(uuid))
+                .orElseThrow(() -> ResourceNotFoundException.TASK);
     }
 
-    public List<Task> getAllTasks() {
-        return taskRepository.findAll();
+    /**
+     * @param archived whether the archived tasks are merged into the page, in the same order
+     */
+    public List<Task> getTasks(String after, int limit, Status status, String titlePrefix, boolean archived) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        String titlePattern = toLikePattern(titlePrefix);
+        List<Task> tasks = taskRepository.findPage(after, status, titlePattern, Limit.of(pageSize));
+        // only completed tasks are archived
+        if (!archived || status != null && status != Status.COMPLETED) {
+            return tasks;
+        }
+        List<Task> archivedTasks = taskRepository.findArchivedPage(after, status, titlePattern, pageSize);
+        return mergeByUuid(tasks, archivedTasks, pageSize);
+    }
+
+    /**
+     * Full-text search over title and description. Postgres searches its {@code search_vector} column, while H2
+     * is searched through the in-memory {@link TaskSearchIndex}.
+     */
+    public List<Task> searchTasks(String query, int offset, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        int from = Math.max(offset, 0);
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        if (healthMonitor.currentRoute() == DataSourceRoute.PRIMARY) {
+            return taskRepository.search(query, from, pageSize);
+        }
+        return searchIndex.search(query, from, pageSize);
+    }
+
+    /**
+     * Passes every matching task to the consumer without keeping them in memory.
+     * Each task is detached right after it was consumed, so the persistence context stays empty.
+     */
+    @Transactional(readOnly = true)
+    public void streamTasks(Status status, String titlePrefix, Consumer<Task> consumer) {
+        try (Stream<Task> tasks = taskRepository.streamAll(status, toLikePattern(titlePrefix))) {
+            tasks.forEach(task -> {
+                consumer.accept(task);
+                entityManager.detach(task);
+            });
+        }
+    }
+
+    /**
+     * The task is read in the updating transaction, and the update itself only matches the version read, so a
+     * concurrent change fails either here or with an optimistic locking failure on flush.
+     */
+    private static void checkVersion(Task task, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(task.getVersion())) {
+            throw PreconditionFailedException.MODIFIED_SINCE_READ;
+        }
+    }
+
+    private Task findTask(String uuid) {
+        // any other string can't be converted to the uuid column
+        if (!TaskIds.isValid(uuid)) {
+            throw ResourceNotFoundException.TASK;
+        }
+        return taskRepository.findById(uuid)
+                .orElseThrow(() -> ResourceNotFoundException.TASK);
+    }
+
+    private Task saveTitleUnique(Task task) {
+        try {
+            Task savedTask = taskRepository.save(task);
+            // inside the transaction the update is sent on flush, so a title conflict surfaces here
+            taskRepository.flush();
+            return savedTask;
+        } catch (DataIntegrityViolationException e) {
+            if (TitleConstraint.isViolatedBy(e)) {
+                throw DuplicationException.TITLE;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Merges two pages ordered by uuid into one of at most {@code limit} tasks.
+     */
+    private static List<Task> mergeByUuid(List<Task> first, List<Task> second, int limit) {
+        List<Task> merged = new ArrayList<>(Math.min(first.size() + second.size(), limit));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < first.size() || j < second.size())) {
+            if (j == second.size()
+                    || i < first.size() && first.get(i).getUuid().compareTo(second.get(j).getUuid()) <= 0) {
+                merged.add(first.get(i++));
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private void publish(TaskChangeType type, Task task) {
+        eventPublisher.publishEvent(TaskChangeEvent.of(type, task));
+    }
+
+    private static String toLikePattern(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        return prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
     }
 }
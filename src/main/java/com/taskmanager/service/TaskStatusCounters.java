@@ -0,0 +1,190 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceRouteChangedEvent;
+import com.taskmanager.config.TaskStatsProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.TaskStats;
+import com.taskmanager.repository.TaskRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of tasks per status, kept in memory so they can be read without scanning the table.
+ * <p>
+ * The counts are seeded with one {@code GROUP BY} query and then maintained by the task services after every
+ * committed change. They are recounted in the database on a schedule and whenever the datasource route changes,
+ * which corrects changes the services did not report, such as those replayed from the journal. A recount which
+ * overlaps a change is discarded and retried on the next run, unless the counts were never seeded or
+ * {@code maxDiscardedRecounts} recounts in a row were discarded. Such a recount is applied as its difference to the
+ * counts before it ran, which keeps the changes reported meanwhile; those it saw as well are counted twice until
+ * the next recount.
+ */
+@Service
+public class TaskStatusCounters implements MeterBinder {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(TaskStatusCounters.class);
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskStatsProperties properties;
+
+    private final Map<Status, LongAdder> counts = new EnumMap<>(Status.class);
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-status-counters");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean seeded;
+    private int discardedRecounts;
+
+    public TaskStatusCounters() {
+        for (Status status : Status.values()) {
+            counts.put(status, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getReconcileInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::reconcileSafely, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        scheduler.execute(this::reconcileSafely);
+    }
+
+    public void created(Status status) {
+        add(status, 1);
+    }
+
+    public void deleted(Status status) {
+        add(status, -1);
+    }
+
+    public void changed(Status previous, Status current) {
+        if (previous != current) {
+            add(previous, -1);
+            add(current, 1);
+        }
+    }
+
+    public TaskStats stats() {
+        if (!seeded) {
+            reconcile();
+        }
+        Map<Status, Long> byStatus = new EnumMap<>(Status.class);
+        long total = 0;
+        for (Map.Entry<Status, LongAdder> count : counts.entrySet()) {
+            long value = Math.max(0, count.getValue().sum());
+            byStatus.put(count.getKey(), value);
+            total += value;
+        }
+        return new TaskStats(total, byStatus);
+    }
+
+    /**
+     * Recounts the tasks in the database and corrects the counts. Called by the scheduler, exposed for tests.
+     */
+    public synchronized void reconcile() {
+        long changesBefore = changes.get();
+        Map<Status, Long> before = new EnumMap<>(Status.class);
+        counts.forEach((status, count) -> before.put(status, count.sum()));
+        Map<Status, Long> actual = new EnumMap<>(Status.class);
+        for (Object[] row : taskRepository.countByStatus()) {
+            if (row[0] != null) {
+                actual.put((Status) row[0], ((Number) row[1]).longValue());
+            }
+        }
+        if (seeded && changes.get() != changesBefore) {
+            if (discardedRecounts < properties.getMaxDiscardedRecounts()) {
+                discardedRecounts++;
+                return;
+            }
+            customLogger.info("Applying a recount overlapping changes after {} discarded ones", discardedRecounts);
+        }
+        discardedRecounts = 0;
+        long corrected = 0;
+        for (Map.Entry<Status, LongAdder> count : counts.entrySet()) {
+            long difference = actual.getOrDefault(count.getKey(), 0L) - before.get(count.getKey());
+            count.getValue().add(difference);
+            corrected += Math.abs(difference);
+        }
+        if (seeded && corrected > 0) {
+            corrections.addAndGet(corrected);
+            customLogger.info("Corrected task counts by {} after a recount", corrected);
+        }
+        seeded = true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Status status : Status.values()) {
+            Gauge.builder("tasks.count", counts.get(status), LongAdder::sum)
+                    .description("Tasks per status")
+                    .tag("status", status.name())
+                    .register(registry);
+        }
+        FunctionCounter.builder("tasks.count.corrections", corrections, AtomicLong::get)
+                .description("Changes of the task counts found by a recount but not reported by the services")
+                .register(registry);
+    }
+
+    /**
+     * Applies the change once the surrounding transaction commits, or right away outside a transaction.
+     */
+    private void add(Status status, long delta) {
+        if (status == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counts.get(status).add(delta);
+            changes.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                counts.get(status).add(delta);
+                changes.incrementAndGet();
+            }
+        });
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            customLogger.warn("Recount of the tasks failed, will retry: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.taskmanager.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.taskmanager.config.Bulkhead;
+import com.taskmanager.config.MetricsConfig;
+import com.taskmanager.config.TaskTransferProperties;
+import com.taskmanager.model.BatchItemResult;
+import com.taskmanager.model.BatchOutcome;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.repository.TaskRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Imports and exports all tasks as CSV or newline delimited JSON. Both directions stream, so memory doesn't grow
+ * with the number of tasks: imported tasks are read and written in chunks, one transaction per chunk, and reach
+ * Postgres with the COPY protocol. CSV exports are copied out of Postgres as they are.
+ */
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Bulkhead
+public class TaskTransferService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final CsvSchema CSV_COLUMNS = CsvSchema.builder()
+            .addColumn("uuid")
+            .addColumn("title")
+            .addColumn("description")
+            .addColumn("status")
+            .addColumn("version")
+            .addColumn("completedAt")
+            .build()
+            .withHeader();
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Autowired
+    private TaskTransferProperties transferProperties;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatusCounters statusCounters;
+
+    private ObjectMapper csvMapper;
+
+    @PostConstruct
+    public void start() {
+        // built like the JSON mapper, so tasks have the same shape in both formats
+        csvMapper = objectMapperBuilder.factory(new CsvFactory()).build();
+    }
+
+    /**
+     * Creates the tasks read from the input. CSV needs a header row naming the columns, JSON one task per line.
+     * Tasks keep their id when they have one, completed tasks their completion time, stamped now when they have
+     * none. The result of every task is passed to the consumer in input order
+     * once its chunk is written: created, a duplicate of an existing title or id, or invalid. Reading stops at
+     * input which can't be parsed at all, tasks before it are imported.
+     */
+    public void importTasks(InputStream input, Format format, Consumer<BatchItemResult> consumer) throws IOException {
+        ObjectReader reader = format == Format.CSV
+                ? csvMapper.readerFor(Task.class)
+                        .with(CsvSchema.emptySchema().withHeader())
+                        .with(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                        .with(CsvParser.Feature.SKIP_EMPTY_LINES)
+                : objectMapper.readerFor(Task.class);
+        Chunk chunk = new Chunk(0);
+        try (MappingIterator<Task> tasks = reader.readValues(input)) {
+            while (true) {
+                int index = chunk.firstIndex + chunk.results.size();
+                try {
+                    if (!tasks.hasNextValue()) {
+                        break;
+                    }
+                    chunk.add(index, tasks.nextValue());
+                } catch (StreamReadException e) {
+                    chunk.invalid(index, e.getOriginalMessage());
+                    break;
+                } catch (DatabindException e) {
+                    // the iterator skips the rest of the broken task
+                    chunk.invalid(index, e.getOriginalMessage());
+                }
+                if (chunk.results.size() >= transferProperties.getChunkSize()) {
+                    write(chunk, consumer);
+                    chunk = new Chunk(index + 1);
+                }
+            }
+        }
+        write(chunk, consumer);
+    }
+
+    /**
+     * Writes all tasks ordered by id.
+     */
+    @Transactional(readOnly = true)
+    public void exportTasks(OutputStream outputStream, Format format) throws IOException {
+        if (format == Format.CSV && taskRepository.copyAllAsCsv(outputStream)) {
+            return;
+        }
+        try (Stream<Task> stream = taskRepository.streamAll(null, null);
+             SequenceWriter csvWriter = format == Format.CSV ? csvWriter(outputStream) : null) {
+            for (Iterator<Task> tasks = stream.iterator(); tasks.hasNext(); ) {
+                Task task = tasks.next();
+                if (csvWriter != null) {
+                    csvWriter.write(task);
+                } else {
+                    outputStream.write(objectMapper.writeValueAsBytes(task));
+                    outputStream.write('\n');
+                }
+                entityManager.detach(task);
+            }
+        }
+    }
+
+    private SequenceWriter csvWriter(OutputStream outputStream) throws IOException {
+        return csvMapper.writerFor(Task.class)
+                .with(CSV_COLUMNS)
+                // quoted like Postgres quotes them, so both exports look the same
+                .with(CsvGenerator.Feature.STRICT_CHECK_FOR_QUOTING)
+                .with(CsvGenerator.Feature.ALWAYS_QUOTE_EMPTY_STRINGS)
+                .with(JsonGenerator.Feature.IGNORE_UNKNOWN)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValues(outputStream);
+    }
+
+    /**
+     * Inserts the valid tasks of the chunk and passes the results of all its tasks on.
+     */
+    private void write(Chunk chunk, Consumer<BatchItemResult> consumer) {
+        if (!chunk.tasks.isEmpty()) {
+            int[] updateCounts = importAll(chunk.tasks);
+            for (int i = 0; i < chunk.tasks.size(); i++) {
+                Task task = chunk.tasks.get(i);
+                int index = chunk.taskIndexes.get(i);
+                if (updateCounts[i] == 0) {
+                    chunk.set(index, new BatchItemResult(index, null, BatchOutcome.DUPLICATE,
+                            "Task with the same title or id already exists"));
+                } else {
+                    task.setVersion(0L);
+                    chunk.set(index, new BatchItemResult(index, task.getUuid(), BatchOutcome.CREATED, null));
+                    statusCounters.created(task.getStatus());
+                    eventPublisher.publishEvent(TaskChangeEvent.of(TaskChangeType.CREATED, task));
+                }
+            }
+        }
+        chunk.results.forEach(consumer);
+    }
+
+    private int[] importAll(List<Task> tasks) {
+        try {
+            return taskRepository.importAll(tasks);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent insert of the same title or id won the race against the H2 MERGE and rolled the chunk
+            // back; retried one by one, only the conflicting tasks are left out
+            return tasks.stream().mapToInt(this::importOne).toArray();
+        }
+    }
+
+    private int importOne(Task task) {
+        try {
+            return taskRepository.importAll(List.of(task))[0];
+        } catch (DataIntegrityViolationException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Tasks read since the last chunk was written, with a result slot per task, empty until the task is written.
+     */
+    private final class Chunk {
+
+        private final int firstIndex;
+        private final List<BatchItemResult> results = new ArrayList<>();
+        private final List<Task> tasks = new ArrayList<>();
+        private final List<Integer> taskIndexes = new ArrayList<>();
+        private final Set<String> uuids = new HashSet<>();
+
+        private Chunk(int firstIndex) {
+            this.firstIndex = firstIndex;
+        }
+
+        private void add(int index, Task task) {
+            Set<ConstraintViolation<Task>> violations = validator.validate(task);
+            if (!violations.isEmpty()) {
+                invalid(index, TaskBatchService.toMessage(violations));
+                return;
+            }
+            if (task.getUuid() == null) {
+                task.setUuid(TaskIds.next());
+            } else {
+                task.setUuid(task.getUuid().toLowerCase(Locale.ROOT));
+                if (!TaskIds.isValid(task.getUuid())) {
+                    invalid(index, "uuid: Invalid UUID");
+                    return;
+                }
+            }
+            // Postgres reports the tasks it inserted by id, so an id must not occur twice in a chunk
+            if (!uuids.add(task.getUuid())) {
+                results.add(new BatchItemResult(index, null, BatchOutcome.DUPLICATE,
+                        "Task with the same title or id already exists"));
+                return;
+            }
+            task.setVersion(null);
+            task.setLeaseExpiresAt(null);
+            task.stampCompletion();
+            tasks.add(task);
+            taskIndexes.add(index);
+            results.add(null);
+        }
+
+        private void invalid(int index, String message) {
+            results.add(new BatchItemResult(index, null, BatchOutcome.INVALID, message));
+        }
+
+        private void set(int index, BatchItemResult result) {
+            results.set(index - firstIndex, result);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.taskmanager.service;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRouteChangedEvent;
+import com.taskmanager.config.ReplicaProperties;
+import com.taskmanager.model.Task;
+import com.taskmanager.repository.TaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entity tags of single tasks and of the task list.
+ * <p>
+ * The tag of a task is its version, prefixed with the route it is read from, since Postgres and H2 number the
+ * versions of a task independently. It is strong, so it is followed by the format of the response once the
+ * converters chose it, see {@link #representationTag(String, MediaType)}.
+ * <p>
+ * The list is tagged without reading any task. Postgres raises the version of the {@code tasks} table with every
+ * statement writing tasks, see {@link TaskRepository#listVersion()}, so every instance sends the same tag for the
+ * list and a change made anywhere changes it with its commit. The in-memory store and H2 belong to a single
+ * instance, which counts the changes committed through it instead and adds its own id to the tag. Either tag is
+ * weak: it stands for every format of the list, and Tomcat only compresses responses with a weak tag or none,
+ * which the large pages of the list need most. The list gets no tag while a read replica may not have replayed the
+ * latest change yet.
+ */
+@Service
+public class TaskVersions {
+
+    /**
+     * Expected version which no task has, returned for tags of another route or of another kind.
+     */
+    public static final long NO_VERSION = -1;
+
+    private static final char FORMAT_SEPARATOR = '.';
+
+    @Autowired
+    private DataSourceHealthMonitor healthMonitor;
+
+    @Autowired
+    private ReplicaProperties replicaProperties;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong listVersion = new AtomicLong();
+    private volatile long lastChangeNanos = System.nanoTime();
+    private volatile long lastSharedVersion = -1;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChange(TaskChangeEvent event) {
+        changed();
+    }
+
+    @EventListener
+    public void onRouteChanged(DataSourceRouteChangedEvent event) {
+        changed();
+    }
+
+    /**
+     * Changes the tag of the list, for changes not reported by a {@link TaskChangeEvent}.
+     */
+    public void changed() {
+        // set before the counter, so whoever sees the new count also sees when it changed
+        lastChangeNanos = System.nanoTime();
+        listVersion.incrementAndGet();
+    }
+
+    public String taskTag(Task task) {
+        return "\"" + route() + "-" + task.getVersion() + "\"";
+    }
+
+    /**
+     * @return the tag of the task list, {@code null} when the list must not be tagged right now
+     */
+    public String listTag() {
+        String route = route();
+        long localVersion = listVersion.get();
+        OptionalLong sharedVersion;
+        try {
+            sharedVersion = taskRepository.listVersion();
+        } catch (DataAccessException e) {
+            // the list is still read, from wherever the route goes next
+            return null;
+        }
+        String tag;
+        if (sharedVersion.isPresent()) {
+            long version = sharedVersion.getAsLong();
+            if (version != lastSharedVersion) {
+                // changes made through other instances are only seen here, after their commit
+                lastChangeNanos = System.nanoTime();
+                lastSharedVersion = version;
+            }
+            tag = route + "-" + version;
+        } else {
+            tag = route + "-" + instance + "-" + localVersion;
+        }
+        if (System.nanoTime() - lastChangeNanos < replicationWindow().toNanos()) {
+            return null;
+        }
+        // weak, the same tag stands for every format and encoding of the list
+        return "W/\"" + tag + "\"";
+    }
+
+    /**
+     * The strong tag of one format of a response, the bytes of JSON, CBOR and Smile differ for the same task.
+     */
+    public static String representationTag(String tag, MediaType format) {
+        return tag.substring(0, tag.length() - 1) + FORMAT_SEPARATOR + format.getSubtype() + "\"";
+    }
+
+    /**
+     * Reads the version a client expects from an {@code If-Match} header. Only the first tag of a task read from
+     * the current route is considered, in whichever format it was read.
+     *
+     * @return {@code null} when any version is accepted, {@link #NO_VERSION} when no tag can match
+     */
+    public Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + route() + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            // weak tags never match If-Match
+            if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+                String version = tag.substring(prefix.length(), tag.length() - 1);
+                int format = version.indexOf(FORMAT_SEPARATOR);
+                try {
+                    return Long.parseLong(format < 0 ? version : version.substring(0, format));
+                } catch (NumberFormatException e) {
+                    // a list tag or a tag made up by the client
+                }
+            }
+        }
+        return NO_VERSION;
+    }
+
+    private String route() {
+        return healthMonitor.currentRoute().getLookupKey();
+    }
+
+    private Duration replicationWindow() {
+        if (replicaProperties.getReplicas().isEmpty()) {
+            return Duration.ZERO;
+        }
+        Duration maxLag = replicaProperties.getReplicaRouting().getMaxLag();
+        // without a lag bound a replica may serve any older list
+        return maxLag == null ? Duration.ofNanos(Long.MAX_VALUE) : maxLag;
+    }
+}
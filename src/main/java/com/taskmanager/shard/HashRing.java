@@ -0,0 +1,137 @@
+package com.taskmanager.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Consistent hashing of task ids onto shards. Every shard owns {@code virtualNodes} points of a ring of 64-bit
+ * hashes, and a task belongs to the shard of the first point at or after the hash of its uuid, wrapping around.
+ * Adding a shard to N others only moves the tasks of the arcs it takes over, about 1/(N+1) of them, all to the new
+ * shard.
+ * <p>
+ * The points only depend on the shard names and {@code virtualNodes}, so every instance builds the same ring.
+ */
+public final class HashRing {
+
+    private static final double RING_SIZE = 0x1p64;
+
+    private final List<String> shards;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one shard and one point per shard");
+        }
+        this.shards = List.copyOf(new TreeSet<>(shards));
+        this.virtualNodes = virtualNodes;
+        for (String shard : this.shards) {
+            long seed = fnv(shard);
+            for (int i = 0; i < virtualNodes; i++) {
+                // a collision keeps the smaller name, the same on every instance
+                points.merge(mix(seed + i * 0x9E3779B97F4A7C15L), shard, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * Names of the shards on the ring, sorted.
+     */
+    public List<String> shards() {
+        return shards;
+    }
+
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+
+    public String shardFor(String uuid) {
+        return shardFor(UUID.fromString(uuid));
+    }
+
+    public String shardFor(UUID uuid) {
+        return owner(hash(uuid));
+    }
+
+    /**
+     * Arcs of the ring whose tasks belong to another shard on the target ring, adjacent arcs with the same shards
+     * merged.
+     */
+    public List<Move> movesTo(HashRing target) {
+        TreeSet<Long> bounds = new TreeSet<>(points.keySet());
+        bounds.addAll(target.points.keySet());
+        List<Move> moves = new ArrayList<>();
+        long previous = bounds.last();
+        for (long bound : bounds) {
+            // every point of the arc (previous, bound] has the same owner as the bound on both rings
+            String source = owner(bound);
+            String destination = target.owner(bound);
+            if (!source.equals(destination)) {
+                Move last = moves.isEmpty() ? null : moves.get(moves.size() - 1);
+                if (last != null && last.to() == previous && last.source().equals(source)
+                        && last.target().equals(destination)) {
+                    moves.set(moves.size() - 1, new Move(last.from(), bound, source, destination));
+                } else {
+                    moves.add(new Move(previous, bound, source, destination));
+                }
+            }
+            previous = bound;
+        }
+        return moves;
+    }
+
+    /**
+     * Hash of a uuid on the ring. Both halves are mixed, since time-ordered uuids share most of their high bits.
+     */
+    public static long hash(UUID uuid) {
+        return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+    }
+
+    private String owner(long hash) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash);
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * Finalizer of MurmurHash3, every input bit flips each output bit with a probability close to one half.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long fnv(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Tasks hashed into the arc {@code (from, to]}, wrapping around, move from the source shard to the target one.
+     */
+    public record Move(long from, long to, String source, String target) {
+
+        /**
+         * Part of the ring covered by the arc, which is also the expected part of all tasks in it.
+         */
+        public double share() {
+            long length = to - from;
+            double share = (length >>> 1) * 2.0 / RING_SIZE;
+            return share == 0 && from == to ? 1 : share;
+        }
+    }
+}
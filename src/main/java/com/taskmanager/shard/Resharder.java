@@ -0,0 +1,258 @@
+package com.taskmanager.shard;
+
+import com.taskmanager.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves the tasks to a new ring while the application keeps serving them, to add or remove shards:
+ * <ol>
+ * <li>The new ring becomes the target of every instance of the {@link ShardCluster}, from then on writes note the
+ * moving tasks they change. Rows left on the added shards by an earlier resharding are deleted.</li>
+ * <li>Every shard is scanned in batches, and the tasks whose shard differs on the new ring are copied there. Reads
+ * and writes still go to the current shards, queries skip the copies.</li>
+ * <li>The tasks changed meanwhile are copied again, or deleted from the new shard, until few are left.</li>
+ * <li>Every instance holds back its writes while the last changed tasks are copied and the new ring is stored and
+ * switched to, which takes about as long as copying those tasks. Reads go on.</li>
+ * <li>Once every instance routes by the new ring, the rows left on shards which no longer own them are deleted.</li>
+ * </ol>
+ * Each step goes on once every running instance acknowledged the previous one, see {@link ShardCluster}. A
+ * resharding failing before the switch leaves the current ring in place, its copies are skipped and deleted by the
+ * next resharding, as are the rows left when an instance didn't acknowledge the new ring in time.
+ */
+public class Resharder {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(Resharder.class);
+
+    // copies of changed tasks made before writes are held back, passes after which the remaining ones are few
+    private static final int MAX_CATCH_UP_PASSES = 10;
+
+    private final ShardCluster cluster;
+
+    public Resharder(ShardCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Moves the tasks to the ring of the given shards, with the configured number of points per shard.
+     */
+    public synchronized Result reshard(Collection<String> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one shard");
+        }
+        shards.forEach(cluster::dataSource);
+        long start = System.nanoTime();
+        HashRing target = new HashRing(shards, cluster.properties().getVirtualNodes());
+        AtomicLong recopied = new AtomicLong();
+        HashRing current;
+        Map<String, Double> shares;
+        long copied;
+        long pauseNanos;
+        long epoch;
+        try {
+            cluster.beginMove(target);
+            current = cluster.ring();
+            shares = shares(current.movesTo(target));
+            customLogger.info("Resharding from {} to {}, moving {} of the ring", current.shards(), target.shards(),
+                    shares.values().stream().mapToDouble(Double::doubleValue).sum());
+            for (String shard : target.shards()) {
+                if (!current.shards().contains(shard)) {
+                    deleteNotOwned(shard, current);
+                }
+            }
+            copied = copyMoving(current, target);
+            for (int pass = 0; pass < MAX_CATCH_UP_PASSES; pass++) {
+                int changed = recopy(cluster.drainMoved(), current, target);
+                recopied.addAndGet(changed);
+                if (changed < cluster.properties().getBatchSize()) {
+                    break;
+                }
+            }
+            long pauseStart = System.nanoTime();
+            epoch = cluster.switchRing(() -> recopied.addAndGet(recopy(cluster.drainMoved(), current, target)));
+            pauseNanos = System.nanoTime() - pauseStart;
+        } catch (RuntimeException e) {
+            cluster.abortMove();
+            customLogger.error("Resharding to {} failed, the tasks stay on their shards: {}", target.shards(),
+                    e.getMessage());
+            throw e;
+        }
+        long deleted = 0;
+        // instances still on the current ring would write to the rows about to be deleted
+        if (cluster.awaitAcknowledged(epoch)) {
+            TreeSet<String> affected = new TreeSet<>(current.shards());
+            affected.addAll(target.shards());
+            for (String shard : affected) {
+                deleted += deleteNotOwned(shard, target);
+            }
+        } else {
+            customLogger.warn("Not every instance switched to {}, the rows left on shards which no longer own them "
+                    + "are deleted by the next resharding", target.shards());
+        }
+        Result result = new Result(current.shards(), target.shards(), shares, copied, recopied.get(), deleted,
+                Duration.ofNanos(pauseNanos), Duration.ofNanos(System.nanoTime() - start));
+        customLogger.info("Resharded to {}: {} tasks copied, {} copied again, {} deleted, writes held back for {}",
+                target.shards(), copied, recopied.get(), deleted, result.writePause());
+        return result;
+    }
+
+    /**
+     * Copies the tasks of every shard of the current ring which belong to another shard on the target ring.
+     */
+    private long copyMoving(HashRing current, HashRing target) {
+        long copied = 0;
+        for (String source : current.shards()) {
+            String after = null;
+            List<Task> batch;
+            do {
+                batch = readBatch(source, after);
+                Map<String, List<Task>> byTarget = new LinkedHashMap<>();
+                for (Task task : batch) {
+                    String destination = target.shardFor(task.getUuid());
+                    // rows the shard doesn't own are copies, their task is read from its own shard
+                    if (source.equals(current.shardFor(task.getUuid())) && !destination.equals(source)) {
+                        byTarget.computeIfAbsent(destination, shard -> new ArrayList<>()).add(task);
+                    }
+                }
+                for (Map.Entry<String, List<Task>> tasks : byTarget.entrySet()) {
+                    copy(tasks.getKey(), tasks.getValue(), current);
+                    copied += tasks.getValue().size();
+                }
+                if (!batch.isEmpty()) {
+                    after = batch.get(batch.size() - 1).getUuid();
+                }
+            } while (batch.size() == cluster.properties().getBatchSize());
+        }
+        return copied;
+    }
+
+    /**
+     * Copies the tasks again from their current shard, or deletes them from the target shard when they are gone.
+     */
+    private int recopy(List<String> uuids, HashRing current, HashRing target) {
+        for (String uuid : uuids) {
+            String source = current.shardFor(uuid);
+            String destination = target.shardFor(uuid);
+            Task task = cluster.onShard(source, connection -> TaskRows.find(connection, uuid));
+            if (task != null) {
+                copy(destination, List.of(task), current);
+            } else {
+                cluster.onShard(destination, connection -> TaskRows.delete(connection, uuid));
+            }
+        }
+        return uuids.size();
+    }
+
+    /**
+     * Writes the tasks to the shard in one transaction. A row of the shard holding the title of a copied task is
+     * either a copy, which is deleted, or a task created with the title after the copied task gave it up, which
+     * is kept: the copied task was noted as changed and is copied again.
+     */
+    private void copy(String shard, List<Task> tasks, HashRing current) {
+        cluster.inTransaction(shard, connection -> {
+            for (Task task : tasks) {
+                String holder = task.getTitle() == null ? null : TaskRows.findByTitle(connection, task.getTitle());
+                if (holder != null && !holder.equals(task.getUuid())) {
+                    if (shard.equals(current.shardFor(holder))) {
+                        customLogger.debug("Title of task {} is taken on shard {}, copies it once changed",
+                                task.getUuid(), shard);
+                        continue;
+                    }
+                    TaskRows.delete(connection, holder);
+                }
+                TaskRows.replace(connection, task);
+            }
+            return null;
+        });
+    }
+
+    private long deleteNotOwned(String shard, HashRing ring) {
+        long deleted = 0;
+        String after = null;
+        List<Task> batch;
+        do {
+            batch = readBatch(shard, after);
+            List<String> notOwned = batch.stream()
+                    .map(Task::getUuid)
+                    .filter(uuid -> !shard.equals(ring.shardFor(uuid)))
+                    .toList();
+            if (!notOwned.isEmpty()) {
+                cluster.inTransaction(shard, connection -> {
+                    try (PreparedStatement delete = connection.prepareStatement("DELETE FROM tasks WHERE uuid = ?")) {
+                        for (String uuid : notOwned) {
+                            delete.setObject(1, UUID.fromString(uuid));
+                            delete.addBatch();
+                        }
+                        return delete.executeBatch();
+                    }
+                });
+                deleted += notOwned.size();
+            }
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1).getUuid();
+            }
+        } while (batch.size() == cluster.properties().getBatchSize());
+        return deleted;
+    }
+
+    private List<Task> readBatch(String shard, String after) {
+        int batchSize = cluster.properties().getBatchSize();
+        return cluster.onShard(shard, connection -> {
+            String sql = TaskRows.SELECT + (after == null ? "" : " WHERE uuid > ?") + " ORDER BY uuid LIMIT ?";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (after != null) {
+                    statement.setObject(index++, UUID.fromString(after));
+                }
+                statement.setInt(index, batchSize);
+                return read(statement);
+            }
+        });
+    }
+
+    private static List<Task> read(PreparedStatement statement) throws SQLException {
+        List<Task> tasks = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                tasks.add(TaskRows.toTask(resultSet));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Part of the ring moving between every pair of shards, keyed by {@code source->target}.
+     */
+    private static Map<String, Double> shares(List<HashRing.Move> moves) {
+        Map<String, Double> shares = new HashMap<>();
+        for (HashRing.Move move : moves) {
+            shares.merge(move.source() + "->" + move.target(), move.share(), Double::sum);
+        }
+        return shares;
+    }
+
+    /**
+     * @param moved      part of the ring moving between every pair of shards, keyed by {@code source->target}
+     * @param copied     tasks copied by the scan of the shards
+     * @param recopied   tasks copied again or deleted because they changed while being moved
+     * @param deleted    rows deleted from shards which don't own them
+     * @param writePause time writes were held back
+     */
+    public record Result(List<String> from, List<String> to, Map<String, Double> moved, long copied, long recopied,
+                         long deleted, Duration writePause, Duration duration) {
+    }
+}
@@ -0,0 +1,725 @@
+package com.taskmanager.shard;
+
+import com.taskmanager.config.ShardingProperties;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The shards holding the tasks, the {@link HashRing} assigning tasks to them and the {@link TitleDirectory}.
+ * <p>
+ * Every shard has the {@code tasks} table of the primary datasource and is migrated with the scripts of its
+ * database. The ring is kept in the {@code task_shards} table of the directory database, so it survives restarts
+ * and resharding; it is created from the configured shards the first time. Both happen in the background after
+ * the start, the first call needing the ring waits for them.
+ * <p>
+ * Writes run through {@link #write(Supplier)}, which lets the {@link Resharder} hold them back while it switches
+ * to a new ring, and report the ids they changed with {@link #written(String)}, so the tasks changed while they
+ * are being moved are copied again.
+ * <p>
+ * Every instance on the same shards shares the state of the ring through the {@code task_ring} table: each change
+ * made by a resharding is a new epoch. Instances read it every {@code tasks.sharding.ring-refresh-interval}, apply
+ * it and acknowledge its epoch in {@code task_ring_instances}, and the resharding goes on with its next step only
+ * once every running instance did. Ids changed while tasks are moved are collected from every instance in the
+ * {@code task_moved} table. An instance which couldn't read the ring for half of
+ * {@code tasks.sharding.instance-timeout}, after which a resharding no longer waits for it, reads it again before
+ * writing.
+ */
+public class ShardCluster implements AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(ShardCluster.class);
+
+    private static final SQLExceptionTranslator translator = new SQLStateSQLExceptionTranslator();
+
+    private static final String SELECT_STATE = "SELECT epoch, state, target, target_virtual_nodes, "
+            + "hold_until > CURRENT_TIMESTAMP FROM task_ring WHERE id = 1";
+
+    private static final String BEGIN_MOVE = "UPDATE task_ring SET epoch = epoch + 1, state = 'MOVING', target = ?, "
+            + "target_virtual_nodes = ?, resharder = ?, hold_until = NULL WHERE id = 1 AND (state = 'STABLE' "
+            + "OR resharder NOT IN (SELECT instance FROM task_ring_instances WHERE seen_at > ?))";
+
+    private static final String HOLD = "UPDATE task_ring SET epoch = epoch + 1, state = 'HOLDING', hold_until = ? "
+            + "WHERE id = 1 AND epoch = ?";
+
+    private static final String END_MOVE = "UPDATE task_ring SET epoch = epoch + 1, state = 'STABLE', target = NULL, "
+            + "target_virtual_nodes = NULL, resharder = NULL, hold_until = NULL WHERE id = 1 AND epoch = ?";
+
+    private static final String COUNT_BEHIND = "SELECT COUNT(*) FROM task_ring_instances WHERE epoch < ? "
+            + "AND seen_at > ?";
+
+    private final Map<String, DataSource> shards;
+    private final DataSource directory;
+    private final boolean ownsDirectory;
+    private final ShardingProperties properties;
+    private final TitleDirectory titles;
+    private final ExecutorService executor;
+    // reads the ring state, holds the write lock while writes are held back, so it's locked and unlocked there
+    private final ScheduledExecutorService refresher;
+    private final String instance = UUID.randomUUID().toString();
+    private final ReentrantReadWriteLock writes = new ReentrantReadWriteLock();
+    private final Set<String> moved = ConcurrentHashMap.newKeySet();
+
+    private volatile HashRing ring;
+    private volatile HashRing target;
+    // epoch of the ring state applied, -1 until it's read
+    private volatile long epoch = -1;
+    // epoch published by the resharding of this instance, -1 while none runs
+    private volatile long moveEpoch = -1;
+    private volatile long refreshedNanos = System.nanoTime();
+    // whether the refresher holds back writes, only used by it
+    private boolean holding;
+
+    /**
+     * @param shards        datasource of every shard by name
+     * @param ownsDirectory whether the directory datasource is migrated and closed with the cluster, rather than
+     *                      being the primary datasource
+     */
+    public ShardCluster(Map<String, DataSource> shards, DataSource directory, boolean ownsDirectory,
+                        ShardingProperties properties) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Sharding needs at least one shard");
+        }
+        this.shards = new LinkedHashMap<>(shards);
+        this.directory = directory;
+        this.ownsDirectory = ownsDirectory;
+        this.properties = properties;
+        this.titles = new TitleDirectory(directory);
+        AtomicInteger threads = new AtomicInteger();
+        // the shard pools bound the queries running at once
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-ring");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Migrates the databases and loads the ring in the background.
+     */
+    public void start() {
+        executor.execute(() -> {
+            try {
+                ring();
+            } catch (RuntimeException e) {
+                customLogger.error("Exception occurred when preparing the shards, will retry on use: {}",
+                        e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        refresher.shutdownNow();
+        if (epoch >= 0) {
+            try {
+                // a resharding doesn't wait for the instance any longer
+                execute(directory, connection -> {
+                    try (PreparedStatement delete = connection.prepareStatement(
+                            "DELETE FROM task_ring_instances WHERE instance = ?")) {
+                        delete.setString(1, instance);
+                        return delete.executeUpdate();
+                    }
+                });
+            } catch (RuntimeException e) {
+                customLogger.warn("Can't remove the instance from the shard directory: {}", e.getMessage());
+            }
+        }
+        shards.values().forEach(ShardCluster::closeQuietly);
+        if (ownsDirectory) {
+            closeQuietly(directory);
+        }
+    }
+
+    public ShardingProperties properties() {
+        return properties;
+    }
+
+    /**
+     * The title directory, once the databases are migrated.
+     */
+    public TitleDirectory titles() {
+        ring();
+        return titles;
+    }
+
+    /**
+     * Names of the configured shards, whether they are on the ring or not.
+     */
+    public Set<String> shardNames() {
+        return shards.keySet();
+    }
+
+    public DataSource dataSource(String shard) {
+        DataSource dataSource = shards.get(shard);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Shard '" + shard + "' isn't configured");
+        }
+        return dataSource;
+    }
+
+    /**
+     * The current ring, loaded once the databases are migrated.
+     */
+    public HashRing ring() {
+        HashRing current = ring;
+        return current != null ? current : prepare();
+    }
+
+    /**
+     * Ring the tasks are being moved to, {@code null} while no resharding runs.
+     */
+    public HashRing target() {
+        return target;
+    }
+
+    /**
+     * Epoch of the ring state this instance routes by.
+     */
+    public long epoch() {
+        ring();
+        return epoch;
+    }
+
+    public String shardFor(String uuid) {
+        return ring().shardFor(uuid);
+    }
+
+    /**
+     * Runs a write. Writes run concurrently with each other, but not while the resharder switches rings, so the
+     * shard of a task must be looked up inside.
+     */
+    public <T> T write(Supplier<T> write) {
+        ring();
+        if (System.nanoTime() - refreshedNanos > properties.getInstanceTimeout().toNanos() / 2) {
+            // a resharding stops waiting for the instance once its acknowledgement is too old
+            refreshNow();
+        }
+        writes.readLock().lock();
+        try {
+            return write.get();
+        } finally {
+            writes.readLock().unlock();
+        }
+    }
+
+    /**
+     * Notes that a write inside {@link #write(Supplier)} changed the task, so it is copied again if it is being
+     * moved to another shard.
+     */
+    public void written(String uuid) {
+        HashRing moving = target;
+        if (moving != null && !moving.shardFor(uuid).equals(ring().shardFor(uuid))) {
+            moved.add(uuid);
+        }
+    }
+
+    /**
+     * Runs the same work on every shard of the ring at once.
+     *
+     * @return the results in the order of the shards of the ring
+     */
+    public <T> List<T> scatter(HashRing ring, Function<String, T> work) {
+        return scatter(ring.shards(), work);
+    }
+
+    /**
+     * Runs the same work on the given shards at once.
+     *
+     * @return the results in the order of the shards
+     */
+    public <T> List<T> scatter(Collection<String> shards, Function<String, T> work) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (String shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    public <T> T onShard(String shard, SqlWork<T> work) {
+        return execute(dataSource(shard), work);
+    }
+
+    public <T> T inTransaction(String shard, SqlWork<T> work) {
+        return inTransaction(dataSource(shard), work);
+    }
+
+    private static <T> T inTransaction(DataSource dataSource, SqlWork<T> work) {
+        return execute(dataSource, connection -> {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Runs the work on a connection of its own, translating {@link SQLException} into {@link DataAccessException}.
+     */
+    public static <T> T execute(DataSource dataSource, SqlWork<T> work) {
+        try (Connection connection = dataSource.getConnection()) {
+            return work.run(connection);
+        } catch (SQLException e) {
+            DataAccessException translated = translator.translate("Shard access", null, e);
+            throw translated != null ? translated : new UncategorizedSQLException("Shard access", null, e);
+        }
+    }
+
+    /**
+     * Makes the ring the target of every instance, which from then on note the moving tasks they change.
+     *
+     * @throws IllegalStateException when another instance is resharding, or not every instance acknowledged the
+     *                               target in time
+     */
+    void beginMove(HashRing next) {
+        ring();
+        long published = inTransaction(directory, connection -> {
+            try (PreparedStatement update = connection.prepareStatement(BEGIN_MOVE);
+                 Statement delete = connection.createStatement()) {
+                update.setString(1, String.join(",", next.shards()));
+                update.setInt(2, next.virtualNodes());
+                update.setString(3, instance);
+                update.setTimestamp(4, directoryTime(connection, properties.getInstanceTimeout().negated()));
+                if (update.executeUpdate() == 0) {
+                    throw new IllegalStateException("Another instance is resharding");
+                }
+                // notes left by a resharding which stopped
+                delete.executeUpdate("DELETE FROM task_moved");
+                return readEpoch(connection);
+            }
+        });
+        moveEpoch = published;
+        refreshNow();
+        awaitOrFail(published, "the target ring");
+    }
+
+    /**
+     * Removes and returns the ids noted by {@link #written(String)} in every instance since the last call.
+     */
+    List<String> drainMoved() {
+        flushMoved();
+        return inTransaction(directory, connection -> {
+            Set<String> drained = new LinkedHashSet<>();
+            try (Statement select = connection.createStatement();
+                 ResultSet resultSet = select.executeQuery("SELECT id, uuid FROM task_moved ORDER BY id");
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM task_moved WHERE id = ?")) {
+                while (resultSet.next()) {
+                    delete.setLong(1, resultSet.getLong(1));
+                    delete.addBatch();
+                    drained.add(resultSet.getObject(2).toString());
+                }
+                if (!drained.isEmpty()) {
+                    delete.executeBatch();
+                }
+            }
+            return new ArrayList<>(drained);
+        });
+    }
+
+    /**
+     * Holds back the writes of every instance while the action runs, then makes the target ring the current one
+     * and stores it. The switch is given up when writes were held back longer than
+     * {@code tasks.sharding.switch-timeout}, as instances then write again on the current ring.
+     *
+     * @return the epoch of the new ring
+     */
+    long switchRing(Runnable beforeSwitch) {
+        long held = inTransaction(directory, connection -> {
+            try (PreparedStatement update = connection.prepareStatement(HOLD)) {
+                update.setTimestamp(1, directoryTime(connection, properties.getSwitchTimeout()));
+                update.setLong(2, moveEpoch);
+                if (update.executeUpdate() == 0) {
+                    throw new IllegalStateException("The resharding was taken over by another instance");
+                }
+                return readEpoch(connection);
+            }
+        });
+        moveEpoch = held;
+        refreshNow();
+        awaitOrFail(held, "holding back writes");
+        beforeSwitch.run();
+        HashRing next = target;
+        long switched = inTransaction(directory, connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    END_MOVE + " AND hold_until > CURRENT_TIMESTAMP")) {
+                update.setLong(1, held);
+                if (update.executeUpdate() == 0) {
+                    throw new IllegalStateException("Writes were held back longer than "
+                            + properties.getSwitchTimeout() + ", the ring isn't switched");
+                }
+            }
+            saveRing(connection, next);
+            return readEpoch(connection);
+        });
+        moveEpoch = -1;
+        refreshQuietly();
+        return switched;
+    }
+
+    /**
+     * Ends the resharding of this instance without switching rings, every instance drops the target.
+     */
+    void abortMove() {
+        long aborted = moveEpoch;
+        moveEpoch = -1;
+        if (aborted < 0) {
+            return;
+        }
+        try {
+            execute(directory, connection -> {
+                try (PreparedStatement update = connection.prepareStatement(END_MOVE)) {
+                    update.setLong(1, aborted);
+                    return update.executeUpdate();
+                }
+            });
+        } catch (RuntimeException e) {
+            customLogger.error("Can't end the resharding in the shard directory, another resharding takes it over "
+                    + "once this instance stopped: {}", e.getMessage());
+        }
+        refreshQuietly();
+    }
+
+    /**
+     * Waits up to {@code tasks.sharding.switch-timeout} until every running instance acknowledged the epoch.
+     *
+     * @return whether they did
+     */
+    boolean awaitAcknowledged(long awaited) {
+        long deadline = System.nanoTime() + properties.getSwitchTimeout().toNanos();
+        long pauseMillis = Math.max(10, properties.getRingRefreshInterval().toMillis() / 10);
+        while (true) {
+            long behind = execute(directory, connection -> {
+                try (PreparedStatement count = connection.prepareStatement(COUNT_BEHIND)) {
+                    count.setLong(1, awaited);
+                    count.setTimestamp(2, directoryTime(connection, properties.getInstanceTimeout().negated()));
+                    try (ResultSet resultSet = count.executeQuery()) {
+                        resultSet.next();
+                        return resultSet.getLong(1);
+                    }
+                }
+            });
+            if (behind == 0) {
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                customLogger.warn("{} instances didn't acknowledge epoch {} of the ring within {}", behind, awaited,
+                        properties.getSwitchTimeout());
+                return false;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void awaitOrFail(long awaited, String step) {
+        if (!awaitAcknowledged(awaited)) {
+            throw new IllegalStateException("Not every instance acknowledged " + step + " within "
+                    + properties.getSwitchTimeout());
+        }
+    }
+
+    private synchronized HashRing prepare() {
+        if (ring != null) {
+            return ring;
+        }
+        if (ownsDirectory) {
+            migrate("directory", directory);
+        }
+        shards.forEach(this::migrate);
+        refreshNow();
+        long interval = properties.getRingRefreshInterval().toMillis();
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                customLogger.warn("Exception occurred when reading the ring, will retry: {}", e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        customLogger.info("Tasks are sharded across {} with {} points per shard", ring.shards(), ring.virtualNodes());
+        return ring;
+    }
+
+    private void migrate(String name, DataSource dataSource) {
+        String location = execute(dataSource, connection -> isPostgres(connection)
+                ? "db/migration/postgres" : "db/migration/h2");
+        try {
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .validateMigrationNaming(true)
+                    .baselineOnMigrate(true)
+                    .locations(location)
+                    .load()
+                    .migrate();
+        } catch (RuntimeException e) {
+            customLogger.error("Exception occurred when migrating shard database {}: {}", name, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Reads, applies and acknowledges the ring state on the refresher thread, and waits for it.
+     */
+    private void refreshNow() {
+        try {
+            refresher.submit(this::refresh).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the ring", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshNow();
+        } catch (RuntimeException e) {
+            customLogger.warn("Exception occurred when reading the ring, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        long start = System.nanoTime();
+        RingState state = inTransaction(directory, this::readState);
+        if (state.epoch() != epoch || state.holding() != holding) {
+            apply(state);
+        }
+        flushMoved();
+        execute(directory, connection -> {
+            acknowledge(connection, state.epoch());
+            return null;
+        });
+        refreshedNanos = start;
+    }
+
+    /**
+     * Routes by the ring state once the running writes are done, and keeps holding back writes when the state
+     * asks for it. Fails for shards which aren't configured, so the state isn't acknowledged.
+     */
+    private void apply(RingState state) {
+        state.ring().shards().forEach(this::dataSource);
+        if (state.target() != null) {
+            state.target().shards().forEach(this::dataSource);
+        }
+        if (!holding) {
+            writes.writeLock().lock();
+        }
+        try {
+            if (state.target() == null || target == null || !state.target().shards().equals(target.shards())) {
+                moved.clear();
+            }
+            ring = state.ring();
+            target = state.target();
+            epoch = state.epoch();
+        } finally {
+            holding = state.holding();
+            if (!holding) {
+                writes.writeLock().unlock();
+            }
+        }
+        customLogger.info("Epoch {} of the ring: tasks on {}, moving to {}, writes held back: {}", state.epoch(),
+                state.ring().shards(), state.target() == null ? null : state.target().shards(), state.holding());
+    }
+
+    /**
+     * Reads the ring state, storing the configured shards as the first ring. The ring is read after the state: it
+     * only changes along with the state, so a newer state isn't applied with an older ring.
+     */
+    private RingState readState(Connection connection) throws SQLException {
+        long stateEpoch;
+        HashRing stateTarget = null;
+        boolean hold;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_STATE)) {
+            resultSet.next();
+            stateEpoch = resultSet.getLong(1);
+            String targetShards = resultSet.getString(3);
+            if (targetShards != null) {
+                stateTarget = new HashRing(List.of(targetShards.split(",")), resultSet.getInt(4));
+            }
+            hold = "HOLDING".equals(resultSet.getString(2)) && resultSet.getBoolean(5);
+        }
+        List<String> names = new ArrayList<>();
+        int virtualNodes = properties.getVirtualNodes();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name, virtual_nodes FROM task_shards")) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+                virtualNodes = resultSet.getInt(2);
+            }
+        }
+        HashRing stateRing;
+        if (names.isEmpty()) {
+            stateRing = new HashRing(shards.keySet(), virtualNodes);
+            saveRing(connection, stateRing);
+        } else {
+            stateRing = new HashRing(names, virtualNodes);
+        }
+        return new RingState(stateEpoch, stateRing, stateTarget, hold);
+    }
+
+    private void acknowledge(Connection connection, long acknowledged) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE task_ring_instances SET epoch = ?, seen_at = CURRENT_TIMESTAMP WHERE instance = ?")) {
+            update.setLong(1, acknowledged);
+            update.setString(2, instance);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO task_ring_instances (instance, epoch, seen_at) VALUES (?, ?, CURRENT_TIMESTAMP)")) {
+            insert.setString(1, instance);
+            insert.setLong(2, acknowledged);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Moves the ids noted by {@link #written(String)} to the directory, where the resharding instance reads them.
+     */
+    private void flushMoved() {
+        List<String> flushed = new ArrayList<>();
+        for (String uuid : moved) {
+            if (moved.remove(uuid)) {
+                flushed.add(uuid);
+            }
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        try {
+            execute(directory, connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO task_moved (uuid) VALUES (?)")) {
+                    for (String uuid : flushed) {
+                        insert.setObject(1, UUID.fromString(uuid));
+                        insert.addBatch();
+                    }
+                    return insert.executeBatch();
+                }
+            });
+        } catch (RuntimeException e) {
+            moved.addAll(flushed);
+            throw e;
+        }
+    }
+
+    private static long readEpoch(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT epoch FROM task_ring WHERE id = 1")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Time of the directory database moved by the offset, so instances compare times on one clock.
+     */
+    private static Timestamp directoryTime(Connection connection, Duration offset) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            resultSet.next();
+            return new Timestamp(resultSet.getTimestamp(1).getTime() + offset.toMillis());
+        }
+    }
+
+    private static void saveRing(Connection connection, HashRing next) throws SQLException {
+        try (Statement delete = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO task_shards (name, virtual_nodes) VALUES (?, ?)")) {
+            delete.executeUpdate("DELETE FROM task_shards");
+            for (String shard : next.shards()) {
+                insert.setString(1, shard);
+                insert.setInt(2, next.virtualNodes());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    public static boolean isPostgres(Connection connection) throws SQLException {
+        return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                customLogger.warn("Can't close shard datasource: {}", e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private record RingState(long epoch, HashRing ring, HashRing target, boolean holding) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.taskmanager.shard;
+
+import com.taskmanager.config.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sharding of the tasks, enabled with {@code tasks.sharding.enabled=true}. The task services then use the
+ * {@link com.taskmanager.repository.ShardedTaskRepository} while Postgres is available.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tasks.sharding", name = "enabled")
+public class ShardingConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ShardCluster shardCluster(ShardingProperties properties,
+                                     @Qualifier("primaryDataSource") DataSource primaryDataSource) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        List<ShardingProperties.Database> databases = properties.getShards();
+        for (int i = 0; i < databases.size(); i++) {
+            ShardingProperties.Database database = databases.get(i);
+            String name = database.getName() != null ? database.getName() : String.valueOf(i);
+            if (shards.put(name, dataSource(database, "shard-" + name)) != null) {
+                throw new IllegalStateException("Shard '" + name + "' is configured twice");
+            }
+        }
+        ShardingProperties.Database directory = properties.getDirectory();
+        if (directory == null) {
+            return new ShardCluster(shards, primaryDataSource, false, properties);
+        }
+        return new ShardCluster(shards, dataSource(directory, "shard-directory"), true, properties);
+    }
+
+    @Bean
+    public Resharder resharder(ShardCluster shardCluster) {
+        return new Resharder(shardCluster);
+    }
+
+    @Bean
+    public ShardsEndpoint shardsEndpoint(ShardCluster shardCluster, Resharder resharder) {
+        return new ShardsEndpoint(shardCluster, resharder);
+    }
+
+    private static DataSource dataSource(ShardingProperties.Database properties, String poolName) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.getDriverClassName())
+                .url(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+        dataSource.setPoolName(poolName);
+        dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+        return dataSource;
+    }
+}
@@ -0,0 +1,63 @@
+package com.taskmanager.shard;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code shards} actuator endpoint: the ring and the number of rows of every shard, and resharding with
+ * {@code POST /actuator/shards {"shards": "a,b,c"}}, which answers once the tasks are moved.
+ */
+@Endpoint(id = "shards")
+public class ShardsEndpoint {
+
+    private final ShardCluster cluster;
+    private final Resharder resharder;
+
+    public ShardsEndpoint(ShardCluster cluster, Resharder resharder) {
+        this.cluster = cluster;
+        this.resharder = resharder;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        HashRing ring = cluster.ring();
+        Map<String, Long> rows = new LinkedHashMap<>();
+        for (String shard : cluster.shardNames()) {
+            rows.put(shard, cluster.onShard(shard, connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM tasks")) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            }));
+        }
+        HashRing target = cluster.target();
+        Map<String, Object> shards = new LinkedHashMap<>();
+        shards.put("ring", ring.shards());
+        shards.put("virtualNodes", ring.virtualNodes());
+        shards.put("epoch", cluster.epoch());
+        shards.put("reshardingTo", target == null ? null : target.shards());
+        shards.put("rows", rows);
+        return shards;
+    }
+
+    /**
+     * @param shards names of the shards of the new ring, separated by commas
+     */
+    @WriteOperation
+    public Resharder.Result reshard(String shards) {
+        List<String> names = Arrays.stream(shards.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+        return resharder.reshard(names);
+    }
+}
@@ -0,0 +1,162 @@
+package com.taskmanager.shard;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads and writes the rows of the {@code tasks} table of a shard, the same on H2 and Postgres.
+ */
+public final class TaskRows {
+
+    public static final String UNIQUE_VIOLATION = "23505";
+
+    public static final String SELECT = "SELECT uuid, title, description, status, version, lease_expires_at,"
+            + " completed_at FROM tasks";
+
+    private static final String INSERT = "INSERT INTO tasks"
+            + " (title, description, status, version, lease_expires_at, completed_at, uuid)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String REPLACE = "UPDATE tasks"
+            + " SET title = ?, description = ?, status = ?, version = ?, lease_expires_at = ?, completed_at = ?"
+            + " WHERE uuid = ?";
+
+    private TaskRows() {
+    }
+
+    /**
+     * Maps the columns of {@link #SELECT}.
+     */
+    public static Task toTask(ResultSet resultSet) throws SQLException {
+        Task task = new Task();
+        task.setUuid(resultSet.getString(1));
+        task.setTitle(resultSet.getString(2));
+        task.setDescription(resultSet.getString(3));
+        String status = resultSet.getString(4);
+        task.setStatus(status == null ? null : Status.valueOf(status));
+        task.setVersion(resultSet.getLong(5));
+        Timestamp leaseExpiresAt = resultSet.getTimestamp(6);
+        task.setLeaseExpiresAt(leaseExpiresAt == null ? null : leaseExpiresAt.toInstant());
+        Timestamp completedAt = resultSet.getTimestamp(7);
+        task.setCompletedAt(completedAt == null ? null : completedAt.toInstant());
+        return task;
+    }
+
+    /**
+     * Inserts the task with its version, stamping its completion.
+     */
+    public static void insert(Connection connection, Task task) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            bind(statement, task);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Inserts the tasks with their versions in one batch, stamping their completion.
+     */
+    public static void insertAll(Connection connection, List<Task> tasks) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            for (Task task : tasks) {
+                bind(statement, task);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Writes the task as it is, version included, inserting it when it doesn't exist. Its completion is stamped.
+     */
+    public static void replace(Connection connection, Task task) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(REPLACE)) {
+            bind(statement, task);
+            if (statement.executeUpdate() > 0) {
+                return;
+            }
+        }
+        insert(connection, task);
+    }
+
+    public static int delete(Connection connection, String uuid) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM tasks WHERE uuid = ?")) {
+            statement.setObject(1, UUID.fromString(uuid));
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes the task only while it has the version.
+     */
+    public static int delete(Connection connection, String uuid, long version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "DELETE FROM tasks WHERE uuid = ? AND version = ?")) {
+            statement.setObject(1, UUID.fromString(uuid));
+            statement.setLong(2, version);
+            return statement.executeUpdate();
+        }
+    }
+
+    public static Task find(Connection connection, String uuid) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT + " WHERE uuid = ?")) {
+            statement.setObject(1, UUID.fromString(uuid));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? toTask(resultSet) : null;
+            }
+        }
+    }
+
+    /**
+     * @return id of the task with the title, {@code null} if there is none
+     */
+    public static String findByTitle(Connection connection, String title) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT uuid FROM tasks WHERE title = ?")) {
+            statement.setString(1, title);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Whether the statement, or one statement of a batch, violated a unique index.
+     */
+    public static boolean isUniqueViolation(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (UNIQUE_VIOLATION.equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void bindLease(PreparedStatement statement, int index, Task task) throws SQLException {
+        statement.setTimestamp(index, task.getLeaseExpiresAt() == null ? null : Timestamp.from(task.getLeaseExpiresAt()));
+    }
+
+    /**
+     * Stamps the completion of the task, as on persist and update of the entity, and binds it.
+     */
+    public static void bindCompletion(PreparedStatement statement, int index, Task task) throws SQLException {
+        task.stampCompletion();
+        statement.setTimestamp(index, task.getCompletedAt() == null ? null : Timestamp.from(task.getCompletedAt()));
+    }
+
+    private static void bind(PreparedStatement statement, Task task) throws SQLException {
+        statement.setString(1, task.getTitle());
+        statement.setString(2, task.getDescription());
+        statement.setString(3, task.getStatus() == null ? null : task.getStatus().name());
+        statement.setLong(4, task.getVersion() == null ? 0 : task.getVersion());
+        bindLease(statement, 5, task);
+        bindCompletion(statement, 6, task);
+        statement.setObject(7, UUID.fromString(task.getUuid()));
+    }
+}
@@ -0,0 +1,154 @@
+package com.taskmanager.shard;
+
+import com.taskmanager.model.Task;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Global directory of the task titles in the {@code task_titles} table, which keeps titles unique across the
+ * shards. It maps every title to the uuid of its task, the ring then tells the shard, so resharding leaves it alone.
+ * <p>
+ * A title is claimed before the task is written to its shard and released after it was deleted or renamed there,
+ * each in its own statement. A process stopping in between leaves a title claimed by a task which doesn't have it,
+ * see {@link #releaseStale(String, String, Instant)}.
+ */
+public class TitleDirectory {
+
+    private static final String CLAIM = "INSERT INTO task_titles (title, uuid, claimed_at) VALUES (?, ?, ?)";
+
+    private final DataSource dataSource;
+
+    public TitleDirectory(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @return {@code false} when the title is already claimed, by this task or another one
+     */
+    public boolean claim(String title, String uuid) {
+        return ShardCluster.execute(dataSource, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(CLAIM)) {
+                statement.setString(1, title);
+                statement.setObject(2, UUID.fromString(uuid));
+                statement.setTimestamp(3, Timestamp.from(Instant.now()));
+                return statement.executeUpdate() == 1;
+            } catch (SQLException e) {
+                if (TaskRows.UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    return false;
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Claims the titles of many tasks, all in one batch while none of them is claimed already, otherwise one after
+     * the other. A title appearing twice is claimed by the first of its tasks.
+     *
+     * @return whether every task claimed its title, {@code true} for a task without title
+     */
+    public boolean[] claimAll(List<Task> tasks) {
+        boolean[] claimed = new boolean[tasks.size()];
+        Set<String> titles = new HashSet<>();
+        List<Integer> claiming = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            String title = tasks.get(i).getTitle();
+            if (title == null) {
+                claimed[i] = true;
+            } else if (titles.add(title)) {
+                claiming.add(i);
+            }
+        }
+        if (claiming.isEmpty()) {
+            return claimed;
+        }
+        boolean batched = ShardCluster.execute(dataSource, connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(CLAIM)) {
+                Timestamp now = Timestamp.from(Instant.now());
+                for (int i : claiming) {
+                    statement.setString(1, tasks.get(i).getTitle());
+                    statement.setObject(2, UUID.fromString(tasks.get(i).getUuid()));
+                    statement.setTimestamp(3, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                if (TaskRows.isUniqueViolation(e)) {
+                    return false;
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+        for (int i : claiming) {
+            claimed[i] = batched || claim(tasks.get(i).getTitle(), tasks.get(i).getUuid());
+        }
+        return claimed;
+    }
+
+    /**
+     * Gives up the title, if the task still holds it.
+     */
+    public void release(String title, String uuid) {
+        ShardCluster.execute(dataSource, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM task_titles WHERE title = ? AND uuid = ?")) {
+                statement.setString(1, title);
+                statement.setObject(2, UUID.fromString(uuid));
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Gives up the title if the task claimed it before the given time, which a claim still being written can't
+     * have done.
+     *
+     * @return whether the title was released
+     */
+    public boolean releaseStale(String title, String uuid, Instant claimedBefore) {
+        return ShardCluster.execute(dataSource, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM task_titles WHERE title = ? AND uuid = ? AND claimed_at < ?")) {
+                statement.setString(1, title);
+                statement.setObject(2, UUID.fromString(uuid));
+                statement.setTimestamp(3, Timestamp.from(claimedBefore));
+                return statement.executeUpdate() == 1;
+            }
+        });
+    }
+
+    /**
+     * @return uuid of the task holding the title, {@code null} if it is free
+     */
+    public String owner(String title) {
+        return ShardCluster.execute(dataSource, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT uuid FROM task_titles WHERE title = ?")) {
+                statement.setString(1, title);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getString(1) : null;
+                }
+            }
+        });
+    }
+
+    public boolean exists(String title) {
+        return owner(title) != null;
+    }
+}
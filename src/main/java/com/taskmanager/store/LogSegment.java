@@ -0,0 +1,82 @@
+package com.taskmanager.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One log file of the {@link MemoryTaskStore}, memory-mapped at its full size when created. An append is a copy
+ * into the mapping, so it survives a crash of the process as soon as it returns; {@link #force()} makes it
+ * survive one of the machine. Entries are framed as length, CRC32C and payload. The unwritten rest of the file
+ * is zero, which reads as the end of the log.
+ * <p>
+ * Not thread-safe, the store appends under its log lock.
+ */
+final class LogSegment implements AutoCloseable {
+
+    static final int HEADER = 8;
+
+    private final long generation;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int position;
+
+    private LogSegment(long generation, FileChannel channel, MappedByteBuffer buffer) {
+        this.generation = generation;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path file, long generation, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new LogSegment(generation, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    int size() {
+        return position;
+    }
+
+    /**
+     * @return {@code false} when the entry doesn't fit into the rest of the file, nothing was written then
+     */
+    boolean append(byte[] entry) {
+        if (position + HEADER + entry.length > buffer.capacity()) {
+            return false;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(entry);
+        buffer.put(position + HEADER, entry);
+        buffer.putInt(position + 4, (int) checksum.getValue());
+        // the length comes last, so an entry torn by a crash ends the log
+        buffer.putInt(position, entry.length);
+        position += HEADER + entry.length;
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Syncs and closes the file. The mapping itself is released once the buffer is garbage collected, Java has no
+     * way to unmap it earlier.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,625 @@
+package com.taskmanager.store;
+
+import com.taskmanager.config.TaskStoreProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Purpose-built in-memory store of the tasks, serving them instead of H2 while Postgres is unavailable, or alone
+ * in a standalone deployment.
+ * <p>
+ * Tasks are held as immutable {@link TaskRecord}s in a skip list ordered by id, next to skip list indexes on
+ * title, on status and on the end of the lease of claimed tasks. Reads don't lock. A change of a task locks one of
+ * {@value #STRIPES} stripes chosen by its id and checks the version like the {@code @Version} column of the entity
+ * does. A title is taken with one atomic put into the title index, so titles stay unique across stripes. An index
+ * entry is checked against the record it leads to, so a read racing a change never returns a task that doesn't
+ * match. The changes made through an {@link Undo} can be reverted, which the repository does when its transaction
+ * rolls back.
+ * <p>
+ * When a directory is set, every change is appended to a memory-mapped log once applied, and a snapshot of all
+ * tasks is taken every {@code snapshotInterval} and on close. A restart loads the latest snapshot and replays the
+ * logs written since, see {@link StoreFiles}. Without a directory the tasks are lost on restart, like those of an
+ * in-memory H2 database.
+ */
+public class MemoryTaskStore implements MeterBinder, AutoCloseable {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(MemoryTaskStore.class);
+
+    private static final int STRIPES = 64;
+
+    /**
+     * Unsigned order of the id bits, which is the order of the canonical strings, and how Postgres and H2 sort
+     * uuids.
+     */
+    private static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+    private static final Comparator<TaskRecord> RECORD_ORDER = (a, b) -> ID_ORDER.compare(a.id, b.id);
+    private static final Comparator<Lease> LEASE_ORDER = Comparator.comparingLong(Lease::expiresAt)
+            .thenComparing(Lease::id, ID_ORDER);
+
+    private final ConcurrentSkipListMap<UUID, TaskRecord> tasks = new ConcurrentSkipListMap<>(ID_ORDER);
+    private final ConcurrentSkipListMap<String, UUID> titles = new ConcurrentSkipListMap<>();
+    private final Map<Status, ConcurrentSkipListSet<UUID>> statuses = new EnumMap<>(Status.class);
+    private final AtomicLongArray statusCounts = new AtomicLongArray(Status.values().length);
+    private final ConcurrentSkipListSet<Lease> leases = new ConcurrentSkipListSet<>(LEASE_ORDER);
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object logLock = new Object();
+    private final AtomicLong snapshots = new AtomicLong();
+
+    private final TaskStoreProperties properties;
+    private final StoreFiles files;
+    private ScheduledExecutorService scheduler;
+    private volatile LogSegment log;
+
+    /**
+     * @param directory directory of the snapshots and logs, {@code null} to keep the tasks in memory only
+     */
+    public MemoryTaskStore(Path directory, TaskStoreProperties properties) {
+        this.properties = properties;
+        this.files = directory == null ? null : new StoreFiles(directory, (int) properties.getLogSize().toBytes());
+        for (Status status : Status.values()) {
+            statuses.put(status, new ConcurrentSkipListSet<>(ID_ORDER));
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Loads the latest snapshot, replays the logs written since and starts a new log, then schedules snapshots
+     * and syncs.
+     */
+    public void open() throws IOException {
+        if (files == null) {
+            customLogger.info("In-memory task store is not persisted, set tasks.store.directory to keep its tasks");
+            return;
+        }
+        long started = System.nanoTime();
+        files.prepare();
+        long snapshot = files.latestSnapshot();
+        long entries = snapshot < 0 ? 0 : files.readSnapshot(snapshot, this::replay);
+        long next = Math.max(snapshot, 0);
+        for (long generation : files.logs()) {
+            if (generation >= snapshot) {
+                entries += files.readLog(generation, this::replay);
+            }
+            next = Math.max(next, generation + 1);
+        }
+        log = files.createLog(next);
+        customLogger.info("In-memory task store loaded {} tasks from {} entries in {} ms", tasks.size(), entries,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long snapshotInterval = properties.getSnapshotInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotSafely, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        long syncInterval = properties.getSyncInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> log.force(), syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a last snapshot, so the next start has no log to replay.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        if (files == null) {
+            return;
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        snapshot();
+        log.close();
+    }
+
+    public Optional<Task> find(String uuid) {
+        TaskRecord record = tasks.get(UUID.fromString(uuid));
+        return record == null ? Optional.empty() : Optional.of(record.toTask());
+    }
+
+    public boolean exists(String uuid) {
+        return tasks.containsKey(UUID.fromString(uuid));
+    }
+
+    public boolean titleExists(String title) {
+        return titles.containsKey(title);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * @return number of tasks per status, statuses without tasks are left out
+     */
+    public Map<Status, Long> countByStatus() {
+        Map<Status, Long> counts = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            long count = statusCounts.get(status.ordinal());
+            if (count > 0) {
+                counts.put(status, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the task with version 0, unless its id or its title is already taken.
+     *
+     * @return {@code false} when the id or the title is taken
+     */
+    public boolean insert(Task task) {
+        return insert(task, null);
+    }
+
+    /**
+     * Same as {@link #insert(Task)}, recording the change in the undo, if one is given.
+     */
+    public boolean insert(Task task, Undo undo) {
+        UUID id = UUID.fromString(task.getUuid());
+        checkTitle(task);
+        synchronized (stripe(id)) {
+            if (tasks.containsKey(id)) {
+                return false;
+            }
+            if (titles.putIfAbsent(task.getTitle(), id) != null) {
+                return false;
+            }
+            put(null, TaskRecord.of(id, task.getTitle(), task, 0), undo);
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the task with the given one and increments its version.
+     *
+     * @return the task as stored
+     * @throws ObjectOptimisticLockingFailureException when the task was deleted, or changed since the version it
+     *                                                 has, a task without version replaces any version
+     * @throws DuplicateKeyException                   when another task has the title
+     */
+    public Task update(Task task) {
+        return update(task, null);
+    }
+
+    /**
+     * Same as {@link #update(Task)}, recording the change in the undo, if one is given.
+     */
+    public Task update(Task task, Undo undo) {
+        UUID id = UUID.fromString(task.getUuid());
+        checkTitle(task);
+        synchronized (stripe(id)) {
+            TaskRecord previous = tasks.get(id);
+            if (previous == null || (task.getVersion() != null && task.getVersion() != previous.version)) {
+                throw new ObjectOptimisticLockingFailureException(Task.class, task.getUuid());
+            }
+            String title = previous.title;
+            if (!title.equals(task.getTitle())) {
+                title = task.getTitle();
+                UUID owner = titles.putIfAbsent(title, id);
+                if (owner != null && !owner.equals(id)) {
+                    throw new DuplicateKeyException("Task with the same title already exists");
+                }
+            }
+            TaskRecord record = TaskRecord.of(id, title, task, previous.version + 1);
+            put(previous, record, undo);
+            return record.toTask();
+        }
+    }
+
+    /**
+     * @return {@code false} when there was no such task
+     */
+    public boolean delete(String uuid) {
+        return delete(uuid, null);
+    }
+
+    /**
+     * Same as {@link #delete(String)}, recording the change in the undo, if one is given.
+     */
+    public boolean delete(String uuid, Undo undo) {
+        UUID id = UUID.fromString(uuid);
+        synchronized (stripe(id)) {
+            TaskRecord previous = tasks.get(id);
+            if (previous == null) {
+                return false;
+            }
+            remove(previous, undo);
+            return true;
+        }
+    }
+
+    /**
+     * Deletes every task, once they have been copied elsewhere. A task written meanwhile may be kept or deleted.
+     *
+     * @return the number of tasks deleted
+     */
+    public int clear() {
+        List<UUID> ids = new ArrayList<>(tasks.keySet());
+        int deleted = 0;
+        for (UUID id : ids) {
+            if (delete(id.toString())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the next page of tasks ordered by uuid, starting right after the {@code after} cursor.
+     * Every filter is optional and ignored when {@code null}.
+     */
+    public List<Task> page(String after, Status status, String titlePrefix, int limit) {
+        return select(after == null ? null : UUID.fromString(after), status, titlePrefix)
+                .limit(limit)
+                .map(TaskRecord::toTask)
+                .toList();
+    }
+
+    /**
+     * All matching tasks ordered by uuid. Tasks changed while the stream is consumed may be returned as they were
+     * before or after the change.
+     */
+    public Stream<Task> stream(Status status, String titlePrefix) {
+        return select(null, status, titlePrefix).map(TaskRecord::toTask);
+    }
+
+    /**
+     * Moves up to {@code limit} {@code NEW} tasks, oldest first, to {@code IN_PROGRESS} with a lease until
+     * {@code leaseExpiresAt}. A task claimed by a concurrent call in the meantime is skipped.
+     *
+     * @return the claimed tasks as updated
+     */
+    public List<Task> claim(int limit, Instant leaseExpiresAt) {
+        return claim(limit, leaseExpiresAt, null);
+    }
+
+    /**
+     * Same as {@link #claim(int, Instant)}, recording the changes in the undo, if one is given.
+     */
+    public List<Task> claim(int limit, Instant leaseExpiresAt, Undo undo) {
+        List<Task> claimed = new ArrayList<>();
+        for (Iterator<UUID> ids = statuses.get(Status.NEW).iterator(); ids.hasNext() && claimed.size() < limit; ) {
+            UUID id = ids.next();
+            synchronized (stripe(id)) {
+                TaskRecord previous = tasks.get(id);
+                if (previous != null && previous.status() == Status.NEW) {
+                    TaskRecord record = previous.withStatus(Status.IN_PROGRESS, leaseExpiresAt);
+                    put(previous, record, undo);
+                    claimed.add(record.toTask());
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Moves up to {@code limit} {@code IN_PROGRESS} tasks whose lease expired before {@code now} back to
+     * {@code NEW}.
+     *
+     * @return the released tasks as updated
+     */
+    public List<Task> releaseExpired(Instant now, int limit) {
+        return releaseExpired(now, limit, null);
+    }
+
+    /**
+     * Same as {@link #releaseExpired(Instant, int)}, recording the changes in the undo, if one is given.
+     */
+    public List<Task> releaseExpired(Instant now, int limit, Undo undo) {
+        List<Task> released = new ArrayList<>();
+        long nowMillis = now.toEpochMilli();
+        for (Iterator<Lease> expired = leases.iterator(); expired.hasNext() && released.size() < limit; ) {
+            Lease lease = expired.next();
+            if (lease.expiresAt() >= nowMillis) {
+                break;
+            }
+            synchronized (stripe(lease.id())) {
+                TaskRecord previous = tasks.get(lease.id());
+                if (previous != null && previous.status() == Status.IN_PROGRESS
+                        && previous.leaseExpiresAt == lease.expiresAt()) {
+                    TaskRecord record = previous.withStatus(Status.NEW, null);
+                    put(previous, record, undo);
+                    released.add(record.toTask());
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Starts a new log and writes all tasks to a snapshot, which replaces the older logs. Changes made meanwhile
+     * go to the new log, which a restart replays on top of the snapshot.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (files == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        long generation;
+        synchronized (logLock) {
+            generation = rotate().generation();
+        }
+        files.writeSnapshot(generation, tasks.values().stream().map(TaskRecord::encode).iterator());
+        snapshots.incrementAndGet();
+        customLogger.debug("Snapshot {} of the in-memory task store taken in {} ms", generation,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("tasks.store.size", tasks, Map::size)
+                .description("Tasks in the in-memory store")
+                .register(registry);
+        Gauge.builder("tasks.store.log.bytes", this, store -> store.log == null ? 0 : store.log.size())
+                .description("Bytes appended to the current log of the in-memory store")
+                .register(registry);
+        FunctionCounter.builder("tasks.store.snapshots", snapshots, AtomicLong::get)
+                .description("Snapshots taken of the in-memory store")
+                .register(registry);
+    }
+
+    /**
+     * Matching records ordered by id. The title index is ordered by title, so its matches are sorted first.
+     */
+    private Stream<TaskRecord> select(UUID after, Status status, String titlePrefix) {
+        Stream<TaskRecord> records;
+        if (titlePrefix != null) {
+            records = titles.tailMap(titlePrefix).entrySet().stream()
+                    .takeWhile(entry -> entry.getKey().startsWith(titlePrefix))
+                    .map(entry -> {
+                        TaskRecord record = tasks.get(entry.getValue());
+                        // a task renamed meanwhile is found under its current title only
+                        return record != null && record.title.equals(entry.getKey()) ? record : null;
+                    })
+                    .filter(Objects::nonNull)
+                    .sorted(RECORD_ORDER);
+        } else if (status != null) {
+            NavigableSet<UUID> ids = statuses.get(status);
+            records = (after == null ? ids : ids.tailSet(after, false)).stream()
+                    .map(tasks::get)
+                    .filter(Objects::nonNull);
+        } else {
+            records = (after == null ? tasks : tasks.tailMap(after, false)).values().stream();
+        }
+        return records.filter(record -> (after == null || ID_ORDER.compare(record.id, after) > 0)
+                && (status == null || record.status() == status)
+                && (titlePrefix == null || record.title.startsWith(titlePrefix)));
+    }
+
+    /**
+     * Starts recording changes, to revert them later.
+     */
+    public Undo undo() {
+        return new Undo();
+    }
+
+    /**
+     * Stores the record, indexes it and logs it. Called under the stripe lock of the task, with its title taken.
+     */
+    private void put(TaskRecord previous, TaskRecord record, Undo undo) {
+        tasks.put(record.id, record);
+        index(previous, record);
+        if (undo != null) {
+            undo.changes.add(new Change(record.id, previous, record));
+        }
+        append(record.encode());
+    }
+
+    /**
+     * Removes the record, its index entries and logs the removal. Called under the stripe lock of the task.
+     */
+    private void remove(TaskRecord previous, Undo undo) {
+        tasks.remove(previous.id);
+        index(previous, null);
+        if (undo != null) {
+            undo.changes.add(new Change(previous.id, previous, null));
+        }
+        append(TaskRecord.encodeDelete(previous.id));
+    }
+
+    /**
+     * Puts back the record a change replaced, while the task is still as the change left it. A task changed again
+     * since keeps the later change, and a task whose previous title was taken meanwhile stays as it is.
+     *
+     * @return whether the change was reverted
+     */
+    private boolean revert(Change change) {
+        synchronized (stripe(change.id())) {
+            TaskRecord current = tasks.get(change.id());
+            if (current != change.record()) {
+                return false;
+            }
+            TaskRecord previous = change.previous();
+            if (previous == null) {
+                remove(current, null);
+                return true;
+            }
+            if (current == null || !current.title.equals(previous.title)) {
+                UUID owner = titles.putIfAbsent(previous.title, previous.id);
+                if (owner != null && !owner.equals(previous.id)) {
+                    return false;
+                }
+            }
+            put(current, previous, null);
+            return true;
+        }
+    }
+
+    /**
+     * Moves the index entries of a task from its previous record to its new one. New entries are added before the
+     * previous ones are removed, so the task is never missing from an index it stays in.
+     */
+    private void index(TaskRecord previous, TaskRecord record) {
+        if (record != null) {
+            Status status = record.status();
+            if (status != null && statuses.get(status).add(record.id)) {
+                statusCounts.incrementAndGet(status.ordinal());
+            }
+            if (record.hasLease()) {
+                leases.add(new Lease(record.leaseExpiresAt, record.id));
+            }
+        }
+        if (previous != null) {
+            Status status = previous.status();
+            if (status != null && (record == null || record.status != previous.status)
+                    && statuses.get(status).remove(previous.id)) {
+                statusCounts.decrementAndGet(status.ordinal());
+            }
+            if (previous.hasLease() && (record == null || record.leaseExpiresAt != previous.leaseExpiresAt)) {
+                leases.remove(new Lease(previous.leaseExpiresAt, previous.id));
+            }
+            if (record == null || !record.title.equals(previous.title)) {
+                titles.remove(previous.title, previous.id);
+            }
+        }
+    }
+
+    /**
+     * Applies an entry of a snapshot or a log. Entries of different tasks may be logged in another order than
+     * they were applied, so a title is taken over without checks and only given up by the task holding it.
+     */
+    private void replay(ByteBuffer entry) {
+        byte type = entry.get();
+        UUID id = new UUID(entry.getLong(), entry.getLong());
+        TaskRecord previous = tasks.get(id);
+        if (type == TaskRecord.PUT || type == TaskRecord.PUT_WITHOUT_COMPLETION) {
+            TaskRecord record = TaskRecord.decode(type, id, entry);
+            tasks.put(id, record);
+            titles.put(record.title, id);
+            index(previous, record);
+        } else if (previous != null) {
+            tasks.remove(id);
+            index(previous, null);
+        }
+    }
+
+    /**
+     * Appends an entry to the current log, starting a new log when it is full. A change which can't be logged
+     * fails, but stays in memory.
+     */
+    private void append(byte[] entry) {
+        if (files == null) {
+            return;
+        }
+        synchronized (logLock) {
+            try {
+                if (!log.append(entry) && !rotate().append(entry)) {
+                    throw new IllegalStateException("Task of " + entry.length + " bytes doesn't fit into a log of "
+                            + properties.getLogSize());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't start a new log of the in-memory task store", e);
+            }
+        }
+    }
+
+    /**
+     * Starts the log of the next generation and closes the current one. Called under the log lock.
+     */
+    private LogSegment rotate() throws IOException {
+        LogSegment previous = log;
+        log = files.createLog(previous.generation() + 1);
+        previous.close();
+        return log;
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            customLogger.error("Can't take a snapshot of the in-memory task store: {}", e.getMessage());
+        }
+    }
+
+    private Object stripe(UUID id) {
+        int hash = id.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static void checkTitle(Task task) {
+        if (task.getTitle() == null) {
+            throw new DataIntegrityViolationException("Title of a task can't be null");
+        }
+    }
+
+    private record Lease(long expiresAt, UUID id) {
+    }
+
+    /**
+     * A record replaced by another one, {@code null} when the task didn't exist before or after the change.
+     */
+    private record Change(UUID id, TaskRecord previous, TaskRecord record) {
+    }
+
+    /**
+     * Changes made to the store by one thread, such as those of a transaction, which can be reverted newest first.
+     * A change is appended to the log once it is applied, like every change, and so is its revert.
+     */
+    public final class Undo {
+
+        private final List<Change> changes = new ArrayList<>();
+
+        private Undo() {
+        }
+
+        /**
+         * @return number of changes recorded
+         */
+        public int size() {
+            return changes.size();
+        }
+
+        /**
+         * Reverts the changes recorded after the first {@code size} ones, the newest first.
+         *
+         * @return number of changes which couldn't be reverted, since their tasks were changed again meanwhile
+         */
+        public int revert(int size) {
+            int kept = 0;
+            while (changes.size() > size) {
+                if (!MemoryTaskStore.this.revert(changes.remove(changes.size() - 1))) {
+                    kept++;
+                }
+            }
+            return kept;
+        }
+    }
+}
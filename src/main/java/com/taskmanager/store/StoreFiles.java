@@ -0,0 +1,177 @@
+package com.taskmanager.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The directory of the {@link MemoryTaskStore}: snapshots of all tasks and the logs of the changes made since.
+ * Files are numbered by generation. A snapshot of generation {@code n} holds every change logged before log
+ * {@code n} was started, so a restart loads the latest snapshot and replays the logs from its generation on.
+ * Snapshots are written to a temporary file first and renamed once complete.
+ */
+final class StoreFiles {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(StoreFiles.class);
+
+    private static final String LOG_PREFIX = "log-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final int logSize;
+
+    StoreFiles(Path directory, int logSize) {
+        this.directory = directory;
+        this.logSize = logSize;
+    }
+
+    /**
+     * Creates the directory and removes a snapshot left incomplete by a crash.
+     */
+    void prepare() throws IOException {
+        Files.createDirectories(directory);
+        for (Path file : list(TEMPORARY_SUFFIX)) {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return generation of the latest snapshot, {@code -1} when there is none
+     */
+    long latestSnapshot() throws IOException {
+        return generations(SNAPSHOT_PREFIX).stream().mapToLong(Long::longValue).max().orElse(-1);
+    }
+
+    /**
+     * @return generations of all logs, ascending
+     */
+    List<Long> logs() throws IOException {
+        return generations(LOG_PREFIX).stream().sorted().toList();
+    }
+
+    LogSegment createLog(long generation) throws IOException {
+        return LogSegment.create(file(LOG_PREFIX, generation), generation, logSize);
+    }
+
+    /**
+     * Passes the entries of the snapshot to the consumer.
+     *
+     * @return number of entries
+     */
+    long readSnapshot(long generation, Consumer<ByteBuffer> entries) throws IOException {
+        return read(file(SNAPSHOT_PREFIX, generation), entries);
+    }
+
+    /**
+     * Passes the entries of the log to the consumer, up to its end or to an entry torn by a crash.
+     *
+     * @return number of entries
+     */
+    long readLog(long generation, Consumer<ByteBuffer> entries) throws IOException {
+        return read(file(LOG_PREFIX, generation), entries);
+    }
+
+    /**
+     * Writes and syncs a snapshot of the given entries, then removes the older snapshots and the logs it replaces.
+     */
+    void writeSnapshot(long generation, Iterator<byte[]> entries) throws IOException {
+        Path snapshot = file(SNAPSHOT_PREFIX, generation);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            CRC32C checksum = new CRC32C();
+            while (entries.hasNext()) {
+                byte[] entry = entries.next();
+                checksum.reset();
+                checksum.update(entry);
+                output.writeInt(entry.length);
+                output.writeInt((int) checksum.getValue());
+                output.write(entry);
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        for (long older : generations(SNAPSHOT_PREFIX)) {
+            if (older < generation) {
+                Files.deleteIfExists(file(SNAPSHOT_PREFIX, older));
+            }
+        }
+        for (long older : generations(LOG_PREFIX)) {
+            if (older < generation) {
+                Files.deleteIfExists(file(LOG_PREFIX, older));
+            }
+        }
+    }
+
+    private long read(Path file, Consumer<ByteBuffer> entries) throws IOException {
+        long count = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            CRC32C checksum = new CRC32C();
+            while (true) {
+                int length;
+                int expected;
+                byte[] entry;
+                try {
+                    length = input.readInt();
+                    if (length <= 0 || length > logSize) {
+                        return count;
+                    }
+                    expected = input.readInt();
+                    entry = new byte[length];
+                    input.readFully(entry);
+                } catch (EOFException e) {
+                    return count;
+                }
+                checksum.reset();
+                checksum.update(entry);
+                if ((int) checksum.getValue() != expected) {
+                    customLogger.warn("Entry {} of {} is damaged, the entries from there on are ignored", count, file);
+                    return count;
+                }
+                entries.accept(ByteBuffer.wrap(entry));
+                count++;
+            }
+        }
+    }
+
+    private List<Long> generations(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())))
+                    .toList();
+        }
+    }
+
+    private List<Path> list(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).toList();
+        }
+    }
+
+    private Path file(String prefix, long generation) {
+        return directory.resolve(prefix + String.format("%016d", generation) + SUFFIX);
+    }
+}
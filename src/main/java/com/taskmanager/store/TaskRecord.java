@@ -0,0 +1,156 @@
+package com.taskmanager.store;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A task as the {@link MemoryTaskStore} holds it. Records are immutable and replaced as a whole by every change,
+ * so readers never lock. The id is the key of the record in the store, the title the key in the title index,
+ * and status, version, lease and completion time are kept as primitives.
+ */
+final class TaskRecord {
+
+    /**
+     * Entry of a task written before the completion time was kept, read as a task never completed.
+     */
+    static final byte PUT_WITHOUT_COMPLETION = 1;
+    static final byte DELETE = 2;
+    static final byte PUT = 3;
+
+    private static final Status[] STATUSES = Status.values();
+    private static final byte NO_STATUS = -1;
+    private static final long NO_LEASE = Long.MIN_VALUE;
+    private static final long NOT_COMPLETED = Long.MIN_VALUE;
+
+    final UUID id;
+    final String title;
+    final String description;
+    final byte status;
+    final long version;
+    final long leaseExpiresAt;
+    final long completedAt;
+
+    TaskRecord(UUID id, String title, String description, byte status, long version, long leaseExpiresAt,
+               long completedAt) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.status = status;
+        this.version = version;
+        this.leaseExpiresAt = leaseExpiresAt;
+        this.completedAt = completedAt;
+    }
+
+    /**
+     * @param title title of the task, the instance held by the title index
+     */
+    static TaskRecord of(UUID id, String title, Task task, long version) {
+        byte status = task.getStatus() == null ? NO_STATUS : (byte) task.getStatus().ordinal();
+        // a lease only holds while the task is in progress, as on update of the entity
+        long lease = task.getLeaseExpiresAt() == null || task.getStatus() != Status.IN_PROGRESS
+                ? NO_LEASE
+                : task.getLeaseExpiresAt().toEpochMilli();
+        // stamped as on persist and update of the entity
+        task.stampCompletion();
+        long completed = task.getCompletedAt() == null ? NOT_COMPLETED : task.getCompletedAt().toEpochMilli();
+        return new TaskRecord(id, title, task.getDescription(), status, version, lease, completed);
+    }
+
+    /**
+     * Moves a task which isn't completed to another status which isn't either, as claims and releases do.
+     */
+    TaskRecord withStatus(Status status, Instant leaseExpiresAt) {
+        long lease = leaseExpiresAt == null ? NO_LEASE : leaseExpiresAt.toEpochMilli();
+        return new TaskRecord(id, title, description, (byte) status.ordinal(), version + 1, lease, NOT_COMPLETED);
+    }
+
+    Status status() {
+        return status == NO_STATUS ? null : STATUSES[status];
+    }
+
+    boolean hasLease() {
+        return leaseExpiresAt != NO_LEASE;
+    }
+
+    Task toTask() {
+        Task task = new Task();
+        task.setUuid(id.toString());
+        task.setTitle(title);
+        task.setDescription(description);
+        task.setStatus(status());
+        task.setVersion(version);
+        task.setLeaseExpiresAt(hasLease() ? Instant.ofEpochMilli(leaseExpiresAt) : null);
+        task.setCompletedAt(completedAt == NOT_COMPLETED ? null : Instant.ofEpochMilli(completedAt));
+        return task;
+    }
+
+    /**
+     * Encodes the record as a log entry replacing the task.
+     */
+    byte[] encode() {
+        byte[] titleBytes = title == null ? null : title.getBytes(StandardCharsets.UTF_8);
+        byte[] descriptionBytes = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 16 + 1 + 8 + 8 + 8 + length(titleBytes) + length(descriptionBytes));
+        buffer.put(PUT)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .put(status)
+                .putLong(version)
+                .putLong(leaseExpiresAt)
+                .putLong(completedAt);
+        putBytes(buffer, titleBytes);
+        putBytes(buffer, descriptionBytes);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes a log entry removing the task.
+     */
+    static byte[] encodeDelete(UUID id) {
+        return ByteBuffer.allocate(1 + 16)
+                .put(DELETE)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * Decodes the record of a {@link #PUT} or {@link #PUT_WITHOUT_COMPLETION} entry, after its type was read.
+     */
+    static TaskRecord decode(byte type, UUID id, ByteBuffer buffer) {
+        byte status = buffer.get();
+        long version = buffer.getLong();
+        long leaseExpiresAt = buffer.getLong();
+        long completedAt = type == PUT ? buffer.getLong() : NOT_COMPLETED;
+        String title = getString(buffer);
+        String description = getString(buffer);
+        return new TaskRecord(id, title, description, status, version, leaseExpiresAt, completedAt);
+    }
+
+    private static int length(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1 @@
+CREATE UNIQUE INDEX IF NOT EXISTS tasks_title_uindex ON tasks (title);
\ No newline at end of file
@@ -0,0 +1 @@
+ALTER TABLE tasks ALTER COLUMN uuid SET DATA TYPE UUID;
\ No newline at end of file
@@ -0,0 +1,3 @@
+ALTER TABLE tasks ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP WITH TIME ZONE;
+CREATE INDEX IF NOT EXISTS tasks_status_idx ON tasks (status, uuid);
+CREATE INDEX IF NOT EXISTS tasks_lease_idx ON tasks (status, lease_expires_at);
\ No newline at end of file
@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS task_titles (
+    title           VARCHAR PRIMARY KEY,
+    uuid            UUID NOT NULL,
+    claimed_at      TIMESTAMP WITH TIME ZONE NOT NULL
+);
+CREATE TABLE IF NOT EXISTS task_shards (
+    name            VARCHAR PRIMARY KEY,
+    virtual_nodes   INTEGER NOT NULL
+);
\ No newline at end of file
@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS tasks_list_version (
+    slot            INT PRIMARY KEY,
+    version         BIGINT NOT NULL
+);
+INSERT INTO tasks_list_version (slot, version)
+    SELECT slot, 0 FROM generate_series(0, 63) slot
+    ON CONFLICT (slot) DO NOTHING;
+-- every statement writing tasks counts itself in the slot of its connection, so concurrent writers rarely wait for
+-- the same row, and the sum of the slots changes with the commit of the change
+CREATE OR REPLACE FUNCTION tasks_list_changed() RETURNS trigger AS $$
+BEGIN
+    UPDATE tasks_list_version SET version = version + 1 WHERE slot = pg_backend_pid() % 64;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+DROP TRIGGER IF EXISTS tasks_list_changed ON tasks;
+CREATE TRIGGER tasks_list_changed AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON tasks
+    FOR EACH STATEMENT EXECUTE FUNCTION tasks_list_changed();
\ No newline at end of file
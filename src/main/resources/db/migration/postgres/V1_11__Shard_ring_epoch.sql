@@ -0,0 +1,20 @@
+-- state of the ring shared by the instances: every change of it is a new epoch, which every instance acknowledges
+CREATE TABLE IF NOT EXISTS task_ring (
+    id                      INTEGER PRIMARY KEY,
+    epoch                   BIGINT NOT NULL,
+    state                   VARCHAR NOT NULL,
+    target                  VARCHAR,
+    target_virtual_nodes    INTEGER,
+    resharder               VARCHAR,
+    hold_until              TIMESTAMP WITH TIME ZONE
+);
+INSERT INTO task_ring (id, epoch, state) SELECT 1, 0, 'STABLE' WHERE NOT EXISTS (SELECT 1 FROM task_ring);
+CREATE TABLE IF NOT EXISTS task_ring_instances (
+    instance        VARCHAR PRIMARY KEY,
+    epoch           BIGINT NOT NULL,
+    seen_at         TIMESTAMP WITH TIME ZONE NOT NULL
+);
+CREATE TABLE IF NOT EXISTS task_moved (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uuid            UUID NOT NULL
+);
\ No newline at end of file
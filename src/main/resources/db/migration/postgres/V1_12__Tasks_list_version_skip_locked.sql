@@ -0,0 +1,17 @@
+CREATE SEQUENCE IF NOT EXISTS tasks_list_version_slot START WITH 64;
+-- every statement writing tasks counts itself in a slot no other running transaction holds, so writers never wait
+-- for each other; when all slots are held a new one is added. The sum of the slots changes with the commit of the
+-- change
+CREATE OR REPLACE FUNCTION tasks_list_changed() RETURNS trigger AS $$
+DECLARE
+    free_slot INT;
+BEGIN
+    SELECT slot INTO free_slot FROM tasks_list_version ORDER BY random() LIMIT 1 FOR UPDATE SKIP LOCKED;
+    IF free_slot IS NULL THEN
+        INSERT INTO tasks_list_version (slot, version) VALUES (nextval('tasks_list_version_slot'), 1);
+    ELSE
+        UPDATE tasks_list_version SET version = version + 1 WHERE slot = free_slot;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
\ No newline at end of file
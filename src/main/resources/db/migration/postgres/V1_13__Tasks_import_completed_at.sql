@@ -0,0 +1 @@
+ALTER TABLE tasks_import ADD COLUMN IF NOT EXISTS completed_at TIMESTAMP WITH TIME ZONE;
\ No newline at end of file
@@ -0,0 +1,3 @@
+-- built without locking out writers; a build which failed leaves an invalid index behind, drop it before the
+-- migration is repaired and run again
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS tasks_title_uindex ON tasks (title);
\ No newline at end of file
@@ -0,0 +1 @@
+ALTER TABLE tasks ALTER COLUMN uuid TYPE uuid USING uuid::uuid;
\ No newline at end of file
@@ -0,0 +1,7 @@
+CREATE UNLOGGED TABLE IF NOT EXISTS tasks_import (
+    line            INTEGER,
+    uuid            uuid,
+    title           VARCHAR,
+    description     VARCHAR,
+    status          VARCHAR
+);
\ No newline at end of file
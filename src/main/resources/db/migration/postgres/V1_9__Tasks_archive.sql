@@ -0,0 +1,12 @@
+ALTER TABLE tasks ADD COLUMN IF NOT EXISTS completed_at TIMESTAMP WITH TIME ZONE;
+UPDATE tasks SET completed_at = now() WHERE status = 'COMPLETED' AND completed_at IS NULL;
+CREATE INDEX IF NOT EXISTS tasks_completed_idx ON tasks (completed_at) WHERE status = 'COMPLETED';
+CREATE TABLE IF NOT EXISTS tasks_archive (
+    uuid            uuid PRIMARY KEY,
+    title           VARCHAR,
+    description     VARCHAR,
+    status          VARCHAR,
+    version         BIGINT NOT NULL,
+    completed_at    TIMESTAMP WITH TIME ZONE,
+    archived_at     TIMESTAMP WITH TIME ZONE NOT NULL
+) WITH (toast_tuple_target = 128);
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.AdaptiveConcurrencyLimit;
+import com.taskmanager.config.AdmissionControlFilter;
+import com.taskmanager.config.AdmissionControlProperties;
+import com.taskmanager.config.ClientRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+public class AdmissionControlTest {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Spy
+    private AdmissionControlProperties properties = new AdmissionControlProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private AdmissionControlFilter filter;
+
+    private long now = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void tryAcquire_ShouldRejectBeyondLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(settings(20, 4, 500));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        assertFalse(limit.tryAcquire());
+        assertEquals(1, limit.rejected());
+        limit.releaseWithoutSample();
+        assertTrue(limit.tryAcquire());
+        assertEquals(20, limit.inflight());
+    }
+
+    @Test
+    public void limit_ShouldGrowUpToMaximum_WhileLatencyStaysFlat() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(settings(20, 4, 60));
+
+        runWindows(limit, 10, TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(limit.limit() > 20, "limit " + limit.limit());
+
+        runWindows(limit, 200, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(60, limit.limit());
+    }
+
+    @Test
+    public void limit_ShouldShrinkDownToMinimum_WhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(settings(100, 30, 500));
+        runWindows(limit, 5, TimeUnit.MILLISECONDS.toNanos(1));
+        int before = limit.limit();
+
+        runWindows(limit, 3, TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(limit.limit() < before, limit.limit() + " >= " + before);
+
+        runWindows(limit, 20, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(30, limit.limit());
+    }
+
+    @Test
+    public void limit_ShouldStay_WhileMostPermitsAreUnused() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(settings(20, 4, 500));
+
+        for (int window = 0; window < 50; window++) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(limit.tryAcquire());
+                limit.release(now, now + TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            now += WINDOW;
+        }
+
+        assertEquals(20, limit.limit());
+    }
+
+    @Test
+    public void tryAcquire_ShouldRejectClientBeyondBurst_UntilRefilled() {
+        AdmissionControlProperties properties = new AdmissionControlProperties();
+        properties.setClientRate(10);
+        properties.setClientBurst(5);
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(properties);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("a", now));
+        }
+        long wait = rateLimiter.tryAcquire("a", now);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait, TimeUnit.MICROSECONDS.toNanos(1));
+        assertEquals(0, rateLimiter.tryAcquire("b", now));
+
+        assertTrue(rateLimiter.tryAcquire("a", now + wait / 2) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("a", now + wait));
+        assertEquals(2, rateLimiter.clients());
+    }
+
+    @Test
+    public void doFilter_ShouldCountClientsByAddress_WhateverTheirHeaderSays() throws Exception {
+        properties.setClientRate(0.01);
+        properties.setClientBurst(3);
+        filter.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status("10.0.0.1", "client-" + i));
+        }
+        assertEquals(429, status("10.0.0.1", "client-3"));
+        assertEquals(200, status("10.0.0.2", "client-3"));
+    }
+
+    @Test
+    public void doFilter_ShouldCountClientsByHeader_WhenConfigured() throws Exception {
+        properties.setClientRate(0.01);
+        properties.setClientBurst(3);
+        properties.setClientHeader("X-Client-Id");
+        filter.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status("10.0.0.1", "client-a"));
+        }
+        assertEquals(429, status("10.0.0.1", "client-a"));
+        assertEquals(200, status("10.0.0.1", "client-b"));
+        assertEquals(200, status("10.0.0.1", null));
+    }
+
+    private int status(String address, String clientId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tasks");
+        request.setServletPath("/api/tasks");
+        request.setRemoteAddr(address);
+        if (clientId != null) {
+            request.addHeader("X-Client-Id", clientId);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    /**
+     * Takes every permit and releases them with the given latency, once per window.
+     */
+    private void runWindows(AdaptiveConcurrencyLimit limit, int windows, long latency) {
+        for (int window = 0; window < windows; window++) {
+            int permits = 0;
+            while (limit.tryAcquire()) {
+                permits++;
+            }
+            for (int i = 0; i < permits; i++) {
+                limit.release(now - latency, now);
+            }
+            now += WINDOW;
+        }
+    }
+
+    private static AdmissionControlProperties.ConcurrencyLimit settings(int initialLimit, int minLimit, int maxLimit) {
+        AdmissionControlProperties.ConcurrencyLimit settings = new AdmissionControlProperties.ConcurrencyLimit();
+        settings.setInitialLimit(initialLimit);
+        settings.setMinLimit(minLimit);
+        settings.setMaxLimit(maxLimit);
+        settings.setWindow(Duration.ofNanos(WINDOW));
+        return settings;
+    }
+}
@@ -0,0 +1,101 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.journal.ChangeJournal;
+import com.taskmanager.journal.JournalBatch;
+import com.taskmanager.journal.JournalProperties;
+import com.taskmanager.journal.JournalRecord;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.TaskChangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChangeJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private ChangeJournal journal;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        journal = open();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    public void append_ShouldMakeRecordsReadable_OnceSynced() throws Exception {
+        List<CompletableFuture<Void>> appends = IntStream.range(0, 100)
+                .mapToObj(i -> journal.append(record("Task " + i)))
+                .toList();
+        CompletableFuture.allOf(appends.toArray(CompletableFuture[]::new)).join();
+
+        JournalBatch first = journal.read(0, 60);
+        JournalBatch second = journal.read(first.nextOffset(), 60);
+
+        assertEquals(60, first.records().size());
+        assertEquals("Task 0", first.records().get(0).title());
+        assertEquals(40, second.records().size());
+        assertEquals("Task 99", second.records().get(39).title());
+        assertEquals(journal.pendingBytes(), second.nextOffset());
+    }
+
+    @Test
+    public void commit_ShouldTruncateJournal_WhenEverythingIsReplayed() throws Exception {
+        journal.append(record("First")).join();
+        journal.append(record("Second")).join();
+        JournalBatch first = journal.read(0, 1);
+
+        journal.commit(first.nextOffset());
+        assertEquals(first.nextOffset(), journal.checkpoint());
+
+        JournalBatch rest = journal.read(journal.checkpoint(), 10);
+        assertEquals("Second", rest.records().get(0).title());
+        journal.commit(rest.nextOffset());
+
+        assertEquals(0, journal.checkpoint());
+        assertEquals(0, journal.pendingBytes());
+    }
+
+    @Test
+    public void open_ShouldKeepCheckpoint_AndDropTornRecord() throws Exception {
+        journal.append(record("First")).join();
+        journal.append(record("Second")).join();
+        journal.commit(journal.read(0, 1).nextOffset());
+        journal.close();
+        Files.writeString(directory.resolve("secondary-writes.log"), "{\"type\":\"CRE",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        journal = open();
+        journal.append(record("Third")).join();
+
+        List<JournalRecord> records = journal.read(journal.checkpoint(), 10).records();
+        assertEquals(List.of("Second", "Third"), records.stream().map(JournalRecord::title).toList());
+    }
+
+    private ChangeJournal open() throws Exception {
+        ChangeJournal changeJournal = new ChangeJournal(directory, new ObjectMapper(), new JournalProperties());
+        changeJournal.open();
+        return changeJournal;
+    }
+
+    private static JournalRecord record(String title) {
+        return new JournalRecord(TaskChangeType.CREATED, title + "-uuid", title, null, Status.NEW, null, null, null, 0);
+    }
+}
@@ -0,0 +1,277 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.CompressionThresholdFilter;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskService;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class CompressionThresholdFilterTest {
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Autowired
+    private CompressionThresholdFilter filter;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    public void smallResponse_ShouldBeSentWithItsLength_Uncompressed() throws Exception {
+        Task task = taskService.createTask(task("Small " + UUID.randomUUID()));
+
+        HttpResponse<byte[]> response = send("/api/tasks/" + task.getUuid(), "application/json");
+
+        assertEquals(200, response.statusCode());
+        assertFalse(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).isPresent());
+        assertEquals(String.valueOf(response.body().length),
+                response.headers().firstValue(HttpHeaders.CONTENT_LENGTH).orElseThrow());
+        assertEquals(task.getUuid(), objectMapper.readValue(response.body(), Task.class).getUuid());
+    }
+
+    @Test
+    public void largeResponse_ShouldBeCompressed_InEveryFormat() throws Exception {
+        String prefix = createTasks("Large", 40);
+
+        HttpResponse<byte[]> json = send(listPath(prefix), "application/json");
+        assertEquals("gzip", json.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElseThrow());
+        assertTrue(json.headers().allValues(HttpHeaders.VARY).stream()
+                .anyMatch(vary -> vary.toLowerCase().contains("accept-encoding")));
+        assertEquals(40, objectMapper.readValue(gunzip(json.body()), new TypeReference<List<Task>>() {
+        }).size());
+
+        HttpResponse<byte[]> cbor = send(listPath(prefix), "application/cbor");
+        assertEquals("gzip", cbor.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElseThrow());
+        assertEquals(40, cborConverter.getObjectMapper().readValue(gunzip(cbor.body()),
+                new TypeReference<List<Task>>() {
+                }).size());
+    }
+
+    @Test
+    public void notModifiedAndHeadResponses_ShouldPassThrough() throws Exception {
+        Task task = taskService.createTask(task("Unchanged " + UUID.randomUUID()));
+        HttpResponse<byte[]> first = send("/api/tasks/" + task.getUuid(), "application/json");
+        String tag = first.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+
+        HttpResponse<byte[]> notModified = client.send(request("/api/tasks/" + task.getUuid(), "application/json")
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, notModified.statusCode());
+        assertEquals(0, notModified.body().length);
+        assertFalse(notModified.headers().firstValue(HttpHeaders.CONTENT_ENCODING).isPresent());
+
+        String prefix = createTasks("Head", 40);
+        HttpResponse<byte[]> head = client.send(request(listPath(prefix), "application/json")
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, head.statusCode());
+        assertEquals(0, head.body().length);
+    }
+
+    @Test
+    public void streamedResponse_ShouldNotBeHeldBack() throws Exception {
+        String prefix = createTasks("Streamed", 3);
+
+        HttpResponse<byte[]> response = send(listPath(prefix), "application/x-ndjson");
+
+        assertEquals(200, response.statusCode());
+        // a response held back until its end would be sent with its length
+        assertFalse(response.headers().firstValue(HttpHeaders.CONTENT_LENGTH).isPresent());
+        assertEquals(3, new String(response.body(), StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    public void writeListener_ShouldBeHandedToTheResponse_AfterTheHeldBackBytes() throws Exception {
+        RecordingOutputStream target = new RecordingOutputStream();
+        HttpServletResponseWrapper response = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return target;
+            }
+        };
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/tasks"), response, (req, res) -> {
+            res.getOutputStream().write("held ".getBytes(StandardCharsets.UTF_8));
+            res.getOutputStream().setWriteListener(listener);
+            res.getOutputStream().write("passed".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertSame(listener, target.writeListener);
+        assertEquals("held passed", target.bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void binaryFormats_ShouldRoundTrip_ThroughBatchAndList() throws Exception {
+        String prefix = "Binary " + UUID.randomUUID() + " ";
+        List<Task> tasks = List.of(task(prefix + "a"), task(prefix + "b"));
+        ObjectMapper cbor = cborConverter.getObjectMapper();
+        ObjectMapper smile = smileConverter.getObjectMapper();
+
+        byte[] created = mockMvc.perform(post("/api/tasks/batch")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(tasks)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Map<String, Object>> results = cbor.readValue(created, new TypeReference<>() {
+        });
+        assertEquals(List.of("CREATED", "CREATED"), results.stream().map(result -> result.get("outcome")).toList());
+
+        byte[] listed = mockMvc.perform(get("/api/tasks").param("titlePrefix", prefix)
+                        .accept(MediaType.parseMediaType(SMILE)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Task> read = smile.readValue(listed, new TypeReference<>() {
+        });
+        assertEquals(List.of(prefix + "a", prefix + "b"), read.stream().map(Task::getTitle).sorted().toList());
+    }
+
+    @Test
+    public void strongTags_ShouldDifferPerFormat() throws Exception {
+        Task task = taskService.createTask(task("Tagged " + UUID.randomUUID()));
+        String path = "/api/tasks/" + task.getUuid();
+
+        String json = mockMvc.perform(get(path).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String cbor = mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(json, cbor);
+        assertFalse(cbor.startsWith("W/"));
+        mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get(path).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isOk());
+    }
+
+    private HttpResponse<byte[]> send(String path, String accept) throws Exception {
+        return client.send(request(path, accept).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest.Builder request(String path, String accept) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header(HttpHeaders.ACCEPT, accept)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+    }
+
+    /**
+     * Creates tasks with long titles, so a page of them is above the compression threshold.
+     *
+     * @return prefix of their titles
+     */
+    private String createTasks(String name, int count) {
+        String prefix = name + " " + UUID.randomUUID() + " ";
+        for (int i = 0; i < count; i++) {
+            taskService.createTask(task(prefix + i + " " + "x".repeat(60)));
+        }
+        return prefix;
+    }
+
+    private static String listPath(String prefix) {
+        return "/api/tasks?limit=100&titlePrefix=" + prefix.replace(" ", "%20");
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws Exception {
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static Task task(String title) {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setStatus(Status.NEW);
+        return task;
+    }
+
+    private static final class RecordingOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private WriteListener writeListener;
+
+        @Override
+        public void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.writeListener = writeListener;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.taskmanager;
+
+import com.taskmanager.config.BulkheadProperties;
+import com.taskmanager.config.DataSourceBulkhead;
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DataSourceBulkheadTest {
+
+    @Mock
+    private DataSourceHealthMonitor healthMonitor;
+
+    private BulkheadProperties properties;
+
+    private DataSourceBulkhead bulkhead;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BulkheadProperties();
+        properties.setAcquireTimeout(Duration.ofMillis(10));
+        bulkhead = new DataSourceBulkhead(healthMonitor, properties,
+                Map.of(DataSourceRoute.PRIMARY, 2, DataSourceRoute.SECONDARY, 1));
+    }
+
+    @Test
+    public void acquire_ShouldReleasePermit_WhenClosed() {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+
+        try (DataSourceBulkhead.Permit permit = bulkhead.acquire()) {
+            assertEquals(1, bulkhead.availablePermits(DataSourceRoute.PRIMARY));
+        }
+
+        assertEquals(2, bulkhead.availablePermits(DataSourceRoute.PRIMARY));
+    }
+
+    @Test
+    public void acquire_ShouldThrowException_WhenNoPermitIsReleasedInTime() {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.SECONDARY);
+        bulkhead.acquire();
+
+        assertThrows(ServiceOverloadedException.class, () -> bulkhead.acquire());
+        assertEquals(2, bulkhead.availablePermits(DataSourceRoute.PRIMARY));
+    }
+
+    @Test
+    public void acquire_ShouldThrowException_WhenTooManyCallsAreWaiting() {
+        properties.setMaxWaiting(0);
+        properties.setAcquireTimeout(Duration.ofHours(1));
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.SECONDARY);
+        bulkhead.acquire();
+
+        assertThrows(ServiceOverloadedException.class, () -> bulkhead.acquire());
+    }
+}
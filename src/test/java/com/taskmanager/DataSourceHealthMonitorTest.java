@@ -0,0 +1,150 @@
+package com.taskmanager;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceHealthProperties;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.DataSourceRouteChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DataSourceHealthMonitorTest {
+
+    @Mock
+    private DataSource primaryDataSource;
+
+    @Mock
+    private Connection connection;
+
+    private DataSourceHealthProperties properties;
+
+    private DataSourceHealthMonitor healthMonitor;
+
+    private List<Object> routeChanges;
+
+    @BeforeEach
+    public void setup() {
+        properties = new DataSourceHealthProperties();
+        properties.setProbeInterval(Duration.ofHours(1));
+        properties.setFailureThreshold(2);
+        properties.setHalfOpenAfter(Duration.ZERO);
+        routeChanges = new ArrayList<>();
+        healthMonitor = new DataSourceHealthMonitor(primaryDataSource, properties, routeChanges::add);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        healthMonitor.close();
+    }
+
+    @Test
+    public void start_ShouldRouteToPrimary_WhenPrimaryIsHealthy() throws SQLException {
+        primaryIsHealthy();
+
+        healthMonitor.start();
+
+        assertEquals(DataSourceRoute.PRIMARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.CLOSED, healthMonitor.circuitState());
+        verify(connection).close();
+    }
+
+    @Test
+    public void start_ShouldRouteToSecondary_WhenPrimaryIsDown() throws SQLException {
+        primaryIsDown();
+
+        healthMonitor.start();
+
+        assertEquals(DataSourceRoute.SECONDARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.OPEN, healthMonitor.circuitState());
+        assertEquals(1, healthMonitor.flipsToSecondary());
+    }
+
+    @Test
+    public void start_ShouldRouteToSecondary_WhenPrimaryDoesNotAnswerInTime() throws SQLException {
+        properties.setStartupProbeTimeout(Duration.ofMillis(100));
+        CountDownLatch answer = new CountDownLatch(1);
+        when(primaryDataSource.getConnection()).thenAnswer(invocation -> {
+            answer.await();
+            return connection;
+        });
+
+        long start = System.nanoTime();
+        healthMonitor.start();
+        answer.countDown();
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        assertEquals(DataSourceRoute.SECONDARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.OPEN, healthMonitor.circuitState());
+    }
+
+    @Test
+    public void probe_ShouldOpenCircuit_OnlyAfterFailureThreshold() throws SQLException {
+        primaryIsHealthy();
+        healthMonitor.start();
+        primaryIsDown();
+
+        healthMonitor.probe();
+        assertEquals(DataSourceRoute.PRIMARY, healthMonitor.currentRoute());
+
+        healthMonitor.probe();
+        assertEquals(DataSourceRoute.SECONDARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.OPEN, healthMonitor.circuitState());
+    }
+
+    @Test
+    public void probe_ShouldCloseCircuit_WhenHalfOpenProbeSucceeds() throws SQLException {
+        primaryIsDown();
+        healthMonitor.start();
+        primaryIsHealthy();
+
+        healthMonitor.probe();
+
+        assertEquals(DataSourceRoute.PRIMARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.CLOSED, healthMonitor.circuitState());
+        assertEquals(1, healthMonitor.flipsToPrimary());
+        // the route taken at startup is not published
+        assertEquals(List.of(new DataSourceRouteChangedEvent(DataSourceRoute.PRIMARY)), routeChanges);
+    }
+
+    @Test
+    public void probe_ShouldNotProbe_BeforeHalfOpenPeriodElapsed() throws SQLException {
+        properties.setHalfOpenAfter(Duration.ofHours(1));
+        primaryIsDown();
+        healthMonitor.start();
+
+        healthMonitor.probe();
+
+        verify(primaryDataSource).getConnection();
+        assertEquals(DataSourceRoute.SECONDARY, healthMonitor.currentRoute());
+        assertEquals(DataSourceHealthMonitor.CircuitState.OPEN, healthMonitor.circuitState());
+    }
+
+    private void primaryIsHealthy() throws SQLException {
+        doReturn(connection).when(primaryDataSource).getConnection();
+        when(connection.isValid(anyInt())).thenReturn(true);
+    }
+
+    private void primaryIsDown() throws SQLException {
+        doThrow(new SQLException("Connection refused")).when(primaryDataSource).getConnection();
+    }
+}
@@ -0,0 +1,112 @@
+package com.taskmanager;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceHealthProperties;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.DataSourceStartup;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+public class DataSourceStartupTest {
+
+    @Mock
+    private DataSource primaryDataSource;
+
+    private final CountDownLatch secondaryAvailable = new CountDownLatch(1);
+
+    private DataSourceHealthProperties properties;
+
+    private DataSourceHealthMonitor healthMonitor;
+
+    private DataSourceStartup startup;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        properties = new DataSourceHealthProperties();
+        properties.setProbeInterval(Duration.ofHours(1));
+        properties.setHalfOpenAfter(Duration.ofHours(1));
+        doThrow(new SQLException("Connection refused")).when(primaryDataSource).getConnection();
+        healthMonitor = new DataSourceHealthMonitor(primaryDataSource, properties, event -> {
+        });
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        DataSource secondaryDataSource = new DelegatingDataSource(h2) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                try {
+                    secondaryAvailable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted", e);
+                }
+                return super.getConnection();
+            }
+        };
+        startup = new DataSourceStartup(primaryDataSource, secondaryDataSource, healthMonitor, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        secondaryAvailable.countDown();
+        startup.close();
+        healthMonitor.close();
+    }
+
+    @Test
+    public void awaitReady_ShouldStartOnSecondary_WhenPrimaryIsDown() {
+        secondaryAvailable.countDown();
+        startup.start();
+
+        startup.awaitReady();
+
+        Health health = startup.health();
+        assertEquals(DataSourceRoute.SECONDARY, healthMonitor.currentRoute());
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(false, health.getDetails().get("primaryMigrated"));
+        assertEquals(true, health.getDetails().get("secondaryMigrated"));
+        assertEquals(false, health.getDetails().get("startupTimedOut"));
+    }
+
+    @Test
+    public void awaitReady_ShouldLeaveApplicationOutOfService_WhenMigrationTimesOut() {
+        properties.setStartupMigrationTimeout(Duration.ofMillis(200));
+        startup.start();
+
+        long start = System.nanoTime();
+        startup.awaitReady();
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        Health health = startup.health();
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals(true, health.getDetails().get("startupTimedOut"));
+
+        // connections are no longer held back, and the application is ready once the migration is done
+        start = System.nanoTime();
+        startup.awaitReady();
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(100).toNanos());
+        secondaryAvailable.countDown();
+        properties.setStartupMigrationTimeout(Duration.ofMinutes(1));
+        startup.awaitSecondaryMigration();
+        assertEquals(Status.UP, startup.health().getStatus());
+    }
+}
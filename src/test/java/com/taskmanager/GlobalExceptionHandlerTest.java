@@ -0,0 +1,105 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.exception.DuplicationException;
+import com.taskmanager.exception.ResourceNotFoundException;
+import com.taskmanager.exception.advice.ErrorResponseTemplate;
+import com.taskmanager.model.ErrorResponse;
+import com.taskmanager.service.TaskIds;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class GlobalExceptionHandlerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void errorResponseTemplate_ShouldWriteTheBytesOfTheObjectMapper() throws Exception {
+        String message = "Title \"50%\" \\ taken\n\u0001 – déjà vu";
+        String path = "/api/tasks/\"x\"";
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(new ErrorResponse(message, null, path)),
+                ErrorResponseTemplate.render(message, path));
+        assertArrayEquals(objectMapper.writeValueAsBytes(new ErrorResponse(message, null, path)),
+                new ErrorResponseTemplate(message).render(path));
+        assertArrayEquals(objectMapper.writeValueAsBytes(new ErrorResponse(null, null, path)),
+                ErrorResponseTemplate.render(null, path));
+        assertArrayEquals(objectMapper.writeValueAsBytes(new ErrorResponse(message, null, null)),
+                new ErrorResponseTemplate(message).render(null));
+    }
+
+    @Test
+    public void domainExceptions_ShouldCarryNoStackTrace() {
+        assertEquals(0, new ResourceNotFoundException("missing").getStackTrace().length);
+        assertEquals(0, new DuplicationException("duplicate").getStackTrace().length);
+        assertEquals(0, ResourceNotFoundException.TASK.getStackTrace().length);
+    }
+
+    @Test
+    public void missingTask_ShouldBeAnsweredWithThePreSerializedBody() throws Exception {
+        String uuid = TaskIds.next();
+
+        mockMvc.perform(get("/api/tasks/{uuid}", uuid))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("Task Record Not Found"))
+                .andExpect(jsonPath("$.path").value("/api/tasks/" + uuid));
+        mockMvc.perform(get("/api/tasks/{uuid}", uuid).header(HttpHeaders.ACCEPT, "application/cbor;q=0.5, */*;q=0.8"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        // clients preferring another format get it through the message converters
+        for (String accept : List.of("application/cbor", "application/json;q=0, application/cbor",
+                "application/*;q=0.1, application/cbor", "application/cbor, */*;q=0.1")) {
+            mockMvc.perform(get("/api/tasks/{uuid}", uuid).header(HttpHeaders.ACCEPT, accept))
+                    .andExpect(status().isNotFound())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+        }
+    }
+
+    @Test
+    public void duplicateTitle_ShouldBeAnsweredWithBadRequest() throws Exception {
+        String body = "{\"title\":\"Duplicate " + UUID.randomUUID() + "\",\"status\":\"NEW\"}";
+        mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+
+        byte[] response = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsByteArray();
+        ErrorResponse error = objectMapper.readValue(response, ErrorResponse.class);
+        assertEquals("Task with the same title already exists", error.getMessage());
+    }
+
+    @Test
+    public void unknownPath_ShouldBeAnsweredWithNotFound_NotAsAFailure() throws Exception {
+        mockMvc.perform(get("/wp-login.php"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").exists());
+        mockMvc.perform(post("/api/tasks/search"))
+                .andExpect(status().isMethodNotAllowed())
+                .andExpect(header().string("Allow", containsString("GET")));
+    }
+}
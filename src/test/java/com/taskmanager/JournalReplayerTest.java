@@ -0,0 +1,205 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.journal.ChangeJournal;
+import com.taskmanager.journal.JournalProperties;
+import com.taskmanager.journal.JournalRecord;
+import com.taskmanager.journal.JournalReplayer;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.service.TaskChangeEvent;
+import com.taskmanager.service.TaskSearchIndex;
+import com.taskmanager.service.TaskVersions;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class JournalReplayerTest {
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private DataSourceHealthMonitor healthMonitor;
+
+    private ChangeJournal journal;
+
+    private JdbcTemplate postgres;
+
+    private JournalReplayer replayer;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        JdbcDataSource primaryDataSource = new JdbcDataSource();
+        primaryDataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        postgres = new JdbcTemplate(primaryDataSource);
+        postgres.execute("CREATE TABLE tasks (uuid UUID PRIMARY KEY, title VARCHAR, description VARCHAR, status VARCHAR, lease_expires_at TIMESTAMP WITH TIME ZONE, completed_at TIMESTAMP WITH TIME ZONE, version BIGINT NOT NULL DEFAULT 0)");
+        postgres.execute("CREATE UNIQUE INDEX tasks_title_uindex ON tasks (title)");
+        postgres.execute("CREATE TABLE tasks_archive (uuid UUID PRIMARY KEY, title VARCHAR)");
+
+        JournalProperties properties = new JournalProperties();
+        properties.setReplayBatchSize(2);
+        journal = new ChangeJournal(directory, new ObjectMapper(), properties);
+        journal.open();
+        replayer = new JournalReplayer(journal, primaryDataSource, healthMonitor, new ConcurrentMapCacheManager(), new TaskVersions(),
+                properties);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        journal.close();
+        postgres.execute("SHUTDOWN");
+    }
+
+    @Test
+    public void replay_ShouldApplyJournal_AndTruncateIt() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        postgres.update("INSERT INTO tasks (uuid, title, description, status) VALUES ('01920000-0000-7000-8000-000000000001', 'Before outage', null, 'NEW')");
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000002", "Created", Status.NEW);
+        append(TaskChangeType.STATUS_CHANGED, "01920000-0000-7000-8000-000000000002", "Created", Status.COMPLETED, 0L);
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000003", "Deleted later", Status.NEW);
+        append(TaskChangeType.DELETED, "01920000-0000-7000-8000-000000000003", "Deleted later", Status.NEW, 0L);
+        append(TaskChangeType.PATCHED, "01920000-0000-7000-8000-000000000001", "Patched", Status.IN_PROGRESS, 0L);
+
+        replayer.replay();
+
+        assertEquals(List.of(
+                Map.of("UUID", "01920000-0000-7000-8000-000000000001", "TITLE", "Patched", "STATUS", "IN_PROGRESS"),
+                Map.of("UUID", "01920000-0000-7000-8000-000000000002", "TITLE", "Created", "STATUS", "COMPLETED")), tasks());
+        assertEquals(1L, postgres.queryForObject("SELECT version FROM tasks WHERE uuid = '01920000-0000-7000-8000-000000000001'", Long.class));
+        assertEquals(0, journal.pendingBytes());
+    }
+
+    @Test
+    public void replay_ShouldRenameTask_WhenTitleIsTaken() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        postgres.update("INSERT INTO tasks (uuid, title, description, status) VALUES ('01920000-0000-7000-8000-000000000001', 'Same title', null, 'NEW')");
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000002", "Same title", Status.NEW);
+
+        replayer.replay();
+
+        assertEquals(List.of(
+                Map.of("UUID", "01920000-0000-7000-8000-000000000001", "TITLE", "Same title", "STATUS", "NEW"),
+                Map.of("UUID", "01920000-0000-7000-8000-000000000002", "TITLE", "Same title (01920000-0000-7000-8000-000000000002)", "STATUS", "NEW")), tasks());
+    }
+
+    @Test
+    public void replay_ShouldKeepCompletionTime_OfTaskCompletedOnSecondary() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        postgres.update("INSERT INTO tasks (uuid, title, description, status) VALUES ('01920000-0000-7000-8000-000000000001', 'Completed during outage', null, 'NEW')");
+        Task task = new Task();
+        task.setUuid("01920000-0000-7000-8000-000000000001");
+        task.setTitle("Completed during outage");
+        task.setStatus(Status.COMPLETED);
+        task.stampCompletion();
+        journal.onTaskChange(new TaskChangeEvent(TaskChangeType.STATUS_CHANGED, task, DataSourceRoute.SECONDARY));
+        // journaled before the completion time was kept
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000002", "Completed earlier", Status.COMPLETED);
+
+        replayer.replay();
+
+        assertEquals(Timestamp.from(task.getCompletedAt()), postgres.queryForObject(
+                "SELECT completed_at FROM tasks WHERE uuid = '01920000-0000-7000-8000-000000000001'", Timestamp.class));
+        assertNotNull(postgres.queryForObject(
+                "SELECT completed_at FROM tasks WHERE uuid = '01920000-0000-7000-8000-000000000002'", Timestamp.class));
+    }
+
+    @Test
+    public void replay_ShouldSkipChange_WhenTaskChangedInPostgresMeanwhile() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        // patched through another instance while this one wrote to H2
+        postgres.update("INSERT INTO tasks (uuid, title, description, status, version) VALUES ('01920000-0000-7000-8000-000000000001', 'Patched in Postgres', null, 'IN_PROGRESS', 3)");
+        append(TaskChangeType.PATCHED, "01920000-0000-7000-8000-000000000001", "Stale copy", Status.NEW, 2L);
+        append(TaskChangeType.DELETED, "01920000-0000-7000-8000-000000000001", "Stale copy", Status.NEW, 2L);
+
+        replayer.replay();
+
+        assertEquals(List.of(
+                Map.of("UUID", "01920000-0000-7000-8000-000000000001", "TITLE", "Patched in Postgres", "STATUS", "IN_PROGRESS")), tasks());
+        assertEquals(0, journal.pendingBytes());
+    }
+
+    @Test
+    public void replay_ShouldNotRecreateTask_DeletedOrArchivedInPostgres() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        postgres.update("INSERT INTO tasks_archive (uuid, title) VALUES ('01920000-0000-7000-8000-000000000002', 'Archived')");
+        append(TaskChangeType.PATCHED, "01920000-0000-7000-8000-000000000001", "Deleted in Postgres", Status.NEW, 0L);
+        append(TaskChangeType.STATUS_CHANGED, "01920000-0000-7000-8000-000000000001", "Deleted in Postgres", Status.NEW, null);
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000002", "Archived", Status.COMPLETED);
+
+        replayer.replay();
+
+        assertEquals(List.of(), tasks());
+    }
+
+    @Test
+    public void replay_ShouldClearSecondaryStore_OnceJournalIsReplayed() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        JdbcDataSource secondaryDataSource = new JdbcDataSource();
+        secondaryDataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate h2 = new JdbcTemplate(secondaryDataSource);
+        h2.execute("CREATE TABLE tasks (uuid UUID PRIMARY KEY, title VARCHAR)");
+        h2.execute("CREATE TABLE tasks_archive (uuid UUID PRIMARY KEY, title VARCHAR)");
+        h2.update("INSERT INTO tasks (uuid, title) VALUES ('01920000-0000-7000-8000-000000000001', 'Created')");
+        h2.update("INSERT INTO tasks_archive (uuid, title) VALUES ('01920000-0000-7000-8000-000000000002', 'Archived')");
+        TaskSearchIndex searchIndex = new TaskSearchIndex();
+        Task task = new Task();
+        task.setUuid("01920000-0000-7000-8000-000000000001");
+        task.setTitle("Created");
+        searchIndex.put(task);
+        replayer.setSecondaryStore(secondaryDataSource, null, searchIndex);
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000001", "Created", Status.NEW);
+
+        replayer.replay();
+
+        assertEquals(1, tasks().size());
+        assertEquals(0, h2.queryForObject("SELECT COUNT(*) FROM tasks", Integer.class));
+        assertEquals(0, h2.queryForObject("SELECT COUNT(*) FROM tasks_archive", Integer.class));
+        assertEquals(0, searchIndex.size());
+        h2.execute("SHUTDOWN");
+    }
+
+    @Test
+    public void replay_ShouldKeepJournal_WhileRoutedToSecondary() throws Exception {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.SECONDARY);
+        append(TaskChangeType.CREATED, "01920000-0000-7000-8000-000000000001", "Created", Status.NEW);
+
+        replayer.replay();
+
+        assertEquals(List.of(), tasks());
+        assertEquals(1, journal.read(journal.checkpoint(), 10).records().size());
+    }
+
+    private void append(TaskChangeType type, String uuid, String title, Status status) {
+        append(type, uuid, title, status, null);
+    }
+
+    private void append(TaskChangeType type, String uuid, String title, Status status, Long baseVersion) {
+        journal.append(new JournalRecord(type, uuid, title, null, status, null, null, baseVersion, 0)).join();
+    }
+
+    private List<Map<String, Object>> tasks() {
+        return postgres.queryForList("SELECT CAST(uuid AS VARCHAR) AS uuid, title, status FROM tasks ORDER BY uuid");
+    }
+}
@@ -0,0 +1,235 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskStoreProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.repository.MemoryTaskRepository;
+import com.taskmanager.store.MemoryTaskStore;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemoryTaskStoreTest {
+
+    private static final String FIRST = "01920000-0000-7000-8000-000000000001";
+    private static final String SECOND = "01920000-0000-7000-8000-000000000002";
+    private static final String FOURTH = "01920000-0000-7000-8000-000000000004";
+    // sorts last as a string, and as unsigned bits, but first as a signed UUID
+    private static final String LAST = "f1920000-0000-4000-8000-000000000003";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void insert_ShouldRejectTakenIdOrTitle() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+
+        assertTrue(store.insert(task(FIRST, "a", Status.NEW)));
+        assertFalse(store.insert(task(FIRST, "b", Status.NEW)));
+        assertFalse(store.insert(task(SECOND, "a", Status.NEW)));
+
+        assertEquals(1, store.size());
+        assertEquals(0L, store.find(FIRST).orElseThrow().getVersion());
+        assertTrue(store.titleExists("a"));
+        assertFalse(store.titleExists("b"));
+    }
+
+    @Test
+    public void update_ShouldCheckVersionAndTitle() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+        store.insert(task(FIRST, "a", Status.NEW));
+        store.insert(task(SECOND, "b", Status.NEW));
+
+        Task first = store.find(FIRST).orElseThrow();
+        first.setTitle("c");
+        first.setStatus(Status.COMPLETED);
+        assertEquals(1L, store.update(first).getVersion());
+
+        // the title given up is free again, the version read is stale
+        Task stale = store.find(FIRST).orElseThrow();
+        stale.setVersion(0L);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> store.update(stale));
+        Task second = store.find(SECOND).orElseThrow();
+        second.setTitle("c");
+        assertThrows(DataIntegrityViolationException.class, () -> store.update(second));
+        second.setTitle("a");
+        assertEquals("a", store.update(second).getTitle());
+
+        assertEquals(Map.of(Status.NEW, 1L, Status.COMPLETED, 1L), store.countByStatus());
+        assertTrue(store.delete(FIRST));
+        assertFalse(store.titleExists("c"));
+        assertEquals(Map.of(Status.NEW, 1L), store.countByStatus());
+    }
+
+    @Test
+    public void findPage_ShouldOrderByUuid_AndApplyFilters() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+        MemoryTaskRepository repository = new MemoryTaskRepository(store);
+        store.insert(task(LAST, "100% done", Status.NEW));
+        store.insert(task(SECOND, "100 tasks", Status.COMPLETED));
+        store.insert(task(FIRST, "10 tasks", Status.NEW));
+
+        assertEquals(List.of(FIRST, SECOND, LAST), uuids(repository.findPage(null, null, null, Limit.of(10))));
+        assertEquals(List.of(SECOND), uuids(repository.findPage(FIRST, null, null, Limit.of(1))));
+        assertEquals(List.of(FIRST, LAST), uuids(repository.findPage(null, Status.NEW, null, Limit.of(10))));
+        assertEquals(List.of(LAST), uuids(repository.findPage(FIRST, Status.NEW, null, Limit.of(10))));
+        // the LIKE pattern of the prefix "100%"
+        assertEquals(List.of(LAST), uuids(repository.findPage(null, null, "100\\%%", Limit.of(10))));
+        assertEquals(List.of(SECOND, LAST), uuids(repository.findPage(null, null, "100%", Limit.of(10))));
+        assertEquals(List.of(FIRST), uuids(repository.findPage(null, Status.NEW, "10 %", Limit.of(10))));
+        try (Stream<Task> tasks = repository.streamAll(Status.NEW, null)) {
+            assertEquals(List.of(FIRST, LAST), uuids(tasks.toList()));
+        }
+    }
+
+    @Test
+    public void claimNew_ShouldLeaseOldestNewTasks_UntilReleased() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+        store.insert(task(LAST, "c", Status.NEW));
+        store.insert(task(SECOND, "b", Status.COMPLETED));
+        store.insert(task(FIRST, "a", Status.NEW));
+        Instant now = Instant.parse("2026-10-18T10:00:00Z");
+
+        List<Task> claimed = store.claim(5, now.plusSeconds(60));
+        assertEquals(List.of(FIRST, LAST), uuids(claimed));
+        assertEquals(Status.IN_PROGRESS, claimed.get(0).getStatus());
+        assertEquals(now.plusSeconds(60), claimed.get(0).getLeaseExpiresAt());
+        assertEquals(1L, claimed.get(0).getVersion());
+        assertTrue(store.claim(5, now.plusSeconds(60)).isEmpty());
+
+        // completing a claimed task ends its lease
+        Task completed = store.find(FIRST).orElseThrow();
+        completed.setStatus(Status.COMPLETED);
+        assertNull(store.update(completed).getLeaseExpiresAt());
+
+        assertTrue(store.releaseExpired(now.plusSeconds(60), 10).isEmpty());
+        List<Task> released = store.releaseExpired(now.plusSeconds(61), 10);
+        assertEquals(List.of(LAST), uuids(released));
+        assertEquals(Status.NEW, released.get(0).getStatus());
+        assertNull(released.get(0).getLeaseExpiresAt());
+        assertEquals(Map.of(Status.NEW, 1L, Status.COMPLETED, 2L), store.countByStatus());
+    }
+
+    @Test
+    public void insertAll_ShouldInsertNothing_WhenOneTaskFails() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+        MemoryTaskRepository repository = new MemoryTaskRepository(store);
+        store.insert(task(LAST, "c", Status.NEW));
+
+        assertThrows(DataIntegrityViolationException.class, () -> repository.insertAllIfTitleAbsent(List.of(
+                task(FIRST, "a", Status.NEW), task(SECOND, "b", Status.NEW), task(FOURTH, null, Status.NEW))));
+
+        assertEquals(1, store.size());
+        assertFalse(store.titleExists("a"));
+        assertFalse(store.titleExists("b"));
+        assertEquals(Map.of(Status.NEW, 1L), store.countByStatus());
+    }
+
+    @Test
+    public void transaction_ShouldRevertEveryChange_WhenRolledBack() {
+        MemoryTaskStore store = new MemoryTaskStore(null, new TaskStoreProperties());
+        MemoryTaskRepository repository = new MemoryTaskRepository(store);
+        store.insert(task(FIRST, "a", Status.NEW));
+        store.insert(task(SECOND, "b", Status.NEW));
+        Task first = store.find(FIRST).orElseThrow();
+        Task second = store.find(SECOND).orElseThrow();
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            repository.insertAllIfTitleAbsent(List.of(task(LAST, "c", Status.NEW)));
+            Task renamed = repository.findById(FIRST).orElseThrow();
+            renamed.setTitle("b and c");
+            repository.save(renamed);
+            assertEquals(3, repository.claimNew(10, Instant.now().plusSeconds(60)).size());
+            repository.deleteById(SECOND);
+            throw new IllegalStateException("Batch failed");
+        }));
+
+        assertEquals(2, store.size());
+        assertEquals(Optional.of(first), store.find(FIRST));
+        assertEquals(Optional.of(second), store.find(SECOND));
+        assertTrue(store.titleExists("a"));
+        assertFalse(store.titleExists("b and c"));
+        assertFalse(store.titleExists("c"));
+        assertEquals(Map.of(Status.NEW, 2L), store.countByStatus());
+
+        transaction.executeWithoutResult(status -> repository.deleteById(SECOND));
+        assertFalse(store.exists(SECOND));
+    }
+
+    @Test
+    public void open_ShouldRestoreTasks_FromSnapshotAndLogs() throws Exception {
+        TaskStoreProperties properties = new TaskStoreProperties();
+        // a few entries per log, so the changes after the snapshot span several logs
+        properties.setLogSize(DataSize.ofBytes(200));
+        MemoryTaskStore store = new MemoryTaskStore(directory, properties);
+        store.open();
+        store.insert(task(FIRST, "a", Status.NEW));
+        store.insert(task(SECOND, "b", Status.NEW));
+        store.snapshot();
+        Task renamed = store.find(SECOND).orElseThrow();
+        renamed.setTitle("a and b");
+        renamed.setDescription("ünïcode");
+        store.update(renamed);
+        store.delete(FIRST);
+        store.insert(task(FIRST, "b", Status.NEW));
+        store.claim(1, Instant.parse("2026-10-18T10:00:00Z"));
+        store.insert(task(LAST, "c", Status.COMPLETED));
+
+        // opened without closing the first store, as after a crash
+        MemoryTaskStore restarted = new MemoryTaskStore(directory, properties);
+        restarted.open();
+        assertEquals(3, restarted.size());
+        assertEquals(store.find(FIRST), restarted.find(FIRST));
+        assertEquals(store.find(SECOND), restarted.find(SECOND));
+        assertEquals(store.find(LAST), restarted.find(LAST));
+        assertNotNull(restarted.find(LAST).orElseThrow().getCompletedAt());
+        assertTrue(restarted.titleExists("a and b"));
+        assertFalse(restarted.titleExists("a"));
+        assertEquals(store.countByStatus(), restarted.countByStatus());
+        assertFalse(restarted.insert(task(LAST, "d", Status.NEW)));
+        assertFalse(restarted.insert(task("01920000-0000-7000-8000-000000000004", "b", Status.NEW)));
+        restarted.close();
+
+        MemoryTaskStore closed = new MemoryTaskStore(directory, properties);
+        closed.open();
+        assertEquals(3, closed.size());
+        assertEquals(store.find(FIRST), closed.find(FIRST));
+        closed.close();
+    }
+
+    private static Task task(String uuid, String title, Status status) {
+        Task task = new Task();
+        task.setUuid(uuid);
+        task.setTitle(title);
+        task.setStatus(status);
+        return task;
+    }
+
+    private static List<String> uuids(List<Task> tasks) {
+        return tasks.stream().map(Task::getUuid).toList();
+    }
+}
@@ -0,0 +1,89 @@
+package com.taskmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.exception.UnmodifiedException;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.PatcherUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PatcherUtilsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Task task;
+
+    @BeforeEach
+    public void setup() {
+        task = new Task();
+        task.setUuid("123-uuid");
+        task.setTitle("Sample Task");
+        task.setDescription("Sample description");
+        task.setStatus(Status.NEW);
+    }
+
+    @Test
+    public void patch_ShouldCopyNonNullFields_AndSkipBlankStrings() {
+        Task updatedTask = new Task();
+        updatedTask.setTitle(" ");
+        updatedTask.setStatus(Status.COMPLETED);
+
+        PatcherUtils.patch(task, updatedTask);
+
+        assertEquals("Sample Task", task.getTitle());
+        assertEquals("Sample description", task.getDescription());
+        assertEquals(Status.COMPLETED, task.getStatus());
+    }
+
+    @Test
+    public void prepare_ShouldThrowException_WhenImmutableFieldIsGiven() {
+        Task updatedTask = new Task();
+        updatedTask.setUuid("modified-uuid");
+
+        UnmodifiedException exception = assertThrows(UnmodifiedException.class, () -> PatcherUtils.prepare(updatedTask));
+
+        assertEquals("It is not allowed to modify UUID", exception.getMessage());
+    }
+
+    @Test
+    public void prepare_ShouldReturnEmptyPatch_WhenNothingIsGiven() {
+        assertTrue(PatcherUtils.prepare(new Task()).isEmpty());
+    }
+
+    @Test
+    public void prepareMergePatch_ShouldClearNullMembers_AndKeepAbsentOnes() throws Exception {
+        PatcherUtils.prepareMergePatch(Task.class,
+                        objectMapper.readTree("{\"description\": null, \"status\": \"IN_PROGRESS\"}"), objectMapper)
+                .applyTo(task);
+
+        assertEquals("Sample Task", task.getTitle());
+        assertNull(task.getDescription());
+        assertEquals(Status.IN_PROGRESS, task.getStatus());
+    }
+
+    @Test
+    public void prepareMergePatch_ShouldThrowException_WhenFieldIsUnknown() throws Exception {
+        UnmodifiedException exception = assertThrows(UnmodifiedException.class, () -> PatcherUtils.prepareMergePatch(
+                Task.class, objectMapper.readTree("{\"owner\": \"me\"}"), objectMapper));
+
+        assertEquals("Unknown field: owner", exception.getMessage());
+    }
+
+    @Test
+    public void prepareMergePatch_ShouldThrowException_WhenImmutableFieldIsGiven() throws Exception {
+        assertThrows(UnmodifiedException.class, () -> PatcherUtils.prepareMergePatch(
+                Task.class, objectMapper.readTree("{\"uuid\": \"modified-uuid\"}"), objectMapper));
+    }
+
+    @Test
+    public void prepareMergePatch_ShouldThrowException_WhenDocumentIsNotAnObject() throws Exception {
+        assertThrows(UnmodifiedException.class, () -> PatcherUtils.prepareMergePatch(
+                Task.class, objectMapper.readTree("[]"), objectMapper));
+    }
+}
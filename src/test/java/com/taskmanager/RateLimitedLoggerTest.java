@@ -0,0 +1,62 @@
+package com.taskmanager;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.taskmanager.logging.RateLimitedLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateLimitedLoggerTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RateLimitedLoggerTest.class);
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    public void setup() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    public void warn_ShouldLogOncePerKey_WithinInterval() {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, Duration.ofHours(1));
+
+        rateLimitedLogger.warn("first", "Probe failed: {}", "refused");
+        rateLimitedLogger.warn("first", "Probe failed: {}", "refused");
+        rateLimitedLogger.warn("second", "Probe failed: {}", "timeout");
+
+        assertEquals(List.of("Probe failed: refused", "Probe failed: timeout"), messages());
+    }
+
+    @Test
+    public void error_ShouldReportSuppressedEvents_AfterInterval() throws InterruptedException {
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, Duration.ofMillis(100));
+
+        rateLimitedLogger.error("key", "Exception occurred: {}", "first");
+        rateLimitedLogger.error("key", "Exception occurred: {}", "second");
+        rateLimitedLogger.error("key", "Exception occurred: {}", "third");
+        Thread.sleep(150);
+        rateLimitedLogger.error("key", "Exception occurred: {}", "fourth");
+
+        assertEquals(List.of("Exception occurred: first", "Exception occurred: fourth (2 similar events suppressed)"),
+                messages());
+    }
+
+    private List<String> messages() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+}
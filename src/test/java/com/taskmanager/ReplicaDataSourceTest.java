@@ -0,0 +1,220 @@
+package com.taskmanager;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.ReadYourWritesFilter;
+import com.taskmanager.config.ReplicaDataSource;
+import com.taskmanager.config.ReplicaProperties;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.service.TaskChangeEvent;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ReplicaDataSourceTest {
+
+    @Mock
+    private DataSource writeDataSource;
+
+    @Mock
+    private Connection writeConnection;
+
+    @Mock
+    private DataSourceHealthMonitor healthMonitor;
+
+    private final ReplicaProperties.Routing properties = new ReplicaProperties.Routing();
+
+    @Spy
+    private ReplicaProperties replicaProperties = replicaProperties(properties);
+
+    @InjectMocks
+    private ReadYourWritesFilter readYourWritesFilter;
+    private final AtomicInteger outstandingA = new AtomicInteger();
+    private final AtomicInteger outstandingB = new AtomicInteger();
+
+    private DataSource dataSourceA;
+    private DataSource dataSourceB;
+    private Connection connectionA;
+    private Connection connectionB;
+    private ReplicaDataSource replicaDataSource;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        when(writeDataSource.getConnection()).thenReturn(writeConnection);
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        properties.setMaxLag(Duration.ofSeconds(1));
+        properties.setFailureThreshold(2);
+        dataSourceA = mock(DataSource.class);
+        dataSourceB = mock(DataSource.class);
+        connectionA = replicaConnection(dataSourceA, 0.0);
+        connectionB = replicaConnection(dataSourceB, 0.0);
+        replicaDataSource = new ReplicaDataSource(List.of(
+                new ReplicaDataSource.Replica("a", dataSourceA, outstandingA::get),
+                new ReplicaDataSource.Replica("b", dataSourceB, outstandingB::get)),
+                writeDataSource, healthMonitor, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        replicaDataSource.close();
+    }
+
+    @Test
+    public void getConnection_ShouldReadFromPrimary_UntilReplicasAreProbed() throws SQLException {
+        assertSame(writeConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    public void getConnection_ShouldPickReplicaWithFewestOutstandingConnections() throws SQLException {
+        replicaDataSource.probe();
+        outstandingA.set(5);
+        outstandingB.set(2);
+
+        assertSame(connectionB, replicaDataSource.getConnection());
+        assertSame(connectionB, replicaDataSource.getConnection());
+    }
+
+    @Test
+    public void getConnection_ShouldAlternate_WhenRoundRobin() throws SQLException {
+        properties.setSelection(ReplicaProperties.Selection.ROUND_ROBIN);
+        replicaDataSource.probe();
+
+        Connection first = replicaDataSource.getConnection();
+        Connection second = replicaDataSource.getConnection();
+
+        assertSame(first == connectionA ? connectionB : connectionA, second);
+    }
+
+    @Test
+    public void getConnection_ShouldSkipLaggingAndFailedReplicas() throws SQLException {
+        replicaConnection(dataSourceA, 5.0);
+        when(dataSourceB.getConnection()).thenThrow(new SQLException("Connection refused"));
+        replicaDataSource.probe();
+        replicaDataSource.probe();
+
+        assertSame(writeConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    public void getConnection_ShouldSkipReplicasBehindTheLastWriteOfTheClient() throws Exception {
+        connectionA = replicaConnection(dataSourceA, 0.0, 100);
+        connectionB = replicaConnection(dataSourceB, 0.0, 50);
+        replicaDataSource.probe();
+        outstandingA.set(5);
+
+        assertSame(connectionB, connectionInRequest(-1));
+        assertSame(connectionA, connectionInRequest(80));
+        assertSame(writeConnection, connectionInRequest(200));
+        // the marker belongs to the request, not to the thread serving it
+        assertSame(connectionB, replicaDataSource.getConnection());
+    }
+
+    @Test
+    public void onTaskChange_ShouldHandTheClientThePositionOfItsWrite() throws Exception {
+        Connection primaryConnection = replicaConnection(writeDataSource, 0.0, 150);
+        connectionA = replicaConnection(dataSourceA, 0.0, 100);
+        replicaDataSource.probe();
+        AtomicReference<Connection> connection = new AtomicReference<>();
+
+        MockHttpServletResponse response = inRequest(-1, () -> {
+            replicaDataSource.onTaskChange(
+                    new TaskChangeEvent(TaskChangeType.CREATED, new Task(), DataSourceRoute.PRIMARY));
+            connection.set(replicaDataSource.getConnection());
+        });
+
+        assertSame(primaryConnection, connection.get());
+        assertEquals("150", response.getCookie(ReadYourWritesFilter.COOKIE).getValue());
+        assertSame(connectionA, connectionInRequest(100));
+        assertSame(primaryConnection, connectionInRequest(150));
+    }
+
+    @Test
+    public void getConnection_ShouldReadFromWriteDataSource_WhileRoutedToSecondary() throws SQLException {
+        replicaDataSource.probe();
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.SECONDARY);
+
+        assertSame(writeConnection, replicaDataSource.getConnection());
+    }
+
+    private Connection connectionInRequest(long writtenPosition) throws Exception {
+        AtomicReference<Connection> connection = new AtomicReference<>();
+        inRequest(writtenPosition, () -> connection.set(replicaDataSource.getConnection()));
+        return connection.get();
+    }
+
+    private MockHttpServletResponse inRequest(long writtenPosition, SqlAction action) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tasks");
+        if (writtenPosition >= 0) {
+            request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(writtenPosition)));
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(request, response, (filteredRequest, filteredResponse) -> {
+            try {
+                action.run();
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            }
+        });
+        return response;
+    }
+
+    private static ReplicaProperties replicaProperties(ReplicaProperties.Routing routing) {
+        ReplicaProperties replicaProperties = new ReplicaProperties();
+        replicaProperties.setReplicaRouting(routing);
+        return replicaProperties;
+    }
+
+    private static Connection replicaConnection(DataSource dataSource, double lagSeconds) throws SQLException {
+        return replicaConnection(dataSource, lagSeconds, 0);
+    }
+
+    private static Connection replicaConnection(DataSource dataSource, double lagSeconds, long replayedPosition)
+            throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+        when(resultSet.getLong(1)).thenReturn(replayedPosition);
+        when(resultSet.getLong(2)).thenReturn(replayedPosition);
+        return connection;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
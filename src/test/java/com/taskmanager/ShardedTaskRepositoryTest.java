@@ -0,0 +1,429 @@
+package com.taskmanager;
+
+import com.taskmanager.config.ShardingProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.repository.ShardedTaskRepository;
+import com.taskmanager.service.TaskIds;
+import com.taskmanager.shard.HashRing;
+import com.taskmanager.shard.Resharder;
+import com.taskmanager.shard.ShardCluster;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedTaskRepositoryTest {
+
+    private final Map<String, DataSource> databases = new LinkedHashMap<>();
+    private DataSource directory;
+    private ShardCluster cluster;
+    private ShardCluster otherInstance;
+
+    @AfterEach
+    public void closeCluster() {
+        if (cluster != null) {
+            cluster.close();
+        }
+        if (otherInstance != null) {
+            otherInstance.close();
+        }
+    }
+
+    @Test
+    public void hashRing_ShouldOnlyMoveTasksToAddedShard() {
+        HashRing two = new HashRing(List.of("a", "b"), 128);
+        HashRing three = new HashRing(List.of("c", "b", "a"), 128);
+        assertEquals(List.of("a", "b", "c"), three.shards());
+
+        int moved = 0;
+        for (int i = 0; i < 3000; i++) {
+            UUID uuid = UUID.fromString(TaskIds.next());
+            if (!two.shardFor(uuid).equals(three.shardFor(uuid))) {
+                assertEquals("c", three.shardFor(uuid));
+                moved++;
+            }
+        }
+        double share = three.movesTo(two).stream().mapToDouble(HashRing.Move::share).sum();
+        assertTrue(two.movesTo(three).stream().allMatch(move -> move.target().equals("c")));
+        assertTrue(share > 0.25 && share < 0.42, "share of the ring moved: " + share);
+        assertTrue(Math.abs(moved / 3000.0 - share) < 0.05, "tasks moved: " + moved);
+        assertTrue(two.movesTo(new HashRing(List.of("b", "a"), 128)).isEmpty());
+    }
+
+    @Test
+    public void tasks_ShouldBeWrittenToTheShardOfTheirUuid_WithGloballyUniqueTitles() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Task task = task("task " + i, Status.NEW);
+            assertTrue(repository.insertIfTitleAbsent(task));
+            uuids.add(task.getUuid());
+        }
+
+        for (String uuid : uuids) {
+            assertEquals(List.of(cluster.shardFor(uuid)), shardsHolding(uuid));
+            assertEquals(0L, repository.findById(uuid).orElseThrow().getVersion());
+        }
+        // the first and the last task are on different shards, titles are unique across them all the same
+        String other = uuids.stream().filter(uuid -> !cluster.shardFor(uuid).equals(cluster.shardFor(uuids.get(0))))
+                .findFirst().orElseThrow();
+        assertTrue(repository.existsByTitle("task 0"));
+        assertFalse(repository.insertIfTitleAbsent(task("task 0", Status.NEW)));
+        Task renamed = repository.findById(other).orElseThrow();
+        renamed.setTitle("task 0");
+        assertThrows(DataIntegrityViolationException.class, () -> repository.save(renamed));
+
+        repository.deleteById(uuids.get(0));
+        assertFalse(repository.existsByTitle("task 0"));
+        renamed.setStatus(Status.COMPLETED);
+        assertEquals(1L, repository.save(renamed).getVersion());
+        assertFalse(repository.existsByTitle("task " + uuids.indexOf(other)));
+        assertEquals("task 0", repository.findById(other).orElseThrow().getTitle());
+        assertEquals(renamed.getCompletedAt(), repository.findById(other).orElseThrow().getCompletedAt());
+        assertNotNull(renamed.getCompletedAt());
+        assertEquals(29, repository.count());
+        assertEquals(Map.of(Status.NEW, 28L, Status.COMPLETED, 1L), counts(repository));
+    }
+
+    @Test
+    public void insertAll_ShouldWriteEveryShardInOneBatch_SkippingTakenTitlesAndIds() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        Task existing = task("existing", Status.NEW);
+        repository.insertIfTitleAbsent(existing);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(task("task " + i, Status.NEW));
+        }
+        tasks.add(task("existing", Status.NEW));
+        tasks.add(task("task 0", Status.NEW));
+        Task sameId = task("same id", Status.NEW);
+        sameId.setUuid(existing.getUuid());
+        tasks.add(sameId);
+
+        int[] counts = repository.insertAllIfTitleAbsent(tasks);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1, counts[i]);
+            assertEquals(List.of(cluster.shardFor(tasks.get(i).getUuid())), shardsHolding(tasks.get(i).getUuid()));
+        }
+        assertEquals(0, counts[20]);
+        assertEquals(0, counts[21]);
+        assertEquals(0, counts[22]);
+        assertFalse(repository.existsByTitle("same id"));
+        assertEquals(21, repository.count());
+        assertEquals(21, claimedTitles());
+    }
+
+    @Test
+    public void insertAll_ShouldGiveUpTheTitlesNotWritten_WhenAShardFails() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(task("task " + i, Status.NEW));
+        }
+        cluster.ring();
+        try (Connection connection = databases.get("b").getConnection()) {
+            connection.createStatement().execute("DROP TABLE tasks");
+        }
+
+        assertThrows(DataAccessException.class, () -> repository.insertAllIfTitleAbsent(tasks));
+
+        long written = rows("a") + rows("c");
+        assertTrue(written < tasks.size());
+        assertEquals(written, claimedTitles());
+    }
+
+    @Test
+    public void orphanedTitle_ShouldBeGivenUp_OnceTheClaimTimedOut() {
+        ShardedTaskRepository repository = repository("a", "b");
+        cluster.titles().claim("recent", TaskIds.next());
+        ShardCluster.execute(directory, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO task_titles (title, uuid, claimed_at) VALUES (?, ?, ?)")) {
+                statement.setString(1, "orphaned");
+                statement.setObject(2, UUID.fromString(TaskIds.next()));
+                statement.setTimestamp(3, Timestamp.from(Instant.now().minus(Duration.ofHours(1))));
+                return statement.executeUpdate();
+            }
+        });
+
+        // a recent claim may belong to a write still running
+        assertTrue(repository.existsByTitle("recent"));
+        assertEquals(0, repository.insertAllIfTitleAbsent(List.of(task("recent", Status.NEW)))[0]);
+        assertFalse(repository.existsByTitle("orphaned"));
+        assertEquals(1, repository.insertAllIfTitleAbsent(List.of(task("orphaned", Status.NEW)))[0]);
+        assertTrue(repository.existsByTitle("orphaned"));
+    }
+
+    @Test
+    public void findPage_ShouldMergeTheShardsInUuidOrder() {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        List<String> all = new ArrayList<>();
+        List<String> completed = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Task task = task((i % 2 == 0 ? "even " : "odd ") + i, i % 3 == 0 ? Status.COMPLETED : Status.NEW);
+            repository.insertIfTitleAbsent(task);
+            all.add(task.getUuid());
+            if (task.getStatus() == Status.COMPLETED) {
+                completed.add(task.getUuid());
+            }
+        }
+        all.sort(null);
+        completed.sort(null);
+
+        assertEquals(all.subList(0, 7), uuids(repository.findPage(null, null, null, Limit.of(7))));
+        assertEquals(all.subList(8, 15), uuids(repository.findPage(all.get(7), null, null, Limit.of(7))));
+        assertEquals(completed, uuids(repository.findPage(null, Status.COMPLETED, null, Limit.of(100))));
+        assertEquals(20, repository.findPage(null, null, "even%", Limit.of(100)).size());
+        try (Stream<Task> tasks = repository.streamAll(null, null)) {
+            assertEquals(all, uuids(tasks.toList()));
+        }
+
+        List<Task> claimed = repository.claimNew(100, Instant.now().plusSeconds(60));
+        assertEquals(all.size() - completed.size(), claimed.size());
+        assertTrue(claimed.stream().allMatch(task -> task.getStatus() == Status.IN_PROGRESS && task.getVersion() == 1));
+        assertTrue(repository.claimNew(100, Instant.now().plusSeconds(60)).isEmpty());
+        assertEquals(claimed.size(), repository.releaseExpiredLeases(Instant.now().plusSeconds(61), 100).size());
+    }
+
+    @Test
+    public void reshard_ShouldMoveTasksToTheNewRing_WhileTheyAreWritten() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        cluster.properties().setBatchSize(50);
+        Resharder resharder = new Resharder(cluster);
+        resharder.reshard(List.of("a", "b"));
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Task task = task("task " + i, Status.NEW);
+            repository.insertIfTitleAbsent(task);
+            uuids.add(task.getUuid());
+        }
+
+        // updates and deletes go on while the tasks are moved
+        Map<String, String> expectedTitles = new ConcurrentHashMap<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int round = 0; writing.get() || round < 2; round++) {
+                for (int i = 0; i < uuids.size(); i += 7) {
+                    String uuid = uuids.get(i);
+                    if (i % 2 == 0) {
+                        Task task = repository.findById(uuid).orElseThrow();
+                        task.setTitle("task " + i + " round " + round);
+                        repository.save(task);
+                        expectedTitles.put(uuid, task.getTitle());
+                    } else {
+                        repository.deleteById(uuid);
+                        expectedTitles.put(uuid, "deleted");
+                    }
+                }
+            }
+        });
+        Resharder.Result result = resharder.reshard(List.of("a", "b", "c"));
+        writing.set(false);
+        writer.get();
+
+        assertEquals(List.of("a", "b", "c"), cluster.ring().shards());
+        assertTrue(result.copied() > 50 && result.copied() < 150, "copied: " + result.copied());
+        assertEquals(List.of("a", "b", "c"), ring(), "ring stored in the directory");
+        int present = 0;
+        for (int i = 0; i < uuids.size(); i++) {
+            String uuid = uuids.get(i);
+            String expectedTitle = expectedTitles.getOrDefault(uuid, "task " + i);
+            if (expectedTitle.equals("deleted")) {
+                assertTrue(shardsHolding(uuid).isEmpty());
+                assertTrue(repository.findById(uuid).isEmpty());
+            } else {
+                assertEquals(List.of(cluster.shardFor(uuid)), shardsHolding(uuid));
+                assertEquals(expectedTitle, repository.findById(uuid).orElseThrow().getTitle());
+                assertTrue(repository.existsByTitle(expectedTitle));
+                present++;
+            }
+        }
+        assertEquals(present, repository.count());
+
+        // back to two shards, the tasks of c are spread over a and b again
+        resharder.reshard(List.of("a", "b"));
+        assertEquals(0, rows("c"));
+        assertEquals(present, rows("a") + rows("b"));
+    }
+
+    @Test
+    public void reshard_ShouldSwitchOtherInstances_BeforeDeletingMovedTasks() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        cluster.properties().setRingRefreshInterval(Duration.ofMillis(50));
+        otherInstance = new ShardCluster(databases, directory, true, cluster.properties());
+        ShardedTaskRepository otherRepository = new ShardedTaskRepository(otherInstance);
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = task("task " + i, Status.NEW);
+            otherRepository.insertIfTitleAbsent(task);
+            uuids.add(task.getUuid());
+        }
+        assertEquals(100, repository.count());
+
+        // the other instance keeps writing while this one reshards
+        Map<String, String> expectedTitles = new ConcurrentHashMap<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int round = 0; writing.get() || round < 2; round++) {
+                for (int i = 0; i < uuids.size(); i += 3) {
+                    Task task = otherRepository.findById(uuids.get(i)).orElseThrow();
+                    task.setTitle("task " + i + " round " + round);
+                    otherRepository.save(task);
+                    expectedTitles.put(task.getUuid(), task.getTitle());
+                }
+            }
+        });
+        new Resharder(cluster).reshard(List.of("a", "b"));
+        writing.set(false);
+        writer.get();
+
+        assertEquals(List.of("a", "b"), otherInstance.ring().shards());
+        assertEquals(cluster.epoch(), otherInstance.epoch());
+        assertEquals(0, rows("c"));
+        for (int i = 0; i < uuids.size(); i++) {
+            String uuid = uuids.get(i);
+            assertEquals(List.of(otherInstance.shardFor(uuid)), shardsHolding(uuid));
+            assertEquals(expectedTitles.getOrDefault(uuid, "task " + i),
+                    otherRepository.findById(uuid).orElseThrow().getTitle());
+        }
+    }
+
+    @Test
+    public void reshard_ShouldKeepTheRing_WhenAnInstanceDoesNotAcknowledge() throws Exception {
+        ShardedTaskRepository repository = repository("a", "b", "c");
+        Resharder resharder = new Resharder(cluster);
+        resharder.reshard(List.of("a", "b"));
+        Task task = task("task", Status.NEW);
+        repository.insertIfTitleAbsent(task);
+        cluster.properties().setSwitchTimeout(Duration.ofMillis(300));
+        directoryUpdate("INSERT INTO task_ring_instances (instance, epoch, seen_at) "
+                + "VALUES ('stuck', 0, CURRENT_TIMESTAMP)");
+
+        assertThrows(IllegalStateException.class, () -> resharder.reshard(List.of("a", "b", "c")));
+
+        assertEquals(List.of("a", "b"), cluster.ring().shards());
+        assertEquals(List.of("a", "b"), ring());
+        assertEquals(null, cluster.target());
+        assertEquals("task", repository.findById(task.getUuid()).orElseThrow().getTitle());
+
+        // resharding goes on once the instance is gone
+        directoryUpdate("DELETE FROM task_ring_instances WHERE instance = 'stuck'");
+        resharder.reshard(List.of("a", "b", "c"));
+        assertEquals(List.of("a", "b", "c"), cluster.ring().shards());
+        assertEquals(List.of(cluster.shardFor(task.getUuid())), shardsHolding(task.getUuid()));
+    }
+
+    private ShardedTaskRepository repository(String... shards) {
+        String run = UUID.randomUUID().toString();
+        for (String shard : shards) {
+            databases.put(shard, database(shard + "-" + run));
+        }
+        ShardingProperties properties = new ShardingProperties();
+        properties.setVirtualNodes(64);
+        directory = database("directory-" + run);
+        cluster = new ShardCluster(databases, directory, true, properties);
+        return new ShardedTaskRepository(cluster);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    private List<String> shardsHolding(String uuid) throws Exception {
+        List<String> shards = new ArrayList<>();
+        for (Map.Entry<String, DataSource> database : databases.entrySet()) {
+            try (Connection connection = database.getValue().getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM tasks WHERE uuid = ?")) {
+                statement.setObject(1, UUID.fromString(uuid));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        shards.add(database.getKey());
+                    }
+                }
+            }
+        }
+        return shards;
+    }
+
+    private long rows(String shard) throws Exception {
+        try (Connection connection = databases.get(shard).getConnection();
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM tasks")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private long claimedTitles() {
+        return ShardCluster.execute(directory, connection -> {
+            try (ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM task_titles")) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        });
+    }
+
+    private void directoryUpdate(String sql) {
+        ShardCluster.execute(directory, connection -> connection.createStatement().executeUpdate(sql));
+    }
+
+    private List<String> ring() {
+        return ShardCluster.execute(directory, connection -> {
+            List<String> names = new ArrayList<>();
+            try (ResultSet resultSet = connection.createStatement()
+                    .executeQuery("SELECT name FROM task_shards ORDER BY name")) {
+                while (resultSet.next()) {
+                    names.add(resultSet.getString(1));
+                }
+            }
+            return names;
+        });
+    }
+
+    private static Map<Status, Long> counts(ShardedTaskRepository repository) {
+        Map<Status, Long> counts = new HashMap<>();
+        repository.countByStatus().forEach(row -> counts.put((Status) row[0], (Long) row[1]));
+        return counts;
+    }
+
+    private static Task task(String title, Status status) {
+        Task task = new Task();
+        task.setUuid(TaskIds.next());
+        task.setTitle(title);
+        task.setStatus(status);
+        return task;
+    }
+
+    private static List<String> uuids(List<Task> tasks) {
+        return tasks.stream().map(Task::getUuid).toList();
+    }
+}
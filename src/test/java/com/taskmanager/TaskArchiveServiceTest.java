@@ -0,0 +1,97 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskArchiveProperties;
+import com.taskmanager.exception.ResourceNotFoundException;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskArchiveService;
+import com.taskmanager.service.TaskService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TaskArchiveServiceTest {
+
+    @Autowired
+    private TaskArchiveService taskArchiveService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskArchiveProperties properties;
+
+    @Test
+    public void updateTaskStatus_ShouldStampCompletion() {
+        Task task = taskService.createTask(task("Stamped " + UUID.randomUUID(), Status.NEW));
+        assertNull(task.getCompletedAt());
+
+        Task completed = taskService.updateTaskStatus(task.getUuid(), Status.COMPLETED, null);
+        assertNotNull(completed.getCompletedAt());
+
+        Task reopened = taskService.updateTaskStatus(task.getUuid(), Status.NEW, null);
+        assertNull(reopened.getCompletedAt());
+    }
+
+    @Test
+    public void archiveCompleted_ShouldMoveCompletedTasks_WhichStayReadableOnRequest() {
+        String prefix = "Archivable " + UUID.randomUUID() + " ";
+        List<String> completed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            completed.add(taskService.createTask(task(prefix + i, Status.COMPLETED)).getUuid());
+        }
+        Task open = taskService.createTask(task(prefix + "open", Status.NEW));
+        Task done = taskService.createTask(task(prefix + "done", Status.NEW));
+        completed.add(taskService.updateTaskStatus(done.getUuid(), Status.COMPLETED, null).getUuid());
+        // cached before the archiving, must not be served from the cache afterwards
+        taskService.getTask(completed.get(0));
+
+        Duration retention = properties.getRetention();
+        properties.setRetention(Duration.ZERO);
+        try {
+            assertTrue(taskArchiveService.archiveCompleted() >= completed.size());
+        } finally {
+            properties.setRetention(retention);
+        }
+
+        for (String uuid : completed) {
+            assertThrows(ResourceNotFoundException.class, () -> taskService.getTask(uuid));
+            Task archived = taskService.getTaskOrArchived(uuid);
+            assertEquals(Status.COMPLETED, archived.getStatus());
+            assertNotNull(archived.getCompletedAt());
+        }
+        assertEquals(1L, taskService.getTaskOrArchived(done.getUuid()).getVersion());
+        assertEquals(List.of(open.getUuid()), uuids(taskService.getTasks(null, 100, null, prefix, false)));
+
+        List<String> all = new ArrayList<>(completed);
+        all.add(open.getUuid());
+        all.sort(null);
+        assertEquals(all, uuids(taskService.getTasks(null, 100, null, prefix, true)));
+        assertEquals(all.subList(1, 3), uuids(taskService.getTasks(all.get(0), 2, null, prefix, true)));
+        assertEquals(completed.stream().sorted().toList(),
+                uuids(taskService.getTasks(null, 100, Status.COMPLETED, prefix, true)));
+    }
+
+    private static Task task(String title, Status status) {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setStatus(status);
+        return task;
+    }
+
+    private static List<String> uuids(List<Task> tasks) {
+        return tasks.stream().map(Task::getUuid).toList();
+    }
+}
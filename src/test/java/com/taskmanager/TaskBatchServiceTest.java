@@ -0,0 +1,170 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskBatchProperties;
+import com.taskmanager.exception.BatchSizeExceededException;
+import com.taskmanager.model.BatchItemResult;
+import com.taskmanager.model.BatchOutcome;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.service.TaskBatchService;
+import com.taskmanager.service.TaskStatusCounters;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TaskBatchServiceTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TaskStatusCounters statusCounters;
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private TaskBatchProperties batchProperties = new TaskBatchProperties();
+
+    @InjectMocks
+    private TaskBatchService taskBatchService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        batchProperties.setChunkSize(2);
+        batchProperties.setMaxItems(5);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    public void createTasks_ShouldReportInvalidAndDuplicateItems() {
+        when(taskRepository.insertAllIfTitleAbsent(anyList())).thenReturn(new int[]{1, 0}, new int[]{1});
+
+        List<BatchItemResult> results = taskBatchService.createTasks(List.of(
+                task("First"), task(" "), task("Taken"), task("Last")));
+
+        assertEquals(BatchOutcome.CREATED, results.get(0).getOutcome());
+        assertNotNull(results.get(0).getUuid());
+        assertEquals(BatchOutcome.INVALID, results.get(1).getOutcome());
+        assertEquals("title: Title is mandatory", results.get(1).getMessage());
+        assertEquals(BatchOutcome.DUPLICATE, results.get(2).getOutcome());
+        assertEquals(BatchOutcome.CREATED, results.get(3).getOutcome());
+    }
+
+    @Test
+    public void createTasks_ShouldRetryItemByItem_WhenChunkFails() {
+        when(taskRepository.insertAllIfTitleAbsent(anyList()))
+                .thenThrow(new DuplicateKeyException("Task with the same title already exists"));
+        when(taskRepository.insertIfTitleAbsent(any(Task.class))).thenReturn(false, true);
+
+        List<BatchItemResult> results = taskBatchService.createTasks(List.of(task("Taken"), task("New")));
+
+        assertEquals(BatchOutcome.DUPLICATE, results.get(0).getOutcome());
+        assertEquals(BatchOutcome.CREATED, results.get(1).getOutcome());
+    }
+
+    @Test
+    public void createTasks_ShouldRethrowException_WhenChunkFailsOnAnotherConstraint() {
+        when(taskRepository.insertAllIfTitleAbsent(anyList()))
+                .thenThrow(new DataIntegrityViolationException("Title of a task can't be null"));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> taskBatchService.createTasks(List.of(task("Taken"), task("New"))));
+        verify(taskRepository, never()).insertIfTitleAbsent(any(Task.class));
+    }
+
+    @Test
+    public void createTasks_ShouldThrowException_WhenBatchIsTooLarge() {
+        List<Task> tasks = List.of(task("1"), task("2"), task("3"), task("4"), task("5"), task("6"));
+
+        assertThrows(BatchSizeExceededException.class, () -> taskBatchService.createTasks(tasks));
+        verify(taskRepository, never()).insertAllIfTitleAbsent(anyList());
+    }
+
+    @Test
+    public void updateTasks_ShouldPatchExistingTasks_AndReportMissingOnes() {
+        Task existing = task("Old title");
+        existing.setUuid("01920000-0000-7000-8000-000000000001");
+        when(taskRepository.findAllById(List.of("01920000-0000-7000-8000-000000000001", "01920000-0000-7000-8000-000000000002"))).thenReturn(List.of(existing));
+
+        Task patch = new Task();
+        patch.setUuid("01920000-0000-7000-8000-000000000001");
+        patch.setTitle("New title");
+        Task missing = new Task();
+        missing.setUuid("01920000-0000-7000-8000-000000000002");
+
+        List<BatchItemResult> results = taskBatchService.updateTasks(List.of(patch, missing, new Task()));
+
+        assertEquals(BatchOutcome.UPDATED, results.get(0).getOutcome());
+        assertEquals("New title", existing.getTitle());
+        assertEquals(BatchOutcome.NOT_FOUND, results.get(1).getOutcome());
+        assertEquals(BatchOutcome.INVALID, results.get(2).getOutcome());
+        verify(taskRepository).flush();
+    }
+
+    @Test
+    public void deleteTasks_ShouldDeleteExistingTasks_InOneStatement() {
+        Task existing = task("Existing");
+        existing.setUuid("01920000-0000-7000-8000-000000000001");
+        when(taskRepository.findAllById(List.of("01920000-0000-7000-8000-000000000001", "01920000-0000-7000-8000-000000000002"))).thenReturn(List.of(existing));
+
+        List<BatchItemResult> results = taskBatchService.deleteTasks(List.of("01920000-0000-7000-8000-000000000001", "01920000-0000-7000-8000-000000000002"));
+
+        assertEquals(BatchOutcome.DELETED, results.get(0).getOutcome());
+        assertEquals(BatchOutcome.NOT_FOUND, results.get(1).getOutcome());
+        verify(taskRepository).deleteAllByIdInBatch(Set.of("01920000-0000-7000-8000-000000000001"));
+    }
+
+    private static Task task(String title) {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setStatus(Status.NEW);
+        return task;
+    }
+}
@@ -0,0 +1,164 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskChangeFeedProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChange;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.service.TaskChangeEvent;
+import com.taskmanager.service.TaskChangeFeed;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskChangeFeedTest {
+
+    @Spy
+    private TaskChangeFeedProperties properties = new TaskChangeFeedProperties();
+
+    @InjectMocks
+    private TaskChangeFeed feed;
+
+    @BeforeEach
+    public void setup() {
+        properties.setBufferSize(4);
+        properties.setMaxPending(3);
+        feed.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    public void subscribe_ShouldReplayBufferedChanges_AfterGivenSequence() throws Exception {
+        publish(TaskChangeType.CREATED, "a");
+        publish(TaskChangeType.CREATED, "b");
+        publish(TaskChangeType.CREATED, "c");
+        RecordingSink sink = new RecordingSink();
+
+        feed.subscribe(1L, sink);
+        publish(TaskChangeType.DELETED, "d");
+
+        assertEquals(2, sink.next().sequence());
+        assertEquals(3, sink.next().sequence());
+        TaskChange live = sink.next();
+        assertEquals(4, live.sequence());
+        assertEquals(TaskChangeType.DELETED, live.type());
+        assertEquals("d", live.uuid());
+    }
+
+    @Test
+    public void subscribe_ShouldSendReset_WhenSequenceIsNoLongerBuffered() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            publish(TaskChangeType.CREATED, "task-" + i);
+        }
+        RecordingSink sink = new RecordingSink();
+
+        feed.subscribe(1L, sink);
+
+        TaskChange reset = sink.next();
+        assertEquals(TaskChangeType.RESET, reset.type());
+        assertEquals(6, reset.sequence());
+        assertNull(sink.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void subscriber_ShouldReceiveLatestChangeOnly_WhileBehind() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        feed.subscribe(null, sink);
+
+        publish(TaskChangeType.CREATED, "a");
+        TaskChange first = sink.next();
+        publish(TaskChangeType.STATUS_CHANGED, "a");
+        publish(TaskChangeType.CREATED, "b");
+        publish(TaskChangeType.PATCHED, "a");
+        release.countDown();
+
+        assertEquals(1, first.sequence());
+        TaskChange b = sink.next();
+        TaskChange a = sink.next();
+        assertEquals("b", b.uuid());
+        assertEquals("a", a.uuid());
+        assertEquals(TaskChangeType.PATCHED, a.type());
+        assertEquals(4, a.sequence());
+        assertNull(sink.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void subscriber_ShouldBeDisconnected_WhenTooFarBehind() throws Exception {
+        RecordingSink sink = new RecordingSink(new CountDownLatch(1));
+        feed.subscribe(null, sink);
+
+        publish(TaskChangeType.CREATED, "a");
+        sink.next();
+        List.of("b", "c", "d", "e").forEach(uuid -> publish(TaskChangeType.CREATED, uuid));
+
+        assertTrue(sink.closed.await(1, TimeUnit.SECONDS));
+    }
+
+    private void publish(TaskChangeType type, String uuid) {
+        Task task = new Task();
+        task.setUuid(uuid);
+        task.setTitle("Task " + uuid);
+        task.setStatus(Status.NEW);
+        feed.onTaskChange(new TaskChangeEvent(type, task, null));
+    }
+
+    /**
+     * Records sent changes. When given a latch, blocks after the first change until the latch is released,
+     * like a client reading slowly.
+     */
+    private static class RecordingSink implements TaskChangeFeed.Sink {
+
+        private final BlockingQueue<TaskChange> changes = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(TaskChange change) throws Exception {
+            changes.add(change);
+            release.await();
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        TaskChange next() throws InterruptedException {
+            TaskChange change = changes.poll(1, TimeUnit.SECONDS);
+            assertTrue(change != null, "no change received");
+            return change;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.taskmanager;
+
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskClaimService;
+import com.taskmanager.service.TaskService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TaskClaimServiceTest {
+
+    @Autowired
+    private TaskClaimService taskClaimService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    public void claimTasks_ShouldNotReturnSameTask_ToConcurrentWorkers() throws Exception {
+        Set<String> created = createTasks(60);
+
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        List<Future<List<Task>>> results = new ArrayList<>();
+        try {
+            Callable<List<Task>> worker = () -> {
+                List<Task> claimed = new ArrayList<>();
+                List<Task> batch;
+                do {
+                    batch = taskClaimService.claimTasks(3, Duration.ofMinutes(1));
+                    claimed.addAll(batch);
+                } while (!batch.isEmpty());
+                return claimed;
+            };
+            for (int i = 0; i < 4; i++) {
+                results.add(workers.submit(worker));
+            }
+            List<String> claimed = new ArrayList<>();
+            for (Future<List<Task>> result : results) {
+                for (Task task : result.get()) {
+                    assertEquals(Status.IN_PROGRESS, task.getStatus());
+                    assertTrue(task.getLeaseExpiresAt().isAfter(Instant.now()));
+                    claimed.add(task.getUuid());
+                }
+            }
+
+            assertEquals(claimed.size(), new HashSet<>(claimed).size(), "a task was claimed twice");
+            assertTrue(claimed.containsAll(created));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void releaseExpiredLeases_ShouldReturnTasksToNew() throws Exception {
+        createTasks(1);
+        List<Task> claimed = taskClaimService.claimTasks(100, Duration.ofMillis(1));
+        Thread.sleep(10);
+
+        assertTrue(taskClaimService.releaseExpiredLeases() >= claimed.size());
+
+        Task released = taskService.getTask(claimed.get(0).getUuid());
+        assertEquals(Status.NEW, released.getStatus());
+        assertNull(released.getLeaseExpiresAt());
+        assertEquals(claimed.get(0).getVersion() + 1, released.getVersion());
+    }
+
+    @Test
+    public void updateTaskStatus_ShouldEndLease() {
+        createTasks(1);
+        Task claimed = taskClaimService.claimTasks(1, Duration.ofMinutes(1)).get(0);
+
+        Task completed = taskService.updateTaskStatus(claimed.getUuid(), Status.COMPLETED, claimed.getVersion());
+
+        assertEquals(Status.COMPLETED, completed.getStatus());
+        assertNull(completed.getLeaseExpiresAt());
+    }
+
+    private Set<String> createTasks(int count) {
+        Set<String> uuids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Task task = new Task();
+            task.setTitle("Claimable " + UUID.randomUUID());
+            task.setStatus(Status.NEW);
+            uuids.add(taskService.createTask(task).getUuid());
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,64 @@
+package com.taskmanager;
+
+import com.taskmanager.exception.DuplicationException;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that creating a task costs the same on a small and on a large table.
+ * Excluded from the default build, run it with {@code mvn test -Pload-tests}.
+ */
+@Tag("load")
+@SpringBootTest
+public class TaskCreateLoadTest {
+
+    private static final Logger customLogger = LoggerFactory.getLogger(TaskCreateLoadTest.class);
+
+    private static final int ROUNDS = 5;
+    private static final int TASKS_PER_ROUND = 20_000;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    public void createTask_ShouldKeepLatencyFlat_WhenTableGrows() {
+        long[] medians = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] latencies = new long[TASKS_PER_ROUND];
+            for (int i = 0; i < TASKS_PER_ROUND; i++) {
+                Task task = newTask("load-" + round + "-" + i);
+                long start = System.nanoTime();
+                taskService.createTask(task);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            medians[round] = latencies[TASKS_PER_ROUND / 2];
+            customLogger.info("rows={} p50={}us p99={}us", (round + 1) * TASKS_PER_ROUND,
+                    medians[round] / 1_000, latencies[TASKS_PER_ROUND * 99 / 100] / 1_000);
+        }
+
+        assertThrows(DuplicationException.class, () -> taskService.createTask(newTask("load-0-0")));
+        // the first round also pays for JIT warm-up, so compare the following ones
+        assertTrue(medians[ROUNDS - 1] < medians[1] * 3,
+                "create latency grew with table size: " + Arrays.toString(medians));
+    }
+
+    private static Task newTask(String title) {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setStatus(Status.NEW);
+        return task;
+    }
+}
@@ -0,0 +1,48 @@
+package com.taskmanager;
+
+import com.taskmanager.service.TaskIds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskIdsTest {
+
+    @Test
+    public void next_ShouldReturnVersion7Uuid_WithCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(TaskIds.next());
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= after + 1);
+    }
+
+    @Test
+    public void next_ShouldReturnIncreasingIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(TaskIds.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, ids.get(i - 1) + " >= " + ids.get(i));
+        }
+    }
+
+    @Test
+    public void isValid_ShouldAcceptCanonicalUuidsOnly() {
+        assertTrue(TaskIds.isValid(TaskIds.next()));
+        assertTrue(TaskIds.isValid(UUID.randomUUID().toString()));
+        assertFalse(TaskIds.isValid("123-uuid"));
+        assertFalse(TaskIds.isValid(TaskIds.next().toUpperCase()));
+        assertFalse(TaskIds.isValid(null));
+    }
+}
@@ -0,0 +1,69 @@
+package com.taskmanager;
+
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.model.TaskChangeType;
+import com.taskmanager.service.TaskChangeEvent;
+import com.taskmanager.service.TaskSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskSearchIndexTest {
+
+    private final TaskSearchIndex index = new TaskSearchIndex();
+
+    @Test
+    public void search_ShouldMatchAllWords_AndRankTitleFirst() {
+        index.put(task("1", "Write report", "Quarterly numbers for the board"));
+        index.put(task("2", "Board meeting", "Prepare the quarterly report"));
+        index.put(task("3", "Quarterly report", null));
+
+        List<String> uuids = uuids(index.search("REPORT, quarterly", 0, 10));
+
+        assertEquals(List.of("3", "1", "2"), uuids);
+        assertTrue(index.search("report holiday", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void search_ShouldReturnRequestedPage() {
+        for (int i = 0; i < 10; i++) {
+            index.put(task(String.valueOf(i), "Task " + i, i % 2 == 0 ? "task" : null));
+        }
+
+        assertEquals(List.of("0", "2", "4", "6", "8", "1", "3", "5", "7", "9"), uuids(index.search("task", 0, 100)));
+        assertEquals(List.of("6", "8", "1"), uuids(index.search("task", 3, 3)));
+    }
+
+    @Test
+    public void onTaskChange_ShouldFollowWritesToH2Only() {
+        index.onTaskChange(new TaskChangeEvent(TaskChangeType.CREATED, task("1", "Old title", null), DataSourceRoute.SECONDARY));
+        index.onTaskChange(new TaskChangeEvent(TaskChangeType.CREATED, task("2", "Old title", null), DataSourceRoute.PRIMARY));
+        index.onTaskChange(new TaskChangeEvent(TaskChangeType.PATCHED, task("1", "New title", null), DataSourceRoute.SECONDARY));
+
+        assertTrue(index.search("old", 0, 10).isEmpty());
+        assertEquals(List.of("1"), uuids(index.search("new title", 0, 10)));
+
+        index.onTaskChange(new TaskChangeEvent(TaskChangeType.DELETED, task("1", "New title", null), DataSourceRoute.SECONDARY));
+
+        assertTrue(index.search("title", 0, 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    private static Task task(String uuid, String title, String description) {
+        Task task = new Task();
+        task.setUuid(uuid);
+        task.setTitle(title);
+        task.setDescription(description);
+        task.setStatus(Status.NEW);
+        return task;
+    }
+
+    private static List<String> uuids(List<Task> tasks) {
+        return tasks.stream().map(Task::getUuid).toList();
+    }
+}
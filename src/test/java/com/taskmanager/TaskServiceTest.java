@@ -1,26 +1,44 @@
 package com.taskmanager;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
 import com.taskmanager.exception.DuplicationException;
+import com.taskmanager.exception.PreconditionFailedException;
 import com.taskmanager.exception.ResourceNotFoundException;
 import com.taskmanager.exception.UnmodifiedException;
 import com.taskmanager.model.Status;
 import com.taskmanager.model.Task;
 import com.taskmanager.repository.TaskRepository;
 import com.taskmanager.service.TaskService;
+import com.taskmanager.service.TaskSearchIndex;
+import com.taskmanager.service.TaskStatusCounters;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,6 +50,24 @@ public class TaskServiceTest {
     @Mock
     private TaskRepository taskRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TaskStatusCounters statusCounters;
+
+    @Mock
+    private TaskSearchIndex searchIndex;
+
+    @Mock
+    private DataSourceHealthMonitor healthMonitor;
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private TaskService taskService;
 
@@ -40,32 +76,62 @@ public class TaskServiceTest {
     @BeforeEach
     public void setup() {
         task = new Task();
-        task.setUuid("123-uuid");
+        task.setUuid("01920000-0000-7000-8000-000000000123");
         task.setTitle("Sample Task");
         task.setStatus(Status.NEW);
     }
 
     @Test
     public void createTask_ShouldThrowException_WhenTitleExists() {
-        when(taskRepository.existsByTitle(task.getTitle())).thenReturn(true);
+        when(taskRepository.insertIfTitleAbsent(task)).thenReturn(false);
 
         DuplicationException exception = assertThrows(DuplicationException.class, () -> {
             taskService.createTask(task);
         });
 
         assertEquals("Task with the same title already exists", exception.getMessage());
-        verify(taskRepository, never()).save(any(Task.class));
+        verify(taskRepository, never()).existsByTitle(any());
     }
 
     @Test
     public void createTask_ShouldSaveTask_WhenTitleDoesNotExist() {
-        when(taskRepository.existsByTitle(task.getTitle())).thenReturn(false);
-        when(taskRepository.save(task)).thenReturn(task);
+        when(taskRepository.insertIfTitleAbsent(task)).thenReturn(true);
 
         Task createdTask = taskService.createTask(task);
 
         assertNotNull(createdTask);
-        verify(taskRepository).save(task);
+        assertNotEquals("01920000-0000-7000-8000-000000000123", createdTask.getUuid());
+        verify(taskRepository).insertIfTitleAbsent(task);
+    }
+
+    @Test
+    public void getTask_ShouldReturnTask_WhenTaskExists() {
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+
+        Task foundTask = taskService.getTask(task.getUuid());
+
+        assertEquals(task, foundTask);
+    }
+
+    @Test
+    public void getTask_ShouldThrowException_WhenUuidIsMalformed() {
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
+            taskService.getTask("123-uuid");
+        });
+
+        assertSame(ResourceNotFoundException.TASK, exception);
+        verify(taskRepository, never()).findById(any());
+    }
+
+    @Test
+    public void getTask_ShouldThrowException_WhenTaskNotFound() {
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.empty());
+
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
+            taskService.getTask(task.getUuid());
+        });
+
+        assertSame(ResourceNotFoundException.TASK, exception);
     }
 
     @Test
@@ -76,7 +142,7 @@ public class TaskServiceTest {
             taskService.deleteTask(task.getUuid());
         });
 
-        assertEquals("Task Record Not Found By UUID: 123-uuid", exception.getMessage());
+        assertSame(ResourceNotFoundException.TASK, exception);
         verify(taskRepository, never()).delete(any(Task.class));
     }
 
@@ -87,6 +153,7 @@ public class TaskServiceTest {
         taskService.deleteTask(task.getUuid());
 
         verify(taskRepository).delete(task);
+        verify(statusCounters).deleted(Status.NEW);
     }
 
     @Test
@@ -94,10 +161,10 @@ public class TaskServiceTest {
         when(taskRepository.findById(task.getUuid())).thenReturn(Optional.empty());
 
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
-            taskService.updateTaskStatus(task.getUuid(), Status.COMPLETED);
+            taskService.updateTaskStatus(task.getUuid(), Status.COMPLETED, null);
         });
 
-        assertEquals("Task Record Not Found By UUID: 123-uuid", exception.getMessage());
+        assertSame(ResourceNotFoundException.TASK, exception);
     }
 
     @Test
@@ -105,10 +172,11 @@ public class TaskServiceTest {
         when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
         when(taskRepository.save(task)).thenReturn(task);
 
-        Task updatedTask = taskService.updateTaskStatus(task.getUuid(), Status.COMPLETED);
+        Task updatedTask = taskService.updateTaskStatus(task.getUuid(), Status.COMPLETED, null);
 
         assertEquals(Status.COMPLETED, updatedTask.getStatus());
         verify(taskRepository).save(task);
+        verify(statusCounters).changed(Status.NEW, Status.COMPLETED);
     }
 
     @Test
@@ -117,7 +185,7 @@ public class TaskServiceTest {
         updatedTask.setUuid("modified-uuid");
 
         UnmodifiedException exception = assertThrows(UnmodifiedException.class, () -> {
-            taskService.updateTaskFields(task.getUuid(), updatedTask);
+            taskService.updateTaskFields(task.getUuid(), updatedTask, null);
         });
 
         assertEquals("It is not allowed to modify UUID", exception.getMessage());
@@ -131,19 +199,123 @@ public class TaskServiceTest {
         Task updatedTask = new Task();
         updatedTask.setTitle("Updated Task Title");
 
-        taskService.updateTaskFields(task.getUuid(), updatedTask);
+        taskService.updateTaskFields(task.getUuid(), updatedTask, null);
+
+        verify(taskRepository).save(task);
+    }
+
+    @Test
+    public void updateTaskFields_ShouldThrowException_WhenTitleIsTaken() {
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+        when(taskRepository.save(task)).thenThrow(new DataIntegrityViolationException("Duplicate title",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.TASKS_TITLE_UINDEX ON PUBLIC.TASKS(TITLE)\"", "23505")));
+
+        Task updatedTask = new Task();
+        updatedTask.setTitle("Taken Title");
+
+        DuplicationException exception = assertThrows(DuplicationException.class, () -> {
+            taskService.updateTaskFields(task.getUuid(), updatedTask, null);
+        });
+
+        assertEquals("Task with the same title already exists", exception.getMessage());
+    }
+
+    @Test
+    public void updateTaskFields_ShouldRethrowException_WhenAnotherConstraintIsViolated() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Duplicate id",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.PRIMARY_KEY_4 ON PUBLIC.TASKS(UUID)\"", "23505"));
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+        when(taskRepository.save(task)).thenThrow(violation);
+
+        Task updatedTask = new Task();
+        updatedTask.setTitle("Taken Title");
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class, () -> {
+            taskService.updateTaskFields(task.getUuid(), updatedTask, null);
+        });
+
+        assertSame(violation, exception);
+    }
+
+    @Test
+    public void updateTaskFields_ShouldThrowException_WhenVersionDiffers() {
+        task.setVersion(3L);
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+
+        Task updatedTask = new Task();
+        updatedTask.setTitle("Updated Task Title");
+
+        assertThrows(PreconditionFailedException.class, () -> {
+            taskService.updateTaskFields(task.getUuid(), updatedTask, 2L);
+        });
+
+        assertEquals("Sample Task", task.getTitle());
+        verify(taskRepository, never()).save(any(Task.class));
+    }
+
+    @Test
+    public void mergePatchTask_ShouldClearField_WhenMemberIsNull() throws Exception {
+        task.setDescription("Sample description");
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+        when(taskRepository.save(task)).thenReturn(task);
+
+        Task updatedTask = taskService.mergePatchTask(task.getUuid(), objectMapper.readTree("{\"description\": null}"), null);
 
+        assertNull(updatedTask.getDescription());
         verify(taskRepository).save(task);
     }
 
     @Test
-    public void getAllTasks_ShouldReturnAllTasks() {
-        when(taskRepository.findAll()).thenReturn(List.of(task));
+    public void mergePatchTask_ShouldThrowException_WhenResultIsInvalid() throws Exception {
+        when(taskRepository.findById(task.getUuid())).thenReturn(Optional.of(task));
+
+        assertThrows(ConstraintViolationException.class, () -> {
+            taskService.mergePatchTask(task.getUuid(), objectMapper.readTree("{\"title\": null}"), null);
+        });
+
+        verify(taskRepository, never()).save(any(Task.class));
+    }
 
-        List<Task> tasks = taskService.getAllTasks();
+    @Test
+    public void getTasks_ShouldReturnPageAfterCursor() {
+        when(taskRepository.findPage("01920000-0000-7000-8000-000000000100", Status.NEW, null, Limit.of(10))).thenReturn(List.of(task));
+
+        List<Task> tasks = taskService.getTasks("01920000-0000-7000-8000-000000000100", 10, Status.NEW, null, false);
 
         assertNotNull(tasks);
         assertEquals(1, tasks.size());
-        verify(taskRepository).findAll();
+        verify(taskRepository).findPage("01920000-0000-7000-8000-000000000100", Status.NEW, null, Limit.of(10));
+    }
+
+    @Test
+    public void getTasks_ShouldCapPageSizeAndEscapeTitlePrefix() {
+        when(taskRepository.findPage(null, null, "50\\%\\_off%", Limit.of(TaskService.MAX_PAGE_SIZE)))
+                .thenReturn(List.of(task));
+
+        List<Task> tasks = taskService.getTasks(null, 1_000_000, null, "50%_off", false);
+
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void searchTasks_ShouldSearchPostgres_WhenRoutedToPrimary() {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        when(taskRepository.search("sample", 0, TaskService.MAX_PAGE_SIZE)).thenReturn(List.of(task));
+
+        List<Task> tasks = taskService.searchTasks("sample", -5, 1_000_000);
+
+        assertEquals(List.of(task), tasks);
+        verify(searchIndex, never()).search(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void searchTasks_ShouldSearchIndex_WhenRoutedToSecondary() {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.SECONDARY);
+        when(searchIndex.search("sample", 20, 10)).thenReturn(List.of(task));
+
+        List<Task> tasks = taskService.searchTasks("sample", 20, 10);
+
+        assertEquals(List.of(task), tasks);
+        verify(taskRepository, never()).search(any(), anyInt(), anyInt());
     }
 }
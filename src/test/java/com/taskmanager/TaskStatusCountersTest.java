@@ -0,0 +1,102 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskStatsProperties;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.TaskStats;
+import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.service.TaskStatusCounters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskStatusCountersTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Spy
+    private TaskStatsProperties properties = new TaskStatsProperties();
+
+    @InjectMocks
+    private TaskStatusCounters counters;
+
+    @Test
+    public void stats_ShouldSeedCountsOnce_AndFollowReportedChanges() {
+        when(taskRepository.countByStatus()).thenReturn(List.of(
+                new Object[]{Status.NEW, 3L},
+                new Object[]{Status.COMPLETED, 1L}));
+
+        counters.stats();
+        counters.created(Status.NEW);
+        counters.changed(Status.NEW, Status.IN_PROGRESS);
+        counters.deleted(Status.COMPLETED);
+        TaskStats stats = counters.stats();
+
+        assertEquals(4, stats.total());
+        assertEquals(3, stats.byStatus().get(Status.NEW));
+        assertEquals(1, stats.byStatus().get(Status.IN_PROGRESS));
+        assertEquals(0, stats.byStatus().get(Status.COMPLETED));
+        verify(taskRepository, times(1)).countByStatus();
+    }
+
+    @Test
+    public void reconcile_ShouldCorrectCounts_ToDatabaseCounts() {
+        when(taskRepository.countByStatus())
+                .thenReturn(List.<Object[]>of(new Object[]{Status.NEW, 2L}))
+                .thenReturn(List.<Object[]>of(new Object[]{Status.NEW, 5L}, new Object[]{Status.COMPLETED, 1L}));
+
+        counters.reconcile();
+        counters.reconcile();
+        TaskStats stats = counters.stats();
+
+        assertEquals(6, stats.total());
+        assertEquals(5, stats.byStatus().get(Status.NEW));
+        assertEquals(1, stats.byStatus().get(Status.COMPLETED));
+    }
+
+    @Test
+    public void reconcile_ShouldKeepCounts_WhenChangedDuringRecount() {
+        when(taskRepository.countByStatus())
+                .thenReturn(List.<Object[]>of(new Object[]{Status.NEW, 2L}))
+                .thenAnswer(invocation -> {
+                    counters.created(Status.NEW);
+                    return List.<Object[]>of(new Object[]{Status.NEW, 10L});
+                });
+
+        counters.reconcile();
+        counters.reconcile();
+
+        assertEquals(3, counters.stats().byStatus().get(Status.NEW));
+    }
+
+    @Test
+    public void reconcile_ShouldApplyRecount_AfterDiscardingTooMany() {
+        properties.setMaxDiscardedRecounts(2);
+        when(taskRepository.countByStatus())
+                .thenReturn(List.<Object[]>of(new Object[]{Status.NEW, 2L}))
+                .thenAnswer(invocation -> {
+                    counters.created(Status.NEW);
+                    return List.<Object[]>of(new Object[]{Status.NEW, 10L});
+                });
+
+        counters.reconcile();
+        counters.reconcile();
+        counters.reconcile();
+        assertEquals(4, counters.stats().byStatus().get(Status.NEW));
+
+        // the third overlapping recount corrects the counts, keeping the change reported while it ran
+        counters.reconcile();
+        assertEquals(11, counters.stats().byStatus().get(Status.NEW));
+    }
+}
@@ -0,0 +1,154 @@
+package com.taskmanager;
+
+import com.taskmanager.config.TaskTransferProperties;
+import com.taskmanager.model.BatchItemResult;
+import com.taskmanager.model.BatchOutcome;
+import com.taskmanager.model.Status;
+import com.taskmanager.model.Task;
+import com.taskmanager.service.TaskService;
+import com.taskmanager.service.TaskTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TaskTransferServiceTest {
+
+    @Autowired
+    private TaskTransferService taskTransferService;
+
+    @Autowired
+    private TaskTransferProperties transferProperties;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    public void importTasks_ShouldCreateValidTasks_AndReportTheOthers() throws IOException {
+        String prefix = UUID.randomUUID() + " ";
+        String uuid = "01920000-0000-7000-8000-" + String.format("%012d", System.nanoTime() % 1_000_000_000_000L);
+        String csv = "title,description,status,uuid\n"
+                + prefix + "a,\"first, with comma\",NEW,\n"
+                + prefix + "b,,IN_PROGRESS," + uuid.toUpperCase() + "\n"
+                + "\n"
+                + prefix + "a,same title,NEW,\n"
+                + ",no title,NEW,\n"
+                + prefix + "c,unknown status,DONE,\n"
+                + prefix + "d,,COMPLETED,not-a-uuid\n"
+                + prefix + "e,same id,NEW," + uuid + "\n";
+
+        List<BatchItemResult> results = importTasks(csv, TaskTransferService.Format.CSV, 2);
+
+        assertEquals(List.of(BatchOutcome.CREATED, BatchOutcome.CREATED, BatchOutcome.DUPLICATE,
+                        BatchOutcome.INVALID, BatchOutcome.INVALID, BatchOutcome.INVALID, BatchOutcome.DUPLICATE),
+                results.stream().map(BatchItemResult::getOutcome).toList());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+        Task first = taskService.getTask(results.get(0).getUuid());
+        assertEquals(prefix + "a", first.getTitle());
+        assertEquals("first, with comma", first.getDescription());
+        assertEquals(0L, first.getVersion());
+        assertEquals(uuid, results.get(1).getUuid());
+        Task second = taskService.getTask(uuid);
+        assertEquals(Status.IN_PROGRESS, second.getStatus());
+        assertNull(second.getDescription());
+        assertEquals("title: Title is mandatory", results.get(3).getMessage());
+    }
+
+    @Test
+    public void importTasks_ShouldStop_AtMalformedJson() throws IOException {
+        String prefix = UUID.randomUUID() + " ";
+        String ndjson = "{\"title\":\"" + prefix + "a\",\"status\":\"NEW\"}\n"
+                + "{\"title\":\"" + prefix + "b\",\"status\":\"SOON\"}\n"
+                + "{\"title\": oops\n"
+                + "{\"title\":\"" + prefix + "c\",\"status\":\"NEW\"}\n";
+
+        List<BatchItemResult> results = importTasks(ndjson, TaskTransferService.Format.NDJSON, 100);
+
+        assertEquals(List.of(BatchOutcome.CREATED, BatchOutcome.INVALID, BatchOutcome.INVALID),
+                results.stream().map(BatchItemResult::getOutcome).toList());
+    }
+
+    @Test
+    public void exportTasks_ShouldWriteImportableTasks() throws IOException {
+        String prefix = UUID.randomUUID() + " ";
+        List<BatchItemResult> imported = importTasks("{\"title\":\"" + prefix + "a\",\"description\":\"say \\\"hi\\\"\","
+                + "\"status\":\"NEW\"}\n", TaskTransferService.Format.NDJSON, 100);
+        String uuid = imported.get(0).getUuid();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        taskTransferService.exportTasks(csv, TaskTransferService.Format.CSV);
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        taskTransferService.exportTasks(ndjson, TaskTransferService.Format.NDJSON);
+
+        String[] csvLines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("uuid,title,description,status,version,completedAt", csvLines[0]);
+        String csvLine = find(csvLines, uuid);
+        assertEquals(uuid + "," + prefix + "a,\"say \"\"hi\"\"\",NEW,0,", csvLine);
+        assertTrue(find(ndjson.toString(StandardCharsets.UTF_8).split("\n"), uuid).contains("\"version\":0"));
+
+        // the exported task is already there under its id
+        List<BatchItemResult> reimported = importTasks(csvLines[0] + "\n" + csvLine + "\n",
+                TaskTransferService.Format.CSV, 100);
+        assertEquals(BatchOutcome.DUPLICATE, reimported.get(0).getOutcome());
+    }
+
+    @Test
+    public void importTasks_ShouldKeepCompletionTimes_OfExportedTasks() throws IOException {
+        String prefix = UUID.randomUUID() + " ";
+        String csv = "title,status,completedAt\n"
+                + prefix + "a,COMPLETED,2024-01-02T03:04:05.678Z\n"
+                + prefix + "b,COMPLETED,\n"
+                + prefix + "c,NEW,2024-01-02T03:04:05.678Z\n";
+
+        Instant before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<BatchItemResult> results = importTasks(csv, TaskTransferService.Format.CSV, 100);
+
+        Task completed = taskService.getTask(results.get(0).getUuid());
+        assertEquals(Instant.parse("2024-01-02T03:04:05.678Z"), completed.getCompletedAt());
+        assertTrue(!taskService.getTask(results.get(1).getUuid()).getCompletedAt().isBefore(before));
+        assertNull(taskService.getTask(results.get(2).getUuid()).getCompletedAt());
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        taskTransferService.exportTasks(export, TaskTransferService.Format.CSV);
+        assertTrue(find(export.toString(StandardCharsets.UTF_8).split("\n"), completed.getUuid())
+                .endsWith(",COMPLETED,0,2024-01-02T03:04:05.678Z"));
+    }
+
+    private List<BatchItemResult> importTasks(String input, TaskTransferService.Format format, int chunkSize)
+            throws IOException {
+        int previousChunkSize = transferProperties.getChunkSize();
+        transferProperties.setChunkSize(chunkSize);
+        try {
+            List<BatchItemResult> results = new ArrayList<>();
+            taskTransferService.importTasks(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                    format, results::add);
+            return results;
+        } finally {
+            transferProperties.setChunkSize(previousChunkSize);
+        }
+    }
+
+    private static String find(String[] lines, String uuid) {
+        for (String line : lines) {
+            if (line.contains(uuid)) {
+                return line;
+            }
+        }
+        throw new AssertionError("No line of task " + uuid);
+    }
+}
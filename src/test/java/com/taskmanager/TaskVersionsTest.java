@@ -0,0 +1,117 @@
+package com.taskmanager;
+
+import com.taskmanager.config.DataSourceHealthMonitor;
+import com.taskmanager.config.DataSourceRoute;
+import com.taskmanager.config.ReplicaProperties;
+import com.taskmanager.model.Task;
+import com.taskmanager.repository.TaskRepository;
+import com.taskmanager.service.TaskVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TaskVersionsTest {
+
+    @Mock
+    private DataSourceHealthMonitor healthMonitor;
+
+    @Spy
+    private ReplicaProperties replicaProperties = new ReplicaProperties();
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @InjectMocks
+    private TaskVersions taskVersions;
+
+    @BeforeEach
+    public void setup() {
+        when(healthMonitor.currentRoute()).thenReturn(DataSourceRoute.PRIMARY);
+        when(taskRepository.listVersion()).thenReturn(OptionalLong.empty());
+    }
+
+    @Test
+    public void expectedVersion_ShouldReadTaskTag_OfCurrentRoute() {
+        Task task = new Task();
+        task.setVersion(7L);
+
+        assertEquals(7L, taskVersions.expectedVersion(taskVersions.taskTag(task)));
+        assertEquals(7L, taskVersions.expectedVersion("W/\"other\", " + taskVersions.taskTag(task)));
+        assertEquals(7L, taskVersions.expectedVersion(
+                TaskVersions.representationTag(taskVersions.taskTag(task), MediaType.APPLICATION_CBOR)));
+        assertNull(taskVersions.expectedVersion("*"));
+        assertNull(taskVersions.expectedVersion(null));
+        assertEquals(TaskVersions.NO_VERSION, taskVersions.expectedVersion("W/" + taskVersions.taskTag(task)));
+        assertEquals(TaskVersions.NO_VERSION, taskVersions.expectedVersion("\"secondary-7\""));
+    }
+
+    @Test
+    public void listTag_ShouldChange_WhenTaskChanges() {
+        String before = taskVersions.listTag();
+
+        taskVersions.changed();
+
+        assertTrue(before.startsWith("W/\""));
+        assertNotEquals(before, taskVersions.listTag());
+    }
+
+    @Test
+    public void listTag_ShouldFollowSharedVersion_WhenDatabaseKeepsOne() {
+        when(taskRepository.listVersion()).thenReturn(OptionalLong.of(41));
+        String before = taskVersions.listTag();
+
+        // a change made through another instance
+        when(taskRepository.listVersion()).thenReturn(OptionalLong.of(42));
+
+        assertEquals("W/\"primary-41\"", before);
+        assertEquals("W/\"primary-42\"", taskVersions.listTag());
+    }
+
+    @Test
+    public void listTag_ShouldBeWithheld_WhenSharedVersionCantBeRead() {
+        when(taskRepository.listVersion()).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertNull(taskVersions.listTag());
+    }
+
+    @Test
+    public void listTag_ShouldBeWithheld_WhileReplicasMayLag() {
+        ReplicaProperties.Replica replica = new ReplicaProperties.Replica();
+        replicaProperties.getReplicas().add(replica);
+        replicaProperties.getReplicaRouting().setMaxLag(Duration.ofMinutes(1));
+
+        taskVersions.changed();
+
+        assertNull(taskVersions.listTag());
+    }
+
+    @Test
+    public void listTag_ShouldBeWithheld_WhileReplicasMayLagBehindAnotherInstance() {
+        ReplicaProperties.Replica replica = new ReplicaProperties.Replica();
+        replicaProperties.getReplicas().add(replica);
+        replicaProperties.getReplicaRouting().setMaxLag(Duration.ofMinutes(1));
+
+        when(taskRepository.listVersion()).thenReturn(OptionalLong.of(42));
+
+        assertNull(taskVersions.listTag());
+    }
+}